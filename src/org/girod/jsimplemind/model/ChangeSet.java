@@ -0,0 +1,145 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.util.Arrays;
+
+/**
+ * The ids of the Topics which have been added, removed or modified between two versions of a diagram. The ids are
+ * sorted in ascending order.
+ *
+ * @since 0.4
+ */
+public class ChangeSet {
+   private final int[] added;
+   private final int[] removed;
+   private final int[] modified;
+   private final boolean titleChanged;
+
+   /**
+    * Constructor. The arrays are sorted and kept by the change set.
+    *
+    * @param added the ids of the added Topics
+    * @param removed the ids of the removed Topics
+    * @param modified the ids of the modified Topics
+    * @param titleChanged true if the diagram title has changed
+    */
+   public ChangeSet(int[] added, int[] removed, int[] modified, boolean titleChanged) {
+      this.added = added;
+      this.removed = removed;
+      this.modified = modified;
+      this.titleChanged = titleChanged;
+      Arrays.sort(added);
+      Arrays.sort(removed);
+      Arrays.sort(modified);
+   }
+
+   /**
+    * Return the ids of the added Topics.
+    *
+    * @return the ids of the added Topics
+    */
+   public int[] getAdded() {
+      return added;
+   }
+
+   /**
+    * Return the ids of the removed Topics.
+    *
+    * @return the ids of the removed Topics
+    */
+   public int[] getRemoved() {
+      return removed;
+   }
+
+   /**
+    * Return the ids of the modified Topics.
+    *
+    * @return the ids of the modified Topics
+    */
+   public int[] getModified() {
+      return modified;
+   }
+
+   /**
+    * Return true if a Topic has been added.
+    *
+    * @param id the Topic id
+    * @return true if the Topic has been added
+    */
+   public boolean isAdded(int id) {
+      return Arrays.binarySearch(added, id) >= 0;
+   }
+
+   /**
+    * Return true if a Topic has been removed.
+    *
+    * @param id the Topic id
+    * @return true if the Topic has been removed
+    */
+   public boolean isRemoved(int id) {
+      return Arrays.binarySearch(removed, id) >= 0;
+   }
+
+   /**
+    * Return true if a Topic has been modified.
+    *
+    * @param id the Topic id
+    * @return true if the Topic has been modified
+    */
+   public boolean isModified(int id) {
+      return Arrays.binarySearch(modified, id) >= 0;
+   }
+
+   /**
+    * Return true if the diagram title has changed.
+    *
+    * @return true if the diagram title has changed
+    */
+   public boolean isTitleChanged() {
+      return titleChanged;
+   }
+
+   /**
+    * Return true if nothing has changed.
+    *
+    * @return true if nothing has changed
+    */
+   public boolean isEmpty() {
+      return added.length == 0 && removed.length == 0 && modified.length == 0 && !titleChanged;
+   }
+
+   @Override
+   public String toString() {
+      return "ChangeSet{added=" + Arrays.toString(added) + ", removed=" + Arrays.toString(removed)
+         + ", modified=" + Arrays.toString(modified) + ", titleChanged=" + titleChanged + "}";
+   }
+}
@@ -0,0 +1,69 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A palette of shared immutable Colors, which are created lazily from packed ARGB values. Diagrams usually only use
+ * a few distinct colors, so the palette stops caching the colors above a maximum size.
+ *
+ * @since 0.4
+ */
+class ColorPalette {
+   private static final int MAX_SIZE = 4096;
+   private static final ConcurrentMap<Integer, Color> COLORS = new ConcurrentHashMap<>();
+
+   private ColorPalette() {
+   }
+
+   /**
+    * Return the Color for a packed ARGB value.
+    *
+    * @param argb the packed ARGB value
+    * @return the Color
+    */
+   static Color getColor(int argb) {
+      Color color = COLORS.get(argb);
+      if (color == null) {
+         color = new Color(argb, true);
+         if (COLORS.size() < MAX_SIZE) {
+            Color previous = COLORS.putIfAbsent(argb, color);
+            if (previous != null) {
+               color = previous;
+            }
+         }
+      }
+      return color;
+   }
+}
@@ -0,0 +1,860 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.awt.Color;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only SimpleMind diagram with a compact memory footprint.
+ *
+ * <p>
+ * The Topics are stored as a structure of arrays: each Topic has an index, and all its fields (id, parent index,
+ * position, packed colors, text and note) are stored at this index in parallel primitive arrays. The texts and notes
+ * are stored once in a shared pool of characters, which only uses one byte per character if possible. The children of the Topics are stored contiguously, in their
+ * document order.</p>
+ *
+ * <p>
+ * The Topics can be read directly by their index, which is the fastest way to iterate on all the Topics, or by
+ * {@link TopicView} flyweights which are created on demand. Note that the Topic properties are not kept by the
+ * compact diagram.</p>
+ *
+ * <p>
+ * A compact diagram can be created from a {@link SimpleMindDiagram}, by a {@link Builder}, or directly by the parser
+ * with {@link org.girod.jsimplemind.reader.SimpleMindParser#parseCompact(java.io.InputStream)}.</p>
+ *
+ * @since 0.4
+ */
+public class CompactDiagram {
+   private static final int WHITE = 0xFFFFFFFF;
+   private static final int BLACK = 0xFF000000;
+   private final String title;
+   private final int size;
+   private final int[] ids;
+   private final int[] parents;
+   private final int[] xs;
+   private final int[] ys;
+   private final int[] fillColors;
+   private final int[] textColors;
+   private final int[] strokeColors;
+   private final int[] texts;
+   private final int[] notes;
+   // the children of the Topic of index i are the indexes childrenIndexes[childrenStart[i]] to
+   // childrenIndexes[childrenStart[i + 1] - 1]
+   private final int[] childrenStart;
+   private final int[] childrenIndexes;
+   // the string pool: the string of index i is the range stringStart[i] to stringStart[i + 1] of the pool. The pool
+   // is stored as bytes if all the characters are in the ISO-8859-1 range
+   private final char[] pool;
+   private final byte[] latin1Pool;
+   private final int[] stringStart;
+   // the index of each id if the ids are dense, else null
+   private final int[] indexByID;
+   // the sorted ids and their index if the ids are not dense, else null
+   private final int[] sortedIDs;
+   private final int[] sortedIndexes;
+
+   /**
+    * Create a compact diagram from a diagram. The Topics are indexed in the iteration order of
+    * {@link SimpleMindDiagram#getTopics()}. Note that a Topic color which has been set to null is kept as 0.
+    *
+    * @param diagram the diagram
+    */
+   public CompactDiagram(SimpleMindDiagram diagram) {
+      this(fromDiagram(diagram));
+   }
+
+   private CompactDiagram(Builder builder) {
+      this.title = builder.title;
+      this.size = builder.size;
+      this.ids = Arrays.copyOf(builder.ids, size);
+      this.xs = Arrays.copyOf(builder.xs, size);
+      this.ys = Arrays.copyOf(builder.ys, size);
+      this.fillColors = Arrays.copyOf(builder.fillColors, size);
+      this.textColors = Arrays.copyOf(builder.textColors, size);
+      this.strokeColors = Arrays.copyOf(builder.strokeColors, size);
+      this.texts = Arrays.copyOf(builder.texts, size);
+      this.notes = Arrays.copyOf(builder.notes, size);
+      if (builder.isLatin1()) {
+         this.pool = null;
+         this.latin1Pool = new byte[builder.poolLength];
+         for (int i = 0; i < builder.poolLength; i++) {
+            latin1Pool[i] = (byte) builder.pool[i];
+         }
+      } else {
+         this.pool = Arrays.copyOf(builder.pool, builder.poolLength);
+         this.latin1Pool = null;
+      }
+      this.stringStart = Arrays.copyOf(builder.stringStart, builder.strings.size() + 1);
+
+      // index the ids, the last Topic of an id wins as in SimpleMindDiagram
+      int maxID = -1;
+      boolean isDense = true;
+      for (int i = 0; i < size; i++) {
+         int id = ids[i];
+         if (id < 0 || id > size * 2 + 16) {
+            isDense = false;
+            break;
+         }
+         maxID = Math.max(maxID, id);
+      }
+      if (isDense) {
+         indexByID = new int[maxID + 1];
+         Arrays.fill(indexByID, -1);
+         for (int i = 0; i < size; i++) {
+            indexByID[ids[i]] = i;
+         }
+         sortedIDs = null;
+         sortedIndexes = null;
+      } else {
+         indexByID = null;
+         long[] sorted = new long[size];
+         for (int i = 0; i < size; i++) {
+            sorted[i] = ((long) ids[i] << 32) | i;
+         }
+         Arrays.sort(sorted);
+         int count = 0;
+         int[] _sortedIDs = new int[size];
+         int[] _sortedIndexes = new int[size];
+         for (int i = 0; i < size; i++) {
+            int id = (int) (sorted[i] >> 32);
+            if (count > 0 && _sortedIDs[count - 1] == id) {
+               count--;
+            }
+            _sortedIDs[count] = id;
+            _sortedIndexes[count] = (int) sorted[i];
+            count++;
+         }
+         // the duplicated ids have been merged, so the arrays must be trimmed to keep them sorted
+         sortedIDs = Arrays.copyOf(_sortedIDs, count);
+         sortedIndexes = Arrays.copyOf(_sortedIndexes, count);
+      }
+
+      // resolve the parents and group the children in document order
+      this.parents = new int[size];
+      childrenStart = new int[size + 1];
+      for (int i = 0; i < size; i++) {
+         int parentid = builder.parentIDs[i];
+         int parent = parentid == -1 ? -1 : getIndex(parentid);
+         parents[i] = parent;
+         if (parent != -1) {
+            childrenStart[parent + 1]++;
+         }
+      }
+      for (int i = 0; i < size; i++) {
+         childrenStart[i + 1] += childrenStart[i];
+      }
+      childrenIndexes = new int[childrenStart[size]];
+      int[] fill = Arrays.copyOf(childrenStart, size);
+      int[] order = builder.childrenOrder;
+      for (int j = 0; j < size; j++) {
+         int i = order != null ? order[j] : j;
+         int parent = parents[i];
+         if (parent != -1) {
+            childrenIndexes[fill[parent]++] = i;
+         }
+      }
+   }
+
+   private static Builder fromDiagram(SimpleMindDiagram diagram) {
+      Builder builder = new Builder();
+      builder.setTitle(diagram.getTitle());
+      Map<Integer, Topic> topics = diagram.getTopics();
+      Map<Topic, Integer> indexes = new IdentityHashMap<>();
+      Iterator<Topic> it = topics.values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         Topic parent = topic.getParent();
+         int index = builder.addTopic(topic.getID(), parent != null ? parent.getID() : -1, topic.getText(),
+            topic.getX(), topic.getY());
+         builder.setNote(index, topic.getNote());
+         builder.setFillRGB(index, topic.getFillRGB());
+         builder.setTextRGB(index, topic.getTextRGB());
+         builder.setStrokeRGB(index, topic.getStrokeRGB());
+         indexes.put(topic, index);
+      }
+      // keep the order of the children lists of the diagram
+      int[] order = new int[builder.size];
+      boolean[] isOrdered = new boolean[builder.size];
+      int count = 0;
+      it = topics.values().iterator();
+      while (it.hasNext()) {
+         for (Topic child : it.next().getChildrenList()) {
+            Integer index = indexes.get(child);
+            if (index != null && !isOrdered[index]) {
+               isOrdered[index] = true;
+               order[count++] = index;
+            }
+         }
+      }
+      for (int i = 0; i < builder.size; i++) {
+         if (!isOrdered[i]) {
+            order[count++] = i;
+         }
+      }
+      builder.childrenOrder = order;
+      return builder;
+   }
+
+   /**
+    * Create a diagram with the content of this compact diagram.
+    *
+    * @return the diagram
+    */
+   public SimpleMindDiagram toDiagram() {
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      diagram.setTitle(title);
+      Topic[] topics = new Topic[size];
+      for (int i = 0; i < size; i++) {
+         Topic topic = new Topic(ids[i]);
+         topic.setText(getText(i));
+         topic.setNote(getNote(i));
+         topic.setPosition(xs[i], ys[i]);
+         topic.setFillRGB(fillColors[i]);
+         topic.setTextRGB(textColors[i]);
+         topic.setStrokeRGB(strokeColors[i]);
+         topics[i] = topic;
+         diagram.addTopic(topic);
+      }
+      for (int i = 0; i < size; i++) {
+         for (int c = childrenStart[i]; c < childrenStart[i + 1]; c++) {
+            Topic child = topics[childrenIndexes[c]];
+            child.setParent(topics[i]);
+            topics[i].addChild(child);
+         }
+      }
+      return diagram;
+   }
+
+   /**
+    * Return the diagram title.
+    *
+    * @return the title
+    */
+   public String getTitle() {
+      return title;
+   }
+
+   /**
+    * Return the number of Topics.
+    *
+    * @return the number of Topics
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Return the index of the Topic of a specified id.
+    *
+    * @param id the id
+    * @return the index, or -1 if there is no Topic for the id
+    */
+   public int getIndex(int id) {
+      if (indexByID != null) {
+         return id >= 0 && id < indexByID.length ? indexByID[id] : -1;
+      }
+      int found = Arrays.binarySearch(sortedIDs, id);
+      return found >= 0 ? sortedIndexes[found] : -1;
+   }
+
+   /**
+    * Return true if the diagram has a Topic for a specified id.
+    *
+    * @param id the id
+    * @return true if the diagram has a Topic for the specified id
+    */
+   public boolean hasTopic(int id) {
+      return getIndex(id) != -1;
+   }
+
+   /**
+    * Return the id of a Topic.
+    *
+    * @param index the Topic index
+    * @return the id
+    */
+   public int getID(int index) {
+      return ids[index];
+   }
+
+   /**
+    * Return the index of the parent of a Topic.
+    *
+    * @param index the Topic index
+    * @return the parent index, or -1 if the Topic has no parent
+    */
+   public int getParentIndex(int index) {
+      return parents[index];
+   }
+
+   /**
+    * Return the x position of a Topic.
+    *
+    * @param index the Topic index
+    * @return the x position
+    */
+   public int getX(int index) {
+      return xs[index];
+   }
+
+   /**
+    * Return the y position of a Topic.
+    *
+    * @param index the Topic index
+    * @return the y position
+    */
+   public int getY(int index) {
+      return ys[index];
+   }
+
+   /**
+    * Return the fill color of a Topic as a packed ARGB value.
+    *
+    * @param index the Topic index
+    * @return the fill color
+    */
+   public int getFillRGB(int index) {
+      return fillColors[index];
+   }
+
+   /**
+    * Return the text color of a Topic as a packed ARGB value.
+    *
+    * @param index the Topic index
+    * @return the text color
+    */
+   public int getTextRGB(int index) {
+      return textColors[index];
+   }
+
+   /**
+    * Return the stroke color of a Topic as a packed ARGB value.
+    *
+    * @param index the Topic index
+    * @return the stroke color
+    */
+   public int getStrokeRGB(int index) {
+      return strokeColors[index];
+   }
+
+   /**
+    * Return the text of a Topic. Note that a new String is created for each call.
+    *
+    * @param index the Topic index
+    * @return the text
+    */
+   public String getText(int index) {
+      return getString(texts[index]);
+   }
+
+   /**
+    * Return the note of a Topic. Note that a new String is created for each call.
+    *
+    * @param index the Topic index
+    * @return the note
+    */
+   public String getNote(int index) {
+      return getString(notes[index]);
+   }
+
+   /**
+    * Return true if the text of a Topic is equal to a specified text, without creating a String.
+    *
+    * @param index the Topic index
+    * @param text the text
+    * @return true if the text of the Topic is equal to the specified text
+    */
+   public boolean isText(int index, CharSequence text) {
+      int string = texts[index];
+      int start = stringStart[string];
+      int length = stringStart[string + 1] - start;
+      if (text.length() != length) {
+         return false;
+      }
+      for (int i = 0; i < length; i++) {
+         char c = pool != null ? pool[start + i] : (char) (latin1Pool[start + i] & 0xFF);
+         if (c != text.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private String getString(int string) {
+      int start = stringStart[string];
+      int length = stringStart[string + 1] - start;
+      if (pool != null) {
+         return new String(pool, start, length);
+      } else {
+         return new String(latin1Pool, start, length, StandardCharsets.ISO_8859_1);
+      }
+   }
+
+   /**
+    * Return the number of children of a Topic.
+    *
+    * @param index the Topic index
+    * @return the number of children
+    */
+   public int getChildCount(int index) {
+      return childrenStart[index + 1] - childrenStart[index];
+   }
+
+   /**
+    * Return the index of a child of a Topic.
+    *
+    * @param index the Topic index
+    * @param child the position of the child in the children of the Topic
+    * @return the index of the child
+    */
+   public int getChildIndex(int index, int child) {
+      if (child < 0 || child >= getChildCount(index)) {
+         throw new IndexOutOfBoundsException("Child " + child);
+      }
+      return childrenIndexes[childrenStart[index] + child];
+   }
+
+   /**
+    * Return a view of the Topic of a specified id.
+    *
+    * @param id the id
+    * @return the view, or null if there is no Topic for the id
+    */
+   public TopicView getTopic(int id) {
+      int index = getIndex(id);
+      return index == -1 ? null : new TopicView(index);
+   }
+
+   /**
+    * Return a view of the Topic of a specified index.
+    *
+    * @param index the Topic index
+    * @return the view
+    */
+   public TopicView getTopicAt(int index) {
+      if (index < 0 || index >= size) {
+         throw new IndexOutOfBoundsException("Topic " + index);
+      }
+      return new TopicView(index);
+   }
+
+   /**
+    * Return the views of all the Topics, in the order of their index. The views are created on demand.
+    *
+    * @return the views
+    */
+   public List<TopicView> getTopics() {
+      return new AbstractList<TopicView>() {
+         @Override
+         public TopicView get(int index) {
+            return getTopicAt(index);
+         }
+
+         @Override
+         public int size() {
+            return size;
+         }
+      };
+   }
+
+   /**
+    * A flyweight view of a Topic of a compact diagram. The view only holds the index of the Topic.
+    */
+   public final class TopicView {
+      private final int index;
+
+      private TopicView(int index) {
+         this.index = index;
+      }
+
+      /**
+       * Return the compact diagram of this Topic.
+       *
+       * @return the diagram
+       */
+      public CompactDiagram getDiagram() {
+         return CompactDiagram.this;
+      }
+
+      /**
+       * Return the Topic index.
+       *
+       * @return the index
+       */
+      public int getIndex() {
+         return index;
+      }
+
+      /**
+       * Return the Topic id.
+       *
+       * @return the id
+       */
+      public int getID() {
+         return ids[index];
+      }
+
+      /**
+       * Return the Topic text.
+       *
+       * @return the text
+       */
+      public String getText() {
+         return CompactDiagram.this.getText(index);
+      }
+
+      /**
+       * Return the Topic note.
+       *
+       * @return the note
+       */
+      public String getNote() {
+         return CompactDiagram.this.getNote(index);
+      }
+
+      /**
+       * Return the Topic x position.
+       *
+       * @return the x position
+       */
+      public int getX() {
+         return xs[index];
+      }
+
+      /**
+       * Return the Topic y position.
+       *
+       * @return the y position
+       */
+      public int getY() {
+         return ys[index];
+      }
+
+      /**
+       * Return the Topic fill color as a packed ARGB value.
+       *
+       * @return the fill color
+       */
+      public int getFillRGB() {
+         return fillColors[index];
+      }
+
+      /**
+       * Return the Topic text color as a packed ARGB value.
+       *
+       * @return the text color
+       */
+      public int getTextRGB() {
+         return textColors[index];
+      }
+
+      /**
+       * Return the Topic stroke color as a packed ARGB value.
+       *
+       * @return the stroke color
+       */
+      public int getStrokeRGB() {
+         return strokeColors[index];
+      }
+
+      /**
+       * Return the Topic fill color.
+       *
+       * @return the fill color
+       */
+      public Color getFillColor() {
+         return ColorPalette.getColor(fillColors[index]);
+      }
+
+      /**
+       * Return the Topic text color.
+       *
+       * @return the text color
+       */
+      public Color getTextColor() {
+         return ColorPalette.getColor(textColors[index]);
+      }
+
+      /**
+       * Return the Topic stroke color.
+       *
+       * @return the stroke color
+       */
+      public Color getStrokeColor() {
+         return ColorPalette.getColor(strokeColors[index]);
+      }
+
+      /**
+       * Return true if the Topic has a parent.
+       *
+       * @return true if the Topic has a parent
+       */
+      public boolean hasParent() {
+         return parents[index] != -1;
+      }
+
+      /**
+       * Return the Topic parent.
+       *
+       * @return the parent, or null if the Topic has no parent
+       */
+      public TopicView getParent() {
+         int parent = parents[index];
+         return parent == -1 ? null : new TopicView(parent);
+      }
+
+      /**
+       * Return the ordered list of children topics.
+       *
+       * @return the children
+       */
+      public List<TopicView> getChildrenList() {
+         final int start = childrenStart[index];
+         final int count = childrenStart[index + 1] - start;
+         return new AbstractList<TopicView>() {
+            @Override
+            public TopicView get(int child) {
+               if (child < 0 || child >= count) {
+                  throw new IndexOutOfBoundsException("Child " + child);
+               }
+               return new TopicView(childrenIndexes[start + child]);
+            }
+
+            @Override
+            public int size() {
+               return count;
+            }
+         };
+      }
+
+      @Override
+      public int hashCode() {
+         return index;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (this == obj) {
+            return true;
+         }
+         if (!(obj instanceof TopicView)) {
+            return false;
+         }
+         TopicView other = (TopicView) obj;
+         return index == other.index && getDiagram() == other.getDiagram();
+      }
+
+      @Override
+      public String toString() {
+         return "Topic " + getID() + ": " + getText();
+      }
+   }
+
+   /**
+    * Builds a compact diagram from Topics added in document order. The last Topic added for an id is the one
+    * returned by {@link CompactDiagram#getIndex(int)}.
+    */
+   public static class Builder {
+      private String title = null;
+      private int size = 0;
+      private int[] ids = new int[16];
+      private int[] parentIDs = new int[16];
+      private int[] xs = new int[16];
+      private int[] ys = new int[16];
+      private int[] fillColors = new int[16];
+      private int[] textColors = new int[16];
+      private int[] strokeColors = new int[16];
+      private int[] texts = new int[16];
+      private int[] notes = new int[16];
+      private final Map<String, Integer> strings = new HashMap<>();
+      private char[] pool = new char[256];
+      private int poolLength = 0;
+      private int[] stringStart = new int[16];
+      // the order of the Topics in the children lists, or null for the document order
+      private int[] childrenOrder = null;
+
+      public Builder() {
+         addString("");
+      }
+
+      /**
+       * Set the diagram title.
+       *
+       * @param title the title
+       * @return this builder
+       */
+      public Builder setTitle(String title) {
+         this.title = title;
+         return this;
+      }
+
+      /**
+       * Add a Topic. The Topic has no note, a white fill color and black text and stroke colors.
+       *
+       * @param id the Topic id
+       * @param parentid the id of the parent, or -1 if the Topic has no parent
+       * @param text the text (can be null)
+       * @param x the x position
+       * @param y the y position
+       * @return the index of the Topic
+       */
+      public int addTopic(int id, int parentid, String text, int x, int y) {
+         if (size == ids.length) {
+            int length = size * 2;
+            ids = Arrays.copyOf(ids, length);
+            parentIDs = Arrays.copyOf(parentIDs, length);
+            xs = Arrays.copyOf(xs, length);
+            ys = Arrays.copyOf(ys, length);
+            fillColors = Arrays.copyOf(fillColors, length);
+            textColors = Arrays.copyOf(textColors, length);
+            strokeColors = Arrays.copyOf(strokeColors, length);
+            texts = Arrays.copyOf(texts, length);
+            notes = Arrays.copyOf(notes, length);
+         }
+         ids[size] = id;
+         parentIDs[size] = parentid;
+         xs[size] = x;
+         ys[size] = y;
+         fillColors[size] = WHITE;
+         textColors[size] = BLACK;
+         strokeColors[size] = BLACK;
+         texts[size] = text == null ? 0 : addString(text);
+         notes[size] = 0;
+         return size++;
+      }
+
+      /**
+       * Set the note of a Topic.
+       *
+       * @param index the Topic index
+       * @param note the note (can be null)
+       */
+      public void setNote(int index, String note) {
+         checkIndex(index);
+         notes[index] = note == null ? 0 : addString(note);
+      }
+
+      /**
+       * Set the fill color of a Topic.
+       *
+       * @param index the Topic index
+       * @param argb the packed ARGB color
+       */
+      public void setFillRGB(int index, int argb) {
+         checkIndex(index);
+         fillColors[index] = argb;
+      }
+
+      /**
+       * Set the text color of a Topic.
+       *
+       * @param index the Topic index
+       * @param argb the packed ARGB color
+       */
+      public void setTextRGB(int index, int argb) {
+         checkIndex(index);
+         textColors[index] = argb;
+      }
+
+      /**
+       * Set the stroke color of a Topic.
+       *
+       * @param index the Topic index
+       * @param argb the packed ARGB color
+       */
+      public void setStrokeRGB(int index, int argb) {
+         checkIndex(index);
+         strokeColors[index] = argb;
+      }
+
+      /**
+       * Return the number of Topics which have been added.
+       *
+       * @return the number of Topics
+       */
+      public int size() {
+         return size;
+      }
+
+      /**
+       * Create the compact diagram.
+       *
+       * @return the diagram
+       */
+      public CompactDiagram build() {
+         return new CompactDiagram(this);
+      }
+
+      private boolean isLatin1() {
+         for (int i = 0; i < poolLength; i++) {
+            if (pool[i] > 0xFF) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      private void checkIndex(int index) {
+         if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Topic " + index);
+         }
+      }
+
+      private int addString(String value) {
+         Integer string = strings.get(value);
+         if (string != null) {
+            return string;
+         }
+         int index = strings.size();
+         if (index + 1 >= stringStart.length) {
+            stringStart = Arrays.copyOf(stringStart, stringStart.length * 2);
+         }
+         int length = value.length();
+         if (poolLength + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolLength + length));
+         }
+         value.getChars(0, length, pool, poolLength);
+         stringStart[index] = poolLength;
+         poolLength += length;
+         stringStart[index + 1] = poolLength;
+         strings.put(value, index);
+         return index;
+      }
+   }
+}
@@ -0,0 +1,204 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Compares two versions of a diagram by their {@link SubtreeHashes}, and returns the {@link ChangeSet} of the Topics
+ * which have been added, removed or modified between the two versions. The Topics of the two versions are matched by
+ * their id.
+ *
+ * <p>
+ * As for the reparsing of a diagram, a Topic is modified if its text, note, colors or position have changed,
+ * if its parent has changed, or if its list of children has changed. The comparison skips the subtrees which have the
+ * same hash and the same parent in the two versions, so that its cost is proportional to the number of changed
+ * subtrees rather than to the size of the diagram.</p>
+ *
+ * @since 0.4
+ */
+public class DiagramDiff {
+   private DiagramDiff() {
+   }
+
+   /**
+    * Compare two versions of a diagram.
+    *
+    * @param previous the previous version
+    * @param current the current version
+    * @return the change set
+    */
+   public static ChangeSet compare(SimpleMindDiagram previous, SimpleMindDiagram current) {
+      return compare(new SubtreeHashes(previous), new SubtreeHashes(current));
+   }
+
+   /**
+    * Compare the hashes of two versions of a diagram.
+    *
+    * @param previous the hashes of the previous version
+    * @param current the hashes of the current version
+    * @return the change set
+    */
+   public static ChangeSet compare(SubtreeHashes previous, SubtreeHashes current) {
+      boolean titleChanged = !Objects.equals(previous.getTitle(), current.getTitle());
+      HierarchyIndex previousIndex = previous.getIndex();
+      HierarchyIndex currentIndex = current.getIndex();
+      int previousSize = previousIndex.size();
+      int currentSize = currentIndex.size();
+      if (previousSize == currentSize && previous.getDiagramHash() == current.getDiagramHash()) {
+         return new ChangeSet(new int[0], new int[0], new int[0], titleChanged);
+      }
+      int[] added = new int[16];
+      int countAdded = 0;
+      int[] modified = new int[16];
+      int countModified = 0;
+      boolean[] removed = new boolean[previousSize];
+      int countRemoved = 0;
+      // the number of Topics of the current version which are also in the previous version
+      int countMatched = 0;
+      int position = 0;
+      while (position < currentSize) {
+         Topic topic = currentIndex.getTopicAt(position);
+         int previousPosition = previousIndex.getPosition(topic.getID());
+         if (previousPosition == -1) {
+            added = add(added, countAdded++, topic.getID());
+            position++;
+            continue;
+         }
+         boolean parentChanged = parentID(currentIndex, position) != parentID(previousIndex, previousPosition);
+         int end = currentIndex.getSubtreeEnd(position);
+         if (!parentChanged && current.getSubtreeHashAt(position) == previous.getSubtreeHashAt(previousPosition)
+            && end - position == previousIndex.getSubtreeEnd(previousPosition) - previousPosition) {
+            // the same subtree
+            countMatched += end - position;
+            position = end;
+            continue;
+         }
+         countMatched++;
+         boolean childrenChanged = !sameChildren(previousIndex, previousPosition, currentIndex, position);
+         if (parentChanged || childrenChanged
+            || current.getTopicHashAt(position) != previous.getTopicHashAt(previousPosition)) {
+            modified = add(modified, countModified++, topic.getID());
+         }
+         if (childrenChanged) {
+            countRemoved += markRemoved(previousIndex, previousPosition + 1, previousIndex.getSubtreeEnd(previousPosition),
+               currentIndex, removed);
+         }
+         position++;
+      }
+      // the roots of the previous version which have been removed
+      countRemoved += markRemoved(previousIndex, 0, previousSize, currentIndex, removed);
+      if (countMatched + countRemoved != previousSize) {
+         // a removed Topic was not reached from a changed Topic, for example in a cycle of parents
+         countRemoved += markRemovedTopics(previousIndex, 0, previousSize, currentIndex, removed);
+      }
+      int[] removedIDs = new int[countRemoved];
+      int count = 0;
+      for (int i = 0; i < previousSize; i++) {
+         if (removed[i]) {
+            removedIDs[count++] = previousIndex.getTopicAt(i).getID();
+         }
+      }
+      return new ChangeSet(Arrays.copyOf(added, countAdded), removedIDs, Arrays.copyOf(modified, countModified),
+         titleChanged);
+   }
+
+   private static long parentID(HierarchyIndex index, int position) {
+      int parent = index.getParentPosition(position);
+      // -1 is not a valid id as a long
+      return parent == -1 ? Long.MIN_VALUE : index.getTopicAt(parent).getID();
+   }
+
+   /**
+    * Return true if two Topics have the ids of children in the same order.
+    */
+   private static boolean sameChildren(HierarchyIndex index1, int position1, HierarchyIndex index2, int position2) {
+      int end1 = index1.getSubtreeEnd(position1);
+      int end2 = index2.getSubtreeEnd(position2);
+      int child1 = position1 + 1;
+      int child2 = position2 + 1;
+      while (child1 < end1 && child2 < end2) {
+         if (index1.getTopicAt(child1).getID() != index2.getTopicAt(child2).getID()) {
+            return false;
+         }
+         child1 = index1.getSubtreeEnd(child1);
+         child2 = index2.getSubtreeEnd(child2);
+      }
+      return child1 == end1 && child2 == end2;
+   }
+
+   /**
+    * Mark the subtrees of the Topics which are not in the current version, from the sibling Topics at a first position
+    * and the positions following their subtrees. The Topics of these subtrees which are in the current version have
+    * been moved, and are compared from the current version.
+    *
+    * @return the number of newly marked Topics
+    */
+   private static int markRemoved(HierarchyIndex previousIndex, int first, int end, HierarchyIndex currentIndex,
+      boolean[] removed) {
+      int count = 0;
+      int child = first;
+      while (child < end) {
+         int childEnd = previousIndex.getSubtreeEnd(child);
+         if (currentIndex.getPosition(previousIndex.getTopicAt(child).getID()) == -1) {
+            count += markRemovedTopics(previousIndex, child, childEnd, currentIndex, removed);
+         }
+         child = childEnd;
+      }
+      return count;
+   }
+
+   /**
+    * Mark the Topics in an interval of positions which are not in the current version.
+    *
+    * @return the number of newly marked Topics
+    */
+   private static int markRemovedTopics(HierarchyIndex previousIndex, int first, int end, HierarchyIndex currentIndex,
+      boolean[] removed) {
+      int count = 0;
+      for (int i = first; i < end; i++) {
+         if (!removed[i] && currentIndex.getPosition(previousIndex.getTopicAt(i).getID()) == -1) {
+            removed[i] = true;
+            count++;
+         }
+      }
+      return count;
+   }
+
+   private static int[] add(int[] array, int index, int value) {
+      if (index == array.length) {
+         array = Arrays.copyOf(array, array.length * 2);
+      }
+      array[index] = value;
+      return array;
+   }
+}
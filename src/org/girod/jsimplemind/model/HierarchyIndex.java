@@ -0,0 +1,359 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An index of the hierarchy of the Topics of a diagram, which answers the ancestor, depth, subtree size and root
+ * queries in constant time, and the lowest common ancestor queries in logarithmic time.
+ *
+ * <p>
+ * The Topics are numbered in the order of a depth-first traversal of the children lists from the Topics without
+ * parent, so that the descendants of a Topic are the Topics numbered in an interval which starts at the number of the
+ * Topic. The lowest common ancestors are found by binary lifting, with a table of the ancestors at each power of two
+ * depth above each Topic. The hierarchy of the index follows the children lists, not the parents of the Topics, which
+ * may differ if a parent is set without adding the child to the children list of the parent.</p>
+ *
+ * <p>
+ * The index is not updated when the hierarchy changes. The index returned by
+ * {@link SimpleMindDiagram#getHierarchyIndex()} is invalidated when the children or the parent of a Topic of the
+ * diagram are modified, or when Topics are added or removed, and built again at the next call.</p>
+ *
+ * @since 0.4
+ */
+public class HierarchyIndex {
+   private final Topic[] topics;
+   private final int[] depths;
+   // the end of the interval of the descendants of each Topic, excluded
+   private final int[] ends;
+   private final int[] roots;
+   // the ancestors of each Topic at each power of two depth above the Topic, or -1
+   private final int[][] ancestors;
+   private final Positions positions;
+   // true if the parents of the Topics are the Topics which have them in their children lists
+   private final boolean consistentParents;
+
+   /**
+    * Constructor.
+    *
+    * @param diagram the diagram
+    */
+   public HierarchyIndex(SimpleMindDiagram diagram) {
+      int size = diagram.getTopics().size();
+      topics = new Topic[size];
+      depths = new int[size];
+      ends = new int[size];
+      roots = new int[size];
+      int[] parents = new int[size];
+      positions = new Positions(size);
+      int count = 0;
+      int maxDepth = 0;
+      boolean consistent = true;
+      int[] stack = new int[16];
+      // the index of the next child to visit for each Topic of the stack
+      int[] next = new int[16];
+      // the Topics without parent are visited first, then the Topics which are not reachable from them
+      for (int pass = 0; pass < 2; pass++) {
+         Iterator<Topic> it = diagram.getTopics().values().iterator();
+         while (it.hasNext()) {
+            Topic start = it.next();
+            if ((pass == 0 && start.getParent() != null) || positions.get(start.getID()) != -1) {
+               continue;
+            }
+            int root = count;
+            consistent &= start.getParent() == null;
+            topics[count] = start;
+            depths[count] = 0;
+            roots[count] = root;
+            parents[count] = -1;
+            positions.put(start.getID(), count);
+            start.hierarchyPosition = count;
+            stack[0] = count++;
+            next[0] = 0;
+            int top = 0;
+            while (top >= 0) {
+               int position = stack[top];
+               List<Topic> children = topics[position].getChildrenList();
+               if (next[top] == children.size()) {
+                  ends[position] = count;
+                  top--;
+                  continue;
+               }
+               Topic child = children.get(next[top]++);
+               if (diagram.getTopic(child.getID()) != child || positions.get(child.getID()) != -1) {
+                  // not in the diagram, or already visited
+                  continue;
+               }
+               consistent &= child.getParent() == topics[position];
+               topics[count] = child;
+               depths[count] = depths[position] + 1;
+               maxDepth = Math.max(maxDepth, depths[count]);
+               roots[count] = root;
+               parents[count] = position;
+               positions.put(child.getID(), count);
+               child.hierarchyPosition = count;
+               top++;
+               if (top == stack.length) {
+                  stack = Arrays.copyOf(stack, top * 2);
+                  next = Arrays.copyOf(next, top * 2);
+               }
+               stack[top] = count++;
+               next[top] = 0;
+            }
+         }
+      }
+      consistentParents = consistent;
+      int levels = 1;
+      while ((1 << levels) <= maxDepth) {
+         levels++;
+      }
+      ancestors = new int[levels][];
+      ancestors[0] = parents;
+      for (int k = 1; k < levels; k++) {
+         int[] previous = ancestors[k - 1];
+         int[] level = new int[size];
+         for (int i = 0; i < size; i++) {
+            level[i] = previous[i] == -1 ? -1 : previous[previous[i]];
+         }
+         ancestors[k] = level;
+      }
+   }
+
+   /**
+    * Return the position of a Topic in the depth-first order of the index.
+    *
+    * @param topic the Topic
+    * @return the position, or -1 if the Topic is not in the index
+    */
+   int getPosition(Topic topic) {
+      int position = topic.hierarchyPosition;
+      if (position >= 0 && position < topics.length && topics[position] == topic) {
+         return position;
+      }
+      // the Topic has been indexed since by another index
+      position = positions.get(topic.getID());
+      return position != -1 && topics[position] == topic ? position : -1;
+   }
+
+   /**
+    * Return the position of the Topic of an id in the depth-first order of the index.
+    *
+    * @param id the Topic id
+    * @return the position, or -1 if there is no Topic of this id in the index
+    */
+   int getPosition(int id) {
+      return positions.get(id);
+   }
+
+   /**
+    * Return the Topic at a position in the depth-first order of the index.
+    *
+    * @param position the position
+    * @return the Topic
+    */
+   Topic getTopicAt(int position) {
+      return topics[position];
+   }
+
+   /**
+    * Return the end of the interval of the positions of the subtree of the Topic at a position, excluded. The first
+    * child of a Topic follows it, and each next child is at the end of the subtree of the previous child.
+    *
+    * @param position the position
+    * @return the end of the subtree
+    */
+   int getSubtreeEnd(int position) {
+      return ends[position];
+   }
+
+   /**
+    * Return the position of the parent of the Topic at a position.
+    *
+    * @param position the position
+    * @return the position of the parent, or -1 if the Topic is the start of a traversal
+    */
+   int getParentPosition(int position) {
+      return ancestors[0][position];
+   }
+
+   /**
+    * Return true if the parent of each indexed Topic is the Topic which has it in its children list, and the Topics
+    * which are not in a children list have no parent. In this case, the roots of the index are the roots found by
+    * following the parents of the Topics.
+    *
+    * @return true if the parents of the Topics are consistent with the children lists
+    */
+   boolean hasConsistentParents() {
+      return consistentParents;
+   }
+
+   /**
+    * Return the number of indexed Topics.
+    *
+    * @return the number of indexed Topics
+    */
+   public int size() {
+      return topics.length;
+   }
+
+   /**
+    * Return true if a Topic is in the index.
+    *
+    * @param topic the Topic
+    * @return true if the Topic is in the index
+    */
+   public boolean contains(Topic topic) {
+      return getPosition(topic) != -1;
+   }
+
+   /**
+    * Return true if a Topic is an ancestor of another Topic. A Topic is not an ancestor of itself.
+    *
+    * @param ancestor the ancestor Topic
+    * @param topic the other Topic
+    * @return true if the first Topic is an ancestor of the other Topic
+    */
+   public boolean isAncestor(Topic ancestor, Topic topic) {
+      int ancestorPosition = getPosition(ancestor);
+      int position = getPosition(topic);
+      return ancestorPosition != -1 && position != -1 && ancestorPosition < position && position < ends[ancestorPosition];
+   }
+
+   /**
+    * Return the depth of a Topic. The depth of a Topic without parent is 0.
+    *
+    * @param topic the Topic
+    * @return the depth, or -1 if the Topic is not in the index
+    */
+   public int getDepth(Topic topic) {
+      int position = getPosition(topic);
+      return position == -1 ? -1 : depths[position];
+   }
+
+   /**
+    * Return the number of Topics in the subtree of a Topic, including the Topic itself.
+    *
+    * @param topic the Topic
+    * @return the size of the subtree, or 0 if the Topic is not in the index
+    */
+   public int getSubtreeSize(Topic topic) {
+      int position = getPosition(topic);
+      return position == -1 ? 0 : ends[position] - position;
+   }
+
+   /**
+    * Return the root of a Topic, which is the Topic itself if it has no parent.
+    *
+    * @param topic the Topic
+    * @return the root, or null if the Topic is not in the index
+    */
+   public Topic getRoot(Topic topic) {
+      int position = getPosition(topic);
+      return position == -1 ? null : topics[roots[position]];
+   }
+
+   /**
+    * Return the lowest common ancestor of two Topics. If one of the Topics is an ancestor of the other, this Topic is
+    * returned.
+    *
+    * @param topic1 the first Topic
+    * @param topic2 the second Topic
+    * @return the lowest common ancestor, or null if the Topics do not have the same root
+    */
+   public Topic getLowestCommonAncestor(Topic topic1, Topic topic2) {
+      int position1 = getPosition(topic1);
+      int position2 = getPosition(topic2);
+      if (position1 == -1 || position2 == -1 || roots[position1] != roots[position2]) {
+         return null;
+      }
+      if (position1 <= position2 && position2 < ends[position1]) {
+         return topic1;
+      } else if (position2 <= position1 && position1 < ends[position2]) {
+         return topic2;
+      }
+      // climb from the first Topic to the highest ancestor which is not an ancestor of the second Topic
+      for (int k = ancestors.length - 1; k >= 0; k--) {
+         int ancestor = ancestors[k][position1];
+         if (ancestor != -1 && !(ancestor <= position2 && position2 < ends[ancestor])) {
+            position1 = ancestor;
+         }
+      }
+      return topics[ancestors[0][position1]];
+   }
+
+   /**
+    * An open addressing map from the Topic ids to their position in the index.
+    */
+   private static class Positions {
+      private final int[] keys;
+      private final int[] values;
+      private final int mask;
+
+      private Positions(int size) {
+         int capacity = 4;
+         while (capacity < size * 2) {
+            capacity *= 2;
+         }
+         keys = new int[capacity];
+         values = new int[capacity];
+         Arrays.fill(values, -1);
+         mask = capacity - 1;
+      }
+
+      private int slot(int key) {
+         int h = key * 0x9E3779B9;
+         return (h ^ (h >>> 16)) & mask;
+      }
+
+      private void put(int key, int value) {
+         int slot = slot(key);
+         while (values[slot] != -1 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+         }
+         keys[slot] = key;
+         values[slot] = value;
+      }
+
+      private int get(int key) {
+         int slot = slot(key);
+         while (values[slot] != -1) {
+            if (keys[slot] == key) {
+               return values[slot];
+            }
+            slot = (slot + 1) & mask;
+         }
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,629 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.girod.jsimplemind.utils.IntObjectMap;
+
+/**
+ * A full-text index of the notes of the Topics of a diagram.
+ *
+ * <p>
+ * The notes are split in terms, which are the sequences of letters and digits of the notes, lower-cased and without
+ * accents. For each term, the index keeps the sorted ids of the Topics whose note contains the term, with the weight
+ * of the term in the note, which depends on the number of occurrences of the term and on the length of the note. For
+ * each note, the index keeps the sequence of its terms, which is used to check the positions of the terms of a
+ * phrase. The terms which are not contained in any note anymore are dropped from the index.</p>
+ *
+ * <p>
+ * The index returned by {@link SimpleMindDiagram#getNoteIndex()} is kept up to date when the note of a Topic of the
+ * diagram is set, and when Topics are added to or removed from the diagram.</p>
+ *
+ * <p>
+ * The {@link #search(java.lang.String, int)} method accepts queries with the following syntax:</p>
+ * <ul>
+ * <li>A term matches the notes which contain the term</li>
+ * <li>A phrase between double quotes matches the notes which contain the terms of the phrase in this order</li>
+ * <li>Terms and phrases separated by spaces or by <code>AND</code> must all match</li>
+ * <li>A term or phrase preceded by <code>NOT</code> or <code>-</code> must not match</li>
+ * <li><code>OR</code> separates groups of terms, and has a lower precedence than <code>AND</code></li>
+ * </ul>
+ * <p>
+ * The results are ranked with a TF-IDF score, normalized by the square root of the number of terms of the note.</p>
+ *
+ * @since 0.4
+ */
+public class NoteIndex {
+   private static final int[] NO_IDS = new int[0];
+   private final Map<String, Term> terms = new HashMap<>();
+   private final IntObjectMap<Term[]> notes = new IntObjectMap<>();
+   // used to count the occurrences of the terms of a note
+   private int stamp = 0;
+
+   /**
+    * Constructor. The notes of all the Topics of the diagram are indexed. Lazily loaded notes are decoded.
+    *
+    * @param diagram the diagram
+    */
+   public NoteIndex(SimpleMindDiagram diagram) {
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         index(topic.getID(), topic.getNote());
+      }
+   }
+
+   /**
+    * Return the terms of a text.
+    *
+    * @param text the text
+    * @return the terms
+    */
+   public static List<String> tokenize(String text) {
+      List<String> tokens = new ArrayList<>();
+      if (text == null || text.isEmpty()) {
+         return tokens;
+      }
+      if (!isASCII(text)) {
+         text = Normalizer.normalize(text, Normalizer.Form.NFD);
+      }
+      StringBuilder buf = new StringBuilder();
+      for (int i = 0; i < text.length(); i++) {
+         char c = text.charAt(i);
+         if (c == '\\' && i + 1 < text.length() && text.charAt(i + 1) == 'N') {
+            // a SimpleMind line break
+            addToken(tokens, buf);
+            i++;
+         } else if (Character.isLetterOrDigit(c)) {
+            buf.append(Character.toLowerCase(c));
+         } else {
+            int type = Character.getType(c);
+            if (type != Character.NON_SPACING_MARK && type != Character.ENCLOSING_MARK
+               && type != Character.COMBINING_SPACING_MARK) {
+               addToken(tokens, buf);
+            }
+         }
+      }
+      addToken(tokens, buf);
+      return tokens;
+   }
+
+   private static void addToken(List<String> tokens, StringBuilder buf) {
+      if (buf.length() != 0) {
+         tokens.add(buf.toString());
+         buf.setLength(0);
+      }
+   }
+
+   private static boolean isASCII(String text) {
+      for (int i = 0; i < text.length(); i++) {
+         if (text.charAt(i) >= 128) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Update the index for the note of a Topic.
+    *
+    * @param topic the Topic
+    */
+   public void update(Topic topic) {
+      remove(topic.getID());
+      index(topic.getID(), topic.getNote());
+   }
+
+   /**
+    * Remove the note of a Topic from the index.
+    *
+    * @param id the Topic id
+    */
+   public void remove(int id) {
+      Term[] sequence = notes.remove(id);
+      if (sequence == null) {
+         return;
+      }
+      for (Term term : sequence) {
+         term.remove(id);
+         if (term.size == 0) {
+            terms.remove(term.text);
+         }
+      }
+   }
+
+   private void index(int id, String note) {
+      List<String> tokens = tokenize(note);
+      if (tokens.isEmpty()) {
+         return;
+      }
+      stamp++;
+      Term[] sequence = new Term[tokens.size()];
+      List<Term> distinct = new ArrayList<>();
+      for (int i = 0; i < sequence.length; i++) {
+         String token = tokens.get(i);
+         Term term = terms.get(token);
+         if (term == null) {
+            term = new Term(token);
+            terms.put(token, term);
+         }
+         if (term.stamp != stamp) {
+            term.stamp = stamp;
+            term.count = 0;
+            distinct.add(term);
+         }
+         term.count++;
+         sequence[i] = term;
+      }
+      for (Term term : distinct) {
+         term.add(id, weight(term.count, sequence.length));
+      }
+      notes.put(id, sequence);
+   }
+
+   /**
+    * Return the number of indexed notes. The empty notes are not indexed.
+    *
+    * @return the number of indexed notes
+    */
+   public int size() {
+      return notes.size();
+   }
+
+   /**
+    * Return the number of indexed terms.
+    *
+    * @return the number of indexed terms
+    */
+   int getTermsCount() {
+      return terms.size();
+   }
+
+   /**
+    * Return the sorted ids of the Topics whose note contains a term.
+    *
+    * @param term the term
+    * @return the ids of the Topics
+    */
+   public int[] findTerm(String term) {
+      List<String> tokens = tokenize(term);
+      if (tokens.size() != 1) {
+         return tokens.isEmpty() ? NO_IDS : findPhrase(term);
+      }
+      Term _term = terms.get(tokens.get(0));
+      return _term == null ? NO_IDS : Arrays.copyOf(_term.ids, _term.size);
+   }
+
+   /**
+    * Return the sorted ids of the Topics whose note contains the terms of a phrase in the same order.
+    *
+    * @param phrase the phrase
+    * @return the ids of the Topics
+    */
+   public int[] findPhrase(String phrase) {
+      Clause clause = phrase(tokenize(phrase));
+      return clause == null ? NO_IDS : Arrays.copyOf(clause.ids, clause.size);
+   }
+
+   /**
+    * Search the notes matching a query, and return the best results ordered by decreasing score. See the class
+    * documentation for the syntax of the queries.
+    *
+    * @param query the query
+    * @param max the maximum number of results
+    * @return the results
+    */
+   public List<Hit> search(String query, int max) {
+      Clause result = null;
+      List<Clause> positive = new ArrayList<>();
+      List<Clause> negative = new ArrayList<>();
+      boolean not = false;
+      int i = 0;
+      while (i <= query.length()) {
+         // read the next word or phrase
+         while (i < query.length() && Character.isWhitespace(query.charAt(i))) {
+            i++;
+         }
+         if (i == query.length()) {
+            result = union(result, group(positive, negative));
+            break;
+         }
+         boolean minus = query.charAt(i) == '-';
+         if (minus) {
+            i++;
+         }
+         Clause clause;
+         if (i < query.length() && query.charAt(i) == '"') {
+            int end = query.indexOf('"', i + 1);
+            if (end == -1) {
+               end = query.length();
+            }
+            clause = phrase(tokenize(query.substring(i + 1, end)));
+            i = Math.min(end + 1, query.length());
+         } else {
+            int end = i;
+            while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+               end++;
+            }
+            String word = query.substring(i, end);
+            i = end;
+            if (!minus && word.equals("OR")) {
+               result = union(result, group(positive, negative));
+               positive.clear();
+               negative.clear();
+               not = false;
+               continue;
+            } else if (!minus && word.equals("AND")) {
+               continue;
+            } else if (!minus && word.equals("NOT")) {
+               not = true;
+               continue;
+            }
+            clause = phrase(tokenize(word));
+         }
+         if (clause == null) {
+            // a word without any letter or digit
+            not = false;
+            continue;
+         }
+         if (minus || not) {
+            negative.add(clause);
+         } else {
+            positive.add(clause);
+         }
+         not = false;
+      }
+      return rank(result, max);
+   }
+
+   /**
+    * Return the notes matching all the positive clauses and none of the negative clauses.
+    */
+   private Clause group(List<Clause> positive, List<Clause> negative) {
+      if (positive.isEmpty()) {
+         return null;
+      }
+      Clause result = positive.get(0);
+      for (int i = 1; i < positive.size(); i++) {
+         result = intersect(result, positive.get(i));
+      }
+      for (Clause clause : negative) {
+         result = subtract(result, clause);
+      }
+      return result;
+   }
+
+   /**
+    * Return the clause of the notes which contain a sequence of terms, with their score.
+    */
+   private Clause phrase(List<String> tokens) {
+      if (tokens.isEmpty()) {
+         return null;
+      }
+      Term[] phrase = new Term[tokens.size()];
+      double idf = 0;
+      for (int i = 0; i < phrase.length; i++) {
+         phrase[i] = terms.get(tokens.get(i));
+         if (phrase[i] == null || phrase[i].size == 0) {
+            return new Clause(0);
+         }
+         idf += Math.log(1 + (double) notes.size() / phrase[i].size);
+      }
+      if (phrase.length == 1) {
+         Term term = phrase[0];
+         Clause clause = new Clause(term.size);
+         for (int i = 0; i < term.size; i++) {
+            clause.add(term.ids[i], term.weights[i] * idf);
+         }
+         return clause;
+      }
+      // the candidates contain all the terms, the sequences of their notes are checked
+      Term rarest = phrase[0];
+      for (Term term : phrase) {
+         if (term.size < rarest.size) {
+            rarest = term;
+         }
+      }
+      Clause clause = new Clause(rarest.size);
+      for (int i = 0; i < rarest.size; i++) {
+         int id = rarest.ids[i];
+         Term[] sequence = notes.get(id);
+         int count = countPhrase(sequence, phrase);
+         if (count != 0) {
+            clause.add(id, weight(count, sequence.length) * idf);
+         }
+      }
+      return clause;
+   }
+
+   private static int countPhrase(Term[] sequence, Term[] phrase) {
+      int count = 0;
+      for (int i = 0; i + phrase.length <= sequence.length; i++) {
+         int j = 0;
+         while (j < phrase.length && sequence[i + j] == phrase[j]) {
+            j++;
+         }
+         if (j == phrase.length) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Return the weight of a term in a note, which is multiplied by the inverse document frequency of the term to get
+    * its score.
+    */
+   private static float weight(int tf, int length) {
+      return (float) ((1 + Math.log(tf)) / Math.sqrt(length));
+   }
+
+   private static Clause intersect(Clause clause1, Clause clause2) {
+      Clause result = new Clause(Math.min(clause1.size, clause2.size));
+      int i = 0;
+      int j = 0;
+      while (i < clause1.size && j < clause2.size) {
+         if (clause1.ids[i] < clause2.ids[j]) {
+            i++;
+         } else if (clause1.ids[i] > clause2.ids[j]) {
+            j++;
+         } else {
+            result.add(clause1.ids[i], clause1.scores[i] + clause2.scores[j]);
+            i++;
+            j++;
+         }
+      }
+      return result;
+   }
+
+   private static Clause subtract(Clause clause1, Clause clause2) {
+      Clause result = new Clause(clause1.size);
+      int j = 0;
+      for (int i = 0; i < clause1.size; i++) {
+         while (j < clause2.size && clause2.ids[j] < clause1.ids[i]) {
+            j++;
+         }
+         if (j == clause2.size || clause2.ids[j] != clause1.ids[i]) {
+            result.add(clause1.ids[i], clause1.scores[i]);
+         }
+      }
+      return result;
+   }
+
+   private static Clause union(Clause clause1, Clause clause2) {
+      if (clause1 == null) {
+         return clause2;
+      } else if (clause2 == null) {
+         return clause1;
+      }
+      Clause result = new Clause(clause1.size + clause2.size);
+      int i = 0;
+      int j = 0;
+      while (i < clause1.size || j < clause2.size) {
+         if (j == clause2.size || (i < clause1.size && clause1.ids[i] < clause2.ids[j])) {
+            result.add(clause1.ids[i], clause1.scores[i]);
+            i++;
+         } else if (i == clause1.size || clause1.ids[i] > clause2.ids[j]) {
+            result.add(clause2.ids[j], clause2.scores[j]);
+            j++;
+         } else {
+            result.add(clause1.ids[i], clause1.scores[i] + clause2.scores[j]);
+            i++;
+            j++;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Return the hits with the best scores, selected with a heap of the positions of the best hits in the clause, so
+    * that a hit is only created for the returned results.
+    */
+   private static List<Hit> rank(Clause clause, int max) {
+      List<Hit> hits = new ArrayList<>();
+      if (clause == null || max <= 0) {
+         return hits;
+      }
+      int[] heap = new int[Math.min(max, clause.size)];
+      int size = 0;
+      for (int i = 0; i < clause.size; i++) {
+         if (size < heap.length) {
+            heap[size] = i;
+            siftUp(clause, heap, size);
+            size++;
+         } else if (isBetter(clause, i, heap[0])) {
+            heap[0] = i;
+            siftDown(clause, heap, size);
+         }
+      }
+      for (int i = 0; i < size; i++) {
+         hits.add(new Hit(clause.ids[heap[i]], clause.scores[heap[i]]));
+      }
+      hits.sort((hit1, hit2) -> {
+         int c = Double.compare(hit2.score, hit1.score);
+         return c != 0 ? c : Integer.compare(hit1.id, hit2.id);
+      });
+      return hits;
+   }
+
+   /**
+    * Return true if the hit at a position of a clause is better than the hit at another position. The hits with the
+    * same score are ordered by id.
+    */
+   private static boolean isBetter(Clause clause, int i, int j) {
+      int c = Double.compare(clause.scores[i], clause.scores[j]);
+      return c != 0 ? c > 0 : clause.ids[i] < clause.ids[j];
+   }
+
+   // the root of the heap is the worst hit
+   private static void siftUp(Clause clause, int[] heap, int index) {
+      while (index > 0) {
+         int parent = (index - 1) / 2;
+         if (!isBetter(clause, heap[parent], heap[index])) {
+            break;
+         }
+         swap(heap, parent, index);
+         index = parent;
+      }
+   }
+
+   private static void siftDown(Clause clause, int[] heap, int size) {
+      int index = 0;
+      while (true) {
+         int worst = index;
+         int left = 2 * index + 1;
+         int right = left + 1;
+         if (left < size && isBetter(clause, heap[worst], heap[left])) {
+            worst = left;
+         }
+         if (right < size && isBetter(clause, heap[worst], heap[right])) {
+            worst = right;
+         }
+         if (worst == index) {
+            break;
+         }
+         swap(heap, worst, index);
+         index = worst;
+      }
+   }
+
+   private static void swap(int[] heap, int i, int j) {
+      int tmp = heap[i];
+      heap[i] = heap[j];
+      heap[j] = tmp;
+   }
+
+   /**
+    * A result of a search.
+    */
+   public static class Hit {
+      private final int id;
+      private final double score;
+
+      private Hit(int id, double score) {
+         this.id = id;
+         this.score = score;
+      }
+
+      /**
+       * Return the id of the Topic.
+       *
+       * @return the id
+       */
+      public int getID() {
+         return id;
+      }
+
+      /**
+       * Return the score of the note of the Topic.
+       *
+       * @return the score
+       */
+      public double getScore() {
+         return score;
+      }
+
+      @Override
+      public String toString() {
+         return "Hit{id=" + id + ", score=" + score + "}";
+      }
+   }
+
+   /**
+    * The ids of the notes which contain a term, with the weight of the term in each note.
+    */
+   private static class Term {
+      private final String text;
+      private int[] ids = new int[2];
+      private float[] weights = new float[2];
+      private int size = 0;
+      private int stamp = 0;
+      private int count = 0;
+
+      private Term(String text) {
+         this.text = text;
+      }
+
+      private void add(int id, float weight) {
+         int index = Arrays.binarySearch(ids, 0, size, id);
+         if (index >= 0) {
+            weights[index] = weight;
+            return;
+         }
+         index = -index - 1;
+         if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+         }
+         System.arraycopy(ids, index, ids, index + 1, size - index);
+         System.arraycopy(weights, index, weights, index + 1, size - index);
+         ids[index] = id;
+         weights[index] = weight;
+         size++;
+      }
+
+      private void remove(int id) {
+         int index = Arrays.binarySearch(ids, 0, size, id);
+         if (index < 0) {
+            return;
+         }
+         System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+         System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+         size--;
+      }
+   }
+
+   /**
+    * The sorted ids of the notes matching a part of a query, with their score.
+    */
+   private static class Clause {
+      private int[] ids;
+      private double[] scores;
+      private int size = 0;
+
+      private Clause(int capacity) {
+         ids = new int[capacity];
+         scores = new double[capacity];
+      }
+
+      private void add(int id, double score) {
+         ids[size] = id;
+         scores[size] = score;
+         size++;
+      }
+   }
+}
@@ -32,22 +32,28 @@ package org.girod.jsimplemind.model;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.girod.jsimplemind.utils.IntObjectMap;
 
 /**
  * Represents a SimpleMind diagram.
  *
- * @version 0.2
+ * @version 0.4
  */
 public class SimpleMindDiagram {
    private String title = null;
+   private final IntObjectMap<Topic> topicsById = new IntObjectMap<>();
    /**
-    * The topics.
+    * The topics. This map is a view of the topics, which are stored without boxing their ids.
     */
-   protected Map<Integer, Topic> topics = new HashMap<>();
+   protected final Map<Integer, Topic> topics = topicsById.asMap();
    /**
     * The topics sorted by their text value.
     */
    protected Map<String, Map<Integer, Topic>> topicsByName = new HashMap<>();
+   private TopicTextIndex textIndex = null;
+   private NoteIndex noteIndex = null;
+   private SpatialIndex spatialIndex = null;
+   private HierarchyIndex hierarchyIndex = null;
 
    public SimpleMindDiagram() {
    }
@@ -71,13 +77,32 @@ public class SimpleMindDiagram {
    }
 
    /**
-    * Add a Topic.
+    * Add a Topic. If the diagram already has a Topic of the same id, the Topic replaces it, and the changes of the
+    * replaced Topic are not notified to the diagram anymore.
     *
     * @param topic the Topic
     */
    public void addTopic(Topic topic) {
-      topics.put(topic.getID(), topic);
+      Topic previous = topicsById.put(topic.getID(), topic);
+      addTopicName(topic);
+      textIndex = null;
+      hierarchyIndex = null;
+      if (previous != null && previous != topic && previous.diagram == this) {
+         previous.diagram = null;
+      }
+      topic.diagram = this;
+      if (noteIndex != null) {
+         noteIndex.update(topic);
+      }
+      if (spatialIndex != null) {
+         if (previous != null) {
+            spatialIndex.remove(previous);
+         }
+         spatialIndex.add(topic);
+      }
+   }
 
+   private void addTopicName(Topic topic) {
       String text = topic.getText();
       Map<Integer, Topic> _topics;
       if (topicsByName.containsKey(text)) {
@@ -89,6 +114,56 @@ public class SimpleMindDiagram {
       _topics.put(topic.getID(), topic);
    }
 
+   /**
+    * Set the text of a Topic of the diagram, and update the map of topics sorted by their text value.
+    *
+    * @param topic the Topic
+    * @param text the text
+    */
+   public void setTopicText(Topic topic, String text) {
+      removeTopicName(topic);
+      topic.setText(text);
+      addTopicName(topic);
+      textIndex = null;
+   }
+
+   /**
+    * Remove the Topic of a specified id. The Topic is also removed from the children of its parent.
+    *
+    * @param id the id
+    * @return the removed Topic, or null if the diagram has no Topic for this id
+    */
+   public Topic removeTopic(int id) {
+      Topic topic = topicsById.remove(id);
+      if (topic == null) {
+         return null;
+      }
+      removeTopicName(topic);
+      textIndex = null;
+      hierarchyIndex = null;
+      if (topic.diagram == this) {
+         topic.diagram = null;
+      }
+      if (noteIndex != null) {
+         noteIndex.remove(id);
+      }
+      if (spatialIndex != null) {
+         spatialIndex.remove(topic);
+      }
+      Topic parent = topic.getParent();
+      if (parent != null) {
+         parent.removeChild(topic);
+      }
+      return topic;
+   }
+
+   private void removeTopicName(Topic topic) {
+      Map<Integer, Topic> _topics = topicsByName.get(topic.getText());
+      if (_topics != null && _topics.remove(topic.getID()) != null && _topics.isEmpty()) {
+         topicsByName.remove(topic.getText());
+      }
+   }
+
    /**
     * Return true if the diagram has a topic for a specified id.
     *
@@ -96,7 +171,7 @@ public class SimpleMindDiagram {
     * @return true if the diagram has a topic for the specified id
     */
    public boolean hasTopic(int id) {
-      return topics.containsKey(id);
+      return topicsById.containsKey(id);
    }
 
    /**
@@ -106,7 +181,7 @@ public class SimpleMindDiagram {
     * @return the topic
     */
    public Topic getTopic(int id) {
-      return topics.get(id);
+      return topicsById.get(id);
    }
 
    /**
@@ -138,6 +213,104 @@ public class SimpleMindDiagram {
       return topicsByName.get(text);
    }
 
+   /**
+    * Return the index of the Topics by their text, which supports case-insensitive, normalized and prefix lookups. The
+    * index is created at the first call, and created again after Topics have been added, removed or renamed with
+    * {@link #setTopicText(org.girod.jsimplemind.model.Topic, java.lang.String)}.
+    *
+    * @return the index
+    */
+   public TopicTextIndex getTextIndex() {
+      if (textIndex == null) {
+         textIndex = new TopicTextIndex(this);
+      }
+      return textIndex;
+   }
+
+   /**
+    * Return the full-text index of the notes of the Topics. The index is created at the first call, and is then kept
+    * up to date when the note of a Topic of the diagram is set, and when Topics are added or removed.
+    *
+    * @return the index
+    */
+   public NoteIndex getNoteIndex() {
+      if (noteIndex == null) {
+         noteIndex = new NoteIndex(this);
+      }
+      return noteIndex;
+   }
+
+   /**
+    * Return the spatial index of the positions of the Topics. The index is built at the first call, and is then kept
+    * up to date when the position of a Topic of the diagram is set, and when Topics are added or removed.
+    *
+    * @return the index
+    */
+   public SpatialIndex getSpatialIndex() {
+      if (spatialIndex == null) {
+         spatialIndex = new SpatialIndex(this);
+      }
+      return spatialIndex;
+   }
+
+   /**
+    * Return the index of the hierarchy of the Topics. The index is built at the first call, and built again after the
+    * children or the parent of a Topic of the diagram have been modified, or after Topics have been added or removed.
+    *
+    * @return the index
+    */
+   public HierarchyIndex getHierarchyIndex() {
+      if (hierarchyIndex == null) {
+         hierarchyIndex = new HierarchyIndex(this);
+      }
+      return hierarchyIndex;
+   }
+
+   /**
+    * Return the index of the hierarchy of the Topics if it is built and up to date.
+    *
+    * @return the index, or null
+    */
+   HierarchyIndex getValidHierarchyIndex() {
+      return hierarchyIndex;
+   }
+
+   /**
+    * Called when the position of a Topic of the diagram has changed.
+    *
+    * @param topic the Topic
+    * @param oldX the previous x position
+    * @param oldY the previous y position
+    */
+   void positionChanged(Topic topic, int oldX, int oldY) {
+      if (spatialIndex != null) {
+         spatialIndex.move(topic, oldX, oldY);
+      }
+   }
+
+   /**
+    * Called when the parent or the children of a Topic of the diagram have changed.
+    *
+    * @param topic the Topic
+    */
+   void structureChanged(Topic topic) {
+      hierarchyIndex = null;
+      if (spatialIndex != null) {
+         spatialIndex.invalidateAllBounds();
+      }
+   }
+
+   /**
+    * Called when the note of a Topic of the diagram has changed.
+    *
+    * @param topic the Topic
+    */
+   void noteChanged(Topic topic) {
+      if (noteIndex != null) {
+         noteIndex.update(topic);
+      }
+   }
+
    /**
     * Return true if there are topics for a specified text.
     *
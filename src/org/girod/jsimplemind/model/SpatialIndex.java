@@ -0,0 +1,533 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.girod.jsimplemind.utils.IntObjectMap;
+
+/**
+ * A spatial index of the positions of the Topics of a diagram. The index is a point quadtree, where each leaf holds
+ * up to a fixed number of Topics in primitive arrays. It supports the search of the Topics in a rectangle, the search
+ * of the nearest Topics of a point, and the bounding box of the subtree of a Topic.
+ *
+ * <p>
+ * The index returned by {@link SimpleMindDiagram#getSpatialIndex()} is built in bulk at the first call, and is then
+ * kept up to date when the position of a Topic of the diagram is set, and when Topics are added or removed.</p>
+ *
+ * @since 0.4
+ */
+public class SpatialIndex {
+   private static final int CAPACITY = 16;
+   private static final int[] NO_IDS = new int[0];
+   private Node root;
+   private int size = 0;
+   // the cached bounding boxes of the subtrees, as {minX, minY, maxX, maxY}
+   private final IntObjectMap<int[]> subtreeBounds = new IntObjectMap<>();
+
+   /**
+    * Constructor. All the Topics of the diagram are indexed.
+    *
+    * @param diagram the diagram
+    */
+   public SpatialIndex(SimpleMindDiagram diagram) {
+      int count = diagram.getTopics().size();
+      int[] ids = new int[count];
+      int[] xs = new int[count];
+      int[] ys = new int[count];
+      int minX = Integer.MAX_VALUE;
+      int minY = Integer.MAX_VALUE;
+      int maxX = Integer.MIN_VALUE;
+      int maxY = Integer.MIN_VALUE;
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      int i = 0;
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         ids[i] = topic.getID();
+         xs[i] = topic.getX();
+         ys[i] = topic.getY();
+         minX = Math.min(minX, xs[i]);
+         minY = Math.min(minY, ys[i]);
+         maxX = Math.max(maxX, xs[i]);
+         maxY = Math.max(maxY, ys[i]);
+         i++;
+      }
+      if (count == 0) {
+         root = new Node(0, 0, 1);
+      } else {
+         long extent = Math.max((long) maxX - minX, (long) maxY - minY) + 1;
+         long nodeSize = 1;
+         while (nodeSize < extent) {
+            nodeSize *= 2;
+         }
+         root = new Node(minX, minY, nodeSize);
+         build(root, ids, xs, ys, 0, count);
+      }
+      size = count;
+   }
+
+   /**
+    * Build a node from the points between two indexes, by partitioning them in the four quadrants of the node.
+    */
+   private static void build(Node node, int[] ids, int[] xs, int[] ys, int from, int to) {
+      int count = to - from;
+      if (count <= CAPACITY || node.size == 1) {
+         // an empty leaf has no arrays, as a leaf emptied by removals
+         if (count > 0) {
+            node.ids = Arrays.copyOfRange(ids, from, to);
+            node.xs = Arrays.copyOfRange(xs, from, to);
+            node.ys = Arrays.copyOfRange(ys, from, to);
+         }
+         node.count = count;
+         return;
+      }
+      long half = node.size / 2;
+      long midX = node.x + half;
+      long midY = node.y + half;
+      // partition by y, then each half by x, in the order of the quadrants
+      int splitY = partition(ids, xs, ys, from, to, midY, false);
+      int splitX1 = partition(ids, xs, ys, from, splitY, midX, true);
+      int splitX2 = partition(ids, xs, ys, splitY, to, midX, true);
+      int[] bounds = {from, splitX1, splitY, splitX2, to};
+      node.children = new Node[4];
+      for (int q = 0; q < 4; q++) {
+         Node child = new Node(node.x + ((q & 1) != 0 ? half : 0), node.y + ((q & 2) != 0 ? half : 0), half);
+         node.children[q] = child;
+         build(child, ids, xs, ys, bounds[q], bounds[q + 1]);
+      }
+      node.count = count;
+   }
+
+   /**
+    * Move the points whose coordinate is lower than a value before the others, and return the index of the first
+    * other point.
+    */
+   private static int partition(int[] ids, int[] xs, int[] ys, int from, int to, long value, boolean onX) {
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+         if ((onX ? xs[i] : ys[i]) < value) {
+            i++;
+         } else {
+            swap(ids, i, j);
+            swap(xs, i, j);
+            swap(ys, i, j);
+            j--;
+         }
+      }
+      return i;
+   }
+
+   private static void swap(int[] array, int i, int j) {
+      int tmp = array[i];
+      array[i] = array[j];
+      array[j] = tmp;
+   }
+
+   /**
+    * Return the number of indexed Topics.
+    *
+    * @return the number of indexed Topics
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Add a Topic at its current position.
+    *
+    * @param topic the Topic
+    */
+   public void add(Topic topic) {
+      int x = topic.getX();
+      int y = topic.getY();
+      while (!root.contains(x, y)) {
+         grow(x, y);
+      }
+      root.add(topic.getID(), x, y);
+      size++;
+      invalidateBounds(topic);
+   }
+
+   /**
+    * Double the size of the root, in the direction of a point which is outside of the root.
+    */
+   private void grow(int x, int y) {
+      boolean left = x < root.x;
+      boolean top = y < root.y;
+      Node newRoot = new Node(left ? root.x - root.size : root.x, top ? root.y - root.size : root.y, root.size * 2);
+      newRoot.children = new Node[4];
+      int quadrant = (left ? 1 : 0) | (top ? 2 : 0);
+      long half = root.size;
+      for (int q = 0; q < 4; q++) {
+         if (q == quadrant) {
+            newRoot.children[q] = root;
+         } else {
+            newRoot.children[q] = new Node(newRoot.x + ((q & 1) != 0 ? half : 0), newRoot.y + ((q & 2) != 0 ? half : 0),
+               half);
+         }
+      }
+      newRoot.count = root.count;
+      root = newRoot;
+   }
+
+   /**
+    * Remove a Topic, which is at its current position.
+    *
+    * @param topic the Topic
+    * @return true if the Topic was in the index
+    */
+   public boolean remove(Topic topic) {
+      return remove(topic, topic.getX(), topic.getY());
+   }
+
+   private boolean remove(Topic topic, int x, int y) {
+      if (!root.contains(x, y) || !root.remove(topic.getID(), x, y)) {
+         return false;
+      }
+      size--;
+      invalidateBounds(topic);
+      return true;
+   }
+
+   /**
+    * Update the position of a Topic, which has been moved from a previous position.
+    *
+    * @param topic the Topic
+    * @param oldX the previous x position
+    * @param oldY the previous y position
+    */
+   public void move(Topic topic, int oldX, int oldY) {
+      if (remove(topic, oldX, oldY)) {
+         add(topic);
+      }
+   }
+
+   /**
+    * Return the ids of the Topics whose position is in a rectangle. The bounds of the rectangle are included.
+    *
+    * @param minX the minimum x position
+    * @param minY the minimum y position
+    * @param maxX the maximum x position
+    * @param maxY the maximum y position
+    * @return the ids of the Topics
+    */
+   public int[] findInRect(int minX, int minY, int maxX, int maxY) {
+      IdList result = new IdList();
+      root.findInRect(minX, minY, maxX, maxY, result);
+      return result.toArray();
+   }
+
+   /**
+    * Return the ids of the nearest Topics of a point, ordered by increasing distance. The Topics at the same distance
+    * are ordered by id.
+    *
+    * @param x the x position of the point
+    * @param y the y position of the point
+    * @param k the maximum number of Topics
+    * @return the ids of the Topics
+    */
+   public int[] findNearest(int x, int y, int k) {
+      if (k <= 0 || size == 0) {
+         return NO_IDS;
+      }
+      // best-first traversal: the queue contains nodes and points, ordered by their minimum distance to the point
+      PriorityQueue<Candidate> queue = new PriorityQueue<>();
+      queue.add(new Candidate(root.distance(x, y), root, -1));
+      int[] ids = new int[Math.min(k, size)];
+      int count = 0;
+      while (!queue.isEmpty() && count < ids.length) {
+         Candidate candidate = queue.poll();
+         Node node = candidate.node;
+         if (node == null) {
+            ids[count++] = candidate.id;
+         } else if (node.children != null) {
+            for (Node child : node.children) {
+               if (child.count > 0) {
+                  queue.add(new Candidate(child.distance(x, y), child, -1));
+               }
+            }
+         } else {
+            for (int i = 0; i < node.count; i++) {
+               double dx = (double) node.xs[i] - x;
+               double dy = (double) node.ys[i] - y;
+               queue.add(new Candidate(dx * dx + dy * dy, null, node.ids[i]));
+            }
+         }
+      }
+      return count == ids.length ? ids : Arrays.copyOf(ids, count);
+   }
+
+   /**
+    * Return the bounding box of the positions of a Topic and of all its descendants, as an array of
+    * <code>{minX, minY, maxX, maxY}</code>. The bounding boxes are cached until a position or a link of the subtree
+    * changes.
+    *
+    * @param topic the Topic
+    * @return the bounding box
+    */
+   public int[] getSubtreeBounds(Topic topic) {
+      return getBounds(topic).clone();
+   }
+
+   private int[] getBounds(Topic topic) {
+      int[] bounds = subtreeBounds.get(topic.getID());
+      if (bounds != null) {
+         return bounds;
+      }
+      bounds = new int[] {topic.getX(), topic.getY(), topic.getX(), topic.getY()};
+      List<Topic> children = topic.getChildrenList();
+      for (int i = 0; i < children.size(); i++) {
+         int[] childBounds = getBounds(children.get(i));
+         bounds[0] = Math.min(bounds[0], childBounds[0]);
+         bounds[1] = Math.min(bounds[1], childBounds[1]);
+         bounds[2] = Math.max(bounds[2], childBounds[2]);
+         bounds[3] = Math.max(bounds[3], childBounds[3]);
+      }
+      subtreeBounds.put(topic.getID(), bounds);
+      return bounds;
+   }
+
+   /**
+    * Invalidate the cached bounding boxes of a Topic and of its ancestors.
+    *
+    * @param topic the Topic
+    */
+   void invalidateBounds(Topic topic) {
+      subtreeBounds.remove(topic.getID());
+      // the bounding box of an ancestor is only cached if the bounding box of its child is cached
+      Topic parent = topic.getParent();
+      while (parent != null && subtreeBounds.remove(parent.getID()) != null) {
+         parent = parent.getParent();
+      }
+   }
+
+   /**
+    * Invalidate all the cached bounding boxes, after a change of the links between the Topics.
+    */
+   void invalidateAllBounds() {
+      if (!subtreeBounds.isEmpty()) {
+         subtreeBounds.clear();
+      }
+   }
+
+   /**
+    * A node of the quadtree. The node covers the square from (x, y) included to (x + size, y + size) excluded. A leaf
+    * holds the ids and positions of its Topics.
+    */
+   private static class Node {
+      private final long x;
+      private final long y;
+      private final long size;
+      private Node[] children = null;
+      private int[] ids = null;
+      private int[] xs = null;
+      private int[] ys = null;
+      // the number of Topics in the node and its descendants
+      private int count = 0;
+
+      private Node(long x, long y, long size) {
+         this.x = x;
+         this.y = y;
+         this.size = size;
+      }
+
+      private boolean contains(long px, long py) {
+         return px >= x && py >= y && px < x + size && py < y + size;
+      }
+
+      private double distance(int px, int py) {
+         double dx = Math.max(0, Math.max(x - px, px - (x + size - 1)));
+         double dy = Math.max(0, Math.max(y - py, py - (y + size - 1)));
+         return dx * dx + dy * dy;
+      }
+
+      private Node getChild(int px, int py) {
+         long half = size / 2;
+         int q = (px >= x + half ? 1 : 0) | (py >= y + half ? 2 : 0);
+         return children[q];
+      }
+
+      private void add(int id, int px, int py) {
+         count++;
+         if (children != null) {
+            getChild(px, py).add(id, px, py);
+            return;
+         }
+         if (ids == null) {
+            ids = new int[4];
+            xs = new int[4];
+            ys = new int[4];
+         } else if (count > ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            xs = Arrays.copyOf(xs, xs.length * 2);
+            ys = Arrays.copyOf(ys, ys.length * 2);
+         }
+         ids[count - 1] = id;
+         xs[count - 1] = px;
+         ys[count - 1] = py;
+         if (count > CAPACITY && size > 1) {
+            split();
+         }
+      }
+
+      private void split() {
+         long half = size / 2;
+         children = new Node[4];
+         for (int q = 0; q < 4; q++) {
+            children[q] = new Node(x + ((q & 1) != 0 ? half : 0), y + ((q & 2) != 0 ? half : 0), half);
+         }
+         for (int i = 0; i < count; i++) {
+            getChild(xs[i], ys[i]).add(ids[i], xs[i], ys[i]);
+         }
+         ids = null;
+         xs = null;
+         ys = null;
+      }
+
+      private boolean remove(int id, int px, int py) {
+         if (children != null) {
+            if (!getChild(px, py).remove(id, px, py)) {
+               return false;
+            }
+            count--;
+            if (count <= CAPACITY / 2) {
+               merge();
+            }
+            return true;
+         }
+         for (int i = 0; i < count; i++) {
+            if (ids[i] == id && xs[i] == px && ys[i] == py) {
+               count--;
+               ids[i] = ids[count];
+               xs[i] = xs[count];
+               ys[i] = ys[count];
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /**
+       * Merge the children of the node in the node, which becomes a leaf.
+       */
+      private void merge() {
+         int[] _ids = new int[Math.max(count, 4)];
+         int[] _xs = new int[_ids.length];
+         int[] _ys = new int[_ids.length];
+         int[] index = {0};
+         collect(_ids, _xs, _ys, index);
+         children = null;
+         ids = _ids;
+         xs = _xs;
+         ys = _ys;
+      }
+
+      private void collect(int[] _ids, int[] _xs, int[] _ys, int[] index) {
+         if (children != null) {
+            for (Node child : children) {
+               child.collect(_ids, _xs, _ys, index);
+            }
+         } else if (count > 0) {
+            System.arraycopy(ids, 0, _ids, index[0], count);
+            System.arraycopy(xs, 0, _xs, index[0], count);
+            System.arraycopy(ys, 0, _ys, index[0], count);
+            index[0] += count;
+         }
+      }
+
+      private void findInRect(long minX, long minY, long maxX, long maxY, IdList result) {
+         if (count == 0 || minX >= x + size || maxX < x || minY >= y + size || maxY < y) {
+            return;
+         }
+         if (children != null) {
+            for (Node child : children) {
+               child.findInRect(minX, minY, maxX, maxY, result);
+            }
+         } else {
+            for (int i = 0; i < count; i++) {
+               if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                  result.add(ids[i]);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * A node or a Topic of the best-first traversal of the quadtree.
+    */
+   private static class Candidate implements Comparable<Candidate> {
+      private final double distance;
+      private final Node node;
+      private final int id;
+
+      private Candidate(double distance, Node node, int id) {
+         this.distance = distance;
+         this.node = node;
+         this.id = id;
+      }
+
+      @Override
+      public int compareTo(Candidate other) {
+         int c = Double.compare(distance, other.distance);
+         if (c != 0) {
+            return c;
+         }
+         // the nodes are traversed before the Topics at the same distance, so that the Topics are ordered by id
+         if ((node == null) != (other.node == null)) {
+            return node != null ? -1 : 1;
+         }
+         return Integer.compare(id, other.id);
+      }
+   }
+
+   /**
+    * A growable list of ids.
+    */
+   private static class IdList {
+      private int[] ids = new int[16];
+      private int size = 0;
+
+      private void add(int id) {
+         if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+         }
+         ids[size++] = id;
+      }
+
+      private int[] toArray() {
+         return Arrays.copyOf(ids, size);
+      }
+   }
+}
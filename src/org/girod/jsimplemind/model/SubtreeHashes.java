@@ -0,0 +1,206 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.util.Iterator;
+
+/**
+ * Merkle hashes of the Topics of a diagram. The hash of a Topic covers its id, text, note, colors and position, and the
+ * hash of its subtree covers the hash of the Topic and the hashes of the subtrees of its children, in their order.
+ * Two subtrees with the same hash are equal with a very high probability, so that a {@link DiagramDiff} only descends
+ * into the subtrees whose hashes are different.
+ *
+ * <p>
+ * The hashes are computed bottom-up in linear time from the {@link HierarchyIndex} of the diagram. They are a snapshot
+ * of the diagram at the time they were computed, and are not updated when the diagram is modified. A versioning
+ * service can keep the hashes of the previous version of a diagram and compare them with the hashes of each new
+ * version.</p>
+ *
+ * @since 0.4
+ */
+public class SubtreeHashes {
+   private static final long NULL_HASH = 0x5DEECE66DL;
+   private final String title;
+   private final HierarchyIndex index;
+   private final long[] topicHashes;
+   private final long[] subtreeHashes;
+   private final long diagramHash;
+
+   /**
+    * Constructor.
+    *
+    * @param diagram the diagram
+    */
+   public SubtreeHashes(SimpleMindDiagram diagram) {
+      title = diagram.getTitle();
+      index = diagram.getHierarchyIndex();
+      int size = index.size();
+      topicHashes = new long[size];
+      subtreeHashes = new long[size];
+      // the Topics are read in the order of the diagram, which is usually closer to their order in memory than the
+      // depth-first order
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         int position = index.getPosition(topic);
+         if (position != -1) {
+            topicHashes[position] = topic.computeContentHash();
+         }
+      }
+      // the descendants of a Topic follow it in the depth-first order, so the children are hashed before their parent
+      for (int i = size - 1; i >= 0; i--) {
+         long hash = topicHashes[i];
+         int end = index.getSubtreeEnd(i);
+         int child = i + 1;
+         while (child < end) {
+            hash = mix(hash * 31 + subtreeHashes[child]);
+            child = index.getSubtreeEnd(child);
+         }
+         subtreeHashes[i] = hash;
+      }
+      long hash = NULL_HASH;
+      int root = 0;
+      while (root < size) {
+         hash = mix(hash * 31 + subtreeHashes[root]);
+         root = index.getSubtreeEnd(root);
+      }
+      diagramHash = hash;
+   }
+
+   /**
+    * Mix the bits of a value, with the finalizer of the SplitMix64 generator.
+    *
+    * @param value the value
+    * @return the mixed value
+    */
+   static long mix(long value) {
+      value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+      value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+      return value ^ (value >>> 31);
+   }
+
+   /**
+    * Return a 64 bits hash of a String.
+    *
+    * @param str the String
+    * @return the hash
+    */
+   static long hash(String str) {
+      if (str == null) {
+         return NULL_HASH;
+      }
+      int length = str.length();
+      long hash = 0xCBF29CE484222325L ^ length;
+      int i = 0;
+      // four chars are packed in each step to shorten the chain of multiplications
+      for (; i + 4 <= length; i += 4) {
+         long value = str.charAt(i) | ((long) str.charAt(i + 1) << 16) | ((long) str.charAt(i + 2) << 32)
+            | ((long) str.charAt(i + 3) << 48);
+         hash = Long.rotateLeft((hash ^ value) * 0x9E3779B97F4A7C15L, 29);
+      }
+      for (; i < length; i++) {
+         hash = (hash ^ str.charAt(i)) * 0x100000001B3L;
+      }
+      return mix(hash);
+   }
+
+   /**
+    * Return the title of the diagram when the hashes were computed.
+    *
+    * @return the title
+    */
+   public String getTitle() {
+      return title;
+   }
+
+   /**
+    * Return the number of hashed Topics.
+    *
+    * @return the number of hashed Topics
+    */
+   public int size() {
+      return topicHashes.length;
+   }
+
+   /**
+    * Return the hash of the Topics of the diagram, which covers the subtrees of all the roots of the diagram. The title
+    * of the diagram is not covered.
+    *
+    * @return the hash
+    */
+   public long getDiagramHash() {
+      return diagramHash;
+   }
+
+   /**
+    * Return true if a Topic is hashed.
+    *
+    * @param topic the Topic
+    * @return true if the Topic is hashed
+    */
+   public boolean contains(Topic topic) {
+      return index.getPosition(topic) != -1;
+   }
+
+   /**
+    * Return the hash of the id, text, note, colors and position of a Topic.
+    *
+    * @param topic the Topic
+    * @return the hash, or 0 if the Topic is not hashed
+    */
+   public long getTopicHash(Topic topic) {
+      int position = index.getPosition(topic);
+      return position == -1 ? 0 : topicHashes[position];
+   }
+
+   /**
+    * Return the hash of the subtree of a Topic.
+    *
+    * @param topic the Topic
+    * @return the hash, or 0 if the Topic is not hashed
+    */
+   public long getSubtreeHash(Topic topic) {
+      int position = index.getPosition(topic);
+      return position == -1 ? 0 : subtreeHashes[position];
+   }
+
+   HierarchyIndex getIndex() {
+      return index;
+   }
+
+   long getTopicHashAt(int position) {
+      return topicHashes[position];
+   }
+
+   long getSubtreeHashAt(int position) {
+      return subtreeHashes[position];
+   }
+}
@@ -36,36 +36,67 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
+import org.girod.jsimplemind.utils.IntObjectMap;
 
 /**
  * Represents a Topic.
  *
- * @version 0.3
+ * <p>
+ * The Topic colors are stored as packed ARGB values. The methods which return a {@link Color} use a palette of
+ * shared immutable Colors, so no Color is created when a diagram is parsed.</p>
+ *
+ * @version 0.4
  */
 public class Topic {
+   private static final int WHITE = 0xFFFFFFFF;
+   private static final int BLACK = 0xFF000000;
+   private static final byte NULL_FILL_COLOR = 1;
+   private static final byte NULL_TEXT_COLOR = 2;
+   private static final byte NULL_STROKE_COLOR = 4;
    private final int id;
    private String text = "";
    private String note = "";
+   private Supplier<String> noteSupplier = null;
    private Topic parent = null;
-   private Color fillColor = Color.WHITE;
-   private Color textColor = Color.BLACK;
-   private Color strokeColor = Color.BLACK;
+   private int fillColor = WHITE;
+   private int textColor = BLACK;
+   private int strokeColor = BLACK;
+   // the colors which have been set to null
+   private byte nullColors = 0;
    private int x = 0;
    private int y = 0;
    private final Map<String, Object> properties = new HashMap<>();
    private final List<Topic> childrenList = new ArrayList<>();
-   private final Map<Integer, Topic> children = new HashMap<>();
+   private final IntObjectMap<Topic> children = new IntObjectMap<>();
+   /**
+    * The diagram which contains the Topic, which is notified of the changes of the Topic.
+    */
+   SimpleMindDiagram diagram = null;
+   /**
+    * The position of the Topic in the last HierarchyIndex which indexed it.
+    */
+   int hierarchyPosition = -1;
 
    public Topic(int id) {
       this.id = id;
    }
 
    /**
-    * Return the Topic root. Note that if the Topic has no parent, the root is the Topic itself.
+    * Return the Topic root. Note that if the Topic has no parent, the root is the Topic itself. The root is found in
+    * constant time if the {@link HierarchyIndex} of the diagram of the Topic is built and up to date, and if the parents
+    * of the Topics of the diagram are consistent with their children lists.
     *
     * @return the root
     */
    public Topic getRoot() {
+      HierarchyIndex index = diagram != null ? diagram.getValidHierarchyIndex() : null;
+      if (index != null && index.hasConsistentParents()) {
+         Topic root = index.getRoot(this);
+         if (root != null) {
+            return root;
+         }
+      }
       Topic root = this;
       while (root != null) {
          Topic _parent = root.getParent();
@@ -80,7 +111,9 @@ public class Topic {
 
    @Override
    public int hashCode() {
+      // consistent with equals, which requires the same id, and constant because the id is final
       int hash = 3;
+      hash = 59 * hash + this.id;
       return hash;
    }
 
@@ -108,15 +141,35 @@ public class Topic {
       if (!Objects.equals(this.text, other.text)) {
          return false;
       }
-      if (!Objects.equals(this.note, other.note)) {
+      if (this.fillColor != other.fillColor) {
          return false;
       }
-      if (!Objects.equals(this.fillColor, other.fillColor)) {
+      if ((this.nullColors & NULL_FILL_COLOR) != (other.nullColors & NULL_FILL_COLOR)) {
+         return false;
+      }
+      // compared last because a lazily loaded note must be decoded
+      if (!Objects.equals(this.getNote(), other.getNote())) {
          return false;
       }
       return true;
    }
 
+   /**
+    * Compute a 64 bits hash of the id, text, note, colors and position of the Topic, which are the fields compared by
+    * {@link #updateFrom(Topic)}.
+    *
+    * @return the hash
+    */
+   long computeContentHash() {
+      long hash = SubtreeHashes.mix(id);
+      hash = SubtreeHashes.mix(hash ^ SubtreeHashes.hash(text));
+      hash = SubtreeHashes.mix(hash ^ SubtreeHashes.hash(getNote()));
+      hash = SubtreeHashes.mix(hash ^ (((long) x << 32) | (y & 0xFFFFFFFFL)));
+      hash = SubtreeHashes.mix(hash ^ (((long) fillColor << 32) | (textColor & 0xFFFFFFFFL)));
+      hash = SubtreeHashes.mix(hash ^ (((long) strokeColor << 8) | (nullColors & 0xFF)));
+      return hash;
+   }
+
    /**
     * Return the Topic id.
     *
@@ -133,8 +186,13 @@ public class Topic {
     * @param y the y position
     */
    public void setPosition(int x, int y) {
+      int oldX = this.x;
+      int oldY = this.y;
       this.x = x;
       this.y = y;
+      if (diagram != null && (x != oldX || y != oldY)) {
+         diagram.positionChanged(this, oldX, oldY);
+      }
    }
 
    /**
@@ -179,7 +237,31 @@ public class Topic {
     * @param fillColor the fill color
     */
    public void setFillColor(Color fillColor) {
-      this.fillColor = fillColor;
+      if (fillColor == null) {
+         this.fillColor = 0;
+         nullColors |= NULL_FILL_COLOR;
+      } else {
+         setFillRGB(fillColor.getRGB());
+      }
+   }
+
+   /**
+    * Set the Topic fill color as a packed ARGB value, as returned by {@link Color#getRGB()}.
+    *
+    * @param argb the fill color
+    */
+   public void setFillRGB(int argb) {
+      this.fillColor = argb;
+      nullColors &= ~NULL_FILL_COLOR;
+   }
+
+   /**
+    * Return the Topic fill color as a packed ARGB value. Return 0 if the fill color has been set to null.
+    *
+    * @return the fill color
+    */
+   public int getFillRGB() {
+      return fillColor;
    }
 
    /**
@@ -188,7 +270,10 @@ public class Topic {
     * @return the fill color
     */
    public Color getFillColor() {
-      return fillColor;
+      if ((nullColors & NULL_FILL_COLOR) != 0) {
+         return null;
+      }
+      return ColorPalette.getColor(fillColor);
    }
 
    /**
@@ -197,7 +282,31 @@ public class Topic {
     * @param textColor the text color
     */
    public void setTextColor(Color textColor) {
-      this.textColor = textColor;
+      if (textColor == null) {
+         this.textColor = 0;
+         nullColors |= NULL_TEXT_COLOR;
+      } else {
+         setTextRGB(textColor.getRGB());
+      }
+   }
+
+   /**
+    * Set the Topic text color as a packed ARGB value, as returned by {@link Color#getRGB()}.
+    *
+    * @param argb the text color
+    */
+   public void setTextRGB(int argb) {
+      this.textColor = argb;
+      nullColors &= ~NULL_TEXT_COLOR;
+   }
+
+   /**
+    * Return the Topic text color as a packed ARGB value. Return 0 if the text color has been set to null.
+    *
+    * @return the text color
+    */
+   public int getTextRGB() {
+      return textColor;
    }
 
    /**
@@ -206,7 +315,10 @@ public class Topic {
     * @return the text color
     */
    public Color getTextColor() {
-      return textColor;
+      if ((nullColors & NULL_TEXT_COLOR) != 0) {
+         return null;
+      }
+      return ColorPalette.getColor(textColor);
    }
 
    /**
@@ -215,7 +327,31 @@ public class Topic {
     * @param strokeColor the stroke color
     */
    public void setStrokeColor(Color strokeColor) {
-      this.strokeColor = strokeColor;
+      if (strokeColor == null) {
+         this.strokeColor = 0;
+         nullColors |= NULL_STROKE_COLOR;
+      } else {
+         setStrokeRGB(strokeColor.getRGB());
+      }
+   }
+
+   /**
+    * Set the Topic stroke color as a packed ARGB value, as returned by {@link Color#getRGB()}.
+    *
+    * @param argb the stroke color
+    */
+   public void setStrokeRGB(int argb) {
+      this.strokeColor = argb;
+      nullColors &= ~NULL_STROKE_COLOR;
+   }
+
+   /**
+    * Return the Topic stroke color as a packed ARGB value. Return 0 if the stroke color has been set to null.
+    *
+    * @return the stroke color
+    */
+   public int getStrokeRGB() {
+      return strokeColor;
    }
 
    /**
@@ -224,7 +360,10 @@ public class Topic {
     * @return the stroke color
     */
    public Color getStrokeColor() {
-      return strokeColor;
+      if ((nullColors & NULL_STROKE_COLOR) != 0) {
+         return null;
+      }
+      return ColorPalette.getColor(strokeColor);
    }
 
    /**
@@ -274,6 +413,42 @@ public class Topic {
     */
    public void setNote(String note) {
       this.note = note;
+      this.noteSupplier = null;
+      if (diagram != null) {
+         diagram.noteChanged(this);
+      }
+   }
+
+   /**
+    * Set the supplier of a lazily loaded note. The note is not kept by the Topic, so the supplier is called each time
+    * the note is requested. Setting the note with {@link #setNote(java.lang.String)} removes the supplier.
+    *
+    * @param noteSupplier the note supplier
+    */
+   public void setNoteSupplier(Supplier<String> noteSupplier) {
+      this.noteSupplier = noteSupplier;
+      this.note = "";
+      if (diagram != null) {
+         diagram.noteChanged(this);
+      }
+   }
+
+   /**
+    * Return the supplier of the lazily loaded note.
+    *
+    * @return the supplier, or null if the note is not loaded lazily
+    */
+   public Supplier<String> getNoteSupplier() {
+      return noteSupplier;
+   }
+
+   /**
+    * Return true if the Topic note is loaded lazily.
+    *
+    * @return true if the Topic note is loaded lazily
+    */
+   public boolean hasLazyNote() {
+      return noteSupplier != null;
    }
 
    /**
@@ -282,9 +457,46 @@ public class Topic {
     * @return the note
     */
    public String getNote() {
+      if (noteSupplier != null) {
+         return noteSupplier.get();
+      }
       return note;
    }
 
+   /**
+    * Update the text, note, colors and position of this Topic from another Topic. The id, the parent, the children
+    * and the properties of this Topic are not changed. A lazily loaded note of the other Topic stays lazily loaded.
+    *
+    * @param topic the other Topic
+    * @return true if at least one of the updated fields has changed
+    */
+   public boolean updateFrom(Topic topic) {
+      boolean noteChanged = !Objects.equals(getNote(), topic.getNote());
+      int oldX = x;
+      int oldY = y;
+      boolean changed = x != topic.x || y != topic.y || !Objects.equals(text, topic.text)
+         || fillColor != topic.fillColor || textColor != topic.textColor || strokeColor != topic.strokeColor
+         || nullColors != topic.nullColors || noteChanged;
+      x = topic.x;
+      y = topic.y;
+      text = topic.text;
+      fillColor = topic.fillColor;
+      textColor = topic.textColor;
+      strokeColor = topic.strokeColor;
+      nullColors = topic.nullColors;
+      note = topic.note;
+      noteSupplier = topic.noteSupplier;
+      if (diagram != null) {
+         if (noteChanged) {
+            diagram.noteChanged(this);
+         }
+         if (x != oldX || y != oldY) {
+            diagram.positionChanged(this, oldX, oldY);
+         }
+      }
+      return changed;
+   }
+
    /**
     * Add a child Topic.
     *
@@ -293,6 +505,44 @@ public class Topic {
    public void addChild(Topic topic) {
       childrenList.add(topic);
       children.put(topic.getID(), topic);
+      if (diagram != null) {
+         diagram.structureChanged(this);
+      }
+   }
+
+   /**
+    * Remove a child Topic. The parent of the child Topic is not changed.
+    *
+    * @param topic the Topic
+    * @return true if the Topic was a child of this Topic
+    */
+   public boolean removeChild(Topic topic) {
+      Topic removed = children.remove(topic.getID());
+      if (removed == null) {
+         return false;
+      }
+      // removed by identity, because equals compares the notes, and an equal Topic may be another instance
+      for (int i = childrenList.size() - 1; i >= 0; i--) {
+         if (childrenList.get(i) == removed) {
+            childrenList.remove(i);
+            break;
+         }
+      }
+      if (diagram != null) {
+         diagram.structureChanged(this);
+      }
+      return true;
+   }
+
+   /**
+    * Remove all the children Topics. The parent of the children Topics is not changed.
+    */
+   public void removeAllChildren() {
+      childrenList.clear();
+      children.clear();
+      if (diagram != null) {
+         diagram.structureChanged(this);
+      }
    }
 
    /**
@@ -310,7 +560,17 @@ public class Topic {
     * @return the map
     */
    public Map<Integer, Topic> getChildren() {
-      return children;
+      return children.asMap();
+   }
+
+   /**
+    * Return the child Topic of a specified id.
+    *
+    * @param id the id
+    * @return the child Topic, or null if the Topic has no child of this id
+    */
+   public Topic getChild(int id) {
+      return children.get(id);
    }
 
    /**
@@ -320,6 +580,9 @@ public class Topic {
     */
    public void setParent(Topic parent) {
       this.parent = parent;
+      if (diagram != null) {
+         diagram.structureChanged(this);
+      }
    }
 
    /**
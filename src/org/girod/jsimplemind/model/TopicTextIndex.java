@@ -0,0 +1,298 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * An index of the Topics of a diagram by their text. The index supports exact, case-insensitive and normalized
+ * lookups, and lookups by prefix for each of these modes, in logarithmic time.
+ *
+ * <p>
+ * For each mode, the distinct keys are stored in a sorted array, and the ids of the Topics of each key are stored in
+ * a single array of ids. The ids of a key are in ascending order, and the ids returned by a prefix lookup are sorted by
+ * key, then by id.</p>
+ *
+ * <p>
+ * The index is not updated when the diagram changes. The index returned by {@link SimpleMindDiagram#getTextIndex()} is
+ * created again after the Topics of the diagram have been added, removed, or renamed with
+ * {@link SimpleMindDiagram#setTopicText(org.girod.jsimplemind.model.Topic, java.lang.String)}.</p>
+ *
+ * @since 0.4
+ */
+public class TopicTextIndex {
+   /**
+    * The mode for the exact text of the Topics.
+    */
+   public static final int EXACT = 0;
+   /**
+    * The mode for the text of the Topics, ignoring the case.
+    */
+   public static final int IGNORE_CASE = 1;
+   /**
+    * The mode for the normalized text of the Topics. See {@link #normalize(java.lang.String)}.
+    */
+   public static final int NORMALIZED = 2;
+   private static final int[] NO_IDS = new int[0];
+   private final Keys[] keys = new Keys[3];
+
+   /**
+    * Constructor.
+    *
+    * @param diagram the diagram
+    */
+   public TopicTextIndex(SimpleMindDiagram diagram) {
+      int size = diagram.getTopics().size();
+      String[] texts = new String[size];
+      int[] ids = new int[size];
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      int count = 0;
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         texts[count] = topic.getText() == null ? "" : topic.getText();
+         ids[count] = topic.getID();
+         count++;
+      }
+      keys[EXACT] = new Keys(texts, ids);
+      String[] folded = new String[size];
+      for (int i = 0; i < size; i++) {
+         folded[i] = texts[i].toLowerCase(Locale.ROOT);
+      }
+      keys[IGNORE_CASE] = new Keys(folded, ids);
+      for (int i = 0; i < size; i++) {
+         folded[i] = normalize(texts[i]);
+      }
+      keys[NORMALIZED] = new Keys(folded, ids);
+   }
+
+   /**
+    * Return the normalized form of a text. The text is lower-cased, the accents and other combining marks are removed,
+    * the sequences of whitespaces and SimpleMind line breaks (<code>\N</code>) are replaced by one space, and the leading
+    * and trailing whitespaces are removed.
+    *
+    * @param text the text
+    * @return the normalized text
+    */
+   public static String normalize(String text) {
+      if (!isASCII(text)) {
+         text = Normalizer.normalize(text, Normalizer.Form.NFD);
+      }
+      StringBuilder buf = new StringBuilder(text.length());
+      boolean space = false;
+      for (int i = 0; i < text.length(); i++) {
+         char c = text.charAt(i);
+         if (c == '\\' && i + 1 < text.length() && text.charAt(i + 1) == 'N') {
+            space = buf.length() != 0;
+            i++;
+         } else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            space = buf.length() != 0;
+         } else {
+            int type = Character.getType(c);
+            if (type != Character.NON_SPACING_MARK && type != Character.ENCLOSING_MARK
+               && type != Character.COMBINING_SPACING_MARK) {
+               if (space) {
+                  buf.append(' ');
+                  space = false;
+               }
+               buf.append(Character.toLowerCase(c));
+            }
+         }
+      }
+      return buf.toString();
+   }
+
+   private static boolean isASCII(String text) {
+      for (int i = 0; i < text.length(); i++) {
+         if (text.charAt(i) >= 128) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static String toKey(String text, int mode) {
+      switch (mode) {
+         case IGNORE_CASE:
+            return text.toLowerCase(Locale.ROOT);
+         case NORMALIZED:
+            return normalize(text);
+         default:
+            return text;
+      }
+   }
+
+   /**
+    * Return the number of distinct keys for a mode.
+    *
+    * @param mode the mode ({@link #EXACT}, {@link #IGNORE_CASE} or {@link #NORMALIZED})
+    * @return the number of distinct keys
+    */
+   public int getKeysCount(int mode) {
+      return keys[mode].keys.length;
+   }
+
+   /**
+    * Return the ids of the Topics which have exactly a specified text.
+    *
+    * @param text the text
+    * @return the ids of the Topics
+    */
+   public int[] find(String text) {
+      return find(text, EXACT);
+   }
+
+   /**
+    * Return the ids of the Topics which have a specified text for a mode.
+    *
+    * @param text the text
+    * @param mode the mode ({@link #EXACT}, {@link #IGNORE_CASE} or {@link #NORMALIZED})
+    * @return the ids of the Topics
+    */
+   public int[] find(String text, int mode) {
+      Keys _keys = keys[mode];
+      int index = Arrays.binarySearch(_keys.keys, toKey(text, mode));
+      if (index < 0) {
+         return NO_IDS;
+      }
+      return Arrays.copyOfRange(_keys.ids, _keys.offsets[index], _keys.offsets[index + 1]);
+   }
+
+   /**
+    * Return the ids of the Topics whose text starts with a specified prefix for a mode.
+    *
+    * @param prefix the prefix
+    * @param mode the mode ({@link #EXACT}, {@link #IGNORE_CASE} or {@link #NORMALIZED})
+    * @return the ids of the Topics
+    */
+   public int[] findPrefix(String prefix, int mode) {
+      return findPrefix(prefix, mode, Integer.MAX_VALUE);
+   }
+
+   /**
+    * Return at most a maximum number of ids of the Topics whose text starts with a specified prefix for a mode.
+    *
+    * @param prefix the prefix
+    * @param mode the mode ({@link #EXACT}, {@link #IGNORE_CASE} or {@link #NORMALIZED})
+    * @param max the maximum number of ids
+    * @return the ids of the Topics
+    */
+   public int[] findPrefix(String prefix, int mode, int max) {
+      Keys _keys = keys[mode];
+      String key = toKey(prefix, mode);
+      int from = lowerBound(_keys.keys, key);
+      int to = from;
+      int count = 0;
+      while (to < _keys.keys.length && count < max && _keys.keys[to].startsWith(key)) {
+         count += _keys.offsets[to + 1] - _keys.offsets[to];
+         to++;
+      }
+      int start = _keys.offsets[from];
+      return Arrays.copyOfRange(_keys.ids, start, start + Math.min(count, max));
+   }
+
+   /**
+    * Return at most a maximum number of distinct keys which start with a specified prefix for a mode, in ascending
+    * order. This allows to complete a text without getting the Topics.
+    *
+    * @param prefix the prefix
+    * @param mode the mode ({@link #EXACT}, {@link #IGNORE_CASE} or {@link #NORMALIZED})
+    * @param max the maximum number of keys
+    * @return the keys
+    */
+   public String[] complete(String prefix, int mode, int max) {
+      Keys _keys = keys[mode];
+      String key = toKey(prefix, mode);
+      int from = lowerBound(_keys.keys, key);
+      int to = from;
+      while (to < _keys.keys.length && to - from < max && _keys.keys[to].startsWith(key)) {
+         to++;
+      }
+      return Arrays.copyOfRange(_keys.keys, from, to);
+   }
+
+   /**
+    * Return the index of the first key which is greater or equal to a specified key.
+    */
+   private static int lowerBound(String[] keys, String key) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+         int mid = (low + high) >>> 1;
+         if (keys[mid].compareTo(key) < 0) {
+            low = mid + 1;
+         } else {
+            high = mid;
+         }
+      }
+      return low;
+   }
+
+   /**
+    * The sorted distinct keys of a mode, with the ids of their Topics.
+    */
+   private static class Keys {
+      private final String[] keys;
+      // the ids of the key at index i are at the indexes offsets[i] to offsets[i + 1] of the ids array
+      private final int[] offsets;
+      private final int[] ids;
+
+      private Keys(String[] texts, int[] topicIDs) {
+         int size = texts.length;
+         Integer[] order = new Integer[size];
+         for (int i = 0; i < size; i++) {
+            order[i] = i;
+         }
+         Arrays.sort(order, (i1, i2) -> {
+            int c = texts[i1].compareTo(texts[i2]);
+            return c != 0 ? c : Integer.compare(topicIDs[i1], topicIDs[i2]);
+         });
+         String[] _keys = new String[size];
+         int[] _offsets = new int[size + 1];
+         ids = new int[size];
+         int count = 0;
+         for (int i = 0; i < size; i++) {
+            int index = order[i];
+            if (count == 0 || !_keys[count - 1].equals(texts[index])) {
+               _keys[count] = texts[index];
+               _offsets[count] = i;
+               count++;
+            }
+            ids[i] = topicIDs[index];
+         }
+         _offsets[count] = size;
+         keys = Arrays.copyOf(_keys, count);
+         offsets = Arrays.copyOf(_offsets, count + 1);
+      }
+   }
+}
@@ -0,0 +1,121 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import org.girod.jsimplemind.model.CompactDiagram;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+
+/**
+ * A builder which creates a {@link CompactDiagram} from the SimpleMind elements, without creating any Topic.
+ *
+ * @since 0.4
+ */
+class CompactDiagramBuilder extends DiagramBuilder {
+   private final CompactDiagram.Builder builder = new CompactDiagram.Builder();
+   private int topic = -1;
+   private boolean hasTextColor = false;
+   private boolean hasStrokeColor = false;
+   private boolean hasFillColor = false;
+
+   CompactDiagramBuilder() {
+      super(null);
+   }
+
+   @Override
+   boolean hasTopic() {
+      return topic != -1;
+   }
+
+   @Override
+   void title(String title) {
+      if (topic == -1) {
+         builder.setTitle(title);
+      }
+   }
+
+   @Override
+   void startTopic(int id, int parentid, String text, boolean hasPosition, int x, int y) {
+      hasTextColor = false;
+      hasStrokeColor = false;
+      hasFillColor = false;
+      topic = builder.addTopic(id, parentid, text != null ? text.trim() : null, hasPosition ? x : 0, hasPosition ? y : 0);
+   }
+
+   @Override
+   void fillColor(int red, int green, int blue) {
+      if (topic != -1 && !hasFillColor) {
+         hasFillColor = true;
+         builder.setFillRGB(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void textColor(int red, int green, int blue) {
+      if (topic != -1 && !hasTextColor) {
+         hasTextColor = true;
+         builder.setTextRGB(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void strokeColor(int red, int green, int blue) {
+      if (topic != -1 && !hasStrokeColor) {
+         hasStrokeColor = true;
+         builder.setStrokeRGB(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void note(String cdata) {
+      if (topic != -1) {
+         builder.setNote(topic, cdata.trim());
+      }
+   }
+
+   /**
+    * Does nothing, the compact diagram is returned by {@link #getCompactDiagram()}.
+    *
+    * @return null
+    */
+   @Override
+   SimpleMindDiagram endDiagram() {
+      return null;
+   }
+
+   /**
+    * Return the compact diagram.
+    *
+    * @return the compact diagram
+    */
+   CompactDiagram getCompactDiagram() {
+      return builder.build();
+   }
+}
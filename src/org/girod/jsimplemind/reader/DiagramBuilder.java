@@ -0,0 +1,430 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+import org.girod.jsimplemind.utils.IntObjectMap;
+
+/**
+ * Creates a diagram from the SimpleMind elements encountered in document order. It is used by all the parsing
+ * engines, so that they all create the same diagram for the same document.
+ *
+ * @since 0.4
+ */
+class DiagramBuilder {
+   private final DiagramFactory factory;
+   private final NoteParser noteParser;
+   private final SimpleMindDiagram diagram;
+   /**
+    * The Topics, in document order.
+    */
+   final List<Topic> topics = new ArrayList<>();
+   /**
+    * The parent id of each Topic of the topics list, or -1 if the Topic has no parent.
+    */
+   int[] parentIDs = new int[16];
+   private Topic topic = null;
+   private boolean hasTextColor = false;
+   private boolean hasStrokeColor = false;
+   private boolean hasFillColor = false;
+   private boolean lazyNotes = false;
+   // the parse filter
+   private TopicPredicate predicate = null;
+   private boolean includeText = true;
+   private boolean includePosition = true;
+   private boolean includeColors = true;
+   private boolean includeNotes = true;
+   private boolean dropped = false;
+   private IntObjectMap<Integer> depths = null;
+   // the ranges of the notes which are loaded lazily
+   private byte[] noteContent = null;
+   private Topic[] noteTopics = null;
+   private int[] noteStarts = null;
+   private int[] noteEnds = null;
+   private int countNotes = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param factory the diagram factory (can be null)
+    * @param noteParser the note parser (can be null)
+    */
+   DiagramBuilder(DiagramFactory factory, NoteParser noteParser) {
+      this.factory = factory;
+      this.noteParser = noteParser;
+      if (factory != null) {
+         diagram = factory.createDiagram();
+      } else {
+         diagram = new SimpleMindDiagram();
+      }
+      if (noteParser != null) {
+         noteParser.resetState(diagram);
+      }
+   }
+
+   /**
+    * Constructor for a builder which only collects the Topics, without creating the diagram.
+    *
+    * @param factory the diagram factory (can be null)
+    */
+   DiagramBuilder(DiagramFactory factory) {
+      this.factory = factory;
+      this.noteParser = null;
+      this.diagram = null;
+   }
+
+   /**
+    * Return the packed ARGB value of an opaque color.
+    *
+    * @param red the red component
+    * @param green the green component
+    * @param blue the blue component
+    * @return the packed ARGB value
+    * @throws IllegalArgumentException if a component is outside of the 0 to 255 range
+    */
+   static int toRGB(int red, int green, int blue) {
+      if (((red | green | blue) & ~0xFF) != 0) {
+         throw new IllegalArgumentException("Color parameter outside of expected range: " + red + ", " + green + ", " + blue);
+      }
+      return 0xFF000000 | (red << 16) | (green << 8) | blue;
+   }
+
+   private Topic createTopic(int id) {
+      Topic _topic;
+      if (factory != null) {
+         _topic = factory.createTopic(id);
+         if (_topic == null) {
+            _topic = new Topic(id);
+         }
+      } else {
+         _topic = new Topic(id);
+      }
+      return _topic;
+   }
+
+   /**
+    * Set the filter of the Topics and of their fields.
+    *
+    * @param filter the filter (can be null)
+    */
+   void setFilter(ParseFilter filter) {
+      if (filter == null) {
+         predicate = null;
+         includeText = true;
+         includePosition = true;
+         includeColors = true;
+         includeNotes = true;
+      } else {
+         predicate = filter.getPredicate();
+         includeText = filter.isIncluded(ParseFilter.TEXT);
+         includePosition = filter.isIncluded(ParseFilter.POSITION);
+         includeColors = filter.isIncluded(ParseFilter.COLORS);
+         includeNotes = filter.isIncluded(ParseFilter.NOTE);
+      }
+      depths = predicate != null ? new IntObjectMap<>() : null;
+   }
+
+   /**
+    * Return true if a Topic has been encountered, and if the current Topic has not been dropped by the filter.
+    *
+    * @return true if there is a current Topic
+    */
+   boolean hasTopic() {
+      return topic != null;
+   }
+
+   /**
+    * Return true if the note of the current Topic must be passed to the builder. The engines can skip the note
+    * content if this method returns false.
+    *
+    * @return true if the note of the current Topic must be passed to the builder
+    */
+   boolean wantsNote() {
+      return includeNotes && hasTopic();
+   }
+
+   /**
+    * Called for a <code>title</code> element. The title is only taken into account before the first Topic.
+    *
+    * @param title the title
+    */
+   void title(String title) {
+      if (topic == null && !dropped) {
+         setTitle(title);
+      }
+   }
+
+   /**
+    * Set the diagram title.
+    *
+    * @param title the title
+    */
+   void setTitle(String title) {
+      diagram.setTitle(title);
+   }
+
+   /**
+    * Add a Topic to the diagram.
+    *
+    * @param topic the Topic
+    */
+   void addTopic(Topic topic) {
+      diagram.addTopic(topic);
+   }
+
+   /**
+    * Set if the notes are loaded lazily. Only the byte tokenizer can provide the ranges of the notes in the content,
+    * the notes are always set eagerly by the other engines.
+    *
+    * @param lazyNotes true if the notes are loaded lazily
+    */
+   void setLazyNotes(boolean lazyNotes) {
+      this.lazyNotes = lazyNotes;
+   }
+
+   /**
+    * Return true if the notes are loaded lazily.
+    *
+    * @return true if the notes are loaded lazily
+    */
+   boolean isLazyNotes() {
+      return lazyNotes;
+   }
+
+   /**
+    * Set the note of a Topic.
+    *
+    * @param topic the Topic
+    * @param note the note
+    */
+   void setNote(Topic topic, String note) {
+      topic.setNote(note);
+      if (noteParser != null) {
+         noteParser.parseNote(topic, note);
+      }
+   }
+
+   /**
+    * Called for a <code>topic</code> element.
+    *
+    * @param id the Topic id
+    * @param parentid the parent id, or -1 if the Topic has no parent
+    * @param text the Topic text (can be null)
+    * @param hasPosition true if the Topic has a position
+    * @param x the x position
+    * @param y the y position
+    */
+   void startTopic(int id, int parentid, String text, boolean hasPosition, int x, int y) {
+      hasTextColor = false;
+      hasStrokeColor = false;
+      hasFillColor = false;
+      if (text != null) {
+         text = text.trim();
+      }
+      if (predicate != null && !accept(id, parentid, text)) {
+         topic = null;
+         dropped = true;
+         return;
+      }
+      topic = createTopic(id);
+      if (text != null && includeText) {
+         topic.setText(text);
+      }
+      addTopic(topic);
+      if (hasPosition && includePosition) {
+         topic.setPosition(x, y);
+      }
+      if (topics.size() == parentIDs.length) {
+         parentIDs = Arrays.copyOf(parentIDs, parentIDs.length * 2);
+      }
+      parentIDs[topics.size()] = parentid;
+      topics.add(topic);
+   }
+
+   /**
+    * Return true if a Topic is accepted by the predicate of the filter, and record its depth.
+    *
+    * @param id the Topic id
+    * @param parentid the parent id
+    * @param text the trimmed text
+    * @return true if the Topic is accepted
+    */
+   private boolean accept(int id, int parentid, String text) {
+      int depth;
+      if (parentid == -1) {
+         depth = 0;
+      } else {
+         Integer parentDepth = depths.get(parentid);
+         depth = parentDepth == null || parentDepth == -1 ? -1 : parentDepth + 1;
+      }
+      // the depths up to 127 are cached Integers
+      depths.put(id, depth);
+      return predicate.accept(id, parentid, depth, text);
+   }
+
+   /**
+    * Called for a <code>fillcolor</code> element. Only the first fill color of a Topic is taken into account.
+    *
+    * @param red the red component
+    * @param green the green component
+    * @param blue the blue component
+    */
+   void fillColor(int red, int green, int blue) {
+      if (topic != null && includeColors && !hasFillColor) {
+         hasFillColor = true;
+         topic.setFillRGB(toRGB(red, green, blue));
+      }
+   }
+
+   /**
+    * Called for a <code>textcolor</code> element. Only the first text color of a Topic is taken into account.
+    *
+    * @param red the red component
+    * @param green the green component
+    * @param blue the blue component
+    */
+   void textColor(int red, int green, int blue) {
+      if (topic != null && includeColors && !hasTextColor) {
+         hasTextColor = true;
+         topic.setTextRGB(toRGB(red, green, blue));
+      }
+   }
+
+   /**
+    * Called for a <code>strokecolor</code> element. Only the first stroke color of a Topic is taken into account.
+    *
+    * @param red the red component
+    * @param green the green component
+    * @param blue the blue component
+    */
+   void strokeColor(int red, int green, int blue) {
+      if (topic != null && includeColors && !hasStrokeColor) {
+         hasStrokeColor = true;
+         topic.setStrokeRGB(toRGB(red, green, blue));
+      }
+   }
+
+   /**
+    * Called for a <code>note</code> element which has a content.
+    *
+    * @param cdata the note content
+    */
+   void note(String cdata) {
+      if (topic != null && includeNotes) {
+         setNote(topic, cdata.trim());
+      }
+   }
+
+   /**
+    * Called for a <code>note</code> element which has a content, if the notes are loaded lazily. The note parser is
+    * still called immediately if there is one.
+    *
+    * @param content the document content
+    * @param start the start of the raw note content
+    * @param end the end of the raw note content
+    */
+   void noteRange(byte[] content, int start, int end) {
+      if (topic == null || !includeNotes) {
+         return;
+      }
+      if (noteTopics == null) {
+         noteContent = content;
+         noteTopics = new Topic[16];
+         noteStarts = new int[16];
+         noteEnds = new int[16];
+      } else if (countNotes == noteTopics.length) {
+         noteTopics = Arrays.copyOf(noteTopics, countNotes * 2);
+         noteStarts = Arrays.copyOf(noteStarts, countNotes * 2);
+         noteEnds = Arrays.copyOf(noteEnds, countNotes * 2);
+      }
+      noteTopics[countNotes] = topic;
+      noteStarts[countNotes] = start;
+      noteEnds[countNotes] = end;
+      countNotes++;
+      if (noteParser != null) {
+         noteParser.parseNote(topic, LazyNote.decode(Arrays.copyOfRange(content, start, end)));
+      }
+   }
+
+   /**
+    * Copy the raw content of the lazily loaded notes in a direct buffer, and set the notes suppliers.
+    */
+   private void storeNotes() {
+      int size = 0;
+      for (int i = 0; i < countNotes; i++) {
+         size += noteEnds[i] - noteStarts[i];
+      }
+      ByteBuffer store = ByteBuffer.allocateDirect(size);
+      for (int i = 0; i < countNotes; i++) {
+         int offset = store.position();
+         int length = noteEnds[i] - noteStarts[i];
+         store.put(noteContent, noteStarts[i], length);
+         noteTopics[i].setNoteSupplier(new LazyNote(store, offset, length));
+      }
+      noteContent = null;
+      noteTopics = null;
+      noteStarts = null;
+      noteEnds = null;
+      countNotes = 0;
+   }
+
+   /**
+    * Called at the end of the document. Link the Topics with their parents.
+    *
+    * @return the diagram
+    */
+   SimpleMindDiagram endDiagram() {
+      if (countNotes != 0) {
+         storeNotes();
+      }
+      for (int i = 0; i < topics.size(); i++) {
+         int topicid = topics.get(i).getID();
+         int parentid = parentIDs[i];
+         if (parentid != -1) {
+            if (diagram.hasTopic(parentid)) {
+               Topic childTopic = diagram.getTopic(topicid);
+               Topic parenttopic = diagram.getTopic(parentid);
+               childTopic.setParent(parenttopic);
+               parenttopic.addChild(childTopic);
+            }
+         }
+      }
+      if (noteParser != null) {
+         noteParser.resolve();
+      }
+      return diagram;
+   }
+}
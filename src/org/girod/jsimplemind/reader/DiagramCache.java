@@ -0,0 +1,682 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+import org.xml.sax.SAXException;
+
+/**
+ * A cache of parsed SimpleMind files, bounded by the estimated memory size of the cached diagrams, including the
+ * direct buffers of their lazily loaded notes.
+ *
+ * <p>
+ * Each access to a file checks its modification time and size. If one of them has changed, the content of the file
+ * is read and its hash is compared with the hash of the cached content, so that a file which has been saved without
+ * changes is not parsed again. If {@link #startWatching()} has been called, the files which are modified on disk are
+ * reloaded in the background, and the files which are deleted are removed from the cache.</p>
+ *
+ * <p>
+ * When the estimated size of the cached diagrams is greater than the maximum size, the least recently used
+ * ({@link #POLICY_LRU}) or the least frequently used ({@link #POLICY_LFU}) diagrams are evicted. A diagram is returned
+ * as a new instance when its file has been reloaded, so the diagrams which are returned by the cache are never
+ * modified by the cache.</p>
+ *
+ * <p>
+ * The cache can be used by several threads.</p>
+ *
+ * @since 0.4
+ */
+public class DiagramCache implements Closeable {
+   /**
+    * The policy which evicts the least recently used diagrams.
+    */
+   public static final int POLICY_LRU = 0;
+   /**
+    * The policy which evicts the least frequently used diagrams. Diagrams with the same number of accesses are evicted
+    * in least recently used order.
+    */
+   public static final int POLICY_LFU = 1;
+   private static final int TOPIC_SIZE = 300;
+   private static final int STRING_SIZE = 40;
+   private static final int PROPERTY_SIZE = 64;
+   private static final int NAME_SIZE = 160;
+   private static final int DIAGRAM_SIZE = 256;
+   private static final int LAZY_NOTE_SIZE = 24;
+   private final SimpleMindParser parser;
+   private final long maxBytes;
+   private final int policy;
+   private final Map<Path, Entry> entries = new HashMap<>();
+   private long bytes = 0;
+   private long clock = 0;
+   // the statistics
+   private long hits = 0;
+   private long misses = 0;
+   private long revalidations = 0;
+   private long reloads = 0;
+   private long evictions = 0;
+   private long loadTime = 0;
+   // the watch service
+   private WatchService watchService = null;
+   private final Map<Path, WatchKey> directories = new HashMap<>();
+
+   /**
+    * Constructor. The cache uses a default parser and the {@link #POLICY_LRU} policy.
+    *
+    * @param maxBytes the maximum estimated size of the cached diagrams in bytes
+    */
+   public DiagramCache(long maxBytes) {
+      this(new SimpleMindParser(), maxBytes, POLICY_LRU);
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param parser the parser
+    * @param maxBytes the maximum estimated size of the cached diagrams in bytes
+    * @param policy the eviction policy ({@link #POLICY_LRU} or {@link #POLICY_LFU})
+    */
+   public DiagramCache(SimpleMindParser parser, long maxBytes, int policy) {
+      this.parser = parser;
+      this.maxBytes = maxBytes;
+      this.policy = policy;
+   }
+
+   /**
+    * Return the diagram of a SimpleMind file. The file can be a smmx zip file or a xml file.
+    *
+    * @param file the file
+    * @return the diagram
+    * @see #get(java.nio.file.Path)
+    */
+   public SimpleMindDiagram get(File file) throws IOException, SAXException {
+      return get(file.toPath());
+   }
+
+   /**
+    * Return the diagram of a SimpleMind file. The file is parsed if it is not in the cache or if it has changed.
+    *
+    * @param path the path of the file
+    * @return the diagram
+    */
+   public SimpleMindDiagram get(Path path) throws IOException, SAXException {
+      return get(path.toAbsolutePath().normalize(), true);
+   }
+
+   /**
+    * Return the diagram of a file, validated against the file.
+    *
+    * @param path the absolute and normalized path of the file
+    * @param access true for an access to the diagram, false for a reload of a cached diagram by the watcher, which is
+    * not counted in the statistics nor by the eviction policy, and does not add the file to the cache
+    * @return the diagram, or null for a reload of a diagram which is not cached
+    */
+   private SimpleMindDiagram get(Path path, boolean access) throws IOException, SAXException {
+      Entry entry;
+      synchronized (this) {
+         entry = entries.get(path);
+         if (entry == null) {
+            if (!access) {
+               return null;
+            }
+            entry = new Entry(path);
+         }
+      }
+      SimpleMindDiagram diagram;
+      long size;
+      synchronized (entry) {
+         try {
+            diagram = validate(entry, access);
+         } catch (IOException | SAXException | RuntimeException ex) {
+            synchronized (this) {
+               if (entries.get(path) == entry) {
+                  remove(entry);
+               }
+            }
+            throw ex;
+         }
+         size = entry.bytes;
+      }
+      synchronized (this) {
+         Entry cached = entries.get(path);
+         if (cached != entry) {
+            if (!access) {
+               // the diagram has been removed from the cache during the reload
+               return diagram;
+            }
+            if (cached != null) {
+               bytes -= cached.cachedBytes;
+            }
+            entries.put(path, entry);
+            entry.cachedBytes = 0;
+            watch(path);
+         }
+         bytes += size - entry.cachedBytes;
+         entry.cachedBytes = size;
+         if (access) {
+            entry.lastAccess = ++clock;
+            entry.accessCount++;
+            evict(entry);
+         } else {
+            evict(null);
+         }
+      }
+      return diagram;
+   }
+
+   /**
+    * Check the file of an entry, and load it if it has changed. The hits and misses are only counted for an access.
+    */
+   private SimpleMindDiagram validate(Entry entry, boolean access) throws IOException, SAXException {
+      BasicFileAttributes attributes = Files.readAttributes(entry.path, BasicFileAttributes.class);
+      long modified = attributes.lastModifiedTime().toMillis();
+      long size = attributes.size();
+      SimpleMindDiagram diagram = entry.diagram;
+      if (diagram != null && !entry.stale && entry.modified == modified && entry.size == size) {
+         if (access) {
+            countHit(false);
+         }
+         return diagram;
+      }
+      byte[] bytes = Files.readAllBytes(entry.path);
+      long hash = hash(bytes);
+      entry.stale = false;
+      entry.modified = modified;
+      entry.size = bytes.length;
+      if (diagram != null && entry.hash == hash) {
+         if (access) {
+            countHit(true);
+         }
+         return diagram;
+      }
+      long start = System.nanoTime();
+      diagram = parser.parseContent(SmmxReader.getContent(bytes));
+      if (access) {
+         countMiss(System.nanoTime() - start);
+      }
+      entry.diagram = diagram;
+      entry.hash = hash;
+      entry.bytes = estimateSize(diagram);
+      return diagram;
+   }
+
+   private static long hash(byte[] bytes) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      return crc.getValue();
+   }
+
+   private synchronized void countHit(boolean revalidated) {
+      hits++;
+      if (revalidated) {
+         revalidations++;
+      }
+   }
+
+   private synchronized void countMiss(long time) {
+      misses++;
+      loadTime += time;
+   }
+
+   /**
+    * Evict the entries until the estimated size of the cached diagrams is lower than the maximum size. The entry which
+    * has just been accessed is never evicted.
+    *
+    * @param accessed the accessed entry, or null if no entry has been accessed
+    */
+   private void evict(Entry accessed) {
+      while (bytes > maxBytes && entries.size() > 1) {
+         Entry victim = null;
+         Iterator<Entry> it = entries.values().iterator();
+         while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry != accessed && (victim == null || isBefore(entry, victim))) {
+               victim = entry;
+            }
+         }
+         remove(victim);
+         evictions++;
+      }
+   }
+
+   private boolean isBefore(Entry entry, Entry other) {
+      if (policy == POLICY_LFU && entry.accessCount != other.accessCount) {
+         return entry.accessCount < other.accessCount;
+      }
+      return entry.lastAccess < other.lastAccess;
+   }
+
+   private void remove(Entry entry) {
+      entries.remove(entry.path);
+      bytes -= entry.cachedBytes;
+      entry.cachedBytes = 0;
+   }
+
+   /**
+    * Remove the diagram of a file from the cache.
+    *
+    * @param path the path of the file
+    * @return true if the diagram was in the cache
+    */
+   public synchronized boolean invalidate(Path path) {
+      Entry entry = entries.get(path.toAbsolutePath().normalize());
+      if (entry == null) {
+         return false;
+      }
+      remove(entry);
+      return true;
+   }
+
+   /**
+    * Remove all the diagrams from the cache. The statistics are not reset.
+    */
+   public synchronized void clear() {
+      entries.clear();
+      bytes = 0;
+   }
+
+   /**
+    * Return true if the diagram of a file is in the cache. The file is not checked.
+    *
+    * @param path the path of the file
+    * @return true if the diagram of the file is in the cache
+    */
+   public synchronized boolean contains(Path path) {
+      return entries.containsKey(path.toAbsolutePath().normalize());
+   }
+
+   /**
+    * Return the number of cached diagrams.
+    *
+    * @return the number of cached diagrams
+    */
+   public synchronized int size() {
+      return entries.size();
+   }
+
+   /**
+    * Return the estimated size of the cached diagrams in bytes.
+    *
+    * @return the estimated size
+    */
+   public synchronized long getEstimatedBytes() {
+      return bytes;
+   }
+
+   /**
+    * Return the maximum estimated size of the cached diagrams in bytes.
+    *
+    * @return the maximum size
+    */
+   public long getMaxBytes() {
+      return maxBytes;
+   }
+
+   /**
+    * Return the statistics of the cache.
+    *
+    * @return the statistics
+    */
+   public synchronized Statistics getStatistics() {
+      return new Statistics(hits, misses, revalidations, reloads, evictions, loadTime, entries.size(), bytes);
+   }
+
+   /**
+    * Return the estimated memory size of a diagram in bytes. The estimation is based on the measured size of the Topics
+    * parsed by the {@link SimpleMindParser}, on the number of distinct Topic texts, and on the length of the texts and
+    * notes. The raw content of the notes which are loaded lazily is counted by the capacity of the direct buffers which
+    * hold it outside of the heap.
+    *
+    * @param diagram the diagram
+    * @return the estimated size
+    */
+   public static long estimateSize(SimpleMindDiagram diagram) {
+      long size = DIAGRAM_SIZE + estimateSize(diagram.getTitle()) + NAME_SIZE * diagram.getTopicsByName().size();
+      // the buffers of the lazily loaded notes, which are usually shared by all the notes of the diagram
+      Set<ByteBuffer> stores = Collections.newSetFromMap(new IdentityHashMap<>());
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         size += TOPIC_SIZE + estimateSize(topic.getText()) + PROPERTY_SIZE * topic.getProperties().size();
+         Supplier<String> supplier = topic.getNoteSupplier();
+         if (supplier == null) {
+            size += estimateSize(topic.getNote());
+         } else {
+            size += LAZY_NOTE_SIZE;
+            if (supplier instanceof LazyNote) {
+               ByteBuffer store = ((LazyNote) supplier).getStore();
+               if (stores.add(store)) {
+                  size += store.capacity();
+               }
+            }
+         }
+      }
+      return size;
+   }
+
+   private static long estimateSize(String s) {
+      return s == null || s.isEmpty() ? 0 : STRING_SIZE + s.length();
+   }
+
+   /**
+    * Start watching the directories of the cached files. The files which are modified are reloaded in a background
+    * thread, and the files which are deleted are removed from the cache. The watching is stopped by {@link #close()}.
+    *
+    * @throws IOException if the watch service can not be created
+    */
+   public synchronized void startWatching() throws IOException {
+      if (watchService != null) {
+         return;
+      }
+      watchService = FileSystems.getDefault().newWatchService();
+      Iterator<Path> it = entries.keySet().iterator();
+      while (it.hasNext()) {
+         watch(it.next());
+      }
+      Thread thread = new Thread(new Watcher(watchService), "DiagramCache watcher");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Return true if the cache watches the directories of the cached files.
+    *
+    * @return true if the cache watches the cached files
+    */
+   public synchronized boolean isWatching() {
+      return watchService != null;
+   }
+
+   private void watch(Path path) {
+      Path directory = path.getParent();
+      if (watchService == null || directory == null || directories.containsKey(directory)) {
+         return;
+      }
+      try {
+         WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+         directories.put(directory, key);
+      } catch (IOException ex) {
+         // the file is still validated at each access
+      }
+   }
+
+   /**
+    * Stop watching the cached files. The cached diagrams are kept.
+    */
+   @Override
+   public synchronized void close() throws IOException {
+      if (watchService != null) {
+         watchService.close();
+         watchService = null;
+         directories.clear();
+      }
+   }
+
+   /**
+    * Reload the cached files reported by the watch service.
+    */
+   private void reload(Path directory, List<WatchEvent<?>> events) {
+      List<Path> paths = new ArrayList<>();
+      synchronized (this) {
+         for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+               // some events have been lost, all the files of the directory must be checked
+               Iterator<Path> it = entries.keySet().iterator();
+               while (it.hasNext()) {
+                  Path path = it.next();
+                  if (directory.equals(path.getParent()) && !paths.contains(path)) {
+                     entries.get(path).stale = true;
+                     paths.add(path);
+                  }
+               }
+            } else {
+               Path path = directory.resolve((Path) event.context());
+               Entry entry = entries.get(path);
+               if (entry != null && !paths.contains(path)) {
+                  entry.stale = true;
+                  paths.add(path);
+               }
+            }
+         }
+      }
+      for (Path path : paths) {
+         if (!Files.exists(path)) {
+            invalidate(path);
+            continue;
+         }
+         try {
+            if (get(path, false) != null) {
+               synchronized (this) {
+                  reloads++;
+               }
+            }
+         } catch (IOException | SAXException | RuntimeException ex) {
+            // the file is parsed again at the next access
+            invalidate(path);
+         }
+      }
+   }
+
+   /**
+    * The thread which waits for the events of the watch service.
+    */
+   private class Watcher implements Runnable {
+      private final WatchService service;
+
+      private Watcher(WatchService service) {
+         this.service = service;
+      }
+
+      @Override
+      public void run() {
+         try {
+            while (true) {
+               WatchKey key = service.take();
+               List<WatchEvent<?>> events = key.pollEvents();
+               key.reset();
+               reload((Path) key.watchable(), events);
+            }
+         } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // the watching has been stopped
+         }
+      }
+   }
+
+   /**
+    * A cached file.
+    */
+   private static class Entry {
+      private final Path path;
+      private SimpleMindDiagram diagram = null;
+      private volatile boolean stale = false;
+      private long modified = 0;
+      private long size = -1;
+      private long hash = 0;
+      // the estimated size of the diagram
+      private long bytes = 0;
+      // the estimated size which is counted in the cache
+      private long cachedBytes = 0;
+      private long lastAccess = 0;
+      private long accessCount = 0;
+
+      private Entry(Path path) {
+         this.path = path;
+      }
+   }
+
+   /**
+    * The statistics of a {@link DiagramCache}.
+    */
+   public static class Statistics {
+      private final long hits;
+      private final long misses;
+      private final long revalidations;
+      private final long reloads;
+      private final long evictions;
+      private final long loadTime;
+      private final int size;
+      private final long estimatedBytes;
+
+      private Statistics(long hits, long misses, long revalidations, long reloads, long evictions, long loadTime,
+         int size, long estimatedBytes) {
+         this.hits = hits;
+         this.misses = misses;
+         this.revalidations = revalidations;
+         this.reloads = reloads;
+         this.evictions = evictions;
+         this.loadTime = loadTime;
+         this.size = size;
+         this.estimatedBytes = estimatedBytes;
+      }
+
+      /**
+       * Return the number of accesses which have returned a cached diagram.
+       *
+       * @return the number of hits
+       */
+      public long getHits() {
+         return hits;
+      }
+
+      /**
+       * Return the number of accesses which have parsed the file, including the reloads of modified files.
+       *
+       * @return the number of misses
+       */
+      public long getMisses() {
+         return misses;
+      }
+
+      /**
+       * Return the number of hits for which the file had a new modification time or size, but the same content.
+       *
+       * @return the number of revalidations
+       */
+      public long getRevalidations() {
+         return revalidations;
+      }
+
+      /**
+       * Return the number of files which have been reloaded after a change reported by the watch service.
+       *
+       * @return the number of reloads
+       */
+      public long getReloads() {
+         return reloads;
+      }
+
+      /**
+       * Return the number of evicted diagrams.
+       *
+       * @return the number of evictions
+       */
+      public long getEvictions() {
+         return evictions;
+      }
+
+      /**
+       * Return the ratio of hits on the total number of accesses.
+       *
+       * @return the hit ratio
+       */
+      public double getHitRatio() {
+         long total = hits + misses;
+         return total == 0 ? 0 : (double) hits / total;
+      }
+
+      /**
+       * Return the total time spent parsing the files, in nanoseconds.
+       *
+       * @return the total load time
+       */
+      public long getTotalLoadTime() {
+         return loadTime;
+      }
+
+      /**
+       * Return the average time spent parsing a file, in nanoseconds.
+       *
+       * @return the average load time
+       */
+      public long getAverageLoadTime() {
+         return misses == 0 ? 0 : loadTime / misses;
+      }
+
+      /**
+       * Return the number of cached diagrams.
+       *
+       * @return the number of cached diagrams
+       */
+      public int getSize() {
+         return size;
+      }
+
+      /**
+       * Return the estimated size of the cached diagrams in bytes.
+       *
+       * @return the estimated size
+       */
+      public long getEstimatedBytes() {
+         return estimatedBytes;
+      }
+
+      @Override
+      public String toString() {
+         return "Statistics{hits=" + hits + ", misses=" + misses + ", revalidations=" + revalidations + ", reloads="
+            + reloads + ", evictions=" + evictions + ", averageLoadTime=" + getAverageLoadTime() + ", size=" + size
+            + ", estimatedBytes=" + estimatedBytes + "}";
+      }
+   }
+}
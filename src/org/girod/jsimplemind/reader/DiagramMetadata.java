@@ -0,0 +1,110 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+/**
+ * The metadata of a SimpleMind diagram, read by {@link SimpleMindParser#readMetadata(java.io.File, boolean)} without
+ * parsing the diagram.
+ *
+ * @since 0.4
+ */
+public class DiagramMetadata {
+   private final String title;
+   private final String guid;
+   private final int centralThemeID;
+   private final int countTopics;
+
+   /**
+    * Constructor.
+    *
+    * @param title the diagram title (can be null)
+    * @param guid the diagram guid (can be null)
+    * @param centralThemeID the id of the main central theme, or -1
+    * @param countTopics the number of Topics, or -1 if the Topics have not been counted
+    */
+   DiagramMetadata(String title, String guid, int centralThemeID, int countTopics) {
+      this.title = title;
+      this.guid = guid;
+      this.centralThemeID = centralThemeID;
+      this.countTopics = countTopics;
+   }
+
+   /**
+    * Return the diagram title.
+    *
+    * @return the title, or null if the diagram has no title
+    */
+   public String getTitle() {
+      return title;
+   }
+
+   /**
+    * Return the diagram guid.
+    *
+    * @return the guid, or null if the diagram has no guid
+    */
+   public String getGUID() {
+      return guid;
+   }
+
+   /**
+    * Return the id of the Topic which is the main central theme of the diagram.
+    *
+    * @return the id, or -1 if the diagram has no main central theme
+    */
+   public int getCentralThemeID() {
+      return centralThemeID;
+   }
+
+   /**
+    * Return true if the Topics have been counted.
+    *
+    * @return true if the Topics have been counted
+    */
+   public boolean hasTopicsCount() {
+      return countTopics != -1;
+   }
+
+   /**
+    * Return the number of Topics.
+    *
+    * @return the number of Topics, or -1 if the Topics have not been counted
+    */
+   public int getTopicsCount() {
+      return countTopics;
+   }
+
+   @Override
+   public String toString() {
+      return "DiagramMetadata{" + "title=" + title + ", guid=" + guid + ", centralThemeID=" + centralThemeID
+         + ", countTopics=" + countTopics + '}';
+   }
+}
@@ -0,0 +1,183 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import org.girod.jsimplemind.model.ChangeSet;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+
+/**
+ * Patches an existing diagram with a new version of the same diagram, reusing the Topic instances of the existing
+ * diagram by their id.
+ *
+ * <p>
+ * A Topic is modified if its text, note, colors or position have changed, if its parent has changed, or if its list of
+ * children has changed. The Topics of the new version which are not in the existing diagram are moved to the existing
+ * diagram.</p>
+ *
+ * @since 0.4
+ */
+class DiagramPatcher {
+   private final SimpleMindDiagram existing;
+   private int[] added = new int[16];
+   private int countAdded = 0;
+   private int[] removed = new int[16];
+   private int countRemoved = 0;
+   private int[] modified = new int[16];
+   private int countModified = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param existing the existing diagram
+    */
+   DiagramPatcher(SimpleMindDiagram existing) {
+      this.existing = existing;
+   }
+
+   /**
+    * Patch the existing diagram.
+    *
+    * @param parsed the new version of the diagram
+    * @return the change set
+    */
+   ChangeSet patch(SimpleMindDiagram parsed) {
+      boolean titleChanged = !Objects.equals(existing.getTitle(), parsed.getTitle());
+      existing.setTitle(parsed.getTitle());
+
+      // the removed Topics
+      Iterator<Topic> it = existing.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         if (!parsed.hasTopic(topic.getID())) {
+            removed = add(removed, countRemoved++, topic.getID());
+         }
+      }
+      for (int i = 0; i < countRemoved; i++) {
+         Topic parent = existing.removeTopic(removed[i]).getParent();
+         if (parent != null && parsed.hasTopic(parent.getID())) {
+            // the parent has lost a child
+            modified = add(modified, countModified++, parent.getID());
+         }
+      }
+
+      // the fields of the Topics
+      it = parsed.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         Topic existingTopic = existing.getTopic(topic.getID());
+         if (existingTopic == null) {
+            added = add(added, countAdded++, topic.getID());
+            existing.addTopic(topic);
+         } else {
+            if (!Objects.equals(existingTopic.getText(), topic.getText())) {
+               existing.setTopicText(existingTopic, topic.getText());
+               modified = add(modified, countModified++, topic.getID());
+               existingTopic.updateFrom(topic);
+            } else if (existingTopic.updateFrom(topic)) {
+               modified = add(modified, countModified++, topic.getID());
+            }
+         }
+      }
+
+      // the links between the Topics
+      List<Topic> children = new ArrayList<>();
+      it = parsed.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         Topic existingTopic = existing.getTopic(topic.getID());
+         boolean changed = false;
+         Topic parent = topic.getParent() == null ? null : existing.getTopic(topic.getParent().getID());
+         if (existingTopic.getParent() != parent) {
+            existingTopic.setParent(parent);
+            changed = true;
+         }
+         children.clear();
+         List<Topic> parsedChildren = topic.getChildrenList();
+         for (int i = 0; i < parsedChildren.size(); i++) {
+            children.add(existing.getTopic(parsedChildren.get(i).getID()));
+         }
+         if (!sameInstances(children, existingTopic.getChildrenList())) {
+            existingTopic.removeAllChildren();
+            for (int i = 0; i < children.size(); i++) {
+               existingTopic.addChild(children.get(i));
+            }
+            changed = true;
+         }
+         if (changed && existingTopic != topic) {
+            modified = add(modified, countModified++, topic.getID());
+         }
+      }
+      return new ChangeSet(Arrays.copyOf(added, countAdded), Arrays.copyOf(removed, countRemoved),
+         distinct(modified, countModified), titleChanged);
+   }
+
+   private static boolean sameInstances(List<Topic> list1, List<Topic> list2) {
+      if (list1.size() != list2.size()) {
+         return false;
+      }
+      for (int i = 0; i < list1.size(); i++) {
+         if (list1.get(i) != list2.get(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static int[] add(int[] array, int index, int value) {
+      if (index == array.length) {
+         array = Arrays.copyOf(array, array.length * 2);
+      }
+      array[index] = value;
+      return array;
+   }
+
+   /**
+    * Return the sorted distinct values of an array, because a Topic can be modified both by its fields and by its
+    * links.
+    */
+   private static int[] distinct(int[] array, int length) {
+      int[] values = Arrays.copyOf(array, length);
+      Arrays.sort(values);
+      int count = 0;
+      for (int i = 0; i < values.length; i++) {
+         if (count == 0 || values[count - 1] != values[i]) {
+            values[count++] = values[i];
+         }
+      }
+      return Arrays.copyOf(values, count);
+   }
+}
@@ -0,0 +1,91 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * The supplier of a lazily loaded Topic note. The raw note content is kept in a buffer outside of the Java heap which
+ * is shared by all the notes of a diagram, and the note is decoded each time it is requested.
+ *
+ * @since 0.4
+ */
+class LazyNote implements Supplier<String> {
+   private final ByteBuffer store;
+   private final int offset;
+   private final int length;
+
+   /**
+    * Constructor.
+    *
+    * @param store the buffer of the raw notes content
+    * @param offset the offset of the note in the buffer
+    * @param length the length of the note in the buffer
+    */
+   LazyNote(ByteBuffer store, int offset, int length) {
+      this.store = store;
+      this.offset = offset;
+      this.length = length;
+   }
+
+   /**
+    * Return the buffer of the raw notes content, which is shared by the notes of a diagram.
+    *
+    * @return the buffer
+    */
+   ByteBuffer getStore() {
+      return store;
+   }
+
+   @Override
+   public String get() {
+      byte[] raw = new byte[length];
+      ByteBuffer buffer = store.duplicate();
+      buffer.position(offset);
+      buffer.get(raw);
+      return decode(raw);
+   }
+
+   /**
+    * Decode a raw note content, which has already been checked by the tokenizer.
+    *
+    * @param raw the raw note content
+    * @return the trimmed note
+    */
+   static String decode(byte[] raw) {
+      try {
+         return SimpleMindTokenizer.decodeNote(raw).trim();
+      } catch (SimpleMindTokenizer.UnsupportedContentException ex) {
+         throw new IllegalStateException("Invalid note content", ex);
+      }
+   }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.girod.jsimplemind.xml.NumberParser;
+
+/**
+ * Reads the metadata of a SimpleMind document with a StAX parser, and stops as soon as the metadata is known.
+ *
+ * @since 0.4
+ */
+class MetadataReader {
+   private final boolean countTopics;
+   private String title = null;
+   private String guid = null;
+   private int centralThemeID = -1;
+   private int count = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param countTopics true if the Topics must be counted
+    */
+   MetadataReader(boolean countTopics) {
+      this.countTopics = countTopics;
+   }
+
+   /**
+    * Read the metadata. The reading of the metadata stops at the end of the <code>meta</code> element or at the start
+    * of the <code>topics</code> element. If the Topics must be counted, the <code>topic</code> start tags are then
+    * counted by a {@link TopicCounter} from the start of the content, which is much faster than the StAX parser.
+    *
+    * @param factory the StAX factory
+    * @param stream the stream
+    * @return the metadata
+    * @throws XMLStreamException
+    * @throws IOException
+    */
+   DiagramMetadata read(XMLInputFactory factory, InputStream stream) throws XMLStreamException, IOException {
+      RecordingStream recording = countTopics ? new RecordingStream(stream) : null;
+      XMLStreamReader reader = factory.createXMLStreamReader(countTopics ? recording : stream);
+      boolean isByteCompatible;
+      try {
+         String encoding = reader.getEncoding();
+         isByteCompatible = encoding == null || !encoding.toUpperCase().startsWith("UTF-16");
+         readMeta(reader);
+         if (countTopics && !isByteCompatible) {
+            countTopics(reader);
+         }
+      } finally {
+         reader.close();
+      }
+      if (countTopics && isByteCompatible) {
+         TopicCounter counter = new TopicCounter();
+         counter.scan(recording.getBuffer(), 0, recording.getCount());
+         recording.stopRecording();
+         if (!counter.isDone()) {
+            counter.scan(stream);
+         }
+         count = counter.getCount();
+      }
+      return new DiagramMetadata(title, guid, centralThemeID, countTopics ? count : -1);
+   }
+
+   private void readMeta(XMLStreamReader reader) throws XMLStreamException {
+      while (reader.hasNext()) {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+               case "title":
+                  if (title == null) {
+                     title = reader.getAttributeValue(null, "text");
+                  }
+                  break;
+               case "guid":
+                  if (guid == null) {
+                     guid = reader.getAttributeValue(null, "guid");
+                  }
+                  break;
+               case "main-centraltheme":
+                  centralThemeID = NumberParser.parseInt(reader.getAttributeValue(null, "id"), -1);
+                  break;
+               case "topics":
+               case "topic":
+                  return;
+            }
+         } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("meta")) {
+            return;
+         }
+      }
+   }
+
+   /**
+    * Count the Topics with the StAX parser, for the encodings which are not compatible with the scanning of bytes.
+    */
+   private void countTopics(XMLStreamReader reader) throws XMLStreamException {
+      if (reader.isStartElement() && reader.getLocalName().equals("topic")) {
+         count++;
+      }
+      while (reader.hasNext()) {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            if (reader.getLocalName().equals("topic")) {
+               count++;
+            }
+         } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("topics")) {
+            return;
+         }
+      }
+   }
+
+   /**
+    * A stream which keeps the bytes read by the StAX parser, so that they can be scanned again.
+    */
+   private static class RecordingStream extends FilterInputStream {
+      private byte[] buffer = new byte[8192];
+      private int count = 0;
+      private boolean recording = true;
+
+      private RecordingStream(InputStream stream) {
+         super(stream);
+      }
+
+      private void record(byte[] b, int off, int len) {
+         if (!recording || len <= 0) {
+            return;
+         }
+         if (count + len > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + len));
+         }
+         System.arraycopy(b, off, buffer, count, len);
+         count += len;
+      }
+
+      private byte[] getBuffer() {
+         return buffer;
+      }
+
+      private int getCount() {
+         return count;
+      }
+
+      private void stopRecording() {
+         recording = false;
+         buffer = null;
+      }
+
+      @Override
+      public int read() throws IOException {
+         int b = super.read();
+         if (b != -1) {
+            record(new byte[] {(byte) b}, 0, 1);
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         int length = super.read(b, off, len);
+         record(b, off, length);
+         return length;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+         // the skipped bytes must be recorded
+         byte[] skipped = new byte[(int) Math.min(n, 8192)];
+         int length = read(skipped, 0, skipped.length);
+         return Math.max(length, 0);
+      }
+   }
+}
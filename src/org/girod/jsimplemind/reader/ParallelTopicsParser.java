@@ -0,0 +1,359 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+import org.girod.jsimplemind.utils.IntObjectMap;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses the <code>topics</code> element of a SimpleMind document in parallel. The content of the element is split in
+ * byte ranges on <code>topic</code> boundaries, and each range is parsed as a separate document made of the content
+ * before the <code>topics</code> element, the range, and the content after the <code>topics</code> element.
+ *
+ * @since 0.4
+ */
+class ParallelTopicsParser {
+   /**
+    * The minimum size of a range.
+    */
+   private static final int MIN_RANGE_SIZE = 256 * 1024;
+   private static final byte[] CDATA_START = "<![CDATA[".getBytes();
+   private static final byte[] CDATA_END = "]]>".getBytes();
+   private static final byte[] COMMENT_START = "<!--".getBytes();
+   private static final byte[] COMMENT_END = "-->".getBytes();
+   private static final byte[] PI_START = "<?".getBytes();
+   private static final byte[] PI_END = "?>".getBytes();
+   private static final byte[] TOPICS_START = "<topics".getBytes();
+   private static final byte[] TOPICS_END = "</topics".getBytes();
+   private static final byte[] TOPIC_START = "<topic".getBytes();
+   private final DiagramFactory factory;
+   private final NoteParser noteParser;
+   private final ForkJoinPool pool;
+   private final byte[] content;
+   private int topicsStart = -1;
+   private int topicsEnd = -1;
+
+   /**
+    * Constructor.
+    *
+    * @param factory the diagram factory (can be null)
+    * @param noteParser the note parser (can be null)
+    * @param pool the pool used to parse the ranges
+    * @param content the document content
+    */
+   ParallelTopicsParser(DiagramFactory factory, NoteParser noteParser, ForkJoinPool pool, byte[] content) {
+      this.factory = factory;
+      this.noteParser = noteParser;
+      this.pool = pool;
+      this.content = content;
+   }
+
+   /**
+    * Split the <code>topics</code> element content in ranges.
+    *
+    * @return the start offsets of the ranges, or null if the content can not be split
+    */
+   int[] split() {
+      int countRanges = Math.min(pool.getParallelism() * 4, content.length / MIN_RANGE_SIZE);
+      if (countRanges < 2 || !isAsciiCompatible() || !findTopics()) {
+         return null;
+      }
+      int rangeSize = (topicsEnd - topicsStart) / countRanges;
+      List<Integer> starts = new ArrayList<>();
+      starts.add(topicsStart);
+      int target = topicsStart + rangeSize;
+      int i = topicsStart;
+      while (i < topicsEnd) {
+         if (content[i] != '<') {
+            i++;
+         } else if (startsWith(i, CDATA_START)) {
+            i = skip(i, CDATA_END);
+         } else if (startsWith(i, COMMENT_START)) {
+            i = skip(i, COMMENT_END);
+         } else if (startsWith(i, PI_START)) {
+            i = skip(i, PI_END);
+         } else {
+            if (i >= target && startsWithName(i, TOPIC_START)) {
+               starts.add(i);
+               target = i + rangeSize;
+            }
+            i++;
+         }
+         if (i < 0) {
+            return null;
+         }
+      }
+      if (starts.size() < 2) {
+         return null;
+      }
+      int[] array = new int[starts.size()];
+      for (int j = 0; j < array.length; j++) {
+         array[j] = starts.get(j);
+      }
+      return array;
+   }
+
+   /**
+    * Return false if the content is encoded in UTF-16 or UTF-32, in which case the markup can not be searched as
+    * ASCII bytes.
+    */
+   private boolean isAsciiCompatible() {
+      int length = Math.min(4, content.length);
+      for (int i = 0; i < length; i++) {
+         int b = content[i] & 0xFF;
+         if (b == 0 || b == 0xFE || b == 0xFF) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Find the content of the first <code>topics</code> element.
+    *
+    * @return true if the element has been found
+    */
+   private boolean findTopics() {
+      int i = 0;
+      while (i < content.length && i >= 0) {
+         if (content[i] != '<') {
+            i++;
+         } else if (startsWith(i, CDATA_START)) {
+            i = skip(i, CDATA_END);
+         } else if (startsWith(i, COMMENT_START)) {
+            i = skip(i, COMMENT_END);
+         } else if (startsWith(i, PI_START)) {
+            i = skip(i, PI_END);
+         } else if (topicsStart == -1 && startsWithName(i, TOPICS_START)) {
+            int end = indexOf(i, (byte) '>');
+            if (end == -1 || content[end - 1] == '/') {
+               return false;
+            }
+            topicsStart = end + 1;
+            i = topicsStart;
+         } else if (topicsStart != -1 && startsWithName(i, TOPICS_END)) {
+            topicsEnd = i;
+            return true;
+         } else {
+            i++;
+         }
+      }
+      return false;
+   }
+
+   private boolean startsWith(int offset, byte[] prefix) {
+      if (offset + prefix.length > content.length) {
+         return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+         if (content[offset + i] != prefix[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Return true if an element name starts at an offset, followed by a whitespace, a '&gt;' or a '/'.
+    */
+   private boolean startsWithName(int offset, byte[] name) {
+      if (!startsWith(offset, name) || offset + name.length >= content.length) {
+         return false;
+      }
+      byte next = content[offset + name.length];
+      return next == ' ' || next == '\t' || next == '\n' || next == '\r' || next == '>' || next == '/';
+   }
+
+   private int indexOf(int offset, byte b) {
+      for (int i = offset; i < content.length; i++) {
+         if (content[i] == b) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Skip a markup until its end delimiter.
+    *
+    * @return the offset after the end delimiter, or -1 if the end delimiter has not been found
+    */
+   private int skip(int offset, byte[] end) {
+      for (int i = offset + 2; i <= content.length - end.length; i++) {
+         if (startsWith(i, end)) {
+            return i + end.length;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Parse the ranges in parallel and create the diagram.
+    *
+    * @param starts the start offsets of the ranges
+    * @return the diagram
+    */
+   SimpleMindDiagram parse(int[] starts) throws IOException, SAXException {
+      List<Callable<TopicsRangeBuilder>> tasks = new ArrayList<>();
+      for (int i = 0; i < starts.length; i++) {
+         int start = starts[i];
+         int end = i + 1 < starts.length ? starts[i + 1] : topicsEnd;
+         boolean isFirst = i == 0;
+         boolean isLast = i == starts.length - 1;
+         tasks.add(() -> parseRange(start, end, isFirst, isLast));
+      }
+      List<TopicsRangeBuilder> ranges = new ArrayList<>();
+      try {
+         List<Future<TopicsRangeBuilder>> futures = pool.invokeAll(tasks);
+         for (Future<TopicsRangeBuilder> future : futures) {
+            ranges.add(future.get());
+         }
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new IOException(ex);
+      } catch (ExecutionException ex) {
+         Throwable cause = ex.getCause();
+         if (cause instanceof SAXException) {
+            throw (SAXException) cause;
+         } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+         } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         } else {
+            throw new IOException(cause);
+         }
+      }
+      return merge(ranges);
+   }
+
+   private TopicsRangeBuilder parseRange(int start, int end, boolean isFirst, boolean isLast) throws IOException, SAXException {
+      TopicsRangeBuilder builder = new TopicsRangeBuilder(factory);
+      InputStream stream = new SequenceInputStream(new ByteArrayInputStream(content, 0, topicsStart),
+         new SequenceInputStream(new ByteArrayInputStream(content, start, end - start),
+            new ByteArrayInputStream(content, topicsEnd, content.length - topicsEnd)));
+      SAXParser parser;
+      try {
+         parser = SimpleMindParser.getSAXParser();
+      } catch (ParserConfigurationException ex) {
+         throw new SAXException(ex);
+      }
+      try {
+         parser.parse(stream, new SimpleMindHandler(builder, isFirst, isLast));
+      } finally {
+         SimpleMindParser.releaseSAXParser(parser);
+      }
+      return builder;
+   }
+
+   private SimpleMindDiagram merge(List<TopicsRangeBuilder> ranges) throws IOException {
+      SimpleMindDiagram diagram;
+      if (factory != null) {
+         diagram = factory.createDiagram();
+      } else {
+         diagram = new SimpleMindDiagram();
+      }
+      if (noteParser != null) {
+         noteParser.resetState(diagram);
+      }
+      List<Topic> topics = new ArrayList<>();
+      int countTopics = 0;
+      for (TopicsRangeBuilder range : ranges) {
+         countTopics += range.topics.size();
+      }
+      int[] parentIDs = new int[countTopics];
+      for (TopicsRangeBuilder range : ranges) {
+         if (range.hasTitle()) {
+            diagram.setTitle(range.getTitle());
+         }
+         System.arraycopy(range.parentIDs, 0, parentIDs, topics.size(), range.topics.size());
+         for (int i = 0; i < range.topics.size(); i++) {
+            Topic topic = range.topics.get(i);
+            diagram.addTopic(topic);
+            topics.add(topic);
+            if (noteParser != null && range.hasNote(i)) {
+               noteParser.parseNote(topic, topic.getNote());
+            }
+         }
+      }
+      try {
+         pool.submit(() -> link(diagram, topics, parentIDs)).get();
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new IOException(ex);
+      } catch (ExecutionException ex) {
+         throw new IOException(ex.getCause());
+      }
+      if (noteParser != null) {
+         noteParser.resolve();
+      }
+      return diagram;
+   }
+
+   /**
+    * Link the Topics with their parents in parallel. The children are grouped by parent in document order, then each
+    * parent is linked with its children by only one task.
+    */
+   private void link(SimpleMindDiagram diagram, List<Topic> topics, int[] parentIDs) {
+      IntObjectMap<List<Topic>> children = new IntObjectMap<>();
+      for (int i = 0; i < topics.size(); i++) {
+         int parentid = parentIDs[i];
+         if (parentid != -1 && diagram.hasTopic(parentid)) {
+            List<Topic> list = children.get(parentid);
+            if (list == null) {
+               list = new ArrayList<>();
+               children.put(parentid, list);
+            }
+            list.add(diagram.getTopic(topics.get(i).getID()));
+         }
+      }
+      children.asMap().entrySet().parallelStream().forEach(entry -> {
+         Topic parent = diagram.getTopic(entry.getKey());
+         for (Topic child : entry.getValue()) {
+            child.setParent(parent);
+            parent.addChild(child);
+         }
+      });
+   }
+}
@@ -0,0 +1,139 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+/**
+ * Restricts what is created by the {@link SimpleMindParser}: the Topic fields which are set, and a predicate which
+ * drops Topics during the parsing. The fields which are not included keep the default value of the Topic, and the
+ * notes which are not included are neither decoded nor passed to the {@link NoteParser}.
+ *
+ * <p>
+ * A Topic which is dropped is not created, and its colors and note are skipped. The Topics whose parent has been
+ * dropped are kept if they are accepted by the predicate, but have no parent in the diagram.</p>
+ *
+ * @since 0.4
+ */
+public class ParseFilter {
+   /**
+    * The Topic text.
+    */
+   public static final int TEXT = 1;
+   /**
+    * The Topic position.
+    */
+   public static final int POSITION = 2;
+   /**
+    * The Topic fill, text and stroke colors.
+    */
+   public static final int COLORS = 4;
+   /**
+    * The Topic note.
+    */
+   public static final int NOTE = 8;
+   /**
+    * All the Topic fields.
+    */
+   public static final int ALL = TEXT | POSITION | COLORS | NOTE;
+   private int fields = ALL;
+   private TopicPredicate predicate = null;
+
+   /**
+    * Create a filter which includes all the fields and all the Topics.
+    */
+   public ParseFilter() {
+   }
+
+   /**
+    * Create a filter which includes some fields of all the Topics.
+    *
+    * @param fields the fields, for example <code>ParseFilter.TEXT | ParseFilter.POSITION</code>
+    */
+   public ParseFilter(int fields) {
+      this.fields = fields;
+   }
+
+   /**
+    * Create a filter which includes some fields of the Topics which are accepted by a predicate.
+    *
+    * @param fields the fields
+    * @param predicate the predicate (can be null)
+    */
+   public ParseFilter(int fields, TopicPredicate predicate) {
+      this.fields = fields;
+      this.predicate = predicate;
+   }
+
+   /**
+    * Set the Topic fields which are set by the parser.
+    *
+    * @param fields the fields
+    */
+   public void setFields(int fields) {
+      this.fields = fields;
+   }
+
+   /**
+    * Return the Topic fields which are set by the parser.
+    *
+    * @return the fields
+    */
+   public int getFields() {
+      return fields;
+   }
+
+   /**
+    * Return true if a Topic field is set by the parser.
+    *
+    * @param field the field
+    * @return true if the field is set by the parser
+    */
+   public boolean isIncluded(int field) {
+      return (fields & field) == field;
+   }
+
+   /**
+    * Set the predicate which decides if a Topic is kept.
+    *
+    * @param predicate the predicate (can be null)
+    */
+   public void setPredicate(TopicPredicate predicate) {
+      this.predicate = predicate;
+   }
+
+   /**
+    * Return the predicate which decides if a Topic is kept.
+    *
+    * @return the predicate (can be null)
+    */
+   public TopicPredicate getPredicate() {
+      return predicate;
+   }
+}
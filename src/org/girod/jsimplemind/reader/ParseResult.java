@@ -0,0 +1,134 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.nio.file.Path;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+
+/**
+ * The result of the parsing of one file by {@link SimpleMindParser#parseAll(java.util.Collection, java.util.concurrent.Executor)}.
+ * The result has either a diagram, or the exception which has been thrown when parsing the file.
+ *
+ * @since 0.4
+ */
+public class ParseResult {
+   private final Path path;
+   private final SimpleMindDiagram diagram;
+   private final Exception exception;
+   private final long readTime;
+   private final long parseTime;
+
+   /**
+    * Constructor.
+    *
+    * @param path the file path
+    * @param diagram the diagram (null if the parsing failed)
+    * @param exception the exception (null if the parsing succeeded)
+    * @param readTime the time spent to read and eventually inflate the file, in nanoseconds
+    * @param parseTime the time spent to parse the XML content and create the diagram, in nanoseconds
+    */
+   ParseResult(Path path, SimpleMindDiagram diagram, Exception exception, long readTime, long parseTime) {
+      this.path = path;
+      this.diagram = diagram;
+      this.exception = exception;
+      this.readTime = readTime;
+      this.parseTime = parseTime;
+   }
+
+   /**
+    * Return the file path.
+    *
+    * @return the path
+    */
+   public Path getPath() {
+      return path;
+   }
+
+   /**
+    * Return true if the file has been successfully parsed.
+    *
+    * @return true if the file has been successfully parsed
+    */
+   public boolean isSuccess() {
+      return exception == null;
+   }
+
+   /**
+    * Return the diagram. Return null if the parsing failed.
+    *
+    * @return the diagram
+    */
+   public SimpleMindDiagram getDiagram() {
+      return diagram;
+   }
+
+   /**
+    * Return the exception which has been thrown when parsing the file. Return null if the parsing succeeded.
+    *
+    * @return the exception
+    */
+   public Exception getException() {
+      return exception;
+   }
+
+   /**
+    * Return the time spent to read and eventually inflate the file, in nanoseconds.
+    *
+    * @return the read time
+    */
+   public long getReadTime() {
+      return readTime;
+   }
+
+   /**
+    * Return the time spent to parse the XML content and create the diagram, in nanoseconds.
+    *
+    * @return the parse time
+    */
+   public long getParseTime() {
+      return parseTime;
+   }
+
+   /**
+    * Return the total time spent for the file, in nanoseconds.
+    *
+    * @return the total time
+    */
+   public long getTotalTime() {
+      return readTime + parseTime;
+   }
+
+   @Override
+   public String toString() {
+      return path + (isSuccess() ? " parsed" : " failed: " + exception) + " (read " + (readTime / 1000) + " us, parse "
+         + (parseTime / 1000) + " us)";
+   }
+}
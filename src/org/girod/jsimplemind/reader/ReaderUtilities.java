@@ -30,20 +30,21 @@ the project website at the project page on https://github.com/hervegirod/jSimple
  */
 package org.girod.jsimplemind.reader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A Utility class for parsing SimpleMind diagrams.
  *
- * @since 0.1
+ * @version 0.4
  */
 public class ReaderUtilities {
    private ReaderUtilities() {
@@ -54,49 +55,82 @@ public class ReaderUtilities {
     * smmx files since recent SimpleMind versions are in fact zip files containing one xml file for the content of the
     * diagram.
     *
+    * <p>
+    * The content is read in memory and the file is closed before the method returns, so no file handle is kept open
+    * if the stream is not closed.</p>
+    *
     * @param file the file
     * @return the stream
     * @throws IOException
     */
    public static InputStream getSimpleMindStream(File file) throws IOException {
-      if (isArchive(file)) {
-         ZipFile zipfile = new ZipFile(file);
-         Enumeration<? extends ZipEntry> en = zipfile.entries();
-         if (en.hasMoreElements()) {
-            ZipEntry entry = en.nextElement();
-            return zipfile.getInputStream(entry);
-         } else {
-            throw new IOException("Zip File is empty");
-         }
-      } else {
-         InputStream stream = new FileInputStream(file);
-         return stream;
-      }
+      return new ByteArrayInputStream(getSimpleMindContent(file));
    }
 
    /**
-    * Return a stream for a SimpleMind file. This method will correctly handle smmx zip files or xml files.
+    * Return a stream for a SimpleMind file. This method will correctly handle smmx zip files or xml files. Only the
+    * URLs of local files can be smmx zip files.
     *
     * @param url the url
     * @return the stream
     * @throws IOException
     */
    public static InputStream getSimpleMindStream(URL url) throws IOException {
-      if (isArchive(url)) {
-         File file = new File(url.getFile());
-         ZipFile zipfile = new ZipFile(file);
-         Enumeration<? extends ZipEntry> en = zipfile.entries();
-         if (en.hasMoreElements()) {
-            ZipEntry entry = en.nextElement();
-            return zipfile.getInputStream(entry);
-         } else {
-            throw new IOException("Zip File is empty");
-         }
+      File file = toFile(url);
+      if (file != null) {
+         return getSimpleMindStream(file);
       } else {
          return url.openStream();
       }
    }
 
+   /**
+    * Return the XML content of a SimpleMind file. This method will correctly handle smmx zip files or xml files. The
+    * file is read and closed before the method returns. For smmx zip files, the
+    * <code>document/mindmap.xml</code> entry is inflated directly in the returned array.
+    *
+    * @param file the file
+    * @return the content
+    * @throws IOException
+    */
+   public static byte[] getSimpleMindContent(File file) throws IOException {
+      return SmmxReader.readContent(file);
+   }
+
+   /**
+    * Return the local file of an URL, or null if the URL is not a local file.
+    *
+    * @param url the URL
+    * @return the file
+    */
+   static File toFile(URL url) {
+      if (!"file".equals(url.getProtocol())) {
+         return null;
+      }
+      try {
+         return new File(url.toURI());
+      } catch (URISyntaxException | IllegalArgumentException ex) {
+         return new File(url.getFile());
+      }
+   }
+
+   /**
+    * Read all the bytes of a stream. The stream is not closed by this method.
+    *
+    * @param stream the stream
+    * @return the bytes
+    * @throws IOException
+    */
+   static byte[] readFully(InputStream stream) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+      byte[] buf = new byte[8192];
+      int length;
+      while ((length = stream.read(buf)) != -1) {
+         out.write(buf, 0, length);
+      }
+      return out.toByteArray();
+   }
+
    /**
     * Return true if an url is an archive.
     *
@@ -104,8 +138,8 @@ public class ReaderUtilities {
     * @return true if the url is an archive
     */
    public static boolean isArchive(URL url) {
-      File file = new File(url.getFile());
-      return isArchive(file);
+      File file = toFile(url);
+      return file != null && isArchive(file);
    }
 
    /**
@@ -115,12 +149,12 @@ public class ReaderUtilities {
     * @return true if the File is an archive
     */
    public static boolean isArchive(File f) {
-      int fileSignature = 0;
-      try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
-         fileSignature = raf.readInt();
-      } catch (IOException e) {
+      ByteBuffer signature = ByteBuffer.allocate(4);
+      try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+         SmmxReader.read(channel, signature);
+      } catch (IOException | RuntimeException e) {
          return false;
       }
-      return fileSignature == 0x504B0304 || fileSignature == 0x504B0506 || fileSignature == 0x504B0708;
+      return SmmxReader.isArchive(signature);
    }
 }
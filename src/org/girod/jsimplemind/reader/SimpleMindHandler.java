@@ -0,0 +1,224 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.xml.NumberParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * Creates a diagram directly from the SAX events, without creating a tree of XML nodes.
+ *
+ * @since 0.4
+ */
+class SimpleMindHandler extends DefaultHandler2 {
+   private static final short BEFORE_TOPICS = 0;
+   private static final short IN_TOPICS = 1;
+   private static final short AFTER_TOPICS = 2;
+   private final DiagramBuilder builder;
+   private final boolean acceptBeforeTopics;
+   private final boolean acceptAfterTopics;
+   private short section = BEFORE_TOPICS;
+   private StringBuilder noteBuf = null;
+   // the components of the last parsed color
+   private int red = 0;
+   private int green = 0;
+   private int blue = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param builder the diagram builder
+    */
+   SimpleMindHandler(DiagramBuilder builder) {
+      this(builder, true, true);
+   }
+
+   /**
+    * Constructor for a handler which can ignore the elements before or after the <code>topics</code> element.
+    *
+    * @param builder the diagram builder
+    * @param acceptBeforeTopics true if the elements before the <code>topics</code> element must be handled
+    * @param acceptAfterTopics true if the elements after the <code>topics</code> element must be handled
+    */
+   SimpleMindHandler(DiagramBuilder builder, boolean acceptBeforeTopics, boolean acceptAfterTopics) {
+      this.builder = builder;
+      this.acceptBeforeTopics = acceptBeforeTopics;
+      this.acceptAfterTopics = acceptAfterTopics;
+   }
+
+   private boolean isAccepted() {
+      switch (section) {
+         case BEFORE_TOPICS:
+            return acceptBeforeTopics;
+         case AFTER_TOPICS:
+            return acceptAfterTopics;
+         default:
+            return true;
+      }
+   }
+
+   /**
+    * Return the diagram.
+    *
+    * @return the diagram
+    */
+   SimpleMindDiagram getDiagram() {
+      return builder.endDiagram();
+   }
+
+   @Override
+   public void startElement(String uri, String localname, String qname, Attributes attr) {
+      if (noteBuf != null) {
+         // only the content before the first child element is the note content
+         endNote();
+      }
+      if (section == BEFORE_TOPICS && qname.equals("topics")) {
+         section = IN_TOPICS;
+      }
+      if (!isAccepted()) {
+         return;
+      }
+      switch (qname) {
+         case "topic":
+            startTopic(attr);
+            break;
+         case "fillcolor":
+            parseColor(attr);
+            builder.fillColor(red, green, blue);
+            break;
+         case "textcolor":
+            parseColor(attr);
+            builder.textColor(red, green, blue);
+            break;
+         case "strokecolor":
+            parseColor(attr);
+            builder.strokeColor(red, green, blue);
+            break;
+         case "note":
+            if (builder.wantsNote()) {
+               noteBuf = new StringBuilder();
+            }
+            break;
+         case "title":
+            builder.title(attr.getValue("text"));
+            break;
+      }
+   }
+
+   @Override
+   public void endElement(String uri, String localname, String qname) {
+      if (noteBuf != null) {
+         endNote();
+      }
+      if (section == IN_TOPICS && qname.equals("topics")) {
+         section = AFTER_TOPICS;
+      }
+   }
+
+   @Override
+   public void characters(char[] chararacters, int start, int length) {
+      if (noteBuf != null) {
+         noteBuf.append(chararacters, start, length);
+      }
+   }
+
+   /**
+    * Start a Topic, reading all its attributes in one pass.
+    *
+    * @param attr the attributes
+    */
+   private void startTopic(Attributes attr) {
+      int id = 0;
+      int parentid = -1;
+      int x = 0;
+      int y = 0;
+      boolean hasX = false;
+      boolean hasY = false;
+      String text = null;
+      int length = attr.getLength();
+      for (int i = 0; i < length; i++) {
+         switch (attr.getQName(i)) {
+            case "id":
+               id = NumberParser.parseInt(attr.getValue(i), 0);
+               break;
+            case "parent":
+               parentid = NumberParser.parseInt(attr.getValue(i), -1);
+               break;
+            case "x":
+               x = NumberParser.parseInt(attr.getValue(i), 0);
+               hasX = true;
+               break;
+            case "y":
+               y = NumberParser.parseInt(attr.getValue(i), 0);
+               hasY = true;
+               break;
+            case "text":
+               text = attr.getValue(i);
+               break;
+         }
+      }
+      builder.startTopic(id, parentid, text, hasX && hasY, x, y);
+   }
+
+   /**
+    * Read the components of a color in one pass.
+    *
+    * @param attr the attributes
+    */
+   private void parseColor(Attributes attr) {
+      red = 0;
+      green = 0;
+      blue = 0;
+      int length = attr.getLength();
+      for (int i = 0; i < length; i++) {
+         switch (attr.getQName(i)) {
+            case "r":
+               red = NumberParser.parseInt(attr.getValue(i), 0);
+               break;
+            case "g":
+               green = NumberParser.parseInt(attr.getValue(i), 0);
+               break;
+            case "b":
+               blue = NumberParser.parseInt(attr.getValue(i), 0);
+               break;
+         }
+      }
+   }
+
+   private void endNote() {
+      if (noteBuf.length() != 0) {
+         builder.note(noteBuf.toString());
+      }
+      noteBuf = null;
+   }
+}
@@ -30,19 +30,36 @@ the project website at the project page on https://github.com/hervegirod/jSimple
  */
 package org.girod.jsimplemind.reader;
 
-import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import org.girod.jsimplemind.model.ChangeSet;
+import org.girod.jsimplemind.model.CompactDiagram;
 import org.girod.jsimplemind.model.SimpleMindDiagram;
 import org.girod.jsimplemind.model.Topic;
 import org.girod.jsimplemind.xml.XMLNode;
@@ -52,16 +69,129 @@ import org.xml.sax.SAXException;
 /**
  * The parser class.
  *
- * @version 0.3
+ * The parser can use several engines to parse the SimpleMind XML content, which all create the same diagram:
+ * <ul>
+ * <li>{@link #ENGINE_SAX_TREE}: the default engine, which creates a tree of XML nodes before walking this tree to
+ * create the diagram</li>
+ * <li>{@link #ENGINE_SAX_STREAMING}: creates the diagram directly from the SAX events, without keeping any XML node
+ * in memory</li>
+ * <li>{@link #ENGINE_STAX}: creates the diagram by pulling the events of a StAX parser</li>
+ * <li>{@link #ENGINE_BYTE_TOKENIZER}: creates the diagram directly from the UTF-8 bytes of the content, without
+ * any XML parser. The content is parsed again by the {@link #ENGINE_SAX_STREAMING} engine if it uses XML features
+ * which are not generated by SimpleMind</li>
+ * </ul>
+ *
+ * <p>
+ * A parser can be shared by several threads once it has been configured: the state of a parsing is only kept
+ * for the duration of the call, and the underlying SAX parsers and StAX factories are cached per thread. Note that a
+ * {@link NoteParser} has a state, so if Topic notes must be parsed by a shared parser, a new NoteParser should be
+ * created for each parsing with {@link #setNoteParserSupplier(java.util.function.Supplier)}.</p>
+ *
+ * @version 0.4
  */
 public class SimpleMindParser {
-   private SimpleMindDiagram diagram = null;
+   /**
+    * The engine which creates a tree of XML nodes before creating the diagram. This is the default engine.
+    */
+   public static final int ENGINE_SAX_TREE = 0;
+   /**
+    * The engine which creates the diagram directly from the SAX events.
+    */
+   public static final int ENGINE_SAX_STREAMING = 1;
+   /**
+    * The engine which creates the diagram by pulling the events of a StAX parser.
+    */
+   public static final int ENGINE_STAX = 2;
+   /**
+    * The engine which creates the diagram directly from the UTF-8 bytes of the content. Note that the whole content
+    * is read in memory before being parsed.
+    */
+   public static final int ENGINE_BYTE_TOKENIZER = 3;
+   /**
+    * The notes are decoded and set on the Topics during the parsing. This is the default.
+    */
+   public static final int NOTES_EAGER = 0;
+   /**
+    * The notes are loaded lazily: only their raw content is kept, outside of the Java heap, and it is decoded each
+    * time {@link Topic#getNote()} is called. The {@link NoteParser} is still called during the parsing.
+    */
+   public static final int NOTES_LAZY = 1;
+   /**
+    * The notes are loaded lazily as for {@link #NOTES_LAZY}, and the {@link NoteParser} is not called during the
+    * parsing. It can be called later with {@link #parseNotes(org.girod.jsimplemind.model.SimpleMindDiagram)}.
+    */
+   public static final int NOTES_LAZY_DEFERRED = 2;
+   private static final SAXParserFactory SAX_FACTORY = SAXParserFactory.newInstance();
+   private static final ThreadLocal<SAXParser> SAX_PARSERS = new ThreadLocal<>();
+   private static final ThreadLocal<XMLInputFactory> STAX_FACTORIES = ThreadLocal.withInitial(SimpleMindStaxReader::createFactory);
    private NoteParser noteParser = null;
+   private Supplier<? extends NoteParser> noteParserSupplier = null;
    private DiagramFactory factory = null;
+   private int engine = ENGINE_SAX_TREE;
+   private int noteLoading = NOTES_EAGER;
+   private ParseFilter filter = null;
 
    public SimpleMindParser() {
    }
 
+   /**
+    * Set the engine used to parse the SimpleMind XML content. The default is {@link #ENGINE_SAX_TREE}.
+    *
+    * @param engine the engine
+    */
+   public void setEngine(int engine) {
+      this.engine = engine;
+   }
+
+   /**
+    * Return the engine used to parse the SimpleMind XML content.
+    *
+    * @return the engine
+    */
+   public int getEngine() {
+      return engine;
+   }
+
+   /**
+    * Set how the Topic notes are loaded. The default is {@link #NOTES_EAGER}. The notes can only be loaded lazily by
+    * the byte tokenizer, so if the notes are loaded lazily the content is always parsed by the
+    * {@link #ENGINE_BYTE_TOKENIZER} engine, except by {@link #parseParallel(java.io.InputStream)}.
+    *
+    * @param noteLoading the note loading mode
+    */
+   public void setNoteLoading(int noteLoading) {
+      this.noteLoading = noteLoading;
+   }
+
+   /**
+    * Return how the Topic notes are loaded.
+    *
+    * @return the note loading mode
+    */
+   public int getNoteLoading() {
+      return noteLoading;
+   }
+
+   /**
+    * Set the filter which restricts the Topics and the Topic fields created by the parser. The filter is not used by
+    * {@link #parseCompact(java.io.InputStream)} and by the stream methods, and a content is never parsed in parallel if
+    * there is a filter.
+    *
+    * @param filter the filter (can be null)
+    */
+   public void setParseFilter(ParseFilter filter) {
+      this.filter = filter;
+   }
+
+   /**
+    * Return the filter which restricts the Topics and the Topic fields created by the parser.
+    *
+    * @return the filter (can be null)
+    */
+   public ParseFilter getParseFilter() {
+      return filter;
+   }
+
    /**
     * Set the associated Diagram factory.
     *
@@ -99,14 +229,100 @@ public class SimpleMindParser {
    }
 
    /**
-    * ¨Parse a SimpleMind file.
+    * Set the supplier of the NoteParser used to parse the content of Topic notes. A new NoteParser will be requested
+    * for each parsing, which allows to share the parser between threads. If a supplier is set, the NoteParser set by
+    * {@link #setNoteParser(org.girod.jsimplemind.reader.NoteParser)} is not used.
+    *
+    * @param noteParserSupplier the NoteParser supplier
+    */
+   public void setNoteParserSupplier(Supplier<? extends NoteParser> noteParserSupplier) {
+      this.noteParserSupplier = noteParserSupplier;
+   }
+
+   /**
+    * Return the supplier of the NoteParser used to parse the content of Topic notes.
+    *
+    * @return the NoteParser supplier
+    */
+   public Supplier<? extends NoteParser> getNoteParserSupplier() {
+      return noteParserSupplier;
+   }
+
+   /**
+    * Create the state of one parsing.
+    *
+    * @return the diagram builder
+    */
+   private DiagramBuilder createBuilder() {
+      return createBuilder(noteLoading == NOTES_LAZY_DEFERRED ? null : getNoteParserForParsing());
+   }
+
+   private DiagramBuilder createBuilder(NoteParser parser) {
+      DiagramBuilder builder = new DiagramBuilder(factory, parser);
+      builder.setLazyNotes(noteLoading != NOTES_EAGER);
+      builder.setFilter(filter);
+      return builder;
+   }
+
+   /**
+    * Parse the notes of all the Topics of a diagram with the NoteParser. This allows to parse the notes after a
+    * parsing with {@link #NOTES_LAZY_DEFERRED}. Nothing is done if there is no NoteParser.
+    *
+    * @param diagram the diagram
+    */
+   public void parseNotes(SimpleMindDiagram diagram) {
+      NoteParser parser = getNoteParserForParsing();
+      if (parser == null) {
+         return;
+      }
+      parser.resetState(diagram);
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         parseNote(parser, it.next());
+      }
+      parser.resolve();
+   }
+
+   private NoteParser getNoteParserForParsing() {
+      return noteParserSupplier != null ? noteParserSupplier.get() : noteParser;
+   }
+
+   /**
+    * Return the SAX parser of the current thread. The parser is removed from the cache until it is released by
+    * {@link #releaseSAXParser(javax.xml.parsers.SAXParser)}, so that a reentrant parsing will use another parser.
+    *
+    * @return the SAX parser
+    */
+   static SAXParser getSAXParser() throws ParserConfigurationException, SAXException {
+      SAXParser parser = SAX_PARSERS.get();
+      if (parser == null) {
+         synchronized (SAX_FACTORY) {
+            parser = SAX_FACTORY.newSAXParser();
+         }
+      } else {
+         SAX_PARSERS.remove();
+      }
+      return parser;
+   }
+
+   /**
+    * Release a SAX parser returned by {@link #getSAXParser()}.
+    *
+    * @param parser the SAX parser
+    */
+   static void releaseSAXParser(SAXParser parser) {
+      parser.reset();
+      SAX_PARSERS.set(parser);
+   }
+
+   /**
+    * ¨Parse a SimpleMind file. The file can be a smmx zip file or a xml file.
     *
     * @param file the file
     * @return the diagram
     */
    public SimpleMindDiagram parse(File file) throws IOException, SAXException {
-      URL url = file.toURI().toURL();
-      return parse(url);
+      return parse(ReaderUtilities.getSimpleMindContent(file), this::createBuilder);
    }
 
    /**
@@ -117,16 +333,275 @@ public class SimpleMindParser {
     * @return the diagram
     */
    public SimpleMindDiagram parse(InputStream stream) throws IOException, SAXException {
-      SAXParserFactory saxfactory = SAXParserFactory.newInstance();
+      return parse(stream, this::createBuilder);
+   }
+
+   /**
+    * Parse the content of a SimpleMind xml document, which has already been read in memory.
+    *
+    * @param content the content
+    * @return the diagram
+    */
+   SimpleMindDiagram parseContent(byte[] content) throws IOException, SAXException {
+      return parse(content, this::createBuilder);
+   }
+
+   /**
+    * Parse a new version of a diagram and patch an existing diagram with it. The Topics of the existing diagram are
+    * kept by their id, and only their changed fields and links are updated. The Topics which are not in the new version
+    * are removed, and the new Topics are added. The notes of the added and modified Topics are parsed by the
+    * NoteParser, after removing the properties of the modified Topics.
+    *
+    * @param existing the existing diagram
+    * @param stream the stream of the new version
+    * @return the ids of the added, removed and modified Topics
+    */
+   public ChangeSet reparse(SimpleMindDiagram existing, InputStream stream) throws IOException, SAXException {
+      return patch(existing, parse(stream, () -> createBuilder(null)));
+   }
+
+   /**
+    * Parse a new version of a diagram from a SimpleMind file and patch an existing diagram with it. The file can be a
+    * smmx zip file or a xml file.
+    *
+    * @param existing the existing diagram
+    * @param file the file of the new version
+    * @return the ids of the added, removed and modified Topics
+    * @see #reparse(org.girod.jsimplemind.model.SimpleMindDiagram, java.io.InputStream)
+    */
+   public ChangeSet reparse(SimpleMindDiagram existing, File file) throws IOException, SAXException {
+      return patch(existing, parse(ReaderUtilities.getSimpleMindContent(file), () -> createBuilder(null)));
+   }
+
+   private ChangeSet patch(SimpleMindDiagram existing, SimpleMindDiagram parsed) {
+      if (parsed == null) {
+         return null;
+      }
+      DiagramPatcher patcher = new DiagramPatcher(existing);
+      ChangeSet changes = patcher.patch(parsed);
+      NoteParser parser = noteLoading == NOTES_LAZY_DEFERRED ? null : getNoteParserForParsing();
+      if (parser != null && (changes.getAdded().length != 0 || changes.getModified().length != 0)) {
+         parser.resetState(existing);
+         for (int id : changes.getModified()) {
+            Topic topic = existing.getTopic(id);
+            topic.getProperties().clear();
+            parseNote(parser, topic);
+         }
+         for (int id : changes.getAdded()) {
+            parseNote(parser, existing.getTopic(id));
+         }
+         parser.resolve();
+      }
+      return changes;
+   }
+
+   private static void parseNote(NoteParser parser, Topic topic) {
+      String note = topic.getNote();
+      if (note != null && !note.isEmpty()) {
+         parser.parseNote(topic, note);
+      }
+   }
+
+   /**
+    * Parse a SimpleMind stream as a {@link CompactDiagram}, without creating any Topic. Note that the
+    * {@link DiagramFactory} and the {@link NoteParser} are not used for a compact diagram.
+    *
+    * @param stream the stream
+    * @return the compact diagram
+    */
+   public CompactDiagram parseCompact(InputStream stream) throws IOException, SAXException {
+      CompactDiagramBuilder[] builder = new CompactDiagramBuilder[1];
+      parse(stream, () -> builder[0] = new CompactDiagramBuilder());
+      return builder[0] != null ? builder[0].getCompactDiagram() : null;
+   }
+
+   /**
+    * Parse a SimpleMind stream and pass its Topics to a visitor, without creating any diagram. The memory used by the
+    * parsing does not depend on the size of the content. The content is parsed by the {@link #ENGINE_STAX} engine if it
+    * is the current engine, else by the {@link #ENGINE_SAX_STREAMING} engine, because the other engines keep the whole
+    * content in memory. The NoteParser is not used.
+    *
+    * @param stream the stream
+    * @param visitor the visitor
+    */
+   public void stream(InputStream stream, TopicVisitor visitor) throws IOException, SAXException {
+      TopicVisitorBuilder builder = new TopicVisitorBuilder(visitor);
+      if (engine == ENGINE_STAX) {
+         try {
+            SimpleMindStaxReader reader = new SimpleMindStaxReader(builder);
+            reader.parse(STAX_FACTORIES.get(), stream);
+         } catch (XMLStreamException ex) {
+            throw new SAXException(ex);
+         }
+      } else {
+         parseSAX(stream, true, () -> builder);
+      }
+   }
+
+   /**
+    * Parse a SimpleMind file and pass its Topics to a visitor, without creating any diagram. The file can be a smmx
+    * zip file or a xml file. The zip entry of a smmx file is inflated while it is parsed.
+    *
+    * @param file the file
+    * @param visitor the visitor
+    * @see #stream(java.io.InputStream, org.girod.jsimplemind.reader.TopicVisitor)
+    */
+   public void stream(File file, TopicVisitor visitor) throws IOException, SAXException {
+      if (ReaderUtilities.isArchive(file)) {
+         try (ZipFile zip = new ZipFile(file); InputStream stream = zip.getInputStream(getSimpleMindEntry(zip))) {
+            stream(stream, visitor);
+         }
+      } else {
+         try (InputStream stream = new BufferedInputStream(new FileInputStream(file), 65536)) {
+            stream(stream, visitor);
+         }
+      }
+   }
+
+   /**
+    * Return the entry of the diagram in a smmx zip file: the <code>document/mindmap.xml</code> entry, or the first
+    * entry if there is no such entry.
+    *
+    * @param zip the zip file
+    * @return the entry
+    * @throws IOException if the zip file is empty
+    */
+   private static ZipEntry getSimpleMindEntry(ZipFile zip) throws IOException {
+      ZipEntry entry = zip.getEntry(SmmxReader.MINDMAP_ENTRY);
+      if (entry == null) {
+         Enumeration<? extends ZipEntry> en = zip.entries();
+         if (!en.hasMoreElements()) {
+            throw new IOException("Zip File is empty");
+         }
+         entry = en.nextElement();
+      }
+      return entry;
+   }
+
+   /**
+    * Read the metadata of a SimpleMind stream: the title, the guid, and the id of the main central theme, and
+    * optionally count the Topics. No diagram is created, and the reading stops as soon as the metadata is known,
+    * which is at the start of the Topics if they are not counted. The stream is not closed.
+    *
+    * @param stream the stream
+    * @param countTopics true to count the Topics
+    * @return the metadata
+    */
+   public DiagramMetadata readMetadata(InputStream stream, boolean countTopics) throws IOException, SAXException {
+      try {
+         MetadataReader reader = new MetadataReader(countTopics);
+         return reader.read(STAX_FACTORIES.get(), stream);
+      } catch (XMLStreamException ex) {
+         throw new SAXException(ex);
+      }
+   }
+
+   /**
+    * Read the metadata of a SimpleMind file. The file can be a smmx zip file or a xml file. The zip entry of a smmx
+    * file is only inflated until the metadata is known.
+    *
+    * @param file the file
+    * @param countTopics true to count the Topics
+    * @return the metadata
+    * @see #readMetadata(java.io.InputStream, boolean)
+    */
+   public DiagramMetadata readMetadata(File file, boolean countTopics) throws IOException, SAXException {
+      if (ReaderUtilities.isArchive(file)) {
+         try (ZipFile zip = new ZipFile(file); InputStream stream = zip.getInputStream(getSimpleMindEntry(zip))) {
+            return readMetadata(stream, countTopics);
+         }
+      } else {
+         try (InputStream stream = new BufferedInputStream(new FileInputStream(file), 8192)) {
+            return readMetadata(stream, countTopics);
+         }
+      }
+   }
+
+   /**
+    * Parse a SimpleMind stream with the current engine.
+    *
+    * @param stream the stream
+    * @param builders creates the builder of the parsing. A second builder is created if the content must be parsed
+    * again by another engine
+    * @return the diagram
+    */
+   private SimpleMindDiagram parse(InputStream stream, Supplier<? extends DiagramBuilder> builders) throws IOException, SAXException {
+      // the notes can only be loaded lazily by the byte tokenizer
+      if (engine == ENGINE_BYTE_TOKENIZER || noteLoading != NOTES_EAGER) {
+         return parseBytes(ReaderUtilities.readFully(stream), builders);
+      }
+      if (engine == ENGINE_STAX) {
+         try {
+            SimpleMindStaxReader reader = new SimpleMindStaxReader(builders.get());
+            return reader.parse(STAX_FACTORIES.get(), stream);
+         } catch (XMLStreamException ex) {
+            throw new SAXException(ex);
+         }
+      }
+      return parseSAX(stream, engine == ENGINE_SAX_STREAMING, builders);
+   }
+
+   /**
+    * Parse a SimpleMind content which is already in memory with the current engine.
+    *
+    * @param content the content
+    * @param builders creates the builder of the parsing
+    * @return the diagram
+    */
+   private SimpleMindDiagram parse(byte[] content, Supplier<? extends DiagramBuilder> builders) throws IOException, SAXException {
+      if (engine == ENGINE_BYTE_TOKENIZER || noteLoading != NOTES_EAGER) {
+         return parseBytes(content, builders);
+      }
+      return parse(new ByteArrayInputStream(content), builders);
+   }
+
+   /**
+    * Parse a SimpleMind content with the byte tokenizer, or with the SAX streaming engine if the tokenizer does not
+    * support the content.
+    *
+    * @param content the content
+    * @param builders creates the builder of the parsing
+    * @return the diagram
+    */
+   private SimpleMindDiagram parseBytes(byte[] content, Supplier<? extends DiagramBuilder> builders) throws IOException, SAXException {
+      try {
+         SimpleMindTokenizer tokenizer = new SimpleMindTokenizer(builders.get(), content);
+         return tokenizer.parse();
+      } catch (SimpleMindTokenizer.UnsupportedContentException ex) {
+         return parseSAX(new ByteArrayInputStream(content), true, builders);
+      }
+   }
+
+   /**
+    * Parse a SimpleMind stream with a SAX parser.
+    *
+    * @param stream the stream
+    * @param streaming true to create the diagram directly from the SAX events
+    * @param builders creates the builder of the parsing
+    * @return the diagram
+    */
+   private SimpleMindDiagram parseSAX(InputStream stream, boolean streaming, Supplier<? extends DiagramBuilder> builders)
+      throws IOException, SAXException {
+      SAXParser parser;
       try {
-         SAXParser parser = saxfactory.newSAXParser();
-         XMLTreeHandler handler = new XMLTreeHandler();
-         parser.parse(stream, handler);
-         return walk(handler.getRoot());
+         parser = getSAXParser();
       } catch (ParserConfigurationException ex) {
          ex.printStackTrace();
          return null;
       }
+      try {
+         if (streaming) {
+            SimpleMindHandler handler = new SimpleMindHandler(builders.get());
+            parser.parse(stream, handler);
+            return handler.getDiagram();
+         } else {
+            XMLTreeHandler handler = new XMLTreeHandler();
+            parser.parse(stream, handler);
+            return walk(handler.getRoot(), builders.get());
+         }
+      } finally {
+         releaseSAXParser(parser);
+      }
    }
 
    /**
@@ -136,126 +611,172 @@ public class SimpleMindParser {
     * @return the diagram
     */
    public SimpleMindDiagram parse(URL url) throws IOException, SAXException {
-      SAXParserFactory saxfactory = SAXParserFactory.newInstance();
-      try {
-         SAXParser parser = saxfactory.newSAXParser();
-         XMLTreeHandler handler = new XMLTreeHandler();
-         parser.parse(url.openStream(), handler);
-         return walk(handler.getRoot());
-      } catch (ParserConfigurationException ex) {
-         ex.printStackTrace();
-         return null;
+      try (InputStream stream = url.openStream()) {
+         return parse(stream);
       }
    }
 
-   private Topic createTopic(int id) {
-      Topic topic;
-      if (factory != null) {
-         topic = factory.createTopic(id);
-         if (topic == null) {
-            topic = new Topic(id);
-         }
+   /**
+    * Parse a SimpleMind stream, parsing the Topics in parallel in the common ForkJoinPool.
+    *
+    * @param stream the stream
+    * @return the diagram
+    * @see #parseParallel(java.io.InputStream, java.util.concurrent.ForkJoinPool)
+    */
+   public SimpleMindDiagram parseParallel(InputStream stream) throws IOException, SAXException {
+      return parseParallel(stream, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Parse a SimpleMind stream, parsing the Topics in parallel. The content of the <code>topics</code> element is
+    * split in byte ranges on <code>topic</code> boundaries, and the ranges are parsed in parallel before being merged
+    * in one diagram. The Topics are then linked with their parents in parallel.
+    *
+    * <p>
+    * The content is parsed with {@link #parse(java.io.InputStream)} if it is too small to be split, or if its encoding
+    * is not compatible with ASCII. Note that if a {@link DiagramFactory} is set, it will be called concurrently to
+    * create the Topics. The {@link NoteParser} is always called from one thread, in document order.</p>
+    *
+    * @param stream the stream
+    * @param pool the pool used to parse the Topics
+    * @return the diagram
+    */
+   public SimpleMindDiagram parseParallel(InputStream stream, ForkJoinPool pool) throws IOException, SAXException {
+      byte[] content = ReaderUtilities.readFully(stream);
+      ParallelTopicsParser parallelParser = new ParallelTopicsParser(factory, getNoteParserForParsing(), pool, content);
+      // the depth of the Topics, which can be used by the filter, is only known by a sequential parsing
+      int[] ranges = filter == null ? parallelParser.split() : null;
+      if (ranges == null) {
+         return parse(new ByteArrayInputStream(content));
       } else {
-         topic = new Topic(id);
+         return parallelParser.parse(ranges);
       }
-      return topic;
    }
 
-   private void createDiagram() {
-      if (factory != null) {
-         diagram = factory.createDiagram();
+   /**
+    * Parse a collection of SimpleMind files concurrently. The files can be smmx zip files or xml files. The files are
+    * parsed by the Executor, so the reading of files can overlap with the parsing of other files. The returned
+    * iterator returns the results as they complete, and will block until the next result is available.
+    *
+    * @param paths the paths of the files
+    * @param executor the Executor
+    * @return the iterator on the results
+    */
+   public Iterator<ParseResult> parseAll(Collection<Path> paths, Executor executor) {
+      CompletionService<ParseResult> service = new ExecutorCompletionService<>(executor);
+      Iterator<Path> it = paths.iterator();
+      while (it.hasNext()) {
+         Path path = it.next();
+         service.submit(() -> parseFile(path));
+      }
+      final int count = paths.size();
+      return new Iterator<ParseResult>() {
+         private int remaining = count;
+
+         @Override
+         public boolean hasNext() {
+            return remaining > 0;
+         }
+
+         @Override
+         public ParseResult next() {
+            if (remaining == 0) {
+               throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+               return service.take().get();
+            } catch (InterruptedException ex) {
+               Thread.currentThread().interrupt();
+               throw new IllegalStateException("Interrupted while waiting for the parsing results", ex);
+            } catch (ExecutionException ex) {
+               throw new IllegalStateException(ex.getCause());
+            }
+         }
+      };
+   }
+
+   /**
+    * Parse a collection of SimpleMind files concurrently. The files are parsed using virtual threads if they are
+    * supported by the Java runtime, else by the common ForkJoinPool.
+    *
+    * @param paths the paths of the files
+    * @return the iterator on the results
+    * @see #parseAll(java.util.Collection, java.util.concurrent.Executor)
+    */
+   public Iterator<ParseResult> parseAll(Collection<Path> paths) {
+      ExecutorService executor = createVirtualThreadExecutor();
+      if (executor == null) {
+         return parseAll(paths, ForkJoinPool.commonPool());
       } else {
-         diagram = new SimpleMindDiagram();
+         try {
+            return parseAll(paths, executor);
+         } finally {
+            // the tasks which have already been submitted will still be executed
+            executor.shutdown();
+         }
       }
    }
 
-   private SimpleMindDiagram walk(XMLRoot root) {
-      List<Topic> topics = new ArrayList<>();
-      createDiagram();
-      if (noteParser != null) {
-         noteParser.resetState(diagram);
+   /**
+    * Create an Executor which uses one virtual thread for each task. The Executor is looked up by reflection because
+    * the library is compiled for Java 8.
+    *
+    * @return the Executor, or null if virtual threads are not supported by the Java runtime
+    */
+   private static ExecutorService createVirtualThreadExecutor() {
+      try {
+         Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) method.invoke(null);
+      } catch (ReflectiveOperationException | RuntimeException ex) {
+         return null;
       }
-      Map<Integer, Integer> parents = new HashMap<>();
+   }
+
+   private ParseResult parseFile(Path path) {
+      long start = System.nanoTime();
+      byte[] content;
+      try {
+         content = ReaderUtilities.getSimpleMindContent(path.toFile());
+      } catch (IOException | RuntimeException ex) {
+         return new ParseResult(path, null, ex, System.nanoTime() - start, 0);
+      }
+      long readEnd = System.nanoTime();
+      try {
+         SimpleMindDiagram diagram = parse(content, this::createBuilder);
+         return new ParseResult(path, diagram, null, readEnd - start, System.nanoTime() - readEnd);
+      } catch (IOException | SAXException | RuntimeException ex) {
+         return new ParseResult(path, null, ex, readEnd - start, System.nanoTime() - readEnd);
+      }
+   }
+
+   private SimpleMindDiagram walk(XMLRoot root, DiagramBuilder builder) {
       XMLTreeWalker walker = new XMLTreeWalker(root);
-      Topic topic = null;
-      boolean hasTextColor = false;
-      boolean hasStrokeColor = false;
-      boolean hasFillColor = false;
       while (walker.hasNext()) {
          XMLNode node = walker.nextNode();
          String name = node.getName();
          if (name.equals("topic")) {
             int id = node.getAttributeValueAsInt("id");
-            topic = createTopic(id);
-            hasTextColor = false;
-            hasStrokeColor = false;
-            hasFillColor = false;
             int parentid = node.getAttributeValueAsInt("parent", -1);
-            if (parentid != -1) {
-               parents.put(id, parentid);
-            }
-            if (node.hasAttribute("text")) {
-               topic.setText(node.getAttributeValue("text").trim());
-            }
-            diagram.addTopic(topic);
-            if (node.hasAttribute("x") && node.hasAttribute("y")) {
-               int x = node.getAttributeValueAsInt("x");
-               int y = node.getAttributeValueAsInt("y");
-               topic.setPosition(x, y);
-            }
-            topics.add(topic);
-         } else if (name.equals("fillcolor") && topic != null && !hasFillColor) {
-            hasFillColor = true;
-            int red = node.getAttributeValueAsInt("r", 0);
-            int green = node.getAttributeValueAsInt("g", 0);
-            int blue = node.getAttributeValueAsInt("b", 0);
-            Color color = new Color(red, green, blue);
-            topic.setFillColor(color);
-         } else if (name.equals("textcolor") && topic != null && !hasTextColor) {
-            hasTextColor = true;
-            int red = node.getAttributeValueAsInt("r", 0);
-            int green = node.getAttributeValueAsInt("g", 0);
-            int blue = node.getAttributeValueAsInt("b", 0);
-            Color color = new Color(red, green, blue);
-            topic.setTextColor(color);
-         } else if (name.equals("strokecolor") && topic != null && !hasStrokeColor) {
-            hasStrokeColor = true;
-            int red = node.getAttributeValueAsInt("r", 0);
-            int green = node.getAttributeValueAsInt("g", 0);
-            int blue = node.getAttributeValueAsInt("b", 0);
-            Color color = new Color(red, green, blue);
-            topic.setStrokeColor(color);
-         } else if (name.equals("note") && topic != null) {
+            boolean hasPosition = node.hasAttribute("x") && node.hasAttribute("y");
+            int x = node.getAttributeValueAsInt("x");
+            int y = node.getAttributeValueAsInt("y");
+            builder.startTopic(id, parentid, node.getAttributeValue("text"), hasPosition, x, y);
+         } else if (name.equals("fillcolor")) {
+            builder.fillColor(node.getAttributeValueAsInt("r", 0), node.getAttributeValueAsInt("g", 0), node.getAttributeValueAsInt("b", 0));
+         } else if (name.equals("textcolor")) {
+            builder.textColor(node.getAttributeValueAsInt("r", 0), node.getAttributeValueAsInt("g", 0), node.getAttributeValueAsInt("b", 0));
+         } else if (name.equals("strokecolor")) {
+            builder.strokeColor(node.getAttributeValueAsInt("r", 0), node.getAttributeValueAsInt("g", 0), node.getAttributeValueAsInt("b", 0));
+         } else if (name.equals("note")) {
             String cdata = node.getCDATA();
             if (cdata != null) {
-               cdata = cdata.trim();
-               topic.setNote(cdata);
-               if (noteParser != null) {
-                  noteParser.parseNote(topic, cdata);
-               }
-            }
-         } else if (name.equals("title") && topic == null) {
-            String title = node.getAttributeValue("text");
-            diagram.setTitle(title);
-         }
-      }
-      Iterator<Topic> it = topics.iterator();
-      while (it.hasNext()) {
-         topic = it.next();
-         int topicid = topic.getID();
-         if (parents.containsKey(topicid)) {
-            int parentid = parents.get(topicid);
-            if (diagram.hasTopic(parentid)) {
-               Topic childTopic = diagram.getTopic(topicid);
-               Topic parenttopic = diagram.getTopic(parentid);
-               childTopic.setParent(parenttopic);
-               parenttopic.addChild(childTopic);
+               builder.note(cdata);
             }
+         } else if (name.equals("title")) {
+            builder.title(node.getAttributeValue("text"));
          }
       }
-      if (noteParser != null) {
-         noteParser.resolve();
-      }      
-      return diagram;
+      return builder.endDiagram();
    }
 }
@@ -0,0 +1,221 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.xml.NumberParser;
+
+/**
+ * Creates a diagram by pulling the StAX events of a SimpleMind document.
+ *
+ * <p>
+ * Note that the <code>style</code> elements can not be skipped, because their colors are the first ones
+ * encountered for a Topic, and are therefore the colors of the Topic.</p>
+ *
+ * @since 0.4
+ */
+class SimpleMindStaxReader {
+   private final DiagramBuilder builder;
+   // the components of the last parsed color
+   private int red = 0;
+   private int green = 0;
+   private int blue = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param builder the diagram builder
+    */
+   SimpleMindStaxReader(DiagramBuilder builder) {
+      this.builder = builder;
+   }
+
+   /**
+    * Create the StAX factory used by the reader.
+    *
+    * @return the factory
+    */
+   static XMLInputFactory createFactory() {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+      return factory;
+   }
+
+   /**
+    * Parse a SimpleMind stream.
+    *
+    * @param factory the StAX factory
+    * @param stream the stream
+    * @return the diagram
+    * @throws XMLStreamException if the document is not a well formed XML document
+    */
+   SimpleMindDiagram parse(XMLInputFactory factory, InputStream stream) throws XMLStreamException {
+      XMLStreamReader reader = factory.createXMLStreamReader(stream);
+      try {
+         StringBuilder noteBuf = null;
+         while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+               case XMLStreamConstants.START_ELEMENT:
+                  if (noteBuf != null) {
+                     // only the content before the first child element is the note content
+                     endNote(noteBuf);
+                     noteBuf = null;
+                  }
+                  noteBuf = startElement(reader);
+                  break;
+               case XMLStreamConstants.END_ELEMENT:
+                  if (noteBuf != null) {
+                     endNote(noteBuf);
+                     noteBuf = null;
+                  }
+                  break;
+               case XMLStreamConstants.CHARACTERS:
+               case XMLStreamConstants.CDATA:
+               case XMLStreamConstants.SPACE:
+                  if (noteBuf != null) {
+                     noteBuf.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                  }
+                  break;
+            }
+         }
+      } finally {
+         reader.close();
+      }
+      return builder.endDiagram();
+   }
+
+   private StringBuilder startElement(XMLStreamReader reader) {
+      switch (reader.getLocalName()) {
+         case "topic":
+            startTopic(reader);
+            return null;
+         case "fillcolor":
+            parseColor(reader);
+            builder.fillColor(red, green, blue);
+            return null;
+         case "textcolor":
+            parseColor(reader);
+            builder.textColor(red, green, blue);
+            return null;
+         case "strokecolor":
+            parseColor(reader);
+            builder.strokeColor(red, green, blue);
+            return null;
+         case "note":
+            if (builder.wantsNote()) {
+               return new StringBuilder();
+            } else {
+               return null;
+            }
+         case "title":
+            builder.title(reader.getAttributeValue(null, "text"));
+            return null;
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * Start a Topic, reading all its attributes in one pass.
+    *
+    * @param reader the reader
+    */
+   private void startTopic(XMLStreamReader reader) {
+      int id = 0;
+      int parentid = -1;
+      int x = 0;
+      int y = 0;
+      boolean hasX = false;
+      boolean hasY = false;
+      String text = null;
+      int count = reader.getAttributeCount();
+      for (int i = 0; i < count; i++) {
+         switch (reader.getAttributeLocalName(i)) {
+            case "id":
+               id = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               break;
+            case "parent":
+               parentid = NumberParser.parseInt(reader.getAttributeValue(i), -1);
+               break;
+            case "x":
+               x = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               hasX = true;
+               break;
+            case "y":
+               y = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               hasY = true;
+               break;
+            case "text":
+               text = reader.getAttributeValue(i);
+               break;
+         }
+      }
+      builder.startTopic(id, parentid, text, hasX && hasY, x, y);
+   }
+
+   /**
+    * Read the components of a color in one pass.
+    *
+    * @param reader the reader
+    */
+   private void parseColor(XMLStreamReader reader) {
+      red = 0;
+      green = 0;
+      blue = 0;
+      int count = reader.getAttributeCount();
+      for (int i = 0; i < count; i++) {
+         switch (reader.getAttributeLocalName(i)) {
+            case "r":
+               red = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               break;
+            case "g":
+               green = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               break;
+            case "b":
+               blue = NumberParser.parseInt(reader.getAttributeValue(i), 0);
+               break;
+         }
+      }
+   }
+
+   private void endNote(StringBuilder noteBuf) {
+      if (noteBuf.length() != 0) {
+         builder.note(noteBuf.toString());
+      }
+   }
+}
@@ -0,0 +1,777 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.xml.NumberParser;
+
+/**
+ * A tokenizer which creates a diagram directly from the UTF-8 bytes of a SimpleMind document, without using a
+ * XML parser.
+ *
+ * <p>
+ * The tokenizer only supports the subset of XML which is generated by SimpleMind: UTF-8 or ASCII encoding, a
+ * DOCTYPE without any internal or external subset, and only the predefined entities and character references. An
+ * {@link UnsupportedContentException} is thrown as soon as the tokenizer encounters something else, including
+ * malformed content, so that the document can be parsed again by a XML parser.</p>
+ *
+ * @since 0.4
+ */
+class SimpleMindTokenizer {
+   private static final byte[] TOPIC = ascii("topic");
+   private static final byte[] FILLCOLOR = ascii("fillcolor");
+   private static final byte[] TEXTCOLOR = ascii("textcolor");
+   private static final byte[] STROKECOLOR = ascii("strokecolor");
+   private static final byte[] NOTE = ascii("note");
+   private static final byte[] TITLE = ascii("title");
+   private static final byte[] ID = ascii("id");
+   private static final byte[] PARENT = ascii("parent");
+   private static final byte[] TEXT = ascii("text");
+   private static final byte[] X = ascii("x");
+   private static final byte[] Y = ascii("y");
+   private static final byte[] RED = ascii("r");
+   private static final byte[] GREEN = ascii("g");
+   private static final byte[] BLUE = ascii("b");
+   private static final byte[] COMMENT_START = ascii("<!--");
+   private static final byte[] COMMENT_END = ascii("-->");
+   private static final byte[] CDATA_START = ascii("<![CDATA[");
+   private static final byte[] CDATA_END = ascii("]]>");
+   private static final byte[] DOCTYPE_START = ascii("<!DOCTYPE");
+   private static final byte[] PI_START = ascii("<?");
+   private static final byte[] PI_END = ascii("?>");
+   private static final byte[] XML_DECLARATION = ascii("<?xml");
+   private static final byte[] ENCODING = ascii("encoding");
+   private final DiagramBuilder builder;
+   private final byte[] content;
+   private final int end;
+   private int pos = 0;
+   // the stack of open elements
+   private int[] elementStart = new int[16];
+   private int[] elementLength = new int[16];
+   private int depth = 0;
+   private boolean hasRoot = false;
+   // the attributes of the current start tag
+   private int[] attrNameStart = new int[16];
+   private int[] attrNameLength = new int[16];
+   private int[] attrValueStart = new int[16];
+   private int[] attrValueLength = new int[16];
+   private int countAttributes = 0;
+   // the note content
+   private final StringBuilder noteBuf = new StringBuilder();
+   private boolean inNote = false;
+   // true if only the range of the note content is passed to the builder
+   private final boolean lazyNotes;
+   private int noteStart = 0;
+   // the buffer used to decode the content with entities or line ends
+   private byte[] decodeBuf = new byte[256];
+
+   /**
+    * Constructor.
+    *
+    * @param builder the diagram builder
+    * @param content the document content
+    */
+   SimpleMindTokenizer(DiagramBuilder builder, byte[] content) {
+      this.builder = builder;
+      this.content = content;
+      this.end = content.length;
+      this.lazyNotes = builder != null && builder.isLazyNotes();
+   }
+
+   /**
+    * Decode the raw content of a <code>note</code> element, which has already been checked by the tokenizer. The
+    * content can have text, CDATA sections, comments and processing instructions.
+    *
+    * @param note the raw note content
+    * @return the decoded note, which is not trimmed
+    * @throws UnsupportedContentException if the content is not a valid note content
+    */
+   static String decodeNote(byte[] note) throws UnsupportedContentException {
+      SimpleMindTokenizer tokenizer = new SimpleMindTokenizer(null, note);
+      return tokenizer.readNote();
+   }
+
+   private String readNote() throws UnsupportedContentException {
+      depth = 1;
+      inNote = true;
+      while (pos < end) {
+         int lt = indexOf(pos, (byte) '<');
+         if (lt == -1) {
+            text(pos, end);
+            break;
+         }
+         if (lt > pos) {
+            text(pos, lt);
+         }
+         pos = lt;
+         if (startsWith(lt, COMMENT_START)) {
+            pos = skipAfter(lt + COMMENT_START.length, COMMENT_END);
+         } else if (startsWith(lt, CDATA_START)) {
+            cdata();
+         } else if (startsWith(lt, PI_START)) {
+            pos = skipAfter(lt + PI_START.length, PI_END);
+         } else {
+            throw new UnsupportedContentException();
+         }
+      }
+      return noteBuf.toString();
+   }
+
+   private static byte[] ascii(String s) {
+      return s.getBytes(StandardCharsets.US_ASCII);
+   }
+
+   /**
+    * Parse the document.
+    *
+    * @return the diagram
+    * @throws UnsupportedContentException if the document can not be handled by the tokenizer
+    */
+   SimpleMindDiagram parse() throws UnsupportedContentException {
+      if (end >= 3 && (content[0] & 0xFF) == 0xEF && (content[1] & 0xFF) == 0xBB && (content[2] & 0xFF) == 0xBF) {
+         pos = 3;
+      }
+      if (startsWith(pos, XML_DECLARATION) && isWhitespace(pos + XML_DECLARATION.length)) {
+         parseDeclaration();
+      }
+      while (pos < end) {
+         int lt = indexOf(pos, (byte) '<');
+         if (lt == -1) {
+            text(pos, end);
+            pos = end;
+            break;
+         }
+         if (lt > pos) {
+            text(pos, lt);
+         }
+         pos = lt;
+         if (lt + 1 >= end) {
+            throw new UnsupportedContentException();
+         }
+         byte next = content[lt + 1];
+         if (next == '/') {
+            endTag();
+         } else if (next == '!') {
+            if (startsWith(lt, COMMENT_START)) {
+               pos = skipAfter(lt + COMMENT_START.length, COMMENT_END);
+            } else if (startsWith(lt, CDATA_START)) {
+               cdata();
+            } else if (startsWith(lt, DOCTYPE_START) && depth == 0 && !hasRoot) {
+               doctype();
+            } else {
+               throw new UnsupportedContentException();
+            }
+         } else if (next == '?') {
+            pos = skipAfter(lt + PI_START.length, PI_END);
+         } else {
+            startTag();
+         }
+      }
+      if (depth != 0 || !hasRoot) {
+         throw new UnsupportedContentException();
+      }
+      return builder.endDiagram();
+   }
+
+   private void parseDeclaration() throws UnsupportedContentException {
+      int declEnd = indexOf(pos, PI_END);
+      if (declEnd == -1) {
+         throw new UnsupportedContentException();
+      }
+      int encoding = indexOf(pos, ENCODING);
+      if (encoding != -1 && encoding < declEnd) {
+         int i = skipWhitespace(encoding + ENCODING.length);
+         if (i >= declEnd || content[i] != '=') {
+            throw new UnsupportedContentException();
+         }
+         i = skipWhitespace(i + 1);
+         byte quote = content[i];
+         if (quote != '"' && quote != '\'') {
+            throw new UnsupportedContentException();
+         }
+         int valueEnd = indexOf(i + 1, quote);
+         if (valueEnd == -1 || valueEnd > declEnd) {
+            throw new UnsupportedContentException();
+         }
+         String name = new String(content, i + 1, valueEnd - i - 1, StandardCharsets.US_ASCII);
+         if (!name.equalsIgnoreCase("UTF-8") && !name.equalsIgnoreCase("UTF8") && !name.equalsIgnoreCase("US-ASCII")
+            && !name.equalsIgnoreCase("ASCII")) {
+            throw new UnsupportedContentException();
+         }
+      }
+      pos = declEnd + PI_END.length;
+   }
+
+   /**
+    * Parse a DOCTYPE declaration. Only a DOCTYPE with a name is supported, because an internal or an external subset
+    * could declare entities or default attributes.
+    */
+   private void doctype() throws UnsupportedContentException {
+      int i = pos + DOCTYPE_START.length;
+      if (!isWhitespace(i)) {
+         throw new UnsupportedContentException();
+      }
+      i = skipWhitespace(i);
+      int nameStart = i;
+      while (i < end && !isWhitespace(i) && content[i] != '>') {
+         if (content[i] == '[') {
+            throw new UnsupportedContentException();
+         }
+         i++;
+      }
+      if (i == nameStart) {
+         throw new UnsupportedContentException();
+      }
+      i = skipWhitespace(i);
+      if (i >= end || content[i] != '>') {
+         throw new UnsupportedContentException();
+      }
+      pos = i + 1;
+   }
+
+   private void startTag() throws UnsupportedContentException {
+      int tagStart = pos;
+      int nameStart = pos + 1;
+      int i = nameStart;
+      while (i < end && !isWhitespace(i) && content[i] != '>' && content[i] != '/') {
+         i++;
+      }
+      int nameLength = i - nameStart;
+      if (nameLength == 0) {
+         throw new UnsupportedContentException();
+      }
+      countAttributes = 0;
+      boolean isEmpty = false;
+      while (true) {
+         i = skipWhitespace(i);
+         if (i >= end) {
+            throw new UnsupportedContentException();
+         }
+         byte b = content[i];
+         if (b == '>') {
+            i++;
+            break;
+         } else if (b == '/') {
+            if (i + 1 >= end || content[i + 1] != '>') {
+               throw new UnsupportedContentException();
+            }
+            isEmpty = true;
+            i += 2;
+            break;
+         }
+         i = attribute(i);
+      }
+      pos = i;
+      if (depth == 0) {
+         if (hasRoot) {
+            throw new UnsupportedContentException();
+         }
+         hasRoot = true;
+      }
+      if (inNote) {
+         // only the content before the first child element is the note content
+         endNote(tagStart);
+      }
+      element(nameStart, nameLength);
+      if (isEmpty) {
+         if (inNote) {
+            endNote(pos);
+         }
+      } else {
+         push(nameStart, nameLength);
+      }
+   }
+
+   /**
+    * Parse an attribute in a start tag.
+    *
+    * @param offset the offset of the attribute name
+    * @return the offset after the attribute value
+    */
+   private int attribute(int offset) throws UnsupportedContentException {
+      int i = offset;
+      while (i < end && !isWhitespace(i) && content[i] != '=') {
+         byte b = content[i];
+         if (b == '>' || b == '/' || b == '<' || b == '"' || b == '\'') {
+            throw new UnsupportedContentException();
+         }
+         i++;
+      }
+      int nameLength = i - offset;
+      i = skipWhitespace(i);
+      if (nameLength == 0 || i >= end || content[i] != '=') {
+         throw new UnsupportedContentException();
+      }
+      i = skipWhitespace(i + 1);
+      if (i >= end) {
+         throw new UnsupportedContentException();
+      }
+      byte quote = content[i];
+      if (quote != '"' && quote != '\'') {
+         throw new UnsupportedContentException();
+      }
+      int valueStart = i + 1;
+      i = valueStart;
+      while (i < end && content[i] != quote) {
+         if (content[i] == '<') {
+            throw new UnsupportedContentException();
+         }
+         i++;
+      }
+      if (i >= end) {
+         throw new UnsupportedContentException();
+      }
+      if (countAttributes == attrNameStart.length) {
+         int length = countAttributes * 2;
+         attrNameStart = Arrays.copyOf(attrNameStart, length);
+         attrNameLength = Arrays.copyOf(attrNameLength, length);
+         attrValueStart = Arrays.copyOf(attrValueStart, length);
+         attrValueLength = Arrays.copyOf(attrValueLength, length);
+      }
+      attrNameStart[countAttributes] = offset;
+      attrNameLength[countAttributes] = nameLength;
+      attrValueStart[countAttributes] = valueStart;
+      attrValueLength[countAttributes] = i - valueStart;
+      countAttributes++;
+      return i + 1;
+   }
+
+   private void push(int nameStart, int nameLength) {
+      if (depth == elementStart.length) {
+         elementStart = Arrays.copyOf(elementStart, depth * 2);
+         elementLength = Arrays.copyOf(elementLength, depth * 2);
+      }
+      elementStart[depth] = nameStart;
+      elementLength[depth] = nameLength;
+      depth++;
+   }
+
+   private void endTag() throws UnsupportedContentException {
+      int tagStart = pos;
+      int nameStart = pos + 2;
+      int i = nameStart;
+      while (i < end && !isWhitespace(i) && content[i] != '>') {
+         i++;
+      }
+      int nameLength = i - nameStart;
+      i = skipWhitespace(i);
+      if (depth == 0 || i >= end || content[i] != '>') {
+         throw new UnsupportedContentException();
+      }
+      depth--;
+      if (nameLength != elementLength[depth] || !regionMatches(nameStart, elementStart[depth], nameLength)) {
+         throw new UnsupportedContentException();
+      }
+      pos = i + 1;
+      if (inNote) {
+         endNote(tagStart);
+      }
+   }
+
+   private void element(int nameStart, int nameLength) throws UnsupportedContentException {
+      if (equals(nameStart, nameLength, TOPIC)) {
+         int id = getIntAttribute(ID, 0);
+         int parentid = getIntAttribute(PARENT, -1);
+         int x = findAttribute(X);
+         int y = findAttribute(Y);
+         boolean hasPosition = x != -1 && y != -1;
+         builder.startTopic(id, parentid, getAttribute(TEXT), hasPosition, toInt(x, 0), toInt(y, 0));
+      } else if (equals(nameStart, nameLength, FILLCOLOR)) {
+         builder.fillColor(getColorComponent(RED), getColorComponent(GREEN), getColorComponent(BLUE));
+      } else if (equals(nameStart, nameLength, TEXTCOLOR)) {
+         builder.textColor(getColorComponent(RED), getColorComponent(GREEN), getColorComponent(BLUE));
+      } else if (equals(nameStart, nameLength, STROKECOLOR)) {
+         builder.strokeColor(getColorComponent(RED), getColorComponent(GREEN), getColorComponent(BLUE));
+      } else if (equals(nameStart, nameLength, NOTE)) {
+         if (builder.wantsNote()) {
+            inNote = true;
+            noteStart = pos;
+            noteBuf.setLength(0);
+         }
+      } else if (equals(nameStart, nameLength, TITLE)) {
+         builder.title(getAttribute(TEXT));
+      }
+   }
+
+   private int getColorComponent(byte[] name) throws UnsupportedContentException {
+      return getIntAttribute(name, 0);
+   }
+
+   /**
+    * Return the index of an attribute of the current start tag.
+    *
+    * @param name the attribute name
+    * @return the index, or -1 if there is no attribute of this name
+    */
+   private int findAttribute(byte[] name) {
+      for (int i = 0; i < countAttributes; i++) {
+         if (equals(attrNameStart[i], attrNameLength[i], name)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Return the normalized value of an attribute of the current start tag.
+    *
+    * @param name the attribute name
+    * @return the value, or null if there is no attribute of this name
+    */
+   private String getAttribute(byte[] name) throws UnsupportedContentException {
+      int index = findAttribute(name);
+      if (index == -1) {
+         return null;
+      }
+      return decode(attrValueStart[index], attrValueStart[index] + attrValueLength[index], true);
+   }
+
+   /**
+    * Return the value of an attribute of the current start tag as an int.
+    *
+    * @param name the attribute name
+    * @param defaultValue the value to return if there is no attribute of this name or if it is not a number
+    * @return the value
+    */
+   private int getIntAttribute(byte[] name, int defaultValue) throws UnsupportedContentException {
+      return toInt(findAttribute(name), defaultValue);
+   }
+
+   /**
+    * Return the value of an attribute of the current start tag as an int. The number is parsed directly from the
+    * content, except if the value has references.
+    *
+    * @param index the attribute index, or -1
+    * @param defaultValue the value to return if the index is -1 or if the value is not a number
+    * @return the value
+    */
+   private int toInt(int index, int defaultValue) throws UnsupportedContentException {
+      if (index == -1) {
+         return defaultValue;
+      }
+      int start = attrValueStart[index];
+      int length = attrValueLength[index];
+      if (indexOf(start, start + length, (byte) '&') == -1) {
+         return NumberParser.parseInt(content, start, length, defaultValue);
+      } else {
+         return NumberParser.parseInt(decode(start, start + length, true), defaultValue);
+      }
+   }
+
+   private void text(int start, int textEnd) throws UnsupportedContentException {
+      if (inNote && !lazyNotes) {
+         noteBuf.append(decode(start, textEnd, false));
+      } else if (depth == 0) {
+         for (int i = start; i < textEnd; i++) {
+            if (!isWhitespace(i)) {
+               throw new UnsupportedContentException();
+            }
+         }
+      } else {
+         // the text is not used, but its references must be valid
+         int amp = indexOf(start, textEnd, (byte) '&');
+         while (amp != -1) {
+            int semicolon = indexOf(amp, textEnd, (byte) ';');
+            if (semicolon == -1) {
+               throw new UnsupportedContentException();
+            }
+            reference(amp + 1, semicolon);
+            amp = indexOf(semicolon, textEnd, (byte) '&');
+         }
+      }
+   }
+
+   private void cdata() throws UnsupportedContentException {
+      int start = pos + CDATA_START.length;
+      int cdataEnd = indexOf(start, CDATA_END);
+      if (cdataEnd == -1 || depth == 0) {
+         throw new UnsupportedContentException();
+      }
+      if (inNote && !lazyNotes) {
+         noteBuf.append(decodeLineEnds(start, cdataEnd));
+      }
+      pos = cdataEnd + CDATA_END.length;
+   }
+
+   /**
+    * Called at the end of the note content.
+    *
+    * @param noteEnd the offset of the tag which ends the note content
+    */
+   private void endNote(int noteEnd) {
+      inNote = false;
+      if (lazyNotes) {
+         if (noteEnd > noteStart) {
+            builder.noteRange(content, noteStart, noteEnd);
+         }
+      } else if (noteBuf.length() != 0) {
+         builder.note(noteBuf.toString());
+      }
+   }
+
+   /**
+    * Decode a text or an attribute value, replacing the references and normalizing the line ends, and also the
+    * whitespaces in the case of an attribute value.
+    */
+   private String decode(int start, int decodeEnd, boolean isAttribute) throws UnsupportedContentException {
+      int i = start;
+      while (i < decodeEnd) {
+         byte b = content[i];
+         if (b == '&' || b == '\r' || (isAttribute && (b == '\n' || b == '\t'))) {
+            break;
+         }
+         i++;
+      }
+      if (i == decodeEnd) {
+         return new String(content, start, decodeEnd - start, StandardCharsets.UTF_8);
+      }
+      int length = i - start;
+      ensureDecodeCapacity(decodeEnd - start);
+      System.arraycopy(content, start, decodeBuf, 0, length);
+      while (i < decodeEnd) {
+         byte b = content[i];
+         if (b == '&') {
+            int semicolon = indexOf(i, decodeEnd, (byte) ';');
+            if (semicolon == -1) {
+               throw new UnsupportedContentException();
+            }
+            int c = reference(i + 1, semicolon);
+            length = appendCodePoint(length, c);
+            i = semicolon + 1;
+         } else if (b == '\r') {
+            decodeBuf[length++] = isAttribute ? (byte) ' ' : (byte) '\n';
+            i++;
+            if (i < decodeEnd && content[i] == '\n') {
+               i++;
+            }
+         } else if (isAttribute && (b == '\n' || b == '\t')) {
+            decodeBuf[length++] = ' ';
+            i++;
+         } else {
+            decodeBuf[length++] = b;
+            i++;
+         }
+      }
+      return new String(decodeBuf, 0, length, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Decode the content of a CDATA section, which only needs to have its line ends normalized.
+    */
+   private String decodeLineEnds(int start, int decodeEnd) {
+      if (indexOf(start, decodeEnd, (byte) '\r') == -1) {
+         return new String(content, start, decodeEnd - start, StandardCharsets.UTF_8);
+      }
+      ensureDecodeCapacity(decodeEnd - start);
+      int length = 0;
+      for (int i = start; i < decodeEnd; i++) {
+         byte b = content[i];
+         if (b == '\r') {
+            decodeBuf[length++] = '\n';
+            if (i + 1 < decodeEnd && content[i + 1] == '\n') {
+               i++;
+            }
+         } else {
+            decodeBuf[length++] = b;
+         }
+      }
+      return new String(decodeBuf, 0, length, StandardCharsets.UTF_8);
+   }
+
+   private void ensureDecodeCapacity(int capacity) {
+      if (decodeBuf.length < capacity) {
+         decodeBuf = new byte[Math.max(capacity, decodeBuf.length * 2)];
+      }
+   }
+
+   /**
+    * Return the character of a predefined entity or a character reference.
+    *
+    * @param start the offset after the '&amp;'
+    * @param refEnd the offset of the ';'
+    * @return the character code point
+    */
+   private int reference(int start, int refEnd) throws UnsupportedContentException {
+      int length = refEnd - start;
+      if (length >= 2 && content[start] == '#') {
+         int radix = 10;
+         int i = start + 1;
+         if (content[i] == 'x') {
+            radix = 16;
+            i++;
+         }
+         if (i == refEnd) {
+            throw new UnsupportedContentException();
+         }
+         int c = 0;
+         for (; i < refEnd; i++) {
+            int digit = Character.digit(content[i], radix);
+            if (digit == -1 || c > 0x10FFFF) {
+               throw new UnsupportedContentException();
+            }
+            c = c * radix + digit;
+         }
+         if (c == 0 || c > 0x10FFFF || (c >= 0xD800 && c <= 0xDFFF)) {
+            throw new UnsupportedContentException();
+         }
+         return c;
+      }
+      switch (length) {
+         case 2:
+            if (content[start] == 'l' && content[start + 1] == 't') {
+               return '<';
+            } else if (content[start] == 'g' && content[start + 1] == 't') {
+               return '>';
+            }
+            break;
+         case 3:
+            if (content[start] == 'a' && content[start + 1] == 'm' && content[start + 2] == 'p') {
+               return '&';
+            }
+            break;
+         case 4:
+            if (content[start] == 'a' && content[start + 1] == 'p' && content[start + 2] == 'o' && content[start + 3] == 's') {
+               return '\'';
+            } else if (content[start] == 'q' && content[start + 1] == 'u' && content[start + 2] == 'o' && content[start + 3] == 't') {
+               return '"';
+            }
+            break;
+      }
+      throw new UnsupportedContentException();
+   }
+
+   /**
+    * Append the UTF-8 encoding of a code point in the decode buffer. The buffer is large enough because the encoding
+    * of a reference is never longer than the reference itself.
+    */
+   private int appendCodePoint(int length, int c) {
+      if (c < 0x80) {
+         decodeBuf[length++] = (byte) c;
+      } else if (c < 0x800) {
+         decodeBuf[length++] = (byte) (0xC0 | (c >> 6));
+         decodeBuf[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (c < 0x10000) {
+         decodeBuf[length++] = (byte) (0xE0 | (c >> 12));
+         decodeBuf[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+         decodeBuf[length++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+         decodeBuf[length++] = (byte) (0xF0 | (c >> 18));
+         decodeBuf[length++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+         decodeBuf[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+         decodeBuf[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+      return length;
+   }
+
+   private boolean isWhitespace(int offset) {
+      if (offset >= end) {
+         return false;
+      }
+      byte b = content[offset];
+      return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+   }
+
+   private int skipWhitespace(int offset) {
+      while (isWhitespace(offset)) {
+         offset++;
+      }
+      return offset;
+   }
+
+   private boolean startsWith(int offset, byte[] prefix) {
+      if (offset + prefix.length > end) {
+         return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+         if (content[offset + i] != prefix[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private boolean equals(int offset, int length, byte[] name) {
+      return length == name.length && startsWith(offset, name);
+   }
+
+   private boolean regionMatches(int offset1, int offset2, int length) {
+      for (int i = 0; i < length; i++) {
+         if (content[offset1 + i] != content[offset2 + i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private int indexOf(int offset, byte b) {
+      return indexOf(offset, end, b);
+   }
+
+   private int indexOf(int offset, int searchEnd, byte b) {
+      for (int i = offset; i < searchEnd; i++) {
+         if (content[i] == b) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private int indexOf(int offset, byte[] sequence) {
+      int last = end - sequence.length;
+      for (int i = offset; i <= last; i++) {
+         if (content[i] == sequence[0] && startsWith(i, sequence)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private int skipAfter(int offset, byte[] sequence) throws UnsupportedContentException {
+      int index = indexOf(offset, sequence);
+      if (index == -1) {
+         throw new UnsupportedContentException();
+      }
+      return index + sequence.length;
+   }
+
+   /**
+    * Thrown when the tokenizer encounters a content which it does not support.
+    */
+   static class UnsupportedContentException extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      UnsupportedContentException() {
+         super(null, null, false, false);
+      }
+   }
+}
@@ -0,0 +1,303 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the XML content of SimpleMind files with NIO. The file is opened once, read in a heap buffer, and is closed
+ * before the method returns. The file is not memory-mapped, because a mapping is only released when it is garbage
+ * collected, and the file would stay locked on some platforms. For smmx archives, the
+ * <code>document/mindmap.xml</code> entry is found from the zip central directory and inflated directly in an array of
+ * the uncompressed size of the entry.
+ *
+ * <p>
+ * Zip64 archives and archives which are split in several files are not supported, because SimpleMind never creates
+ * them.</p>
+ *
+ * @since 0.4
+ */
+class SmmxReader {
+   /**
+    * The name of the diagram entry in smmx archives.
+    */
+   static final String MINDMAP_ENTRY = "document/mindmap.xml";
+   private static final int LOCAL_HEADER = 0x04034B50;
+   private static final int CENTRAL_HEADER = 0x02014B50;
+   private static final int END_HEADER = 0x06054B50;
+   private static final int END_HEADER_SIZE = 22;
+   private static final int CENTRAL_HEADER_SIZE = 46;
+   private static final int LOCAL_HEADER_SIZE = 30;
+   private static final int MAX_COMMENT_SIZE = 0xFFFF;
+   private static final int STORED = 0;
+   private static final int DEFLATED = 8;
+   private static final int CHUNK_SIZE = 65536;
+
+   private SmmxReader() {
+   }
+
+   /**
+    * Return true if a zip signature is at the start of a buffer.
+    *
+    * @param buffer the buffer
+    * @return true if a zip signature is at the start of the buffer
+    */
+   static boolean isArchive(ByteBuffer buffer) {
+      if (buffer.limit() < 4) {
+         return false;
+      }
+      int signature = buffer.getInt(0);
+      return signature == 0x504B0304 || signature == 0x504B0506 || signature == 0x504B0708;
+   }
+
+   /**
+    * Read a channel in a buffer until the buffer is full or the end of the channel is reached. The buffer is flipped.
+    *
+    * @param channel the channel
+    * @param buffer the buffer
+    * @throws IOException
+    */
+   static void read(FileChannel channel, ByteBuffer buffer) throws IOException {
+      int count = 0;
+      while (buffer.hasRemaining() && count != -1) {
+         count = channel.read(buffer);
+      }
+      buffer.flip();
+   }
+
+   /**
+    * Return the XML content of a SimpleMind file, which can be a smmx archive or a xml file.
+    *
+    * @param file the file
+    * @return the content
+    * @throws IOException if the file can not be read, or if the archive is invalid
+    */
+   static byte[] readContent(File file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         long size = channel.size();
+         if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large: " + file);
+         }
+         ByteBuffer buffer = ByteBuffer.allocate((int) size);
+         read(channel, buffer);
+         if (isArchive(buffer)) {
+            return readEntry(buffer.order(ByteOrder.LITTLE_ENDIAN));
+         } else if (buffer.hasArray() && buffer.limit() == buffer.capacity()) {
+            return buffer.array();
+         } else {
+            byte[] content = new byte[buffer.limit()];
+            buffer.get(content);
+            return content;
+         }
+      }
+   }
+
+   /**
+    * Return the content of the diagram of the bytes of a SimpleMind file: the inflated diagram entry if the file is a
+    * smmx zip file, else the bytes themselves.
+    *
+    * @param bytes the bytes of the file
+    * @return the content
+    * @throws IOException if the archive is invalid
+    */
+   static byte[] getContent(byte[] bytes) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      if (isArchive(buffer)) {
+         return readEntry(buffer.order(ByteOrder.LITTLE_ENDIAN));
+      }
+      return bytes;
+   }
+
+   /**
+    * Return the content of the diagram entry of a zip archive. If the archive has no <code>document/mindmap.xml</code>
+    * entry, the first entry is returned.
+    *
+    * @param buffer the archive, with a little-endian order
+    * @return the content
+    * @throws IOException if the archive is invalid
+    */
+   static byte[] readEntry(ByteBuffer buffer) throws IOException {
+      try {
+         int end = findEndHeader(buffer);
+         int count = buffer.getShort(end + 10) & 0xFFFF;
+         int offset = buffer.getInt(end + 16);
+         if (count == 0) {
+            throw new IOException("Zip File is empty");
+         }
+         int first = offset;
+         int entry = -1;
+         for (int i = 0; i < count; i++) {
+            if (buffer.getInt(offset) != CENTRAL_HEADER) {
+               throw new IOException("Invalid zip central directory");
+            }
+            if (isEntry(buffer, offset, MINDMAP_ENTRY)) {
+               entry = offset;
+               break;
+            }
+            offset += CENTRAL_HEADER_SIZE + (buffer.getShort(offset + 28) & 0xFFFF)
+               + (buffer.getShort(offset + 30) & 0xFFFF) + (buffer.getShort(offset + 32) & 0xFFFF);
+         }
+         if (entry == -1) {
+            entry = first;
+         }
+         return inflate(buffer, entry);
+      } catch (IndexOutOfBoundsException ex) {
+         throw new IOException("Truncated zip file", ex);
+      }
+   }
+
+   private static int findEndHeader(ByteBuffer buffer) throws IOException {
+      int min = Math.max(0, buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+      for (int i = buffer.limit() - END_HEADER_SIZE; i >= min; i--) {
+         if (buffer.getInt(i) == END_HEADER) {
+            return i;
+         }
+      }
+      throw new IOException("No zip central directory");
+   }
+
+   private static boolean isEntry(ByteBuffer buffer, int header, String name) {
+      int length = buffer.getShort(header + 28) & 0xFFFF;
+      if (length != name.length()) {
+         return false;
+      }
+      int start = header + CENTRAL_HEADER_SIZE;
+      for (int i = 0; i < length; i++) {
+         if (buffer.get(start + i) != name.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static byte[] inflate(ByteBuffer buffer, int header) throws IOException {
+      int method = buffer.getShort(header + 10) & 0xFFFF;
+      int crc = buffer.getInt(header + 16);
+      long compressedSize = buffer.getInt(header + 20) & 0xFFFFFFFFL;
+      long size = buffer.getInt(header + 24) & 0xFFFFFFFFL;
+      int local = buffer.getInt(header + 42);
+      if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || local == -1) {
+         throw new IOException("Zip64 archives are not supported");
+      }
+      if (size > Integer.MAX_VALUE - 8) {
+         throw new IOException("Zip entry too large");
+      }
+      if (buffer.getInt(local) != LOCAL_HEADER) {
+         throw new IOException("Invalid zip local header");
+      }
+      int start = local + LOCAL_HEADER_SIZE + (buffer.getShort(local + 26) & 0xFFFF)
+         + (buffer.getShort(local + 28) & 0xFFFF);
+      if (start + compressedSize > buffer.limit()) {
+         throw new IOException("Truncated zip file");
+      }
+      byte[] content = new byte[(int) size];
+      if (method == STORED) {
+         ByteBuffer data = buffer.duplicate();
+         data.position(start);
+         data.get(content);
+      } else if (method == DEFLATED) {
+         inflate(buffer, start, (int) compressedSize, content);
+      } else {
+         throw new IOException("Unsupported zip compression method " + method);
+      }
+      CRC32 check = new CRC32();
+      check.update(content, 0, content.length);
+      if ((int) check.getValue() != crc) {
+         throw new IOException("Invalid CRC for the zip entry " + readName(buffer, header));
+      }
+      return content;
+   }
+
+   /**
+    * Inflate compressed data. The library is compiled for Java 8, where the Inflater only accepts arrays, so the
+    * compressed data is passed through a chunk array, but the uncompressed data is written directly in the result.
+    */
+   private static void inflate(ByteBuffer buffer, int start, int length, byte[] content) throws IOException {
+      Inflater inflater = new Inflater(true);
+      try {
+         ByteBuffer data = buffer.duplicate();
+         data.position(start);
+         data.limit(start + length);
+         byte[] chunk = new byte[Math.min(CHUNK_SIZE, length + 1)];
+         int offset = 0;
+         boolean dummy = false;
+         while (!inflater.finished()) {
+            if (inflater.needsInput()) {
+               int count = Math.min(chunk.length, data.remaining());
+               if (count == 0) {
+                  if (dummy) {
+                     throw new IOException("Truncated zip entry");
+                  }
+                  // the inflater may need an additional byte after the end of the raw deflate data
+                  chunk[0] = 0;
+                  count = 1;
+                  dummy = true;
+               } else {
+                  data.get(chunk, 0, count);
+               }
+               inflater.setInput(chunk, 0, count);
+            }
+            int count = inflater.inflate(content, offset, content.length - offset);
+            offset += count;
+            if (count == 0 && inflater.needsDictionary()) {
+               throw new IOException("Invalid zip entry");
+            }
+            if (offset == content.length && !inflater.finished() && !inflater.needsInput()) {
+               throw new IOException("Zip entry larger than its declared size");
+            }
+         }
+         if (offset != content.length) {
+            throw new IOException("Zip entry smaller than its declared size");
+         }
+      } catch (DataFormatException ex) {
+         throw new IOException("Invalid zip entry", ex);
+      } finally {
+         inflater.end();
+      }
+   }
+
+   private static String readName(ByteBuffer buffer, int header) {
+      byte[] name = new byte[buffer.getShort(header + 28) & 0xFFFF];
+      ByteBuffer data = buffer.duplicate();
+      data.position(header + CENTRAL_HEADER_SIZE);
+      data.get(name);
+      return new String(name, StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,229 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the <code>topic</code> start tags of a SimpleMind document by scanning its bytes, without any XML parsing.
+ * The content can be passed in several chunks. Comments, CDATA sections and processing instructions are skipped, and
+ * because attribute values can not contain a <code>&lt;</code> character, every other <code>&lt;</code> character
+ * starts a tag. The scanning stops at the <code>topics</code> end tag.
+ *
+ * @since 0.4
+ */
+class TopicCounter {
+   private static final int TEXT = 0;
+   private static final int TAG_START = 1;
+   private static final int COMMENT = 2;
+   private static final int CDATA = 3;
+   private static final int PI = 4;
+   private static final int DONE = 5;
+   private static final byte[] COMMENT_START = ascii("!--");
+   private static final byte[] CDATA_START = ascii("![CDATA[");
+   private static final byte[] TOPIC = ascii("topic");
+   private static final byte[] TOPICS_END = ascii("/topics");
+   private static final byte[][] PREFIXES = {COMMENT_START, CDATA_START, TOPIC, TOPICS_END};
+   private int state = TEXT;
+   // the bytes after the last '<' character
+   private final byte[] head = new byte[CDATA_START.length];
+   private int headLength = 0;
+   // the number of bytes of the end of a comment, CDATA section or processing instruction which have been matched
+   private int endMatch = 0;
+   private int count = 0;
+
+   private static byte[] ascii(String s) {
+      byte[] bytes = new byte[s.length()];
+      for (int i = 0; i < bytes.length; i++) {
+         bytes[i] = (byte) s.charAt(i);
+      }
+      return bytes;
+   }
+
+   /**
+    * Return the number of <code>topic</code> start tags.
+    *
+    * @return the number of Topics
+    */
+   int getCount() {
+      return count;
+   }
+
+   /**
+    * Return true if the <code>topics</code> end tag has been found.
+    *
+    * @return true if the <code>topics</code> end tag has been found
+    */
+   boolean isDone() {
+      return state == DONE;
+   }
+
+   /**
+    * Scan the rest of a stream, until its end or until the <code>topics</code> end tag.
+    *
+    * @param stream the stream
+    * @throws IOException
+    */
+   void scan(InputStream stream) throws IOException {
+      byte[] buf = new byte[65536];
+      int length;
+      while (state != DONE && (length = stream.read(buf)) != -1) {
+         scan(buf, 0, length);
+      }
+   }
+
+   /**
+    * Scan a chunk of the content.
+    *
+    * @param content the content
+    * @param offset the offset of the chunk
+    * @param length the length of the chunk
+    */
+   void scan(byte[] content, int offset, int length) {
+      int end = offset + length;
+      int i = offset;
+      while (i < end) {
+         switch (state) {
+            case TEXT:
+               while (i < end && content[i] != '<') {
+                  i++;
+               }
+               if (i < end) {
+                  state = TAG_START;
+                  headLength = 0;
+                  i++;
+               }
+               break;
+            case TAG_START:
+               tagStart(content[i++]);
+               break;
+            case COMMENT:
+               i = skipEnd(content, i, end, (byte) '-', 2);
+               break;
+            case CDATA:
+               i = skipEnd(content, i, end, (byte) ']', 2);
+               break;
+            case PI:
+               i = skipEnd(content, i, end, (byte) '?', 1);
+               break;
+            default:
+               return;
+         }
+      }
+   }
+
+   /**
+    * Skip the content until the end of a comment, CDATA section or processing instruction, which is a repeated byte
+    * followed by a <code>&gt;</code> character.
+    */
+   private int skipEnd(byte[] content, int i, int end, byte repeated, int countRepeated) {
+      while (i < end) {
+         byte b = content[i++];
+         if (b == '>' && endMatch >= countRepeated) {
+            endMatch = 0;
+            state = TEXT;
+            return i;
+         } else if (b == repeated) {
+            endMatch++;
+         } else {
+            endMatch = 0;
+         }
+      }
+      return i;
+   }
+
+   private void tagStart(byte b) {
+      if (headLength == 0 && b == '?') {
+         state = PI;
+         endMatch = 0;
+         return;
+      }
+      // a topic start tag or a topics end tag is complete when its name is followed by a delimiter
+      if (headLength == TOPIC.length && matches(TOPIC) && isDelimiter(b)) {
+         count++;
+         state = TEXT;
+         return;
+      }
+      if (headLength == TOPICS_END.length && matches(TOPICS_END) && isDelimiter(b)) {
+         state = DONE;
+         return;
+      }
+      if (headLength == head.length) {
+         state = TEXT;
+         return;
+      }
+      head[headLength++] = b;
+      if (headLength == COMMENT_START.length && matches(COMMENT_START)) {
+         state = COMMENT;
+         endMatch = 0;
+      } else if (headLength == CDATA_START.length && matches(CDATA_START)) {
+         state = CDATA;
+         endMatch = 0;
+      } else if (!isPrefix()) {
+         state = TEXT;
+      }
+   }
+
+   private static boolean isDelimiter(byte b) {
+      return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+   }
+
+   private boolean matches(byte[] name) {
+      for (int i = 0; i < name.length; i++) {
+         if (head[i] != name[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Return true if the bytes after the last '<' character are the start of one of the names which are looked for.
+    */
+   private boolean isPrefix() {
+      for (byte[] prefix : PREFIXES) {
+         if (headLength <= prefix.length) {
+            boolean match = true;
+            for (int i = 0; i < headLength; i++) {
+               if (head[i] != prefix[i]) {
+                  match = false;
+                  break;
+               }
+            }
+            if (match) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+}
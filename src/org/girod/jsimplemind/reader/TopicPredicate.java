@@ -0,0 +1,81 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+/**
+ * Decides during the parsing if a Topic is kept in the diagram. The Topics which are not accepted are never created.
+ *
+ * @since 0.4
+ */
+@FunctionalInterface
+public interface TopicPredicate {
+   /**
+    * Return true if a Topic must be kept in the diagram.
+    *
+    * @param id the Topic id
+    * @param parentID the id of the parent Topic, or -1 if the Topic has no parent
+    * @param depth the depth of the Topic, 0 for a Topic without parent, or -1 if the parent of the Topic has not been
+    * encountered before the Topic in the document
+    * @param text the trimmed Topic text, or null if the Topic has no text
+    * @return true if the Topic must be kept
+    */
+   public boolean accept(int id, int parentID, int depth, String text);
+
+   /**
+    * Return a predicate which accepts the Topics up to a maximum depth.
+    *
+    * @param maxDepth the maximum depth
+    * @return the predicate
+    */
+   public static TopicPredicate maxDepth(int maxDepth) {
+      return (id, parentID, depth, text) -> depth != -1 && depth <= maxDepth;
+   }
+
+   /**
+    * Return a predicate which accepts the Topics whose text starts with a prefix.
+    *
+    * @param prefix the prefix
+    * @return the predicate
+    */
+   public static TopicPredicate textStartsWith(String prefix) {
+      return (id, parentID, depth, text) -> text != null && text.startsWith(prefix);
+   }
+
+   /**
+    * Return a predicate which accepts the Topics which are accepted by this predicate and another predicate.
+    *
+    * @param other the other predicate
+    * @return the predicate
+    */
+   public default TopicPredicate and(TopicPredicate other) {
+      return (id, parentID, depth, text) -> accept(id, parentID, depth, text) && other.accept(id, parentID, depth, text);
+   }
+}
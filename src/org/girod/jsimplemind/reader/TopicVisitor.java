@@ -0,0 +1,117 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+/**
+ * Receives the events of a SimpleMind document parsed by {@link SimpleMindParser#stream(java.io.InputStream, TopicVisitor)},
+ * without creating any diagram. All the methods do nothing by default.
+ *
+ * <p>
+ * The events of a Topic are received after its {@link #topic(int, int, java.lang.String, boolean, int, int)} event
+ * and before its {@link #endTopic(int)} event. Only the first color of each kind of a Topic is received, as for the
+ * parsed diagrams. The parent id of the Topics is not resolved, so a Topic can be received before its parent.</p>
+ *
+ * @since 0.4
+ */
+public interface TopicVisitor {
+   /**
+    * Called for the diagram title.
+    *
+    * @param title the title
+    */
+   public default void title(String title) {
+   }
+
+   /**
+    * Called at the start of a Topic.
+    *
+    * @param id the Topic id
+    * @param parentID the id of the parent Topic, or -1 if the Topic has no parent
+    * @param text the trimmed Topic text, or null if the Topic has no text
+    * @param hasPosition true if the Topic has a position
+    * @param x the Topic x position, or 0 if the Topic has no position
+    * @param y the Topic y position, or 0 if the Topic has no position
+    * @return true if the colors and the note of the Topic must be received
+    */
+   public default boolean topic(int id, int parentID, String text, boolean hasPosition, int x, int y) {
+      return true;
+   }
+
+   /**
+    * Called for the fill color of a Topic.
+    *
+    * @param id the Topic id
+    * @param argb the packed ARGB value of the color
+    */
+   public default void fillColor(int id, int argb) {
+   }
+
+   /**
+    * Called for the text color of a Topic.
+    *
+    * @param id the Topic id
+    * @param argb the packed ARGB value of the color
+    */
+   public default void textColor(int id, int argb) {
+   }
+
+   /**
+    * Called for the stroke color of a Topic.
+    *
+    * @param id the Topic id
+    * @param argb the packed ARGB value of the color
+    */
+   public default void strokeColor(int id, int argb) {
+   }
+
+   /**
+    * Called for the note of a Topic.
+    *
+    * @param id the Topic id
+    * @param note the trimmed note
+    */
+   public default void note(int id, String note) {
+   }
+
+   /**
+    * Called at the end of a Topic.
+    *
+    * @param id the Topic id
+    */
+   public default void endTopic(int id) {
+   }
+
+   /**
+    * Called at the end of the document.
+    */
+   public default void endDiagram() {
+   }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+
+/**
+ * A builder which passes the SimpleMind elements to a {@link TopicVisitor}, without creating any diagram or Topic.
+ *
+ * @since 0.4
+ */
+class TopicVisitorBuilder extends DiagramBuilder {
+   private final TopicVisitor visitor;
+   private boolean inTopic = false;
+   private int topic = 0;
+   private boolean hasDetails = false;
+   private boolean hasTextColor = false;
+   private boolean hasStrokeColor = false;
+   private boolean hasFillColor = false;
+
+   /**
+    * Constructor.
+    *
+    * @param visitor the visitor
+    */
+   TopicVisitorBuilder(TopicVisitor visitor) {
+      super(null);
+      this.visitor = visitor;
+   }
+
+   /**
+    * Return true if the details of the current Topic must be passed to the visitor.
+    *
+    * @return true if the details of the current Topic must be passed to the visitor
+    */
+   @Override
+   boolean hasTopic() {
+      return hasDetails;
+   }
+
+   @Override
+   void title(String title) {
+      if (!inTopic) {
+         visitor.title(title);
+      }
+   }
+
+   @Override
+   void startTopic(int id, int parentid, String text, boolean hasPosition, int x, int y) {
+      if (inTopic) {
+         visitor.endTopic(topic);
+      }
+      inTopic = true;
+      topic = id;
+      hasTextColor = false;
+      hasStrokeColor = false;
+      hasFillColor = false;
+      hasDetails = visitor.topic(id, parentid, text != null ? text.trim() : null, hasPosition, hasPosition ? x : 0,
+         hasPosition ? y : 0);
+   }
+
+   @Override
+   void fillColor(int red, int green, int blue) {
+      if (hasDetails && !hasFillColor) {
+         hasFillColor = true;
+         visitor.fillColor(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void textColor(int red, int green, int blue) {
+      if (hasDetails && !hasTextColor) {
+         hasTextColor = true;
+         visitor.textColor(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void strokeColor(int red, int green, int blue) {
+      if (hasDetails && !hasStrokeColor) {
+         hasStrokeColor = true;
+         visitor.strokeColor(topic, toRGB(red, green, blue));
+      }
+   }
+
+   @Override
+   void note(String cdata) {
+      if (hasDetails) {
+         visitor.note(topic, cdata.trim());
+      }
+   }
+
+   /**
+    * Notify the visitor of the end of the document.
+    *
+    * @return null
+    */
+   @Override
+   SimpleMindDiagram endDiagram() {
+      if (inTopic) {
+         inTopic = false;
+         visitor.endTopic(topic);
+      }
+      visitor.endDiagram();
+      return null;
+   }
+}
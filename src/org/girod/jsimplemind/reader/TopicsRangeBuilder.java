@@ -0,0 +1,99 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import java.util.BitSet;
+import org.girod.jsimplemind.model.Topic;
+
+/**
+ * A builder which collects the Topics of a range of the <code>topics</code> element, without adding them to
+ * a diagram.
+ *
+ * @since 0.4
+ */
+class TopicsRangeBuilder extends DiagramBuilder {
+   private boolean hasTitle = false;
+   private String title = null;
+   private final BitSet notes = new BitSet();
+
+   /**
+    * Constructor.
+    *
+    * @param factory the diagram factory (can be null)
+    */
+   TopicsRangeBuilder(DiagramFactory factory) {
+      super(factory);
+   }
+
+   @Override
+   void setTitle(String title) {
+      this.hasTitle = true;
+      this.title = title;
+   }
+
+   @Override
+   void addTopic(Topic topic) {
+   }
+
+   @Override
+   void setNote(Topic topic, String note) {
+      topic.setNote(note);
+      notes.set(topics.size() - 1);
+   }
+
+   /**
+    * Return true if a title has been found in the range.
+    *
+    * @return true if a title has been found
+    */
+   boolean hasTitle() {
+      return hasTitle;
+   }
+
+   /**
+    * Return the title found in the range.
+    *
+    * @return the title
+    */
+   String getTitle() {
+      return title;
+   }
+
+   /**
+    * Return true if a note has been set for a Topic of the range.
+    *
+    * @param index the index of the Topic in the range
+    * @return true if a note has been set for the Topic
+    */
+   boolean hasNote(int index) {
+      return notes.get(index);
+   }
+}
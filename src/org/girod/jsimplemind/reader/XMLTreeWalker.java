@@ -33,13 +33,18 @@ package org.girod.jsimplemind.reader;
 import org.girod.jsimplemind.xml.XMLNode;
 
 /**
+ * Walks an XML tree in document order. The next node computed by {@link #hasNext()} is kept so that a
+ * {@link #hasNext()} / {@link #nextNode()} loop only navigates once to each node.
  *
- * @since 0.1
+ * @version 0.4
  */
 class XMLTreeWalker {
    private final XMLNode rootNode;
    private XMLNode currentNode;
    private int level = 0;
+   private boolean hasComputedNext = false;
+   private XMLNode next = null;
+   private int nextLevel = 0;
 
    /**
     * Create a new XMLTreeWalker, in the default {@link #MODE_ROOT} mode.
@@ -54,6 +59,7 @@ class XMLTreeWalker {
    public void setCurrentNode(XMLNode node) {
       currentNode = node;
       level = 0;
+      hasComputedNext = false;
    }
 
    /**
@@ -77,6 +83,7 @@ class XMLTreeWalker {
       if (result != null) {
          level++;
          currentNode = result;
+         hasComputedNext = false;
       }
       return result;
    }
@@ -105,6 +112,7 @@ class XMLTreeWalker {
       if (result != null) {
          level++;
          currentNode = result;
+         hasComputedNext = false;
       }
       return result;
    }
@@ -113,43 +121,33 @@ class XMLTreeWalker {
     * Moves the TreeWalker to the next visible node in document order relative to the current node, and returns the new node.
     */
    public XMLNode nextNode() {
-      XMLNode result = getNextNode(currentNode);
-      currentNode = result;
-      return result;
+      if (!hasComputedNext) {
+         computeNext();
+      }
+      currentNode = next;
+      level = nextLevel;
+      hasComputedNext = false;
+      return currentNode;
    }
 
+   /**
+    * Return true if there is a next node in document order relative to the current node.
+    *
+    * @return true if there is a next node
+    */
    public boolean hasNext() {
-      if (currentNode == null) {
-         return false;
-      }
-
-      // Go to the first child
-      XMLNode n = currentNode.getFirstChild();
-      if (n != null) {
-         return true;
-      }
-
-      // if this is the rootNode and we are in MODE_ROOT, we don't allow to go further
-      if (currentNode == rootNode) {
-         return false;
-      }
-
-      // Go to the next sibling
-      n = currentNode.getNextSibling();
-      if (n != null) {
-         return true;
+      if (!hasComputedNext) {
+         computeNext();
       }
+      return next != null;
+   }
 
-      // Go to the first sibling of one of the ancestors
-      n = currentNode;
-      while (((n = n.getParent()) != null) && (n != rootNode)) {
-         level--;
-         XMLNode t = n.getNextSibling();
-         if (t != null) {
-            return true;
-         }
-      }
-      return false;
+   private void computeNext() {
+      int currentLevel = level;
+      next = getNextNode(currentNode);
+      nextLevel = level;
+      level = currentLevel;
+      hasComputedNext = true;
    }
 
    /**
@@ -164,6 +162,7 @@ class XMLTreeWalker {
       XMLNode result = currentNode.getNextSibling();
       if (result != null) {
          currentNode = result;
+         hasComputedNext = false;
       }
       return result;
    }
@@ -180,6 +179,7 @@ class XMLTreeWalker {
       XMLNode result = currentNode.getPreviousSibling();
       if (result != null) {
          currentNode = result;
+         hasComputedNext = false;
       }
       return result;
    }
@@ -197,6 +197,7 @@ class XMLTreeWalker {
       if (result != null) {
          currentNode = result;
          level--;
+         hasComputedNext = false;
       }
       return result;
    }
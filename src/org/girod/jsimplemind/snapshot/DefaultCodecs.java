@@ -0,0 +1,182 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The codecs of the property values of the basic types, which are always available.
+ *
+ * @since 0.4
+ */
+class DefaultCodecs {
+   private DefaultCodecs() {
+   }
+
+   /**
+    * Return the default codecs.
+    *
+    * @return the codecs
+    */
+   static List<PropertyCodec> getCodecs() {
+      List<PropertyCodec> codecs = new ArrayList<>();
+      codecs.add(new StringCodec());
+      codecs.add(new IntegerCodec());
+      codecs.add(new LongCodec());
+      codecs.add(new DoubleCodec());
+      codecs.add(new BooleanCodec());
+      return codecs;
+   }
+
+   private static class StringCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "string";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof String;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return ((String) value).getBytes(StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public Object decode(byte[] data) {
+         return new String(data, StandardCharsets.UTF_8);
+      }
+   }
+
+   private static class IntegerCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "int";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof Integer;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return ByteBuffer.allocate(4).putInt((Integer) value).array();
+      }
+
+      @Override
+      public Object decode(byte[] data) throws IOException {
+         checkLength(data, 4);
+         return ByteBuffer.wrap(data).getInt();
+      }
+   }
+
+   private static class LongCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "long";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof Long;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return ByteBuffer.allocate(8).putLong((Long) value).array();
+      }
+
+      @Override
+      public Object decode(byte[] data) throws IOException {
+         checkLength(data, 8);
+         return ByteBuffer.wrap(data).getLong();
+      }
+   }
+
+   private static class DoubleCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "double";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof Double;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return ByteBuffer.allocate(8).putDouble((Double) value).array();
+      }
+
+      @Override
+      public Object decode(byte[] data) throws IOException {
+         checkLength(data, 8);
+         return ByteBuffer.wrap(data).getDouble();
+      }
+   }
+
+   private static class BooleanCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "boolean";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof Boolean;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return new byte[] {(byte) ((Boolean) value ? 1 : 0)};
+      }
+
+      @Override
+      public Object decode(byte[] data) throws IOException {
+         checkLength(data, 1);
+         return data[0] != 0;
+      }
+   }
+
+   private static void checkLength(byte[] data, int length) throws IOException {
+      if (data.length != length) {
+         throw new IOException("Invalid property value length " + data.length);
+      }
+   }
+}
@@ -0,0 +1,74 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the values of Topic properties in snapshots. A codec is identified by its name, which is
+ * stored in the snapshot, so the same codecs must be registered to write and read a snapshot.
+ *
+ * @since 0.4
+ */
+public interface PropertyCodec {
+   /**
+    * Return the codec name.
+    *
+    * @return the name
+    */
+   public String getName();
+
+   /**
+    * Return true if the codec can encode a property value.
+    *
+    * @param value the value
+    * @return true if the codec can encode the value
+    */
+   public boolean canEncode(Object value);
+
+   /**
+    * Encode a property value.
+    *
+    * @param value the value
+    * @return the encoded value
+    * @throws IOException if the value can not be encoded
+    */
+   public byte[] encode(Object value) throws IOException;
+
+   /**
+    * Decode a property value.
+    *
+    * @param data the encoded value
+    * @return the value
+    * @throws IOException if the value can not be decoded
+    */
+   public Object decode(byte[] data) throws IOException;
+}
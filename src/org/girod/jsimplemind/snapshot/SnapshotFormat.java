@@ -0,0 +1,64 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+/**
+ * The constants of the snapshot format.
+ *
+ * <p>
+ * A snapshot is a big-endian binary file with the following structure:
+ * <ul>
+ * <li>the magic number, the format version, and reserved flags</li>
+ * <li>the diagram title</li>
+ * <li>the names of the property codecs, which are referred to by their index in the Topic properties</li>
+ * <li>the number of Topics, then for each Topic: its id, parent id, position, packed colors, the colors which are
+ * null, text, note, the ids of its children in order, and its properties</li>
+ * </ul>
+ * Strings are stored as their length in UTF-8 bytes followed by the bytes, or -1 for a null String.</p>
+ *
+ * @since 0.4
+ */
+class SnapshotFormat {
+   /**
+    * The magic number at the start of a snapshot: "JSMS".
+    */
+   static final int MAGIC = 0x4A534D53;
+   /**
+    * The current version of the format.
+    */
+   static final int VERSION = 1;
+   static final byte NULL_FILL_COLOR = 1;
+   static final byte NULL_TEXT_COLOR = 2;
+   static final byte NULL_STROKE_COLOR = 4;
+
+   private SnapshotFormat() {
+   }
+}
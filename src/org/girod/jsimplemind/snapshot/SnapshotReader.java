@@ -0,0 +1,316 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+import org.girod.jsimplemind.reader.DiagramFactory;
+
+/**
+ * Reads a diagram from a binary snapshot written by a {@link SnapshotWriter}.
+ *
+ * <p>
+ * A snapshot file is read in a single buffer and decoded directly, without any XML parsing, so reading a snapshot is
+ * much faster than parsing the original SimpleMind file. The codecs which were added to the writer must also be added
+ * to the reader.</p>
+ *
+ * @since 0.4
+ */
+public class SnapshotReader {
+   /**
+    * The minimum encoded size of a Topic: its id, parent, position, colors, null colors flags, text, note, children
+    * count, and properties count.
+    */
+   private static final int TOPIC_MIN_SIZE = 7 * 4 + 1 + 4 * 4;
+   /**
+    * The minimum encoded size of a Topic property: its key, codec index, and data length.
+    */
+   private static final int PROPERTY_MIN_SIZE = 3 * 4;
+   private final Map<String, PropertyCodec> codecs = new HashMap<>();
+   private DiagramFactory factory = null;
+   private byte[] scratch = new byte[256];
+
+   public SnapshotReader() {
+      for (PropertyCodec codec : DefaultCodecs.getCodecs()) {
+         codecs.put(codec.getName(), codec);
+      }
+   }
+
+   /**
+    * Add a codec for Topic property values.
+    *
+    * @param codec the codec
+    */
+   public void addCodec(PropertyCodec codec) {
+      codecs.put(codec.getName(), codec);
+   }
+
+   /**
+    * Set the diagram factory.
+    *
+    * @param factory the factory
+    */
+   public void setDiagramFactory(DiagramFactory factory) {
+      this.factory = factory;
+   }
+
+   /**
+    * Return true if a file is a snapshot.
+    *
+    * @param file the file
+    * @return true if the file is a snapshot
+    */
+   public static boolean isSnapshot(File file) {
+      if (!file.isFile() || file.length() < 8) {
+         return false;
+      }
+      try (DataInputStream stream = new DataInputStream(new FileInputStream(file))) {
+         return stream.readInt() == SnapshotFormat.MAGIC;
+      } catch (IOException ex) {
+         return false;
+      }
+   }
+
+   /**
+    * Read a snapshot file. The file is read in a heap buffer rather than memory-mapped, so it is not kept locked after
+    * the read and can be rewritten or deleted right away.
+    *
+    * @param file the file
+    * @return the diagram
+    * @throws IOException if the file is not a valid snapshot, or for an I/O error
+    */
+   public SimpleMindDiagram read(File file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         long size = channel.size();
+         if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large: " + file);
+         }
+         ByteBuffer buffer = ByteBuffer.allocate((int) size);
+         int count = 0;
+         while (buffer.hasRemaining() && count != -1) {
+            count = channel.read(buffer);
+         }
+         buffer.flip();
+         return read(buffer);
+      }
+   }
+
+   /**
+    * Read a snapshot from a stream. The stream is not closed.
+    *
+    * @param stream the stream
+    * @return the diagram
+    * @throws IOException if the content is not a valid snapshot, or for an I/O error
+    */
+   public SimpleMindDiagram read(InputStream stream) throws IOException {
+      byte[] buf = new byte[8192];
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      int count;
+      while ((count = stream.read(buf)) != -1) {
+         out.write(buf, 0, count);
+      }
+      return read(ByteBuffer.wrap(out.toByteArray()));
+   }
+
+   /**
+    * Read a snapshot from a buffer, from its current position.
+    *
+    * @param buffer the buffer
+    * @return the diagram
+    * @throws IOException if the content is not a valid snapshot
+    */
+   public synchronized SimpleMindDiagram read(ByteBuffer buffer) throws IOException {
+      try {
+         return readImpl(buffer);
+      } catch (BufferUnderflowException ex) {
+         throw new IOException("Truncated snapshot", ex);
+      }
+   }
+
+   private SimpleMindDiagram readImpl(ByteBuffer buffer) throws IOException {
+      if (buffer.getInt() != SnapshotFormat.MAGIC) {
+         throw new IOException("Not a snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != SnapshotFormat.VERSION) {
+         throw new IOException("Unsupported snapshot version " + version);
+      }
+      buffer.getInt();
+      SimpleMindDiagram diagram = factory != null ? factory.createDiagram() : new SimpleMindDiagram();
+      diagram.setTitle(readString(buffer));
+      PropertyCodec[] codecsTable = new PropertyCodec[checkCount(buffer, 4)];
+      String[] codecNames = new String[codecsTable.length];
+      for (int i = 0; i < codecsTable.length; i++) {
+         codecNames[i] = readString(buffer);
+         codecsTable[i] = codecs.get(codecNames[i]);
+      }
+      int count = checkCount(buffer, TOPIC_MIN_SIZE);
+      Topic[] topics = new Topic[count];
+      int[] parentIDs = new int[count];
+      int[] childrenStart = new int[count + 1];
+      int[] childrenIDs = new int[Math.max(count - 1, 0)];
+      int childrenCount = 0;
+      for (int i = 0; i < count; i++) {
+         int id = buffer.getInt();
+         parentIDs[i] = buffer.getInt();
+         Topic topic = createTopic(id);
+         topic.setPosition(buffer.getInt(), buffer.getInt());
+         topic.setFillRGB(buffer.getInt());
+         topic.setTextRGB(buffer.getInt());
+         topic.setStrokeRGB(buffer.getInt());
+         byte nullColors = buffer.get();
+         if ((nullColors & SnapshotFormat.NULL_FILL_COLOR) != 0) {
+            topic.setFillColor(null);
+         }
+         if ((nullColors & SnapshotFormat.NULL_TEXT_COLOR) != 0) {
+            topic.setTextColor(null);
+         }
+         if ((nullColors & SnapshotFormat.NULL_STROKE_COLOR) != 0) {
+            topic.setStrokeColor(null);
+         }
+         topic.setText(readString(buffer));
+         topic.setNote(readString(buffer));
+         int children = checkCount(buffer, 4);
+         childrenStart[i] = childrenCount;
+         if (childrenCount + children > childrenIDs.length) {
+            int[] newIDs = new int[Math.max(childrenIDs.length * 2, childrenCount + children)];
+            System.arraycopy(childrenIDs, 0, newIDs, 0, childrenCount);
+            childrenIDs = newIDs;
+         }
+         for (int j = 0; j < children; j++) {
+            childrenIDs[childrenCount++] = buffer.getInt();
+         }
+         int properties = checkCount(buffer, PROPERTY_MIN_SIZE);
+         for (int j = 0; j < properties; j++) {
+            String key = readString(buffer);
+            int codecIndex = buffer.getInt();
+            byte[] data = new byte[checkCount(buffer, 1)];
+            buffer.get(data);
+            if (codecIndex < 0 || codecIndex >= codecsTable.length) {
+               throw new IOException("Invalid codec index " + codecIndex);
+            }
+            PropertyCodec codec = codecsTable[codecIndex];
+            if (codec == null) {
+               throw new IOException("No codec registered for " + codecNames[codecIndex]);
+            }
+            topic.addProperty(key, codec.decode(data));
+         }
+         topics[i] = topic;
+         diagram.addTopic(topic);
+      }
+      childrenStart[count] = childrenCount;
+      for (int i = 0; i < count; i++) {
+         Topic topic = topics[i];
+         if (parentIDs[i] != -1) {
+            topic.setParent(getTopic(diagram, parentIDs[i]));
+         }
+         for (int j = childrenStart[i]; j < childrenStart[i + 1]; j++) {
+            topic.addChild(getTopic(diagram, childrenIDs[j]));
+         }
+      }
+      return diagram;
+   }
+
+   private Topic createTopic(int id) {
+      Topic topic = null;
+      if (factory != null) {
+         topic = factory.createTopic(id);
+      }
+      if (topic == null) {
+         topic = new Topic(id);
+      }
+      return topic;
+   }
+
+   private static Topic getTopic(SimpleMindDiagram diagram, int id) throws IOException {
+      Topic topic = diagram.getTopic(id);
+      if (topic == null) {
+         throw new IOException("Reference to the unknown Topic " + id);
+      }
+      return topic;
+   }
+
+   /**
+    * Read a count of elements, and check that the remaining content is large enough to hold them. This prevents a
+    * corrupted count from allocating a huge array.
+    *
+    * @param buffer the buffer
+    * @param elementSize the minimum encoded size of each element
+    * @return the count
+    * @throws IOException if the count is negative or larger than the remaining content
+    */
+   private static int checkCount(ByteBuffer buffer, int elementSize) throws IOException {
+      int count = buffer.getInt();
+      if (count < 0) {
+         throw new IOException("Invalid count " + count);
+      } else if ((long) count * elementSize > buffer.remaining()) {
+         throw new IOException("Truncated snapshot");
+      }
+      return count;
+   }
+
+   private String readString(ByteBuffer buffer) throws IOException {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      } else if (length < 0) {
+         throw new IOException("Invalid String length " + length);
+      } else if (length == 0) {
+         return "";
+      } else if (length > buffer.remaining()) {
+         throw new IOException("Truncated snapshot");
+      }
+      if (buffer.hasArray()) {
+         int position = buffer.position();
+         String value = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+         buffer.position(position + length);
+         return value;
+      }
+      if (length > scratch.length) {
+         scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      buffer.get(scratch, 0, length);
+      return new String(scratch, 0, length, StandardCharsets.UTF_8);
+   }
+}
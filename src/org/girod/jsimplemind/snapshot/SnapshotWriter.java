@@ -0,0 +1,187 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+
+/**
+ * Writes a diagram as a binary snapshot, which can be loaded by a {@link SnapshotReader}.
+ *
+ * <p>
+ * The values of the Topic properties are encoded by {@link PropertyCodec}s. Codecs are provided for String, Integer,
+ * Long, Double and Boolean values, and other codecs can be added with {@link #addCodec(PropertyCodec)}.</p>
+ *
+ * @since 0.4
+ */
+public class SnapshotWriter {
+   private final List<PropertyCodec> codecs = DefaultCodecs.getCodecs();
+
+   public SnapshotWriter() {
+   }
+
+   /**
+    * Add a codec for Topic property values. The codecs which are added have precedence over the default codecs.
+    *
+    * @param codec the codec
+    */
+   public void addCodec(PropertyCodec codec) {
+      codecs.add(0, codec);
+   }
+
+   /**
+    * Write a snapshot of a diagram in a file.
+    *
+    * @param diagram the diagram
+    * @param file the file
+    * @throws IOException if a property value can not be encoded, or for an I/O error
+    */
+   public void write(SimpleMindDiagram diagram, File file) throws IOException {
+      try (OutputStream stream = new FileOutputStream(file)) {
+         write(diagram, stream);
+      }
+   }
+
+   /**
+    * Write a snapshot of a diagram in a stream. The stream is not closed.
+    *
+    * @param diagram the diagram
+    * @param stream the stream
+    * @throws IOException if a property value can not be encoded, or for an I/O error
+    */
+   public void write(SimpleMindDiagram diagram, OutputStream stream) throws IOException {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+      out.writeInt(SnapshotFormat.MAGIC);
+      out.writeInt(SnapshotFormat.VERSION);
+      out.writeInt(0);
+      writeString(out, diagram.getTitle());
+      out.writeInt(codecs.size());
+      for (PropertyCodec codec : codecs) {
+         writeString(out, codec.getName());
+      }
+      Collection<Topic> topics = diagram.getTopics().values();
+      out.writeInt(topics.size());
+      Iterator<Topic> it = topics.iterator();
+      while (it.hasNext()) {
+         writeTopic(out, diagram, it.next());
+      }
+      out.flush();
+   }
+
+   private void writeTopic(DataOutputStream out, SimpleMindDiagram diagram, Topic topic) throws IOException {
+      out.writeInt(topic.getID());
+      // a Topic removed from the diagram can still be the parent or a child of a Topic of the diagram
+      Topic parent = topic.getParent();
+      out.writeInt(parent != null && isInDiagram(diagram, parent) ? parent.getID() : -1);
+      out.writeInt(topic.getX());
+      out.writeInt(topic.getY());
+      out.writeInt(topic.getFillRGB());
+      out.writeInt(topic.getTextRGB());
+      out.writeInt(topic.getStrokeRGB());
+      byte nullColors = 0;
+      // only a color of value 0 can be null, and the Color accessors are only called in this case
+      if (topic.getFillRGB() == 0 && topic.getFillColor() == null) {
+         nullColors |= SnapshotFormat.NULL_FILL_COLOR;
+      }
+      if (topic.getTextRGB() == 0 && topic.getTextColor() == null) {
+         nullColors |= SnapshotFormat.NULL_TEXT_COLOR;
+      }
+      if (topic.getStrokeRGB() == 0 && topic.getStrokeColor() == null) {
+         nullColors |= SnapshotFormat.NULL_STROKE_COLOR;
+      }
+      out.writeByte(nullColors);
+      writeString(out, topic.getText());
+      writeString(out, topic.getNote());
+      List<Topic> children = topic.getChildrenList();
+      int childrenCount = 0;
+      for (int i = 0; i < children.size(); i++) {
+         if (isInDiagram(diagram, children.get(i))) {
+            childrenCount++;
+         }
+      }
+      out.writeInt(childrenCount);
+      for (int i = 0; i < children.size(); i++) {
+         Topic child = children.get(i);
+         if (isInDiagram(diagram, child)) {
+            out.writeInt(child.getID());
+         }
+      }
+      Map<String, Object> properties = topic.getProperties();
+      out.writeInt(properties.size());
+      Iterator<Map.Entry<String, Object>> it = properties.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<String, Object> entry = it.next();
+         writeString(out, entry.getKey());
+         int codec = getCodec(entry.getValue());
+         if (codec == -1) {
+            throw new IOException("No codec for the property " + entry.getKey() + " of the Topic " + topic.getID());
+         }
+         byte[] data = codecs.get(codec).encode(entry.getValue());
+         out.writeInt(codec);
+         out.writeInt(data.length);
+         out.write(data);
+      }
+   }
+
+   private int getCodec(Object value) {
+      for (int i = 0; i < codecs.size(); i++) {
+         if (codecs.get(i).canEncode(value)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private static boolean isInDiagram(SimpleMindDiagram diagram, Topic topic) {
+      return diagram.getTopic(topic.getID()) == topic;
+   }
+
+   private static void writeString(DataOutputStream out, String value) throws IOException {
+      if (value == null) {
+         out.writeInt(-1);
+      } else {
+         byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+         out.writeInt(bytes.length);
+         out.write(bytes);
+      }
+   }
+}
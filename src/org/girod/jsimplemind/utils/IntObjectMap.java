@@ -0,0 +1,500 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.utils;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A map of int keys to objects, which does not box the keys.
+ *
+ * <p>
+ * The map first stores its values in an array indexed by the key, which is the most compact and the fastest storage
+ * when the keys are small positive integers without too many gaps, as the ids of the Topics of a diagram usually are.
+ * The map switches to an open addressing hash table as soon as a key is negative or too large for the number of
+ * values. Null values are not allowed.</p>
+ *
+ * <p>
+ * The values are iterated in the increasing order of their keys while the map uses an array, and in an unspecified
+ * order afterwards. The {@link #asMap()} method returns a {@link Map} view of this map.</p>
+ *
+ * @param <V> the type of the values
+ * @since 0.4
+ */
+public class IntObjectMap<V> {
+   private static final Object[] EMPTY = new Object[0];
+   private static final int MIN_HASH_CAPACITY = 8;
+   /**
+    * The maximum ratio of the array length to the number of values for the array storage.
+    */
+   private static final int MAX_ARRAY_RATIO = 4;
+   private static final int MIN_ARRAY_LENGTH = 16;
+   // the array storage, or the values of the hash table
+   private Object[] values = EMPTY;
+   // the keys of the hash table, null if the map uses the array storage
+   private int[] keys = null;
+   private int size = 0;
+   private int modCount = 0;
+   private Map<Integer, V> mapView = null;
+
+   public IntObjectMap() {
+   }
+
+   /**
+    * Create a map with an initial capacity.
+    *
+    * @param capacity the initial capacity
+    */
+   public IntObjectMap(int capacity) {
+      if (capacity > 0) {
+         values = new Object[capacity];
+      }
+   }
+
+   /**
+    * Return the number of values.
+    *
+    * @return the number of values
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Return true if the map has no values.
+    *
+    * @return true if the map has no values
+    */
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   /**
+    * Return the value for a key.
+    *
+    * @param key the key
+    * @return the value, or null if there is no value for the key
+    */
+   @SuppressWarnings("unchecked")
+   public V get(int key) {
+      if (keys == null) {
+         return key >= 0 && key < values.length ? (V) values[key] : null;
+      }
+      int index = indexOf(key);
+      return index == -1 ? null : (V) values[index];
+   }
+
+   /**
+    * Return true if the map has a value for a key.
+    *
+    * @param key the key
+    * @return true if the map has a value for the key
+    */
+   public boolean containsKey(int key) {
+      return get(key) != null;
+   }
+
+   /**
+    * Set the value for a key.
+    *
+    * @param key the key
+    * @param value the value
+    * @return the previous value, or null if there was no value for the key
+    * @throws NullPointerException if the value is null
+    */
+   @SuppressWarnings("unchecked")
+   public V put(int key, V value) {
+      Objects.requireNonNull(value);
+      if (keys == null) {
+         if (key >= 0 && key < values.length) {
+            Object previous = values[key];
+            values[key] = value;
+            if (previous == null) {
+               size++;
+               modCount++;
+            }
+            return (V) previous;
+         } else if (key >= 0 && key < Math.max(MIN_ARRAY_LENGTH, (size + 1) * MAX_ARRAY_RATIO)) {
+            int length = Math.max(key + 1, Math.max(MIN_ARRAY_LENGTH, values.length * 2));
+            values = Arrays.copyOf(values, Math.min(length, Math.max(MIN_ARRAY_LENGTH, (size + 1) * MAX_ARRAY_RATIO)));
+            values[key] = value;
+            size++;
+            modCount++;
+            return null;
+         } else {
+            toHashTable();
+         }
+      }
+      int index = slot(key);
+      Object previous = values[index];
+      if (previous != null) {
+         values[index] = value;
+         return (V) previous;
+      }
+      keys[index] = key;
+      values[index] = value;
+      size++;
+      modCount++;
+      if (size * 4 > values.length * 3) {
+         rehash(values.length * 2);
+      }
+      return null;
+   }
+
+   /**
+    * Remove the value for a key.
+    *
+    * @param key the key
+    * @return the removed value, or null if there was no value for the key
+    */
+   @SuppressWarnings("unchecked")
+   public V remove(int key) {
+      if (keys == null) {
+         if (key < 0 || key >= values.length || values[key] == null) {
+            return null;
+         }
+         Object previous = values[key];
+         values[key] = null;
+         size--;
+         modCount++;
+         return (V) previous;
+      }
+      int index = indexOf(key);
+      if (index == -1) {
+         return null;
+      }
+      Object previous = values[index];
+      removeSlot(index);
+      size--;
+      modCount++;
+      return (V) previous;
+   }
+
+   /**
+    * Remove all the values.
+    */
+   public void clear() {
+      values = EMPTY;
+      keys = null;
+      size = 0;
+      modCount++;
+   }
+
+   /**
+    * Return a {@link Map} view of this map. The view is backed by this map, and supports the modification of the
+    * map. Note that each access by the view boxes the keys.
+    *
+    * @return the view
+    */
+   public Map<Integer, V> asMap() {
+      if (mapView == null) {
+         mapView = new MapView();
+      }
+      return mapView;
+   }
+
+   /**
+    * Return the values. The collection is backed by this map.
+    *
+    * @return the values
+    */
+   public Collection<V> values() {
+      return asMap().values();
+   }
+
+   private void toHashTable() {
+      Object[] oldValues = values;
+      int capacity = MIN_HASH_CAPACITY;
+      while (capacity * 3 < (size + 1) * 4) {
+         capacity *= 2;
+      }
+      keys = new int[capacity];
+      values = new Object[capacity];
+      for (int key = 0; key < oldValues.length; key++) {
+         if (oldValues[key] != null) {
+            int index = slot(key);
+            keys[index] = key;
+            values[index] = oldValues[key];
+         }
+      }
+   }
+
+   private void rehash(int capacity) {
+      int[] oldKeys = keys;
+      Object[] oldValues = values;
+      keys = new int[capacity];
+      values = new Object[capacity];
+      for (int i = 0; i < oldValues.length; i++) {
+         if (oldValues[i] != null) {
+            int index = slot(oldKeys[i]);
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+         }
+      }
+   }
+
+   private static int hash(int key) {
+      int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * Return the slot of a key in the hash table: either the slot which contains the key, or the empty slot where the
+    * key would be inserted.
+    */
+   private int slot(int key) {
+      int mask = values.length - 1;
+      int index = hash(key) & mask;
+      while (values[index] != null && keys[index] != key) {
+         index = (index + 1) & mask;
+      }
+      return index;
+   }
+
+   private int indexOf(int key) {
+      int index = slot(key);
+      return values[index] == null ? -1 : index;
+   }
+
+   /**
+    * Remove the value of a slot in the hash table, and shift back the following values of the same cluster so that
+    * they can still be found.
+    */
+   private void removeSlot(int index) {
+      int mask = values.length - 1;
+      int hole = index;
+      int i = (index + 1) & mask;
+      while (values[i] != null) {
+         int home = hash(keys[i]) & mask;
+         // move the value if its home slot is not in the cyclic range (hole, i]
+         if (((i - home) & mask) >= ((i - hole) & mask)) {
+            keys[hole] = keys[i];
+            values[hole] = values[i];
+            hole = i;
+         }
+         i = (i + 1) & mask;
+      }
+      values[hole] = null;
+   }
+
+   private int keyAt(int index) {
+      return keys == null ? index : keys[index];
+   }
+
+   /**
+    * The Map view.
+    */
+   private class MapView extends AbstractMap<Integer, V> {
+      private Set<Entry<Integer, V>> entrySet = null;
+
+      @Override
+      public int size() {
+         return size;
+      }
+
+      @Override
+      public boolean isEmpty() {
+         return size == 0;
+      }
+
+      @Override
+      public V get(Object key) {
+         return key instanceof Integer ? IntObjectMap.this.get((Integer) key) : null;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+         return key instanceof Integer && IntObjectMap.this.containsKey((Integer) key);
+      }
+
+      @Override
+      public V put(Integer key, V value) {
+         return IntObjectMap.this.put(key, value);
+      }
+
+      @Override
+      public V remove(Object key) {
+         return key instanceof Integer ? IntObjectMap.this.remove((Integer) key) : null;
+      }
+
+      @Override
+      public void clear() {
+         IntObjectMap.this.clear();
+      }
+
+      @Override
+      public Set<Entry<Integer, V>> entrySet() {
+         if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<Integer, V>>() {
+               @Override
+               public Iterator<Entry<Integer, V>> iterator() {
+                  return new EntryIterator();
+               }
+
+               @Override
+               public int size() {
+                  return size;
+               }
+            };
+         }
+         return entrySet;
+      }
+
+      @Override
+      public Collection<V> values() {
+         return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+               EntryIterator it = new EntryIterator();
+               return new Iterator<V>() {
+                  @Override
+                  public boolean hasNext() {
+                     return it.hasNext();
+                  }
+
+                  @Override
+                  @SuppressWarnings("unchecked")
+                  public V next() {
+                     return (V) values[it.nextIndex()];
+                  }
+
+                  @Override
+                  public void remove() {
+                     it.remove();
+                  }
+               };
+            }
+
+            @Override
+            public int size() {
+               return size;
+            }
+         };
+      }
+   }
+
+   /**
+    * Iterates on the entries of the map.
+    */
+   private class EntryIterator implements Iterator<Map.Entry<Integer, V>> {
+      private int next = 0;
+      private int last = -1;
+      private int expectedModCount = modCount;
+      // the keys which remain to be iterated after a removal in the hash table
+      private int[] remaining = null;
+      private int remainingIndex = 0;
+
+      private EntryIterator() {
+         advance();
+      }
+
+      private void advance() {
+         while (next < values.length && values[next] == null) {
+            next++;
+         }
+      }
+
+      @Override
+      public boolean hasNext() {
+         if (remaining != null) {
+            return remainingIndex < remaining.length;
+         }
+         return next < values.length;
+      }
+
+      private int nextIndex() {
+         if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+         }
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         if (remaining != null) {
+            last = indexOf(remaining[remainingIndex++]);
+         } else {
+            last = next;
+            next++;
+            advance();
+         }
+         return last;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Map.Entry<Integer, V> next() {
+         int index = nextIndex();
+         return new AbstractMap.SimpleImmutableEntry<>(keyAt(index), (V) values[index]);
+      }
+
+      @Override
+      public void remove() {
+         if (last == -1) {
+            throw new IllegalStateException();
+         }
+         if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+         }
+         if (keys == null) {
+            IntObjectMap.this.remove(last);
+         } else {
+            if (remaining == null) {
+               // removing a value of the hash table can move the following values of its cluster, which can wrap
+               // around the table, so the keys which have not been iterated yet are kept
+               int count = 0;
+               for (int i = last + 1; i < values.length; i++) {
+                  if (values[i] != null) {
+                     count++;
+                  }
+               }
+               remaining = new int[count];
+               count = 0;
+               for (int i = last + 1; i < values.length; i++) {
+                  if (values[i] != null) {
+                     remaining[count++] = keys[i];
+                  }
+               }
+            }
+            IntObjectMap.this.remove(keys[last]);
+         }
+         expectedModCount = modCount;
+         last = -1;
+      }
+   }
+}
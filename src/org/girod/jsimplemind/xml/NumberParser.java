@@ -0,0 +1,182 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.xml;
+
+/**
+ * Parses the numeric values of XML attributes without allocating any object.
+ *
+ * <p>
+ * The values are parsed as <code>int</code> values. Decimal values such as <code>"324.00"</code>, which are found in
+ * SimpleMind files, are accepted and rounded to the nearest integer, with halves rounded away from zero. Contrary to
+ * {@link Integer#parseInt(java.lang.String)}, no exception is thrown if a value is not a valid number: the default
+ * value is returned instead.</p>
+ *
+ * @since 0.4
+ */
+public final class NumberParser {
+   private static final long MAX_MAGNITUDE = -(long) Integer.MIN_VALUE;
+
+   private NumberParser() {
+   }
+
+   /**
+    * Parse a value as an int.
+    *
+    * @param value the value (can be null)
+    * @param defaultValue the value to return if the value is null or is not a number
+    * @return the parsed value
+    */
+   public static int parseInt(CharSequence value, int defaultValue) {
+      if (value == null) {
+         return defaultValue;
+      }
+      int length = value.length();
+      if (length == 0) {
+         return defaultValue;
+      }
+      int i = 0;
+      boolean isNegative = false;
+      char c = value.charAt(0);
+      if (c == '-' || c == '+') {
+         isNegative = c == '-';
+         i++;
+      }
+      long result = 0;
+      int countDigits = 0;
+      while (i < length) {
+         c = value.charAt(i);
+         if (c < '0' || c > '9') {
+            break;
+         }
+         result = result * 10 + (c - '0');
+         if (result > MAX_MAGNITUDE) {
+            return defaultValue;
+         }
+         countDigits++;
+         i++;
+      }
+      if (i < length) {
+         if (value.charAt(i) != '.') {
+            return defaultValue;
+         }
+         i++;
+         boolean roundUp = false;
+         if (i < length) {
+            c = value.charAt(i);
+            roundUp = c >= '5' && c <= '9';
+         }
+         while (i < length) {
+            c = value.charAt(i);
+            if (c < '0' || c > '9') {
+               return defaultValue;
+            }
+            countDigits++;
+            i++;
+         }
+         if (roundUp) {
+            result++;
+         }
+      }
+      return toInt(result, isNegative, countDigits, defaultValue);
+   }
+
+   /**
+    * Parse the value of an array of ASCII or UTF-8 bytes as an int.
+    *
+    * @param value the array of bytes
+    * @param offset the offset of the value in the array
+    * @param length the length of the value
+    * @param defaultValue the value to return if the value is not a number
+    * @return the parsed value
+    */
+   public static int parseInt(byte[] value, int offset, int length, int defaultValue) {
+      if (length == 0) {
+         return defaultValue;
+      }
+      int end = offset + length;
+      int i = offset;
+      boolean isNegative = false;
+      byte b = value[i];
+      if (b == '-' || b == '+') {
+         isNegative = b == '-';
+         i++;
+      }
+      long result = 0;
+      int countDigits = 0;
+      while (i < end) {
+         b = value[i];
+         if (b < '0' || b > '9') {
+            break;
+         }
+         result = result * 10 + (b - '0');
+         if (result > MAX_MAGNITUDE) {
+            return defaultValue;
+         }
+         countDigits++;
+         i++;
+      }
+      if (i < end) {
+         if (value[i] != '.') {
+            return defaultValue;
+         }
+         i++;
+         boolean roundUp = false;
+         if (i < end) {
+            b = value[i];
+            roundUp = b >= '5' && b <= '9';
+         }
+         while (i < end) {
+            b = value[i];
+            if (b < '0' || b > '9') {
+               return defaultValue;
+            }
+            countDigits++;
+            i++;
+         }
+         if (roundUp) {
+            result++;
+         }
+      }
+      return toInt(result, isNegative, countDigits, defaultValue);
+   }
+
+   private static int toInt(long magnitude, boolean isNegative, int countDigits, int defaultValue) {
+      if (countDigits == 0 || magnitude > MAX_MAGNITUDE) {
+         return defaultValue;
+      } else if (isNegative) {
+         return (int) -magnitude;
+      } else if (magnitude > Integer.MAX_VALUE) {
+         return defaultValue;
+      } else {
+         return (int) magnitude;
+      }
+   }
+}
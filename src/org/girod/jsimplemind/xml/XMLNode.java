@@ -41,7 +41,13 @@ import java.util.TreeMap;
 /**
  * A Node in an XML File.
  *
- * @since 0.1
+ * <p>
+ * Two Nodes are equal if they have the same name, attributes, CDATA content and children, regardless of their parent.
+ * The hash code of a Node is computed from the same structure. It is cached, and invalidated for the Node and its
+ * ancestors when the Node is modified with {@link #addChild(XMLNode)}, {@link #addAttribute(String, String)} or
+ * {@link #setCDATA(String)}.</p>
+ *
+ * @version 0.4
  */
 public class XMLNode {
    /**
@@ -69,6 +75,14 @@ public class XMLNode {
     * The CDATA content.
     */
    private String cData = null;
+   /**
+    * The cached structural hash code.
+    */
+   private int hash = 0;
+   /**
+    * True if the cached structural hash code is valid.
+    */
+   private boolean hashComputed = false;
 
    /**
     * Create the Node.
@@ -171,7 +185,8 @@ public class XMLNode {
    }
 
    /**
-    * Return the ordered list of children of this Node.
+    * Return the ordered list of children of this Node. The list must not be modified directly, because the hash code
+    * of the Node is cached, use {@link #addChild(XMLNode)} instead.
     *
     * @return the ordered list of children of this Node
     */
@@ -205,6 +220,26 @@ public class XMLNode {
       }
    }
 
+   /**
+    * Return the index of this Node in the list of children of its parent. The index recorded when the Node was
+    * added to its parent is used if it is still valid, so this method is in constant time in the usual case.
+    *
+    * @param siblings the list of children of the parent Node
+    * @return the index, or -1 if the Node is not in the list
+    */
+   private int getIndexInParent(List<XMLNode> siblings) {
+      if (index >= 0 && index < siblings.size() && siblings.get(index) == this) {
+         return index;
+      }
+      for (int i = 0; i < siblings.size(); i++) {
+         if (siblings.get(i) == this) {
+            index = i;
+            return i;
+         }
+      }
+      return -1;
+   }
+
    /**
     * Return the next sibling of the Node.
     *
@@ -218,9 +253,9 @@ public class XMLNode {
          if (siblings.size() < 2) {
             return null;
          } else {
-            int index = siblings.indexOf(this);
-            if (siblings.size() > index + 1) {
-               return siblings.get(index + 1);
+            int _index = getIndexInParent(siblings);
+            if (_index != -1 && siblings.size() > _index + 1) {
+               return siblings.get(_index + 1);
             } else {
                return null;
             }
@@ -241,9 +276,9 @@ public class XMLNode {
          if (siblings.size() < 2) {
             return null;
          } else {
-            int index = siblings.indexOf(this);
-            if (index > 0) {
-               return siblings.get(index - 1);
+            int _index = getIndexInParent(siblings);
+            if (_index > 0) {
+               return siblings.get(_index - 1);
             } else {
                return null;
             }
@@ -259,6 +294,7 @@ public class XMLNode {
    public void addChild(XMLNode child) {
       child.setParent(this, children.size());
       children.add(child);
+      invalidateHash();
    }
 
    /**
@@ -289,7 +325,8 @@ public class XMLNode {
    }
 
    /**
-    * Return the Map of attributes for this node.
+    * Return the Map of attributes for this node. The Map must not be modified directly, because the hash code of the
+    * Node is cached, use the addAttribute methods instead.
     *
     * @return the Map of attributes for this node
     */
@@ -379,24 +416,14 @@ public class XMLNode {
    }
 
    /**
-    * Return the value of an attribute of a specified name as an int.
+    * Return the value of an attribute of a specified name as an int. A decimal value is rounded to the nearest int.
     *
     * @param attrName the attribute name
     * @param defaultValue the default value
     * @return the value of the attribute
     */
    public int getAttributeValueAsInt(String attrName, int defaultValue) {
-      if (attributes.containsKey(attrName)) {
-         String attrvalue = attributes.get(attrName);
-         try {
-            int i = Integer.parseInt(attrvalue);
-            return i;
-         } catch (NumberFormatException e) {
-            return defaultValue;
-         }
-      } else {
-         return defaultValue;
-      }
+      return NumberParser.parseInt(attributes.get(attrName), defaultValue);
    }
 
    /**
@@ -407,6 +434,7 @@ public class XMLNode {
     */
    public void addAttribute(String attrName, int value) {
       attributes.put(attrName, Integer.toString(value));
+      invalidateHash();
    }
 
    /**
@@ -417,6 +445,7 @@ public class XMLNode {
     */
    public void addAttribute(String attrName, String value) {
       attributes.put(attrName, value);
+      invalidateHash();
    }
 
    /**
@@ -427,6 +456,7 @@ public class XMLNode {
     */
    public void addAttribute(String attrName, float value) {
       attributes.put(attrName, format(value));
+      invalidateHash();
    }
 
    /**
@@ -437,6 +467,7 @@ public class XMLNode {
     */
    public void addAttribute(String attrName, boolean value) {
       attributes.put(attrName, value ? "true" : "false");
+      invalidateHash();
    }
 
    /**
@@ -446,6 +477,7 @@ public class XMLNode {
     */
    public void setCDATA(String cData) {
       this.cData = cData;
+      invalidateHash();
    }
 
    /**
@@ -482,12 +514,47 @@ public class XMLNode {
       return s;
    }
 
+   /**
+    * Invalidate the cached hash code of this Node and of its ancestors.
+    */
+   void invalidateHash() {
+      XMLNode node = this;
+      // the ancestors of a Node whose hash code is not computed do not have a computed hash code either
+      while (node != null && node.hashComputed) {
+         node.hashComputed = false;
+         node = node.nodeParent;
+      }
+   }
+
+   /**
+    * Compute the structural hash code of this Node. The hash codes of the children are computed and cached.
+    *
+    * @return the hash code
+    */
+   int computeHash() {
+      int _hash = 3;
+      _hash = 23 * _hash + Objects.hashCode(this.name);
+      _hash = 23 * _hash + Objects.hashCode(this.cData);
+      // the entries are chained in their sorted order, because the sum used by Map.hashCode collides for attributes
+      // which only differ by numbers
+      Iterator<Entry<String, String>> it = attributes.entrySet().iterator();
+      while (it.hasNext()) {
+         Entry<String, String> entry = it.next();
+         _hash = 23 * _hash + entry.getKey().hashCode();
+         _hash = 23 * _hash + Objects.hashCode(entry.getValue());
+      }
+      for (int i = 0; i < children.size(); i++) {
+         _hash = 23 * _hash + children.get(i).hashCode();
+      }
+      return _hash;
+   }
+
    @Override
    public int hashCode() {
-      int hash = 3;
-      hash = 23 * hash + Objects.hashCode(this.name);
-      hash = 23 * hash + Objects.hashCode(this.nodeParent);
-      hash = 23 * hash + this.index;
+      if (!hashComputed) {
+         hash = computeHash();
+         hashComputed = true;
+      }
       return hash;
    }
 
@@ -503,15 +570,27 @@ public class XMLNode {
          return false;
       }
       final XMLNode other = (XMLNode) obj;
-      if (this.index != other.index) {
+      // the cached hash codes reject most different Nodes without walking their children
+      if (this.hashCode() != other.hashCode()) {
          return false;
       }
       if (!Objects.equals(this.name, other.name)) {
          return false;
       }
-      if (!Objects.equals(this.nodeParent, other.nodeParent)) {
+      if (!Objects.equals(this.cData, other.cData)) {
          return false;
       }
+      if (!this.attributes.equals(other.attributes)) {
+         return false;
+      }
+      if (this.children.size() != other.children.size()) {
+         return false;
+      }
+      for (int i = 0; i < children.size(); i++) {
+         if (!children.get(i).equals(other.children.get(i))) {
+            return false;
+         }
+      }
       return true;
    }
 
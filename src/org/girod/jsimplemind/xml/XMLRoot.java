@@ -30,13 +30,12 @@ the project website at the project page on https://github.com/hervegirod/jSimple
  */
 package org.girod.jsimplemind.xml;
 
-import java.util.Iterator;
 import java.util.Objects;
 
 /**
  * A root Node in a graphml XML File.
  *
- * @since 0.1
+ * @version 0.4
  */
 public class XMLRoot extends XMLNode {
    private String encoding = null;
@@ -57,6 +56,7 @@ public class XMLRoot extends XMLNode {
     */
    public void setEncoding(String encoding) {
       this.encoding = encoding;
+      invalidateHash();
    }
 
    /**
@@ -87,67 +87,30 @@ public class XMLRoot extends XMLNode {
    }
 
    /**
-    * Return true if this node is equal to another Object.
+    * Return true if this node is equal to another Object. The two roots must have the same encoding, name, attributes,
+    * CDATA content and children.
     *
     * @param o the object
     * @return true true if this node is equal to the Object
     */
    @Override
    public boolean equals(Object o) {
-      if (!(o instanceof XMLNode)) {
-         return false;
-      }
-      if (!(o.getClass() == XMLRoot.class)) {
+      if (!super.equals(o)) {
          return false;
       }
       XMLRoot node = (XMLRoot) o;
-      if (!node.getName().equals(name)) {
-         return false;
-      }
-      if (node.encoding == null && encoding != null) {
-         return false;
-      }
-      if (node.encoding != null && encoding == null) {
-         return false;
-      }
-      if (encoding != null && !node.encoding.equals(encoding)) {
-         return false;
-      }
-      if (node.getAttributes().size() != attributes.size()) {
-         return false;
-      }
-      Iterator<String> it = node.getAttributes().keySet().iterator();
-      while (it.hasNext()) {
-         String key = it.next();
-         if (!attributes.containsKey(key)) {
-            return false;
-         }
-         String value = node.getAttributes().get(key);
-         String value2 = attributes.get(key);
-         if (!value.equals(value2)) {
-            return false;
-         }
-      }
-      if (node.getChildren().size() != children.size()) {
-         return false;
-      }
-      for (int i = 0; i < node.getChildren().size(); i++) {
-         XMLNode child = node.getChildren().get(i);
-         XMLNode child2 = children.get(i);
-         if (!child.equals(child2)) {
-            return false;
-         }
-      }
-      return true;
+      return Objects.equals(node.encoding, encoding);
    }
 
    @Override
-   public int hashCode() {
-      int hash = 7;
+   int computeHash() {
+      int hash = super.computeHash();
       hash = 59 * hash + Objects.hashCode(this.encoding);
-      hash = 59 * hash + Objects.hashCode(this.name);
-      hash = 59 * hash + Objects.hashCode(this.children);
-      hash = 59 * hash + Objects.hashCode(this.attributes);
       return hash;
    }
+
+   @Override
+   public int hashCode() {
+      return super.hashCode();
+   }
 }
@@ -0,0 +1,190 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.benchmark;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic SimpleMind documents of arbitrary size for the benchmarks.
+ *
+ * @since 0.4
+ */
+public class MindMapGenerator {
+   private MindMapGenerator() {
+   }
+
+   /**
+    * Generate a SimpleMind document. Each Topic has a style, colors, and one Topic out of four has a note. The
+    * hierarchy is a tree where each Topic has at most 8 children.
+    *
+    * @param countTopics the number of Topics
+    * @return the document content
+    */
+   public static byte[] generate(int countTopics) {
+      return generate(countTopics, 0);
+   }
+
+   /**
+    * Generate a SimpleMind document where each Topic has a long note.
+    *
+    * @param countTopics the number of Topics
+    * @param noteLength the approximate length of each note
+    * @return the document content
+    */
+   public static byte[] generateWithNotes(int countTopics, int noteLength) {
+      return generate(countTopics, noteLength);
+   }
+
+   /**
+    * Return a stream which generates a SimpleMind document while it is read, so that the size of the document is only
+    * limited by the reading time. The document is the same as the one returned by {@link #generate(int)}.
+    *
+    * @param countTopics the number of Topics
+    * @return the stream
+    */
+   public static InputStream openStream(int countTopics) {
+      return new GeneratorStream(countTopics);
+   }
+
+   private static byte[] generate(int countTopics, int noteLength) {
+      StringBuilder buf = new StringBuilder(countTopics * (400 + noteLength));
+      appendHeader(buf, countTopics);
+      for (int i = 0; i < countTopics; i++) {
+         appendTopic(buf, i, noteLength);
+      }
+      appendFooter(buf);
+      return buf.toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   private static void appendHeader(StringBuilder buf, int countTopics) {
+      buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      buf.append("<!DOCTYPE simplemind-mindmaps>\n");
+      buf.append("<simplemind-mindmaps generator=\"SimpleMindWin32\" gen-version=\"1.28.3\" doc-version=\"3\">\n");
+      buf.append("<mindmap>\n<meta>\n");
+      buf.append("<guid guid=\"BBA084A03B6640129532ABD9BAB7D369\"/>\n");
+      buf.append("<title text=\"Generated ").append(countTopics).append("\" customized=\"True\"/>\n");
+      buf.append("<main-centraltheme id=\"0\"/>\n");
+      buf.append("</meta>\n<topics>\n");
+   }
+
+   private static void appendTopic(StringBuilder buf, int i, int noteLength) {
+      int parent = i == 0 ? -1 : (i - 1) / 8;
+      int r = (i * 37) % 256;
+      buf.append("<topic id=\"").append(i).append("\" parent=\"").append(parent);
+      buf.append("\" guid=\"g").append(i).append("\" x=\"").append(i % 1000).append(".25\" y=\"");
+      buf.append(i / 1000).append(".75\" palette=\"0\" colorinfo=\"-1\" text=\"topic ").append(i % 5000);
+      buf.append("\" textfmt=\"plain\">\n");
+      buf.append("<style>\n<textcolor r=\"0\" g=\"0\" b=\"0\"/>\n");
+      buf.append("<fillcolor r=\"").append(r).append("\" g=\"183\" b=\"255\"/>\n");
+      buf.append("<strokecolor r=\"90\" g=\"34\" b=\"162\"/>\n</style>\n");
+      buf.append("<fillcolor r=\"").append(r).append("\" g=\"183\" b=\"255\"/>\n");
+      if (noteLength > 0) {
+         buf.append("<note>\n<![CDATA[");
+         int start = buf.length();
+         while (buf.length() - start < noteLength) {
+            buf.append("Line ").append(buf.length() - start).append(" of the note of the topic ").append(i).append('\n');
+         }
+         buf.append("]]>\n</note>\n");
+      } else if (i % 4 == 0) {
+         buf.append("<note>\nThe note of the topic ").append(i).append(" with some content &amp; more\n</note>\n");
+      }
+      buf.append("</topic>\n");
+   }
+
+   private static void appendFooter(StringBuilder buf) {
+      buf.append("</topics>\n</mindmap>\n</simplemind-mindmaps>\n");
+   }
+
+   /**
+    * A stream which generates the document Topic by Topic.
+    */
+   private static class GeneratorStream extends InputStream {
+      private final int countTopics;
+      private final StringBuilder buf = new StringBuilder(1024);
+      private byte[] chunk;
+      private int offset = 0;
+      // the next Topic to generate, or countTopics + 1 after the footer
+      private int next = 0;
+
+      private GeneratorStream(int countTopics) {
+         this.countTopics = countTopics;
+         appendHeader(buf, countTopics);
+         chunk = buf.toString().getBytes(StandardCharsets.UTF_8);
+      }
+
+      private boolean fill() {
+         if (offset < chunk.length) {
+            return true;
+         }
+         if (next > countTopics) {
+            return false;
+         }
+         buf.setLength(0);
+         if (next == countTopics) {
+            appendFooter(buf);
+         } else {
+            // generate several Topics at a time to limit the number of arrays
+            int last = Math.min(countTopics, next + 16);
+            for (int i = next; i < last; i++) {
+               appendTopic(buf, i, 0);
+            }
+            next = last - 1;
+         }
+         next++;
+         chunk = buf.toString().getBytes(StandardCharsets.UTF_8);
+         offset = 0;
+         return true;
+      }
+
+      @Override
+      public int read() {
+         if (!fill()) {
+            return -1;
+         }
+         return chunk[offset++] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+         if (len == 0) {
+            return 0;
+         }
+         if (!fill()) {
+            return -1;
+         }
+         int count = Math.min(len, chunk.length - offset);
+         System.arraycopy(chunk, offset, b, off, count);
+         offset += count;
+         return count;
+      }
+   }
+}
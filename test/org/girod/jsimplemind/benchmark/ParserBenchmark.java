@@ -0,0 +1,1141 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.girod.jsimplemind.model.ChangeSet;
+import org.girod.jsimplemind.model.CompactDiagram;
+import org.girod.jsimplemind.model.DiagramDiff;
+import org.girod.jsimplemind.model.HierarchyIndex;
+import org.girod.jsimplemind.model.NoteIndex;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.SpatialIndex;
+import org.girod.jsimplemind.model.SubtreeHashes;
+import org.girod.jsimplemind.model.Topic;
+import org.girod.jsimplemind.model.TopicTextIndex;
+import org.girod.jsimplemind.reader.DiagramCache;
+import org.girod.jsimplemind.reader.ParseFilter;
+import org.girod.jsimplemind.reader.ReaderUtilities;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+import org.girod.jsimplemind.reader.TopicPredicate;
+import org.girod.jsimplemind.reader.TopicVisitor;
+import org.girod.jsimplemind.snapshot.SnapshotReader;
+import org.girod.jsimplemind.snapshot.SnapshotWriter;
+import org.girod.jsimplemind.xml.NumberParser;
+import org.girod.jsimplemind.xml.XMLNode;
+import org.girod.jsimplemind.xml.XMLRoot;
+
+/**
+ * Benchmarks for the SimpleMind parser. This is not a unit test, it must be run explicitly with a large enough heap,
+ * for example:
+ * <pre>
+ * java -Xmx8g org.girod.jsimplemind.benchmark.ParserBenchmark scaling
+ * </pre>
+ *
+ * @since 0.4
+ */
+public class ParserBenchmark {
+   private static final int WARMUP = 3;
+   private static final int RUNS = 5;
+
+   public static void main(String[] args) throws Exception {
+      String benchmark = args.length > 0 ? args[0] : "scaling";
+      switch (benchmark) {
+         case "scaling":
+            scaling(args.length > 1 ? Integer.parseInt(args[1]) : 1000000);
+            break;
+         case "parallel":
+            parallel(args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+            break;
+         case "concurrent":
+            concurrent(args.length > 1 ? Integer.parseInt(args[1]) : 10000);
+            break;
+         case "engines":
+            engines(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "heap":
+            heap(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "compact":
+            compact(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "startup":
+            startup(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            break;
+         case "attributes":
+            attributes(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "archives":
+            archives(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            break;
+         case "notes":
+            notes(args.length > 1 ? Integer.parseInt(args[1]) : 20000);
+            break;
+         case "stream":
+            stream(args.length > 1 ? Integer.parseInt(args[1]) : 10000000);
+            break;
+         case "filter":
+            filter(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "metadata":
+            metadata(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "reparse":
+            reparse(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "cache":
+            cache(args.length > 1 ? Integer.parseInt(args[1]) : 200);
+            break;
+         case "textindex":
+            textIndex(args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+            break;
+         case "noteindex":
+            noteIndex(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "spatial":
+            spatial(args.length > 1 ? Integer.parseInt(args[1]) : 500000);
+            break;
+         case "hierarchy":
+            hierarchy(args.length > 1 ? Integer.parseInt(args[1]) : 500000);
+            break;
+         case "hashing":
+            hashing(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "diff":
+            diff(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         case "snapshot":
+            snapshot(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+         default:
+            System.err.println("Unknown benchmark " + benchmark);
+      }
+   }
+
+   /**
+    * Check that the parsing time grows linearly with the number of Topics.
+    *
+    * @param maxTopics the maximum number of Topics
+    */
+   private static void scaling(int maxTopics) throws Exception {
+      System.out.println("topics\tms\tns/topic");
+      for (int count = 1000; count <= maxTopics; count *= 10) {
+         byte[] content = MindMapGenerator.generate(count);
+         SimpleMindParser parser = new SimpleMindParser();
+         int warmup = count >= 100000 ? 1 : WARMUP;
+         int runs = count >= 100000 ? 2 : RUNS;
+         for (int i = 0; i < warmup; i++) {
+            parser.parse(new ByteArrayInputStream(content));
+         }
+         long best = Long.MAX_VALUE;
+         for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+            long time = System.nanoTime() - start;
+            if (diagram.getTopics().size() != count) {
+               throw new IllegalStateException("Expected " + count + " Topics");
+            }
+            best = Math.min(best, time);
+         }
+         System.out.println(count + "\t" + (best / 1000000) + "\t" + (best / count));
+      }
+   }
+
+   /**
+    * Compare the sequential and the parallel parsing of a large diagram, for increasing parallelism.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void parallel(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_SAX_STREAMING);
+      long sequential = time(() -> parser.parse(new ByteArrayInputStream(content)));
+      System.out.println("threads\tms\tspeedup");
+      System.out.println("seq\t" + (sequential / 1000000) + "\t1.0");
+      int cores = Runtime.getRuntime().availableProcessors();
+      for (int threads = 1; threads <= Math.max(cores, 1); threads *= 2) {
+         ForkJoinPool pool = new ForkJoinPool(threads);
+         try {
+            long time = time(() -> parser.parseParallel(new ByteArrayInputStream(content), pool));
+            System.out.println(threads + "\t" + (time / 1000000) + "\t" + String.format("%.2f", (double) sequential / time));
+         } finally {
+            pool.shutdown();
+         }
+      }
+   }
+
+   /**
+    * Measure the throughput of one parser shared by several threads, for each engine.
+    *
+    * @param countTopics the number of Topics of the parsed diagram
+    */
+   private static void concurrent(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      int threads = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+      int parsesPerThread = 20;
+      int[] engines = {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_SAX_STREAMING, SimpleMindParser.ENGINE_STAX,
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER};
+      System.out.println("engine\tparses/s (" + threads + " threads)");
+      for (int engine : engines) {
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(engine);
+         ExecutorService executor = Executors.newFixedThreadPool(threads);
+         try {
+            long time = time(() -> {
+               List<Future<Integer>> futures = new ArrayList<>();
+               for (int t = 0; t < threads; t++) {
+                  futures.add(executor.submit(() -> {
+                     int count = 0;
+                     for (int i = 0; i < parsesPerThread; i++) {
+                        count += parser.parse(new ByteArrayInputStream(content)).getTopics().size();
+                     }
+                     return count;
+                  }));
+               }
+               int count = 0;
+               for (Future<Integer> future : futures) {
+                  count += future.get();
+               }
+               return count;
+            });
+            System.out.println(engine + "\t" + ((long) threads * parsesPerThread * 1000000000L / time));
+         } finally {
+            executor.shutdown();
+         }
+      }
+   }
+
+   /**
+    * Print the heap retained by a parsed diagram.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void heap(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_SAX_STREAMING);
+      long before = usedHeap();
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long retained = usedHeap() - before;
+      if (diagram.getTopics().size() != countTopics) {
+         throw new IllegalStateException("Expected " + countTopics + " Topics");
+      }
+      System.out.println("topics\tretained MB\tbytes/topic");
+      System.out.println(countTopics + "\t" + (retained / (1024 * 1024)) + "\t" + (retained / countTopics));
+   }
+
+   /**
+    * Compare the retained heap and the iteration time of a diagram and of a compact diagram.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void compact(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      long before = usedHeap();
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long diagramHeap = usedHeap() - before;
+      before = usedHeap();
+      CompactDiagram compact = parser.parseCompact(new ByteArrayInputStream(content));
+      long compactHeap = usedHeap() - before;
+      long diagramParse = time(() -> parser.parse(new ByteArrayInputStream(content)));
+      long compactParse = time(() -> parser.parseCompact(new ByteArrayInputStream(content)));
+      long diagramIteration = time(() -> {
+         long sum = 0;
+         for (Topic topic : diagram.getTopics().values()) {
+            sum += topic.getX() + topic.getY() + topic.getFillRGB() + topic.getChildrenList().size();
+         }
+         return sum;
+      });
+      long compactIteration = time(() -> {
+         long sum = 0;
+         for (int i = 0; i < compact.size(); i++) {
+            sum += compact.getX(i) + compact.getY(i) + compact.getFillRGB(i) + compact.getChildCount(i);
+         }
+         return sum;
+      });
+      System.out.println("diagram\tretained MB\tbytes/topic\tparse ms\titeration us");
+      System.out.println("objects\t" + (diagramHeap / (1024 * 1024)) + "\t" + (diagramHeap / countTopics) + "\t"
+         + (diagramParse / 1000000) + "\t" + (diagramIteration / 1000));
+      System.out.println("compact\t" + (compactHeap / (1024 * 1024)) + "\t" + (compactHeap / countTopics) + "\t"
+         + (compactParse / 1000000) + "\t" + (compactIteration / 1000));
+   }
+
+   /**
+    * Print the time of the first parsing in a new JVM. Use <code>-verbose:class</code> to check which classes are
+    * loaded by the parsing.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void startup(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      long start = System.nanoTime();
+      SimpleMindDiagram diagram = new SimpleMindParser().parse(new ByteArrayInputStream(content));
+      long time = System.nanoTime() - start;
+      if (diagram.getTopics().size() != countTopics) {
+         throw new IllegalStateException("Expected " + countTopics + " Topics");
+      }
+      System.out.println("first parse ms\t" + (time / 1000000));
+   }
+
+   private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+
+   /**
+    * Compare the parsing of the numeric attributes of Topics (id, parent, x, y, and the color components) with
+    * Integer.parseInt and with the NumberParser, from Strings and from the bytes of the content.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void attributes(int countTopics) throws Exception {
+      String[] values = new String[countTopics * 7];
+      for (int i = 0; i < countTopics; i++) {
+         int offset = i * 7;
+         values[offset] = Integer.toString(i);
+         values[offset + 1] = Integer.toString(i / 4 - 1);
+         values[offset + 2] = (i % 1000) + ".25";
+         values[offset + 3] = (i / 1000) + ".75";
+         values[offset + 4] = Integer.toString((i * 37) % 256);
+         values[offset + 5] = "183";
+         values[offset + 6] = "255";
+      }
+      StringBuilder buf = new StringBuilder();
+      int[] offsets = new int[values.length + 1];
+      for (int i = 0; i < values.length; i++) {
+         offsets[i] = buf.length();
+         buf.append(values[i]);
+      }
+      offsets[values.length] = buf.length();
+      byte[] bytes = buf.toString().getBytes(StandardCharsets.US_ASCII);
+      long parseInt = time(() -> {
+         long sum = 0;
+         for (String value : values) {
+            try {
+               sum += Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+               sum += 0;
+            }
+         }
+         return sum;
+      });
+      long fromString = time(() -> {
+         long sum = 0;
+         for (String value : values) {
+            sum += NumberParser.parseInt(value, 0);
+         }
+         return sum;
+      });
+      long fromBytes = time(() -> {
+         long sum = 0;
+         for (int i = 0; i < values.length; i++) {
+            sum += NumberParser.parseInt(bytes, offsets[i], offsets[i + 1] - offsets[i], 0);
+         }
+         return sum;
+      });
+      System.out.println("method\tms\tns/value");
+      System.out.println("Integer.parseInt\t" + (parseInt / 1000000) + "\t" + (parseInt / values.length));
+      System.out.println("NumberParser(String)\t" + (fromString / 1000000) + "\t" + (fromString / values.length));
+      System.out.println("NumberParser(byte[])\t" + (fromBytes / 1000000) + "\t" + (fromBytes / values.length));
+   }
+
+   /**
+    * Return the best time of a task.
+    *
+    * @param task the task
+    * @return the best time in nanoseconds
+    */
+   private static long time(Task task) throws Exception {
+      for (int i = 0; i < WARMUP; i++) {
+         task.run();
+      }
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; i++) {
+         long start = System.nanoTime();
+         task.run();
+         best = Math.min(best, System.nanoTime() - start);
+      }
+      return best;
+   }
+
+   /**
+    * Compare the time to read the content of many small smmx files with java.util.zip.ZipFile and with
+    * {@link ReaderUtilities#getSimpleMindContent(java.io.File)}.
+    *
+    * @param countFiles the number of files
+    */
+   private static void archives(int countFiles) throws Exception {
+      byte[] content = MindMapGenerator.generate(200);
+      File[] files = new File[countFiles];
+      try {
+         for (int i = 0; i < countFiles; i++) {
+            files[i] = File.createTempFile("jsimplemind", ".smmx");
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(files[i]))) {
+               zip.putNextEntry(new ZipEntry("document/mindmap.xml"));
+               zip.write(content);
+               zip.closeEntry();
+            }
+         }
+         long zipFile = time(() -> {
+            long total = 0;
+            for (File file : files) {
+               try (ZipFile zip = new ZipFile(file); InputStream stream = zip.getInputStream(zip.entries().nextElement())) {
+                  byte[] buf = new byte[8192];
+                  int length;
+                  while ((length = stream.read(buf)) != -1) {
+                     total += length;
+                  }
+               }
+            }
+            return total;
+         });
+         long reader = time(() -> {
+            long total = 0;
+            for (File file : files) {
+               total += ReaderUtilities.getSimpleMindContent(file).length;
+            }
+            return total;
+         });
+         System.out.println("reader\tms\tus/file");
+         System.out.println("ZipFile\t" + (zipFile / 1000000) + "\t" + (zipFile / countFiles / 1000));
+         System.out.println("ReaderUtilities\t" + (reader / 1000000) + "\t" + (reader / countFiles / 1000));
+      } finally {
+         for (File file : files) {
+            if (file != null) {
+               file.delete();
+            }
+         }
+      }
+   }
+
+   /**
+    * Compare the retained heap and the parsing time of a diagram with long notes, when the notes are loaded eagerly
+    * or lazily.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void notes(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generateWithNotes(countTopics, 2000);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindParser lazyParser = new SimpleMindParser();
+      lazyParser.setNoteLoading(SimpleMindParser.NOTES_LAZY);
+      long before = usedHeap();
+      SimpleMindDiagram eager = parser.parse(new ByteArrayInputStream(content));
+      long eagerHeap = usedHeap() - before;
+      before = usedHeap();
+      SimpleMindDiagram lazy = lazyParser.parse(new ByteArrayInputStream(content));
+      long lazyHeap = usedHeap() - before;
+      long eagerParse = time(() -> parser.parse(new ByteArrayInputStream(content)));
+      long lazyParse = time(() -> lazyParser.parse(new ByteArrayInputStream(content)));
+      long lazyRead = time(() -> {
+         long length = 0;
+         for (Topic topic : lazy.getTopics().values()) {
+            length += topic.getNote().length();
+         }
+         return length;
+      });
+      System.out.println("content MB\t" + (content.length / (1024 * 1024)));
+      System.out.println("notes\tretained MB\tparse ms\tread all notes ms");
+      System.out.println("eager\t" + (eagerHeap / (1024 * 1024)) + "\t" + (eagerParse / 1000000) + "\t0");
+      System.out.println("lazy\t" + (lazyHeap / (1024 * 1024)) + "\t" + (lazyParse / 1000000) + "\t" + (lazyRead / 1000000));
+      if (eager.getTopics().size() != lazy.getTopics().size()) {
+         throw new IllegalStateException("Different diagrams");
+      }
+   }
+
+   /**
+    * Stream a generated document of any size to a visitor which counts the Topics and their notes, and print the peak
+    * heap. This must be run with a small heap, for example <code>-Xmx64m</code>, to check that the memory does not
+    * depend on the size of the document.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void stream(int countTopics) throws Exception {
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_STAX);
+      long[] counts = new long[3];
+      TopicVisitor visitor = new TopicVisitor() {
+         @Override
+         public boolean topic(int id, int parentID, String text, boolean hasPosition, int x, int y) {
+            counts[0]++;
+            return true;
+         }
+
+         @Override
+         public void note(int id, String note) {
+            counts[1]++;
+            counts[2] += note.length();
+         }
+      };
+      CountingStream stream = new CountingStream(MindMapGenerator.openStream(countTopics));
+      long start = System.nanoTime();
+      long peak = peakHeap(() -> {
+         parser.stream(stream, visitor);
+         return counts;
+      });
+      long duration = System.nanoTime() - start;
+      if (counts[0] != countTopics) {
+         throw new IllegalStateException("Topics: " + counts[0]);
+      }
+      System.out.println("content MB\tTopics\tnotes\tms\tMB/s\tpeak heap MB");
+      System.out.println((stream.count / (1024 * 1024)) + "\t" + counts[0] + "\t" + counts[1] + "\t" + (duration / 1000000)
+         + "\t" + (stream.count * 1000 / duration) + "\t" + (peak / (1024 * 1024)));
+   }
+
+   /**
+    * A stream which counts the bytes read from another stream.
+    */
+   private static class CountingStream extends FilterInputStream {
+      private long count = 0;
+
+      private CountingStream(InputStream stream) {
+         super(stream);
+      }
+
+      @Override
+      public int read() throws IOException {
+         int b = super.read();
+         if (b != -1) {
+            count++;
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         int length = super.read(b, off, len);
+         if (length > 0) {
+            count += length;
+         }
+         return length;
+      }
+   }
+
+   /**
+    * Compare the parsing time and the retained heap of a diagram parsed with several filters.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void filter(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generateWithNotes(countTopics, 200);
+      System.out.println("filter\tTopics\tms\tretained MB");
+      filter("none", null, content);
+      filter("text only", new ParseFilter(ParseFilter.TEXT), content);
+      filter("no notes", new ParseFilter(ParseFilter.ALL & ~ParseFilter.NOTE), content);
+      filter("depth <= 4", new ParseFilter(ParseFilter.ALL, TopicPredicate.maxDepth(4)), content);
+      filter("prefix", new ParseFilter(ParseFilter.ALL, TopicPredicate.textStartsWith("topic 12")), content);
+   }
+
+   private static void filter(String name, ParseFilter filter, byte[] content) throws Exception {
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      parser.setParseFilter(filter);
+      long before = usedHeap();
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long heap = usedHeap() - before;
+      long duration = time(() -> parser.parse(new ByteArrayInputStream(content)));
+      System.out.println(name + "\t" + diagram.getTopics().size() + "\t" + (duration / 1000000) + "\t" + (heap / (1024 * 1024)));
+   }
+
+   /**
+    * Compare the time to read the metadata of a smmx file, with and without counting the Topics, with the time of a
+    * full parsing.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void metadata(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      File smmx = File.createTempFile("jsimplemind", ".smmx");
+      try {
+         try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(smmx))) {
+            zip.putNextEntry(new ZipEntry("document/mindmap.xml"));
+            zip.write(content);
+            zip.closeEntry();
+         }
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+         long parse = time(() -> parser.parse(smmx));
+         long metadata = time(() -> parser.readMetadata(smmx, false));
+         long count = time(() -> parser.readMetadata(smmx, true));
+         System.out.println("read\tus");
+         System.out.println("full parse\t" + (parse / 1000));
+         System.out.println("metadata\t" + (metadata / 1000));
+         System.out.println("metadata and count\t" + (count / 1000));
+      } finally {
+         smmx.delete();
+      }
+   }
+
+   /**
+    * Compare the time of a full parsing of a modified diagram with the time to patch the existing diagram with the
+    * modified version. The two versions are reparsed alternately, so that each reparsing has changes to apply.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void reparse(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      // change the text of every Topic whose text is "topic 1234"
+      String xml = new String(content, StandardCharsets.UTF_8);
+      byte[] modified = xml.replace("text=\"topic 1234\"", "text=\"modified topic\"").getBytes(StandardCharsets.UTF_8);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      ChangeSet changes = parser.reparse(diagram, new ByteArrayInputStream(modified));
+      long parse = time(() -> parser.parse(new ByteArrayInputStream(modified)));
+      int[] run = {0};
+      long reparse = time(() -> parser.reparse(diagram, new ByteArrayInputStream(run[0]++ % 2 == 0 ? content : modified)));
+      System.out.println("modified Topics\t" + changes.getModified().length);
+      System.out.println("read\tms");
+      System.out.println("full parse\t" + (parse / 1000000));
+      System.out.println("reparse\t" + (reparse / 1000000));
+   }
+
+   /**
+    * Compare the time to get hot files from a DiagramCache with the time to parse them at each access, and compare the
+    * estimated size of the cached diagrams with their retained heap.
+    *
+    * @param countFiles the number of files
+    */
+   private static void cache(int countFiles) throws Exception {
+      byte[] content = MindMapGenerator.generate(2000);
+      File[] files = new File[countFiles];
+      try {
+         for (int i = 0; i < countFiles; i++) {
+            files[i] = File.createTempFile("jsimplemind", ".xml");
+            Files.write(files[i].toPath(), content);
+         }
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+         long before = usedHeap();
+         DiagramCache cache = new DiagramCache(parser, Long.MAX_VALUE, DiagramCache.POLICY_LRU);
+         for (File file : files) {
+            cache.get(file);
+         }
+         long retained = usedHeap() - before;
+         long estimated = cache.getEstimatedBytes();
+         long parse = time(() -> {
+            for (File file : files) {
+               parser.parse(file);
+            }
+            return null;
+         });
+         long cached = time(() -> {
+            for (File file : files) {
+               cache.get(file);
+            }
+            return null;
+         });
+         System.out.println("access\tus/file");
+         System.out.println("parse\t" + (parse / 1000 / countFiles));
+         System.out.println("cache\t" + (cached / 1000 / countFiles));
+         System.out.println("retained MB\t" + (retained / (1024 * 1024)));
+         System.out.println("estimated MB\t" + (estimated / (1024 * 1024)));
+         System.out.println(cache.getStatistics());
+      } finally {
+         for (File file : files) {
+            if (file != null) {
+               file.delete();
+            }
+         }
+      }
+   }
+
+   /**
+    * Compare a case-insensitive prefix lookup in the TopicTextIndex with a linear scan of the Topics.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void textIndex(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long before = usedHeap();
+      TopicTextIndex index = new TopicTextIndex(diagram);
+      long heap = usedHeap() - before;
+      long build = time(() -> new TopicTextIndex(diagram));
+      long scan = time(() -> {
+         int count = 0;
+         for (Topic topic : diagram.getTopics().values()) {
+            if (topic.getText().toLowerCase(Locale.ROOT).startsWith("topic 123")) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long lookup = time(() -> index.findPrefix("Topic 123", TopicTextIndex.IGNORE_CASE));
+      System.out.println("index build ms\t" + (build / 1000000));
+      System.out.println("index heap MB\t" + (heap / (1024 * 1024)));
+      System.out.println("prefix lookup\tus");
+      System.out.println("linear scan\t" + (scan / 1000));
+      System.out.println("index\t" + (lookup / 1000));
+   }
+
+   /**
+    * Compare term, phrase and boolean queries on the NoteIndex with a linear scan of the notes.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void noteIndex(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generateWithNotes(countTopics, 200);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long before = usedHeap();
+      NoteIndex index = new NoteIndex(diagram);
+      long heap = usedHeap() - before;
+      long build = time(() -> new NoteIndex(diagram));
+      long scan = time(() -> {
+         int count = 0;
+         for (Topic topic : diagram.getTopics().values()) {
+            if (topic.getNote().contains("topic 4242\n")) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long term = time(() -> index.findTerm("4242"));
+      long phrase = time(() -> index.findPhrase("topic 4242"));
+      long query = time(() -> index.search("\"topic 4242\" OR \"topic 777\" -line40", 10));
+      long common = time(() -> index.search("line note", 10));
+      System.out.println("index build ms\t" + (build / 1000000));
+      System.out.println("index heap MB\t" + (heap / (1024 * 1024)));
+      System.out.println("query\tus");
+      System.out.println("linear scan\t" + (scan / 1000));
+      System.out.println("term\t" + (term / 1000));
+      System.out.println("phrase\t" + (phrase / 1000));
+      System.out.println("boolean\t" + (query / 1000));
+      System.out.println("common terms, ranked\t" + (common / 1000));
+   }
+
+   /**
+    * Compare viewport and nearest neighbour queries on the SpatialIndex with a linear scan of the Topics.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void spatial(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      long before = usedHeap();
+      SpatialIndex index = diagram.getSpatialIndex();
+      long heap = usedHeap() - before;
+      long build = time(() -> new SpatialIndex(diagram));
+      // a viewport of 200 x 20, the generated Topics are on a grid of 1000 columns
+      long scan = time(() -> {
+         int count = 0;
+         for (Topic topic : diagram.getTopics().values()) {
+            if (topic.getX() >= 400 && topic.getX() <= 600 && topic.getY() >= 100 && topic.getY() <= 120) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long range = time(() -> index.findInRect(400, 100, 600, 120));
+      long nearest = time(() -> index.findNearest(500, 110, 10));
+      Topic topic = diagram.getTopic(countTopics / 2);
+      long move = time(() -> {
+         for (int i = 0; i < 1000; i++) {
+            topic.setPosition(i % 1000, i % 500);
+         }
+         return null;
+      });
+      System.out.println("index build ms\t" + (build / 1000000));
+      System.out.println("index heap MB\t" + (heap / (1024 * 1024)));
+      System.out.println("query\tus");
+      System.out.println("linear scan\t" + (scan / 1000));
+      System.out.println("viewport (" + index.findInRect(400, 100, 600, 120).length + " topics)\t" + (range / 1000));
+      System.out.println("10 nearest\t" + (nearest / 1000));
+      System.out.println("setPosition\t" + (move / 1000 / 1000.0));
+   }
+
+   /**
+    * Compare ancestor, root and lowest common ancestor queries on the HierarchyIndex with a walk of the parents.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void hierarchy(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      Topic[] topics = diagram.getTopics().values().toArray(new Topic[0]);
+      long before = usedHeap();
+      HierarchyIndex index = diagram.getHierarchyIndex();
+      long heap = usedHeap() - before;
+      long build = time(() -> new HierarchyIndex(diagram));
+      int queries = 100000;
+      Random random = new Random(1);
+      Topic[] first = new Topic[queries];
+      Topic[] second = new Topic[queries];
+      for (int i = 0; i < queries; i++) {
+         first[i] = topics[random.nextInt(topics.length)];
+         // one query out of two is on a Topic of the subtree of the first one
+         second[i] = i % 2 == 0 ? topics[random.nextInt(topics.length)] : lastDescendant(first[i]);
+      }
+      long walkAncestor = time(() -> {
+         int count = 0;
+         for (int i = 0; i < queries; i++) {
+            Topic ancestor = first[i];
+            Topic topic = second[i].getParent();
+            while (topic != null && topic != ancestor) {
+               topic = topic.getParent();
+            }
+            if (topic != null) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long indexAncestor = time(() -> {
+         int count = 0;
+         for (int i = 0; i < queries; i++) {
+            if (index.isAncestor(first[i], second[i])) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long walkRoot = time(() -> {
+         Topic root = null;
+         for (int i = 0; i < queries; i++) {
+            root = second[i];
+            while (root.getParent() != null) {
+               root = root.getParent();
+            }
+         }
+         return root;
+      });
+      long indexRoot = time(() -> {
+         Topic root = null;
+         for (int i = 0; i < queries; i++) {
+            root = second[i].getRoot();
+         }
+         return root;
+      });
+      long lca = time(() -> {
+         Topic ancestor = null;
+         for (int i = 0; i < queries; i++) {
+            ancestor = index.getLowestCommonAncestor(first[i], second[i]);
+         }
+         return ancestor;
+      });
+      System.out.println("index build ms\t" + (build / 1000000));
+      System.out.println("index heap MB\t" + (heap / (1024 * 1024)));
+      System.out.println("query (" + queries + " times)\tms");
+      System.out.println("isAncestor, parents walk\t" + (walkAncestor / 1000000.0));
+      System.out.println("isAncestor, index\t" + (indexAncestor / 1000000.0));
+      System.out.println("getRoot, parents walk\t" + (walkRoot / 1000000.0));
+      System.out.println("getRoot, index\t" + (indexRoot / 1000000.0));
+      System.out.println("lowest common ancestor\t" + (lca / 1000000.0));
+   }
+
+   private static Topic lastDescendant(Topic topic) {
+      while (!topic.getChildrenList().isEmpty()) {
+         List<Topic> children = topic.getChildrenList();
+         topic = children.get(children.size() - 1);
+      }
+      return topic;
+   }
+
+   /**
+    * Measure set-heavy workloads on Topics and XML trees: deduplication of the Topics in a HashSet, compared with the
+    * previous constant hash code of the Topics, and the cached structural hash codes of the XML nodes.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void hashing(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      Topic[] topics = diagram.getTopics().values().toArray(new Topic[0]);
+      long idHash = time(() -> {
+         Set<Topic> set = new HashSet<>();
+         for (Topic topic : topics) {
+            set.add(topic);
+         }
+         int count = 0;
+         for (Topic topic : topics) {
+            if (set.contains(topic)) {
+               count++;
+            }
+         }
+         return count;
+      });
+      // the previous hash code is quadratic, so it is only run once and on at most 20000 Topics
+      int constantCount = Math.min(topics.length, 20000);
+      long start = System.nanoTime();
+      Set<ConstantHashTopic> constantSet = new HashSet<>();
+      for (int i = 0; i < constantCount; i++) {
+         constantSet.add(new ConstantHashTopic(topics[i]));
+      }
+      for (int i = 0; i < constantCount; i++) {
+         constantSet.contains(new ConstantHashTopic(topics[i]));
+      }
+      long constantHash = System.nanoTime() - start;
+
+      XMLRoot root = createXMLTree(countTopics);
+      XMLRoot root2 = createXMLTree(countTopics);
+      XMLRoot root3 = createXMLTree(countTopics);
+      root3.getFirstChild().getLastChild().setCDATA("modified");
+      start = System.nanoTime();
+      root.hashCode();
+      long firstHash = System.nanoTime() - start;
+      long cachedHash = time(() -> root.hashCode());
+      root2.hashCode();
+      root3.hashCode();
+      long equalTrees = time(() -> root.equals(root2));
+      long differentTrees = time(() -> root.equals(root3));
+      List<XMLNode> nodes = root.getFirstChild().getChildren();
+      long dedupe = time(() -> {
+         Set<XMLNode> set = new HashSet<>(nodes);
+         set.addAll(root2.getFirstChild().getChildren());
+         return set.size();
+      });
+      System.out.println("topics HashSet add + contains\tms");
+      System.out.println("constant hash (" + constantCount + " topics)\t" + (constantHash / 1000000));
+      System.out.println("id hash\t" + (idHash / 1000000.0));
+      System.out.println("XML tree of " + countTopics + " topics\tus");
+      System.out.println("first hashCode\t" + (firstHash / 1000));
+      System.out.println("cached hashCode\t" + (cachedHash / 1000.0));
+      System.out.println("equals, equal trees\t" + (equalTrees / 1000));
+      System.out.println("equals, different trees\t" + (differentTrees / 1000.0));
+      System.out.println("HashSet of 2 x " + nodes.size() + " topic nodes\t" + (dedupe / 1000));
+   }
+
+   private static XMLRoot createXMLTree(int countTopics) {
+      XMLRoot root = new XMLRoot("simplemind-mindmaps");
+      XMLNode topicsNode = new XMLNode(root, "topics");
+      root.addChild(topicsNode);
+      for (int i = 0; i < countTopics; i++) {
+         XMLNode topic = new XMLNode(topicsNode, "topic");
+         topic.addAttribute("id", i);
+         topic.addAttribute("x", i % 1000);
+         topic.addAttribute("y", i / 1000);
+         topic.addAttribute("text", "topic " + i);
+         topicsNode.addChild(topic);
+         XMLNode note = new XMLNode(topic, "note");
+         note.setCDATA("note " + i);
+         topic.addChild(note);
+      }
+      return root;
+   }
+
+   /**
+    * A Topic with the constant hash code of the previous versions of the Topic class.
+    */
+   private static class ConstantHashTopic {
+      private final Topic topic;
+
+      private ConstantHashTopic(Topic topic) {
+         this.topic = topic;
+      }
+
+      @Override
+      public int hashCode() {
+         return 3;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         return obj instanceof ConstantHashTopic && topic.equals(((ConstantHashTopic) obj).topic);
+      }
+   }
+
+   /**
+    * Compare the diff of two versions of a diagram by their SubtreeHashes with a pairwise comparison of their Topics.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void diff(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generateWithNotes(countTopics, 200);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindDiagram previous = parser.parse(new ByteArrayInputStream(content));
+      SimpleMindDiagram current = parser.parse(new ByteArrayInputStream(content));
+      // a typical save modifies a few Topics
+      for (int i = 0; i < 10; i++) {
+         Topic topic = current.getTopic((i * 7919) % countTopics);
+         topic.setPosition(topic.getX() + 10, topic.getY());
+      }
+      current.getTopic(countTopics / 3).setNote("modified note");
+      long pairwise = time(() -> {
+         int count = 0;
+         for (Topic topic : current.getTopics().values()) {
+            Topic other = previous.getTopic(topic.getID());
+            if (other == null || !topic.equals(other)) {
+               count++;
+            }
+         }
+         return count;
+      });
+      long hashing = time(() -> new SubtreeHashes(current));
+      SubtreeHashes previousHashes = new SubtreeHashes(previous);
+      SubtreeHashes currentHashes = new SubtreeHashes(current);
+      long compare = time(() -> DiagramDiff.compare(previousHashes, currentHashes));
+      ChangeSet changes = DiagramDiff.compare(previousHashes, currentHashes);
+      System.out.println("version diff (" + changes.getModified().length + " modified topics)\tms");
+      System.out.println("pairwise Topic.equals\t" + (pairwise / 1000000.0));
+      System.out.println("hash new version\t" + (hashing / 1000000.0));
+      System.out.println("compare hashes\t" + (compare / 1000000.0));
+      System.out.println("hash + compare\t" + ((hashing + compare) / 1000000.0));
+   }
+
+   /**
+    * Compare the load time of a smmx file with the load time of a snapshot of the same diagram.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void snapshot(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      File smmx = File.createTempFile("jsimplemind", ".smmx");
+      File snapshot = File.createTempFile("jsimplemind", ".snapshot");
+      try {
+         try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(smmx))) {
+            zip.putNextEntry(new ZipEntry("document/mindmap.xml"));
+            zip.write(content);
+            zip.closeEntry();
+         }
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+         SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(ReaderUtilities.getSimpleMindContent(smmx)));
+         new SnapshotWriter().write(diagram, snapshot);
+         SnapshotReader reader = new SnapshotReader();
+         long smmxLoad = time(() -> parser.parse(new ByteArrayInputStream(ReaderUtilities.getSimpleMindContent(smmx))));
+         long snapshotLoad = time(() -> reader.read(snapshot));
+         System.out.println("format\tfile KB\tload ms\tns/topic");
+         System.out.println("smmx\t" + (smmx.length() / 1024) + "\t" + (smmxLoad / 1000000) + "\t" + (smmxLoad / countTopics));
+         System.out.println("snapshot\t" + (snapshot.length() / 1024) + "\t" + (snapshotLoad / 1000000) + "\t"
+            + (snapshotLoad / countTopics));
+      } finally {
+         smmx.delete();
+         snapshot.delete();
+      }
+   }
+
+   /**
+    * Compare the parsing time and the peak heap of the parser engines.
+    *
+    * @param countTopics the number of Topics
+    */
+   private static void engines(int countTopics) throws Exception {
+      byte[] content = MindMapGenerator.generate(countTopics);
+      System.out.println("engine\tms\tns/topic\tpeak heap MB");
+      engine("sax-tree", SimpleMindParser.ENGINE_SAX_TREE, content, countTopics);
+      engine("sax-streaming", SimpleMindParser.ENGINE_SAX_STREAMING, content, countTopics);
+      engine("stax", SimpleMindParser.ENGINE_STAX, content, countTopics);
+      engine("bytes", SimpleMindParser.ENGINE_BYTE_TOKENIZER, content, countTopics);
+   }
+
+   private static void engine(String name, int engine, byte[] content, int countTopics) throws Exception {
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(engine);
+      for (int i = 0; i < WARMUP; i++) {
+         parser.parse(new ByteArrayInputStream(content));
+      }
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; i++) {
+         long start = System.nanoTime();
+         parser.parse(new ByteArrayInputStream(content));
+         best = Math.min(best, System.nanoTime() - start);
+      }
+      long peak = peakHeap(() -> parser.parse(new ByteArrayInputStream(content)));
+      System.out.println(name + "\t" + (best / 1000000) + "\t" + (best / countTopics) + "\t" + (peak / (1024 * 1024)));
+   }
+
+   /**
+    * Return the peak heap used during the execution of a task, using the memory pool usage thresholds.
+    *
+    * @param task the task
+    * @return the peak heap in bytes
+    */
+   private static long peakHeap(Task task) throws Exception {
+      System.gc();
+      List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+      long before = 0;
+      for (MemoryPoolMXBean pool : pools) {
+         if (pool.getType() == MemoryType.HEAP) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+         }
+      }
+      Object result = task.run();
+      long peak = 0;
+      for (MemoryPoolMXBean pool : pools) {
+         if (pool.getType() == MemoryType.HEAP) {
+            peak += pool.getPeakUsage().getUsed();
+         }
+      }
+      if (result == null) {
+         throw new IllegalStateException("No result");
+      }
+      return peak - before;
+   }
+
+   /**
+    * A benchmarked task.
+    */
+   private interface Task {
+      Object run() throws Exception;
+   }
+}
@@ -0,0 +1,201 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.awt.Color;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.List;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @since 0.4
+ */
+public class CompactDiagramTest {
+   private static SimpleMindDiagram diagram = null;
+
+   public CompactDiagramTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() throws IOException, SAXException {
+      URL url = CompactDiagramTest.class.getResource("mindmap.xml");
+      SimpleMindParser parser = new SimpleMindParser();
+      diagram = parser.parse(url);
+      assertNotNull("Diagram must not be null", diagram);
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   /**
+    * Test of the creation of a CompactDiagram from a SimpleMindDiagram.
+    */
+   @Test
+   public void testCompactDiagram() {
+      System.out.println("CompactDiagramTest : testCompactDiagram");
+      CompactDiagram compact = new CompactDiagram(diagram);
+      assertEquals("Title", "The Diagram", compact.getTitle());
+      assertEquals("Topics", diagram.getTopics().size(), compact.size());
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         CompactDiagram.TopicView view = compact.getTopic(topic.getID());
+         assertNotNull("Topic " + topic.getID(), view);
+         assertEquals("id", topic.getID(), view.getID());
+         assertEquals("text", topic.getText(), view.getText());
+         assertTrue("text", compact.isText(view.getIndex(), topic.getText()));
+         assertEquals("note", topic.getNote(), view.getNote());
+         assertEquals("x", topic.getX(), view.getX());
+         assertEquals("y", topic.getY(), view.getY());
+         assertEquals("fill color", topic.getFillColor(), view.getFillColor());
+         assertEquals("text color", topic.getTextRGB(), view.getTextRGB());
+         assertEquals("stroke color", topic.getStrokeRGB(), view.getStrokeRGB());
+         if (topic.hasParent()) {
+            assertEquals("parent", topic.getParent().getID(), view.getParent().getID());
+         } else {
+            assertNull("parent", view.getParent());
+         }
+         List<Topic> children = topic.getChildrenList();
+         List<CompactDiagram.TopicView> childViews = view.getChildrenList();
+         assertEquals("children", children.size(), childViews.size());
+         for (int i = 0; i < children.size(); i++) {
+            assertEquals("child", children.get(i).getID(), childViews.get(i).getID());
+         }
+      }
+      CompactDiagram.TopicView topic = compact.getTopic(7);
+      assertEquals("Fill color", new Color(228, 183, 255), topic.getFillColor());
+      assertNull("Unknown id", compact.getTopic(1000));
+   }
+
+   /**
+    * Test of toDiagram method, of class CompactDiagram.
+    */
+   @Test
+   public void testToDiagram() {
+      System.out.println("CompactDiagramTest : testToDiagram");
+      SimpleMindDiagram copy = new CompactDiagram(diagram).toDiagram();
+      assertEquals("Title", diagram.getTitle(), copy.getTitle());
+      assertEquals("Topics", diagram.getTopics(), copy.getTopics());
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         Topic copyTopic = copy.getTopic(topic.getID());
+         assertEquals("children", topic.getChildren().keySet(), copyTopic.getChildren().keySet());
+      }
+   }
+
+   /**
+    * Test of the Builder of CompactDiagram, with sparse ids.
+    */
+   @Test
+   public void testBuilder() {
+      System.out.println("CompactDiagramTest : testBuilder");
+      CompactDiagram.Builder builder = new CompactDiagram.Builder();
+      builder.setTitle("sparse");
+      int root = builder.addTopic(1000000, -1, "root", 1, 2);
+      builder.addTopic(-5, 1000000, "first", 3, 4);
+      int second = builder.addTopic(42, 1000000, "second", 5, 6);
+      builder.setNote(second, "the note");
+      builder.addTopic(7, 42, "root", 0, 0);
+      CompactDiagram compact = builder.build();
+      assertEquals("Topics", 4, compact.size());
+      assertEquals("root index", root, compact.getIndex(1000000));
+      assertEquals("children", 2, compact.getChildCount(root));
+      assertEquals("first child", -5, compact.getID(compact.getChildIndex(root, 0)));
+      assertEquals("second child", 42, compact.getID(compact.getChildIndex(root, 1)));
+      assertEquals("note", "the note", compact.getTopic(42).getNote());
+      assertEquals("empty note", "", compact.getTopic(7).getNote());
+      assertEquals("shared text", "root", compact.getTopic(7).getText());
+      assertEquals("parent", 42, compact.getTopic(7).getParent().getID());
+      assertEquals("default fill color", Color.WHITE, compact.getTopic(7).getFillColor());
+      assertEquals("unknown id", -1, compact.getIndex(8));
+   }
+
+   /**
+    * Test of the Builder of CompactDiagram, with duplicated sparse ids.
+    */
+   @Test
+   public void testBuilderDuplicatedIDs() {
+      System.out.println("CompactDiagramTest : testBuilderDuplicatedIDs");
+      CompactDiagram.Builder builder = new CompactDiagram.Builder();
+      for (int i = 0; i < 6; i++) {
+         builder.addTopic(1, -1, "topic " + i, i, i);
+      }
+      int last = builder.addTopic(100000, 1, "last", 0, 0);
+      CompactDiagram compact = builder.build();
+      assertEquals("last index", last, compact.getIndex(100000));
+      assertEquals("duplicated id index", 5, compact.getIndex(1));
+      assertEquals("duplicated id text", "topic 5", compact.getTopic(1).getText());
+      assertEquals("parent", 5, compact.getParentIndex(last));
+      assertEquals("unknown id", -1, compact.getIndex(0));
+   }
+
+   /**
+    * Test of the CompactDiagram string pool, with characters outside of the ISO-8859-1 range.
+    */
+   @Test
+   public void testUnicodeText() {
+      System.out.println("CompactDiagramTest : testUnicodeText");
+      CompactDiagram.Builder builder = new CompactDiagram.Builder();
+      builder.addTopic(0, -1, "caf\u00e9", 0, 0);
+      builder.addTopic(1, 0, "\u4e2d\u6587", 0, 0);
+      CompactDiagram compact = builder.build();
+      assertEquals("latin text", "caf\u00e9", compact.getText(0));
+      assertEquals("unicode text", "\u4e2d\u6587", compact.getText(1));
+      assertTrue("unicode text", compact.isText(1, "\u4e2d\u6587"));
+      assertFalse("unicode text", compact.isText(1, "\u4e2d"));
+
+      builder = new CompactDiagram.Builder();
+      builder.addTopic(0, -1, "caf\u00e9", 0, 0);
+      compact = builder.build();
+      assertEquals("latin text", "caf\u00e9", compact.getText(0));
+      assertTrue("latin text", compact.isText(0, "caf\u00e9"));
+   }
+}
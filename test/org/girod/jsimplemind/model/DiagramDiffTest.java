@@ -0,0 +1,253 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+
+/**
+ *
+ * @since 0.4
+ */
+public class DiagramDiffTest {
+
+   public DiagramDiffTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static SimpleMindDiagram parse(byte[] content) throws Exception {
+      SimpleMindParser parser = new SimpleMindParser();
+      return parser.parse(new ByteArrayInputStream(content));
+   }
+
+   private static int parentID(SimpleMindDiagram diagram, Topic topic) {
+      Topic parent = topic.getParent();
+      return parent == null || diagram.getTopic(parent.getID()) != parent ? -1 : parent.getID();
+   }
+
+   private static List<Integer> childrenIDs(Topic topic) {
+      List<Integer> ids = new ArrayList<>();
+      for (Topic child : topic.getChildrenList()) {
+         ids.add(child.getID());
+      }
+      return ids;
+   }
+
+   /**
+    * Compute the change set by comparing all the Topics of the two diagrams.
+    */
+   private static ChangeSet pairwise(SimpleMindDiagram previous, SimpleMindDiagram current) {
+      List<Integer> added = new ArrayList<>();
+      List<Integer> removed = new ArrayList<>();
+      List<Integer> modified = new ArrayList<>();
+      for (Topic topic : current.getTopics().values()) {
+         Topic other = previous.getTopic(topic.getID());
+         if (other == null) {
+            added.add(topic.getID());
+         } else if (topic.getX() != other.getX() || topic.getY() != other.getY()
+            || !Objects.equals(topic.getText(), other.getText()) || !Objects.equals(topic.getNote(), other.getNote())
+            || topic.getFillRGB() != other.getFillRGB() || topic.getTextRGB() != other.getTextRGB()
+            || topic.getStrokeRGB() != other.getStrokeRGB() || parentID(current, topic) != parentID(previous, other)
+            || !childrenIDs(topic).equals(childrenIDs(other))) {
+            modified.add(topic.getID());
+         }
+      }
+      for (Topic topic : previous.getTopics().values()) {
+         if (!current.hasTopic(topic.getID())) {
+            removed.add(topic.getID());
+         }
+      }
+      return new ChangeSet(toArray(added), toArray(removed), toArray(modified),
+         !Objects.equals(previous.getTitle(), current.getTitle()));
+   }
+
+   private static int[] toArray(List<Integer> list) {
+      int[] array = new int[list.size()];
+      for (int i = 0; i < array.length; i++) {
+         array[i] = list.get(i);
+      }
+      return array;
+   }
+
+   private static void assertSameChanges(ChangeSet expected, ChangeSet changes) {
+      assertArrayEquals("added", expected.getAdded(), changes.getAdded());
+      assertArrayEquals("removed", expected.getRemoved(), changes.getRemoved());
+      assertArrayEquals("modified", expected.getModified(), changes.getModified());
+      assertEquals("title", expected.isTitleChanged(), changes.isTitleChanged());
+   }
+
+   private static void removeSubtree(SimpleMindDiagram diagram, Topic topic) {
+      List<Topic> children = new ArrayList<>(topic.getChildrenList());
+      for (Topic child : children) {
+         removeSubtree(diagram, child);
+      }
+      diagram.removeTopic(topic.getID());
+   }
+
+   /**
+    * Test of the comparison of two identical diagrams, and of single changes.
+    */
+   @Test
+   public void testCompare() throws Exception {
+      System.out.println("DiagramDiffTest : testCompare");
+      byte[] content = MindMapGenerator.generate(2000);
+      SimpleMindDiagram previous = parse(content);
+      SimpleMindDiagram current = parse(content);
+      SubtreeHashes previousHashes = new SubtreeHashes(previous);
+      assertEquals("same diagram hash", previousHashes.getDiagramHash(), new SubtreeHashes(current).getDiagramHash());
+      assertTrue("no changes", DiagramDiff.compare(previousHashes, new SubtreeHashes(current)).isEmpty());
+
+      current.getTopic(1500).setFillRGB(0xFF00FF00);
+      ChangeSet changes = DiagramDiff.compare(previousHashes, new SubtreeHashes(current));
+      assertArrayEquals("color", new int[] {1500}, changes.getModified());
+      assertNotEquals("subtree hash", previousHashes.getSubtreeHash(previous.getTopic(0)),
+         new SubtreeHashes(current).getSubtreeHash(current.getTopic(0)));
+
+      current = parse(content);
+      current.getTopic(42).setNote("a new note");
+      current.setTitle("new title");
+      changes = DiagramDiff.compare(previousHashes, new SubtreeHashes(current));
+      assertArrayEquals("note", new int[] {42}, changes.getModified());
+      assertTrue("title", changes.isTitleChanged());
+
+      // swap two children
+      current = parse(content);
+      Topic parent = current.getTopic(3);
+      List<Topic> children = new ArrayList<>(parent.getChildrenList());
+      parent.removeAllChildren();
+      for (int i = children.size() - 1; i >= 0; i--) {
+         parent.addChild(children.get(i));
+      }
+      changes = DiagramDiff.compare(previousHashes, new SubtreeHashes(current));
+      assertArrayEquals("children order", new int[] {3}, changes.getModified());
+
+      // remove a subtree
+      current = parse(content);
+      removeSubtree(current, current.getTopic(9));
+      changes = DiagramDiff.compare(previousHashes, new SubtreeHashes(current));
+      assertSameChanges(pairwise(previous, current), changes);
+      // the Topic 9, its 8 children and their 64 children
+      assertEquals("removed", 73, changes.getRemoved().length);
+      assertTrue("removed", changes.isRemoved(9) && changes.isRemoved(73));
+      assertArrayEquals("parent modified", new int[] {1}, changes.getModified());
+   }
+
+   /**
+    * Test of the comparison of diagrams after random modifications, compared with a pairwise comparison of the Topics.
+    */
+   @Test
+   public void testRandomChanges() throws Exception {
+      System.out.println("DiagramDiffTest : testRandomChanges");
+      byte[] content = MindMapGenerator.generate(3000);
+      SimpleMindDiagram previous = parse(content);
+      SubtreeHashes previousHashes = new SubtreeHashes(previous);
+      Random random = new Random(7);
+      for (int round = 0; round < 20; round++) {
+         SimpleMindDiagram current = parse(content);
+         int nextID = 10000;
+         for (int i = 0; i < 1 + round; i++) {
+            Topic[] topics = current.getTopics().values().toArray(new Topic[0]);
+            Topic topic = topics[random.nextInt(topics.length)];
+            switch (random.nextInt(7)) {
+               case 0:
+                  current.setTopicText(topic, "changed " + i);
+                  break;
+               case 1:
+                  topic.setNote("note " + i);
+                  break;
+               case 2:
+                  topic.setPosition(topic.getX() + 1, topic.getY());
+                  break;
+               case 3:
+                  topic.setStrokeRGB(0xFF0000FF);
+                  break;
+               case 4: {
+                  Topic parent = topics[random.nextInt(topics.length)];
+                  HierarchyIndex index = current.getHierarchyIndex();
+                  if (topic.getParent() != null && parent != topic && !index.isAncestor(topic, parent)) {
+                     topic.getParent().removeChild(topic);
+                     topic.setParent(parent);
+                     parent.addChild(topic);
+                  }
+                  break;
+               }
+               case 5:
+                  if (topic.getParent() != null) {
+                     removeSubtree(current, topic);
+                  }
+                  break;
+               default: {
+                  Topic added = new Topic(nextID++);
+                  added.setText("added");
+                  added.setParent(topic);
+                  topic.addChild(added);
+                  current.addTopic(added);
+                  break;
+               }
+            }
+         }
+         ChangeSet expected = pairwise(previous, current);
+         ChangeSet changes = DiagramDiff.compare(previousHashes, new SubtreeHashes(current));
+         assertSameChanges(expected, changes);
+         // the comparison in the other direction
+         ChangeSet reverse = DiagramDiff.compare(new SubtreeHashes(current), previousHashes);
+         assertArrayEquals("reverse added", expected.getRemoved(), reverse.getAdded());
+         assertArrayEquals("reverse removed", expected.getAdded(), reverse.getRemoved());
+         assertSameChanges(pairwise(current, previous), reverse);
+      }
+   }
+}
@@ -0,0 +1,207 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+
+/**
+ *
+ * @since 0.4
+ */
+public class HierarchyIndexTest {
+
+   public HierarchyIndexTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static int depth(Topic topic) {
+      int depth = 0;
+      while (topic.getParent() != null) {
+         topic = topic.getParent();
+         depth++;
+      }
+      return depth;
+   }
+
+   private static int subtreeSize(Topic topic) {
+      int size = 1;
+      List<Topic> children = topic.getChildrenList();
+      for (int i = 0; i < children.size(); i++) {
+         size += subtreeSize(children.get(i));
+      }
+      return size;
+   }
+
+   private static Topic lowestCommonAncestor(Topic topic1, Topic topic2) {
+      Set<Topic> ancestors = new HashSet<>();
+      for (Topic topic = topic1; topic != null; topic = topic.getParent()) {
+         ancestors.add(topic);
+      }
+      for (Topic topic = topic2; topic != null; topic = topic.getParent()) {
+         if (ancestors.contains(topic)) {
+            return topic;
+         }
+      }
+      return null;
+   }
+
+   private static Topic walkRoot(Topic topic) {
+      while (topic.getParent() != null) {
+         topic = topic.getParent();
+      }
+      return topic;
+   }
+
+   private static void checkIndex(SimpleMindDiagram diagram, Random random) {
+      HierarchyIndex index = diagram.getHierarchyIndex();
+      int count = diagram.getTopics().size();
+      Topic[] topics = diagram.getTopics().values().toArray(new Topic[count]);
+      assertEquals("size", count, index.size());
+      for (int i = 0; i < 2000; i++) {
+         Topic topic1 = topics[random.nextInt(count)];
+         Topic topic2 = random.nextInt(4) == 0 ? topic1.getRoot() : topics[random.nextInt(count)];
+         assertEquals("depth", depth(topic1), index.getDepth(topic1));
+         assertEquals("subtree size", subtreeSize(topic1), index.getSubtreeSize(topic1));
+         assertSame("root", walkRoot(topic1), index.getRoot(topic1));
+         assertSame("root", walkRoot(topic1), topic1.getRoot());
+         boolean isAncestor = topic1 != topic2 && lowestCommonAncestor(topic1, topic2) == topic1;
+         assertEquals("ancestor", isAncestor, index.isAncestor(topic1, topic2));
+         assertSame("lowest common ancestor", lowestCommonAncestor(topic1, topic2),
+            index.getLowestCommonAncestor(topic1, topic2));
+      }
+   }
+
+   /**
+    * Test of the queries of the index on a parsed diagram, compared with the walk of the parents.
+    */
+   @Test
+   public void testParsedDiagram() throws Exception {
+      System.out.println("HierarchyIndexTest : testParsedDiagram");
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(MindMapGenerator.generate(5000)));
+      checkIndex(diagram, new Random(3));
+      HierarchyIndex index = diagram.getHierarchyIndex();
+      assertEquals("root depth", 0, index.getDepth(diagram.getTopic(0)));
+      assertEquals("root subtree", 5000, index.getSubtreeSize(diagram.getTopic(0)));
+      assertFalse("not its own ancestor", index.isAncestor(diagram.getTopic(0), diagram.getTopic(0)));
+      assertFalse("unknown Topic", index.contains(new Topic(0)));
+      assertEquals("unknown Topic", -1, index.getDepth(new Topic(0)));
+   }
+
+   /**
+    * Test of the invalidation of the index when the hierarchy changes.
+    */
+   @Test
+   public void testInvalidation() throws Exception {
+      System.out.println("HierarchyIndexTest : testInvalidation");
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(MindMapGenerator.generate(1000)));
+      HierarchyIndex index = diagram.getHierarchyIndex();
+      assertSame("cached index", index, diagram.getHierarchyIndex());
+
+      // move the subtree of the Topic 9 under the Topic 500
+      Topic topic = diagram.getTopic(9);
+      Topic parent = diagram.getTopic(500);
+      topic.getParent().removeChild(topic);
+      topic.setParent(parent);
+      parent.addChild(topic);
+      assertNotSame("invalidated index", index, diagram.getHierarchyIndex());
+      assertTrue("moved", diagram.getHierarchyIndex().isAncestor(parent, diagram.getTopic(73)));
+      checkIndex(diagram, new Random(5));
+
+      // detach a subtree, which becomes a second root
+      Topic detached = diagram.getTopic(2);
+      detached.getParent().removeChild(detached);
+      detached.setParent(null);
+      index = diagram.getHierarchyIndex();
+      assertSame("new root", detached, index.getRoot(diagram.getTopic(17)));
+      assertNull("different roots", index.getLowestCommonAncestor(detached, diagram.getTopic(1)));
+      checkIndex(diagram, new Random(6));
+
+      Topic added = new Topic(5000);
+      diagram.addTopic(added);
+      assertEquals("added", 1001, diagram.getHierarchyIndex().size());
+   }
+
+   /**
+    * Test of the root of a Topic whose parent is set without adding it to the children list of the parent.
+    */
+   @Test
+   public void testInconsistentParent() {
+      System.out.println("HierarchyIndexTest : testInconsistentParent");
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      Topic a = new Topic(1);
+      Topic b = new Topic(2);
+      Topic c = new Topic(3);
+      diagram.addTopic(a);
+      diagram.addTopic(b);
+      diagram.addTopic(c);
+      b.addChild(c);
+      c.setParent(b);
+      b.setParent(a);
+      assertSame("root without index", a, c.getRoot());
+      HierarchyIndex index = diagram.getHierarchyIndex();
+      assertSame("root of the children lists", b, index.getRoot(c));
+      assertSame("root with index", a, c.getRoot());
+      assertSame("root with index", a, b.getRoot());
+
+      a.addChild(b);
+      diagram.getHierarchyIndex();
+      assertSame("consistent root", a, c.getRoot());
+   }
+}
@@ -0,0 +1,188 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+
+/**
+ *
+ * @since 0.4
+ */
+public class NoteIndexTest {
+
+   public NoteIndexTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static SimpleMindDiagram createDiagram(String... notes) {
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      for (int i = 0; i < notes.length; i++) {
+         Topic topic = new Topic(i);
+         topic.setNote(notes[i]);
+         diagram.addTopic(topic);
+      }
+      return diagram;
+   }
+
+   private static int[] ids(List<NoteIndex.Hit> hits) {
+      int[] ids = new int[hits.size()];
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = hits.get(i).getID();
+      }
+      return ids;
+   }
+
+   private static int[] sorted(int[] ids) {
+      Arrays.sort(ids);
+      return ids;
+   }
+
+   /**
+    * Test of the tokenize method.
+    */
+   @Test
+   public void testTokenize() {
+      System.out.println("NoteIndexTest : testTokenize");
+      assertEquals("tokens", Arrays.asList("the", "cafe", "is", "open", "24h"), NoteIndex.tokenize("The Café is\\Nopen: 24h!"));
+      assertTrue("empty", NoteIndex.tokenize("  ,;  ").isEmpty());
+      assertTrue("null", NoteIndex.tokenize(null).isEmpty());
+   }
+
+   /**
+    * Test of the term, phrase and boolean queries.
+    */
+   @Test
+   public void testSearch() {
+      System.out.println("NoteIndexTest : testSearch");
+      SimpleMindDiagram diagram = createDiagram("the quick brown fox", "a brown dog, a quick dog", "quick quick quick",
+         "the lazy dog", "", "Brown fox and brown bear");
+      NoteIndex index = diagram.getNoteIndex();
+      assertEquals("notes", 5, index.size());
+      assertArrayEquals("term", new int[] {0, 1, 5}, index.findTerm("BROWN"));
+      assertArrayEquals("unknown term", new int[0], index.findTerm("cat"));
+      assertArrayEquals("phrase", new int[] {0, 5}, index.findPhrase("brown fox"));
+      assertArrayEquals("phrase", new int[] {1}, index.findPhrase("quick dog"));
+      assertArrayEquals("phrase", new int[0], index.findPhrase("fox brown"));
+
+      assertArrayEquals("and", new int[] {1}, sorted(ids(index.search("brown dog", 10))));
+      assertArrayEquals("and", new int[] {1}, sorted(ids(index.search("brown AND dog", 10))));
+      assertArrayEquals("or", new int[] {0, 1, 3, 5}, sorted(ids(index.search("fox OR dog", 10))));
+      assertArrayEquals("not", new int[] {0, 5}, sorted(ids(index.search("brown -dog", 10))));
+      assertArrayEquals("not", new int[] {0, 5}, sorted(ids(index.search("brown NOT dog", 10))));
+      assertArrayEquals("phrase query", new int[] {0}, sorted(ids(index.search("\"quick brown\" fox", 10))));
+      assertArrayEquals("phrase or", new int[] {0, 3, 5}, sorted(ids(index.search("\"brown fox\" OR lazy", 10))));
+      assertTrue("empty query", index.search("  ", 10).isEmpty());
+
+      // ranking: the note with the most occurrences of the term in the least terms is first
+      List<NoteIndex.Hit> hits = index.search("quick", 10);
+      assertEquals("first hit", 2, hits.get(0).getID());
+      assertTrue("scores", hits.get(0).getScore() > hits.get(1).getScore());
+      assertEquals("max", 2, index.search("quick", 2).size());
+   }
+
+   /**
+    * Test of the updates of the index when the diagram changes.
+    */
+   @Test
+   public void testUpdate() {
+      System.out.println("NoteIndexTest : testUpdate");
+      SimpleMindDiagram diagram = createDiagram("alpha beta", "beta gamma");
+      NoteIndex index = diagram.getNoteIndex();
+      assertArrayEquals("beta", new int[] {0, 1}, index.findTerm("beta"));
+      diagram.getTopic(0).setNote("delta");
+      assertArrayEquals("beta", new int[] {1}, index.findTerm("beta"));
+      assertArrayEquals("delta", new int[] {0}, index.findTerm("delta"));
+      assertArrayEquals("alpha", new int[0], index.findTerm("alpha"));
+
+      Topic topic = new Topic(2);
+      topic.setNote("beta delta");
+      diagram.addTopic(topic);
+      assertArrayEquals("added", new int[] {0, 2}, index.findTerm("delta"));
+      diagram.removeTopic(1);
+      assertArrayEquals("removed", new int[] {2}, index.findTerm("beta"));
+      topic.setNote("epsilon");
+      assertArrayEquals("updated", new int[0], index.findTerm("beta"));
+      assertSame("same index", index, diagram.getNoteIndex());
+      // only delta and epsilon are still contained in a note
+      assertEquals("terms count", 2, index.getTermsCount());
+      topic.setNote("");
+      diagram.getTopic(0).setNote(null);
+      assertEquals("no terms", 0, index.getTermsCount());
+   }
+
+   /**
+    * Test of the index of a parsed diagram, compared with a linear scan of the notes.
+    */
+   @Test
+   public void testParsedDiagram() throws Exception {
+      System.out.println("NoteIndexTest : testParsedDiagram");
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setNoteLoading(SimpleMindParser.NOTES_LAZY);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(MindMapGenerator.generateWithNotes(2000, 100)));
+      NoteIndex index = diagram.getNoteIndex();
+      String term = NoteIndex.tokenize(diagram.getTopic(10).getNote()).get(0);
+      int count = 0;
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         if (NoteIndex.tokenize(it.next().getNote()).contains(term)) {
+            count++;
+         }
+      }
+      assertTrue("count", count > 0);
+      assertEquals("term " + term, count, index.findTerm(term).length);
+   }
+}
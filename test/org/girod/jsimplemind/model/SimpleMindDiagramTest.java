@@ -39,13 +39,15 @@ import static org.junit.Assert.*;
 import java.awt.Color;
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.girod.jsimplemind.reader.SimpleMindParser;
 import org.xml.sax.SAXException;
 
 /**
  *
- * @version 0.3
+ * @version 0.4
  */
 public class SimpleMindDiagramTest {
    private static SimpleMindDiagram diagram = null;
@@ -132,6 +134,30 @@ public class SimpleMindDiagramTest {
       assertEquals("Text color", new Color(0, 0, 0), color);
    }
 
+   /**
+    * Test of Topics. Test of Topic packed colors.
+    */
+   @Test
+   public void testDiagramTopicsRGB() {
+      System.out.println("SimpleMindDiagramTest : testDiagramTopicsRGB");
+      assertNotNull("Diagram", diagram);
+      Topic topic = diagram.getTopic(7);
+      assertNotNull("Topic 7", topic);
+      assertEquals("Fill color", new Color(228, 183, 255).getRGB(), topic.getFillRGB());
+      assertEquals("Stroke color", new Color(90, 34, 162).getRGB(), topic.getStrokeRGB());
+      assertEquals("Text color", new Color(0, 0, 0).getRGB(), topic.getTextRGB());
+      assertSame("Fill color", topic.getFillColor(), topic.getFillColor());
+
+      Topic newTopic = new Topic(100);
+      assertEquals("Default fill color", Color.WHITE, newTopic.getFillColor());
+      assertEquals("Default text color", Color.BLACK, newTopic.getTextColor());
+      newTopic.setFillColor(null);
+      assertNull("Fill color", newTopic.getFillColor());
+      assertEquals("Fill color", 0, newTopic.getFillRGB());
+      newTopic.setFillRGB(0x80102030);
+      assertEquals("Fill color", new Color(0x10, 0x20, 0x30, 0x80), newTopic.getFillColor());
+   }
+
    /**
     * Test of Topics. Test of Topic parent.
     */
@@ -174,4 +200,66 @@ public class SimpleMindDiagramTest {
       Map<String, Map<Integer, Topic>> topics = diagram.getTopicsByName();
       assertEquals("Topics", 11, topics.size());
    }
+
+   /**
+    * Test of the hash code of Topics.
+    */
+   @Test
+   public void testTopicHashCode() {
+      System.out.println("SimpleMindDiagramTest : testTopicHashCode");
+      Set<Topic> set = new HashSet<>(diagram.getTopics().values());
+      assertEquals("Topics", diagram.getTopics().size(), set.size());
+      Topic topic = diagram.getTopic(8);
+      Topic copy = new Topic(8);
+      copy.updateFrom(topic);
+      assertEquals("same Topic", topic, copy);
+      assertEquals("same hash code", topic.hashCode(), copy.hashCode());
+      assertTrue("contained", set.contains(copy));
+      assertNotEquals("different ids", diagram.getTopic(0).hashCode(), diagram.getTopic(1).hashCode());
+   }
+
+   /**
+    * Test of the removal of a child Topic by another instance with the same id.
+    */
+   @Test
+   public void testRemoveChild() {
+      System.out.println("SimpleMindDiagramTest : testRemoveChild");
+      Topic parent = new Topic(0);
+      Topic child1 = new Topic(1);
+      Topic child2 = new Topic(2);
+      parent.addChild(child1);
+      parent.addChild(child2);
+      // not equal to the child, because its text is different
+      Topic other = new Topic(2);
+      other.setText("other");
+      assertTrue("removed", parent.removeChild(other));
+      assertEquals("children", 1, parent.getChildrenList().size());
+      assertSame("remaining child", child1, parent.getChildrenList().get(0));
+      assertNull("removed child", parent.getChild(2));
+      assertFalse("already removed", parent.removeChild(child2));
+   }
+
+   /**
+    * Test that the changes of a replaced Topic do not update the indexes of the diagram.
+    */
+   @Test
+   public void testReplaceTopic() {
+      System.out.println("SimpleMindDiagramTest : testReplaceTopic");
+      SimpleMindDiagram _diagram = new SimpleMindDiagram();
+      Topic old = new Topic(1);
+      old.setNote("alpha");
+      _diagram.addTopic(old);
+      SpatialIndex spatialIndex = _diagram.getSpatialIndex();
+      NoteIndex noteIndex = _diagram.getNoteIndex();
+      Topic topic = new Topic(1);
+      topic.setNote("beta");
+      _diagram.addTopic(topic);
+      old.setPosition(500, 500);
+      old.setNote("gamma");
+      assertArrayEquals("new position", new int[] {1}, spatialIndex.findInRect(0, 0, 0, 0));
+      assertArrayEquals("old position", new int[0], spatialIndex.findInRect(500, 500, 500, 500));
+      assertArrayEquals("new note", new int[] {1}, noteIndex.findTerm("beta"));
+      assertArrayEquals("old note", new int[0], noteIndex.findTerm("gamma"));
+      assertSame("Topic", topic, _diagram.getTopic(1));
+   }
 }
@@ -0,0 +1,245 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * @since 0.4
+ */
+public class SpatialIndexTest {
+
+   public SpatialIndexTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static SimpleMindDiagram createDiagram(int count, Random random) {
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      for (int i = 0; i < count; i++) {
+         Topic topic = new Topic(i);
+         topic.setPosition(random.nextInt(2000) - 500, random.nextInt(1000));
+         diagram.addTopic(topic);
+      }
+      return diagram;
+   }
+
+   private static int[] scanRect(SimpleMindDiagram diagram, int minX, int minY, int maxX, int maxY) {
+      List<Integer> ids = new ArrayList<>();
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         if (topic.getX() >= minX && topic.getX() <= maxX && topic.getY() >= minY && topic.getY() <= maxY) {
+            ids.add(topic.getID());
+         }
+      }
+      int[] array = new int[ids.size()];
+      for (int i = 0; i < array.length; i++) {
+         array[i] = ids.get(i);
+      }
+      Arrays.sort(array);
+      return array;
+   }
+
+   private static long[] scanNearest(SimpleMindDiagram diagram, int x, int y, int k) {
+      List<long[]> distances = new ArrayList<>();
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic topic = it.next();
+         long dx = topic.getX() - x;
+         long dy = topic.getY() - y;
+         distances.add(new long[] {dx * dx + dy * dy, topic.getID()});
+      }
+      distances.sort((d1, d2) -> d1[0] != d2[0] ? Long.compare(d1[0], d2[0]) : Long.compare(d1[1], d2[1]));
+      long[] ids = new long[Math.min(k, distances.size())];
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = distances.get(i)[1];
+      }
+      return ids;
+   }
+
+   private static long[] toLong(int[] ids) {
+      long[] array = new long[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+         array[i] = ids[i];
+      }
+      return array;
+   }
+
+   private static void checkQueries(SimpleMindDiagram diagram, Random random) {
+      SpatialIndex index = diagram.getSpatialIndex();
+      assertEquals("size", diagram.getTopics().size(), index.size());
+      for (int i = 0; i < 50; i++) {
+         int minX = random.nextInt(2400) - 700;
+         int minY = random.nextInt(1200) - 100;
+         int maxX = minX + random.nextInt(600);
+         int maxY = minY + random.nextInt(400);
+         int[] ids = index.findInRect(minX, minY, maxX, maxY);
+         Arrays.sort(ids);
+         assertArrayEquals("rect", scanRect(diagram, minX, minY, maxX, maxY), ids);
+         int x = random.nextInt(2400) - 700;
+         int y = random.nextInt(1200) - 100;
+         assertArrayEquals("nearest", scanNearest(diagram, x, y, 7), toLong(index.findNearest(x, y, 7)));
+      }
+   }
+
+   /**
+    * Test of the range and nearest neighbour queries, compared with a linear scan.
+    */
+   @Test
+   public void testQueries() {
+      System.out.println("SpatialIndexTest : testQueries");
+      Random random = new Random(42);
+      SimpleMindDiagram diagram = createDiagram(3000, random);
+      checkQueries(diagram, random);
+      assertEquals("all", 3000, diagram.getSpatialIndex().findInRect(-1000, -1000, 2000, 2000).length);
+      assertEquals("k greater than size", 3000, diagram.getSpatialIndex().findNearest(0, 0, 5000).length);
+      assertEquals("empty", 0, new SpatialIndex(new SimpleMindDiagram()).findNearest(0, 0, 3).length);
+   }
+
+   /**
+    * Test of the updates of the index when the positions change and when Topics are added or removed.
+    */
+   @Test
+   public void testUpdate() {
+      System.out.println("SpatialIndexTest : testUpdate");
+      Random random = new Random(7);
+      SimpleMindDiagram diagram = createDiagram(1000, random);
+      SpatialIndex index = diagram.getSpatialIndex();
+      for (int i = 0; i < 500; i++) {
+         Topic topic = diagram.getTopic(random.nextInt(1000));
+         topic.setPosition(random.nextInt(2000) - 500, random.nextInt(1000));
+      }
+      // positions outside of the initial bounds
+      diagram.getTopic(3).setPosition(-100000, 50000);
+      diagram.getTopic(4).setPosition(70000, -3000);
+      assertArrayEquals("far", new int[] {3}, index.findInRect(-100000, 50000, -100000, 50000));
+      for (int i = 0; i < 300; i++) {
+         diagram.removeTopic(random.nextInt(1000));
+      }
+      for (int i = 1000; i < 1200; i++) {
+         Topic topic = new Topic(i);
+         topic.setPosition(random.nextInt(2000) - 500, random.nextInt(1000));
+         diagram.addTopic(topic);
+      }
+      assertSame("same index", index, diagram.getSpatialIndex());
+      checkQueries(diagram, random);
+   }
+
+   /**
+    * Test of the addition of Topics in the empty quadrants of an index built from the Topics of a diagram.
+    */
+   @Test
+   public void testAddInEmptyQuadrant() {
+      System.out.println("SpatialIndexTest : testAddInEmptyQuadrant");
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      // 17 Topics in the lower left quadrant and one in the upper right quadrant, so that the root is split and the
+      // two other quadrants are empty
+      for (int i = 0; i < 17; i++) {
+         Topic topic = new Topic(i);
+         topic.setPosition(i % 2, (i / 2) % 2);
+         diagram.addTopic(topic);
+      }
+      Topic corner = new Topic(17);
+      corner.setPosition(3, 3);
+      diagram.addTopic(corner);
+      SpatialIndex index = diagram.getSpatialIndex();
+      Topic topic = new Topic(100);
+      topic.setPosition(3, 0);
+      diagram.addTopic(topic);
+      diagram.getTopic(0).setPosition(0, 3);
+      assertArrayEquals("added", new int[] {100}, index.findInRect(3, 0, 3, 0));
+      assertArrayEquals("moved", new int[] {0}, index.findInRect(0, 3, 0, 3));
+      checkQueries(diagram, new Random(11));
+   }
+
+   /**
+    * Test of the bounding boxes of the subtrees.
+    */
+   @Test
+   public void testSubtreeBounds() {
+      System.out.println("SpatialIndexTest : testSubtreeBounds");
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      Topic root = new Topic(0);
+      root.setPosition(100, 100);
+      diagram.addTopic(root);
+      Topic child1 = new Topic(1);
+      child1.setPosition(50, 150);
+      diagram.addTopic(child1);
+      Topic child2 = new Topic(2);
+      child2.setPosition(200, 120);
+      diagram.addTopic(child2);
+      Topic grandChild = new Topic(3);
+      grandChild.setPosition(20, 300);
+      diagram.addTopic(grandChild);
+      root.addChild(child1);
+      child1.setParent(root);
+      root.addChild(child2);
+      child2.setParent(root);
+      child1.addChild(grandChild);
+      grandChild.setParent(child1);
+
+      SpatialIndex index = diagram.getSpatialIndex();
+      assertArrayEquals("root", new int[] {20, 100, 200, 300}, index.getSubtreeBounds(root));
+      assertArrayEquals("child1", new int[] {20, 150, 50, 300}, index.getSubtreeBounds(child1));
+      assertArrayEquals("child2", new int[] {200, 120, 200, 120}, index.getSubtreeBounds(child2));
+      grandChild.setPosition(400, 10);
+      assertArrayEquals("moved", new int[] {50, 10, 400, 150}, index.getSubtreeBounds(child1));
+      assertArrayEquals("moved", new int[] {50, 10, 400, 150}, index.getSubtreeBounds(root));
+      diagram.removeTopic(1);
+      assertArrayEquals("removed", new int[] {100, 100, 200, 120}, index.getSubtreeBounds(root));
+   }
+}
@@ -0,0 +1,151 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.model;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Iterator;
+
+/**
+ *
+ * @since 0.4
+ */
+public class TopicTextIndexTest {
+
+   public TopicTextIndexTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static SimpleMindDiagram createDiagram(String... texts) {
+      SimpleMindDiagram diagram = new SimpleMindDiagram();
+      for (int i = 0; i < texts.length; i++) {
+         Topic topic = new Topic(i);
+         topic.setText(texts[i]);
+         diagram.addTopic(topic);
+      }
+      return diagram;
+   }
+
+   /**
+    * Test of the normalize method.
+    */
+   @Test
+   public void testNormalize() {
+      System.out.println("TopicTextIndexTest : testNormalize");
+      assertEquals("accents", "evenement cafe", TopicTextIndex.normalize("Événement Café"));
+      assertEquals("whitespaces", "one two three", TopicTextIndex.normalize("  One \t two  three \n"));
+      assertEquals("line break", "one-dimensional continuant", TopicTextIndex.normalize("one-dimensional\\Ncontinuant"));
+      assertEquals("empty", "", TopicTextIndex.normalize("   "));
+   }
+
+   /**
+    * Test of the lookups of the index.
+    */
+   @Test
+   public void testFind() {
+      System.out.println("TopicTextIndexTest : testFind");
+      SimpleMindDiagram diagram = createDiagram("Process", "process", "Processus", "Procédé", "process  boundary",
+         "Process", "Entity", "");
+      TopicTextIndex index = diagram.getTextIndex();
+      assertSame("cached index", index, diagram.getTextIndex());
+      assertArrayEquals("exact", new int[] {0, 5}, index.find("Process"));
+      assertArrayEquals("exact", new int[0], index.find("PROCESS"));
+      assertArrayEquals("ignore case", new int[] {0, 1, 5}, index.find("PROCESS", TopicTextIndex.IGNORE_CASE));
+      assertArrayEquals("normalized", new int[] {3}, index.find("procede", TopicTextIndex.NORMALIZED));
+      assertArrayEquals("normalized", new int[] {4}, index.find("Process Boundary", TopicTextIndex.NORMALIZED));
+      assertArrayEquals("empty", new int[] {7}, index.find(""));
+
+      assertArrayEquals("exact prefix", new int[] {0, 5, 2}, index.findPrefix("Process", TopicTextIndex.EXACT));
+      assertArrayEquals("ignore case prefix", new int[] {0, 1, 5, 4, 2},
+         index.findPrefix("proCESS", TopicTextIndex.IGNORE_CASE));
+      assertArrayEquals("normalized prefix", new int[] {3, 0, 1, 5, 4, 2},
+         index.findPrefix("PROC", TopicTextIndex.NORMALIZED));
+      assertArrayEquals("max", new int[] {3, 0}, index.findPrefix("proc", TopicTextIndex.NORMALIZED, 2));
+      assertArrayEquals("no prefix", new int[0], index.findPrefix("zz", TopicTextIndex.NORMALIZED));
+      assertArrayEquals("complete", new String[] {"procede", "process"},
+         index.complete("proc", TopicTextIndex.NORMALIZED, 2));
+      assertEquals("keys", 7, index.getKeysCount(TopicTextIndex.EXACT));
+      assertEquals("keys", 6, index.getKeysCount(TopicTextIndex.NORMALIZED));
+
+      // the index is created again when the diagram changes
+      diagram.setTopicText(diagram.getTopic(6), "Processes");
+      index = diagram.getTextIndex();
+      assertArrayEquals("renamed", new int[] {0, 5, 6, 2}, index.findPrefix("Process", TopicTextIndex.EXACT));
+      diagram.removeTopic(0);
+      assertArrayEquals("removed", new int[] {5}, diagram.getTextIndex().find("Process"));
+   }
+
+   /**
+    * Test of the index on a large number of Topics, compared with a linear scan.
+    */
+   @Test
+   public void testLargeIndex() {
+      System.out.println("TopicTextIndexTest : testLargeIndex");
+      String[] texts = new String[20000];
+      for (int i = 0; i < texts.length; i++) {
+         texts[i] = "Topic " + (i % 7000);
+      }
+      SimpleMindDiagram diagram = createDiagram(texts);
+      TopicTextIndex index = diagram.getTextIndex();
+      int[] ids = index.findPrefix("topic 12", TopicTextIndex.IGNORE_CASE);
+      int count = 0;
+      Iterator<Topic> it = diagram.getTopics().values().iterator();
+      while (it.hasNext()) {
+         if (it.next().getText().startsWith("Topic 12")) {
+            count++;
+         }
+      }
+      assertEquals("prefix", count, ids.length);
+      for (int id : ids) {
+         assertTrue("prefix", diagram.getTopic(id).getText().startsWith("Topic 12"));
+      }
+      assertEquals("exact", 3, index.find("Topic 1234").length);
+   }
+}
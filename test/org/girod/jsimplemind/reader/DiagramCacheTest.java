@@ -0,0 +1,228 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+
+/**
+ *
+ * @since 0.4
+ */
+public class DiagramCacheTest {
+   private Path directory;
+
+   public DiagramCacheTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("jsimplemind");
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      File[] files = directory.toFile().listFiles();
+      if (files != null) {
+         for (File file : files) {
+            file.delete();
+         }
+      }
+      Files.delete(directory);
+   }
+
+   private Path write(String name, byte[] content) throws IOException {
+      Path path = directory.resolve(name);
+      // replace the file atomically, so that the watch service never sees a partially written file
+      Path tmp = directory.resolve(name + ".tmp");
+      Files.write(tmp, content);
+      return Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * Test of the validation of the cached diagrams.
+    */
+   @Test
+   public void testGet() throws Exception {
+      System.out.println("DiagramCacheTest : testGet");
+      Path path = write("map.xml", MindMapGenerator.generate(100));
+      DiagramCache cache = new DiagramCache(Long.MAX_VALUE);
+      SimpleMindDiagram diagram = cache.get(path);
+      assertEquals("Topics", 100, diagram.getTopics().size());
+      assertSame("Cached diagram", diagram, cache.get(path.toFile()));
+      assertEquals("hits", 1, cache.getStatistics().getHits());
+      assertEquals("misses", 1, cache.getStatistics().getMisses());
+      assertTrue("load time", cache.getStatistics().getTotalLoadTime() > 0);
+      assertEquals("estimated bytes", DiagramCache.estimateSize(diagram), cache.getEstimatedBytes());
+
+      // same content with a new modification time
+      Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 10000));
+      assertSame("Revalidated diagram", diagram, cache.get(path));
+      assertEquals("revalidations", 1, cache.getStatistics().getRevalidations());
+
+      // new content
+      write("map.xml", MindMapGenerator.generate(200));
+      Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 20000));
+      SimpleMindDiagram modified = cache.get(path);
+      assertNotSame("Reloaded diagram", diagram, modified);
+      assertEquals("Topics", 200, modified.getTopics().size());
+      assertEquals("misses", 2, cache.getStatistics().getMisses());
+      assertEquals("estimated bytes", DiagramCache.estimateSize(modified), cache.getEstimatedBytes());
+
+      // deleted file
+      Files.delete(path);
+      try {
+         cache.get(path);
+         fail("The file does not exist");
+      } catch (NoSuchFileException ex) {
+      }
+      assertFalse("Removed diagram", cache.contains(path));
+      assertEquals("estimated bytes", 0, cache.getEstimatedBytes());
+   }
+
+   /**
+    * Test of the eviction of the cached diagrams.
+    */
+   @Test
+   public void testEviction() throws Exception {
+      System.out.println("DiagramCacheTest : testEviction");
+      Path path1 = write("map1.xml", MindMapGenerator.generate(100));
+      Path path2 = write("map2.xml", MindMapGenerator.generate(100));
+      Path path3 = write("map3.smmx", Files.readAllBytes(new File(this.getClass().getResource("BFO.smmx").toURI()).toPath()));
+      SimpleMindParser parser = new SimpleMindParser();
+      long size = DiagramCache.estimateSize(parser.parse(path1.toFile()));
+      long size3 = DiagramCache.estimateSize(parser.parse(path3.toFile()));
+      long maxBytes = 2 * size + size3 - 1;
+
+      DiagramCache cache = new DiagramCache(parser, maxBytes, DiagramCache.POLICY_LRU);
+      cache.get(path1);
+      cache.get(path2);
+      cache.get(path1);
+      cache.get(path3);
+      assertTrue("map1 is recently used", cache.contains(path1));
+      assertFalse("map2 is the least recently used", cache.contains(path2));
+      assertTrue("map3", cache.contains(path3));
+      assertEquals("evictions", 1, cache.getStatistics().getEvictions());
+      assertTrue("estimated bytes", cache.getEstimatedBytes() <= maxBytes);
+
+      cache = new DiagramCache(parser, maxBytes, DiagramCache.POLICY_LFU);
+      cache.get(path2);
+      cache.get(path2);
+      cache.get(path1);
+      cache.get(path3);
+      assertTrue("map2 is frequently used", cache.contains(path2));
+      assertFalse("map1 is the least frequently used", cache.contains(path1));
+      assertEquals("size", 2, cache.size());
+   }
+
+   /**
+    * Test of the estimated size of a diagram whose notes are loaded lazily.
+    */
+   @Test
+   public void testEstimateLazyNotes() throws Exception {
+      System.out.println("DiagramCacheTest : testEstimateLazyNotes");
+      byte[] content = MindMapGenerator.generateWithNotes(1000, 500);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setNoteLoading(SimpleMindParser.NOTES_LAZY);
+      SimpleMindDiagram lazy = parser.parse(new ByteArrayInputStream(content));
+      SimpleMindDiagram eager = new SimpleMindParser().parse(new ByteArrayInputStream(content));
+      long notes = 0;
+      for (Topic topic : eager.getTopics().values()) {
+         notes += topic.getNote().length();
+      }
+      long size = DiagramCache.estimateSize(lazy);
+      for (Topic topic : lazy.getTopics().values()) {
+         topic.setNote("");
+      }
+      // the raw notes are in a direct buffer, which is counted once
+      assertTrue("lazy notes must be counted", size - DiagramCache.estimateSize(lazy) >= notes);
+   }
+
+   /**
+    * Test of the reloading of the files which are modified on disk.
+    */
+   @Test
+   public void testWatching() throws Exception {
+      System.out.println("DiagramCacheTest : testWatching");
+      Path path = write("map.xml", MindMapGenerator.generate(100));
+      try (DiagramCache cache = new DiagramCache(Long.MAX_VALUE)) {
+         SimpleMindDiagram diagram = cache.get(path);
+         cache.startWatching();
+         assertTrue("watching", cache.isWatching());
+         write("map.xml", MindMapGenerator.generate(300));
+         long end = System.currentTimeMillis() + 20000;
+         while (cache.getStatistics().getReloads() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+         }
+         assertTrue("The file must have been reloaded", cache.getStatistics().getReloads() > 0);
+         // the reload is not an access
+         assertEquals("misses after reload", 1, cache.getStatistics().getMisses());
+         assertEquals("hits after reload", 0, cache.getStatistics().getHits());
+         // the reloaded diagram is returned without parsing the file again
+         long misses = cache.getStatistics().getMisses();
+         SimpleMindDiagram reloaded = cache.get(path);
+         assertNotSame("Reloaded diagram", diagram, reloaded);
+         assertEquals("Topics", 300, reloaded.getTopics().size());
+         assertEquals("misses", misses, cache.getStatistics().getMisses());
+
+         Files.delete(path);
+         end = System.currentTimeMillis() + 20000;
+         while (cache.contains(path) && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+         }
+         assertFalse("The deleted file must have been removed", cache.contains(path));
+      }
+      assertFalse("watching", new DiagramCache(1).isWatching());
+   }
+}
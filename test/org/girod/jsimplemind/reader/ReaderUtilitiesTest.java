@@ -0,0 +1,178 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.reader;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @since 0.4
+ */
+public class ReaderUtilitiesTest {
+
+   public ReaderUtilitiesTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private File getResource(String name) throws URISyntaxException {
+      return new File(this.getClass().getResource(name).toURI());
+   }
+
+   private static File createArchive(byte[] mindmap) throws IOException {
+      File file = File.createTempFile("jsimplemind", ".smmx");
+      try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+         byte[] other = "other".getBytes(StandardCharsets.UTF_8);
+         ZipEntry entry = new ZipEntry("document/other.txt");
+         entry.setMethod(ZipEntry.STORED);
+         entry.setSize(other.length);
+         CRC32 crc = new CRC32();
+         crc.update(other);
+         entry.setCrc(crc.getValue());
+         zip.putNextEntry(entry);
+         zip.write(other);
+         zip.closeEntry();
+         zip.putNextEntry(new ZipEntry(SmmxReader.MINDMAP_ENTRY));
+         zip.write(mindmap);
+         zip.closeEntry();
+      }
+      return file;
+   }
+
+   /**
+    * Test of getSimpleMindContent method, of class ReaderUtilities.
+    */
+   @Test
+   public void testGetSimpleMindContent() throws Exception {
+      System.out.println("ReaderUtilitiesTest : testGetSimpleMindContent");
+      File smmx = getResource("BFO.smmx");
+      byte[] expected;
+      try (ZipFile zip = new ZipFile(smmx); InputStream stream = zip.getInputStream(zip.getEntry(SmmxReader.MINDMAP_ENTRY))) {
+         expected = ReaderUtilities.readFully(stream);
+      }
+      assertArrayEquals("smmx content", expected, ReaderUtilities.getSimpleMindContent(smmx));
+      File xml = getResource("mindmap.xml");
+      assertArrayEquals("xml content", Files.readAllBytes(xml.toPath()), ReaderUtilities.getSimpleMindContent(xml));
+      assertTrue("BFO.smmx is an archive", ReaderUtilities.isArchive(smmx));
+      assertFalse("mindmap.xml is not an archive", ReaderUtilities.isArchive(xml));
+   }
+
+   /**
+    * Test of the selection of the diagram entry in a large archive with several entries.
+    */
+   @Test
+   public void testLargeArchive() throws IOException, SAXException {
+      System.out.println("ReaderUtilitiesTest : testLargeArchive");
+      byte[] content = MindMapGenerator.generate(30000);
+      File file = createArchive(content);
+      try {
+         assertTrue("The archive must be large", file.length() > 256 * 1024);
+         assertArrayEquals("content", content, ReaderUtilities.getSimpleMindContent(file));
+         SimpleMindDiagram diagram = new SimpleMindParser().parse(file);
+         assertEquals("Topics", 30000, diagram.getTopics().size());
+      } finally {
+         assertTrue("The archive must not be locked", file.delete());
+      }
+   }
+
+   /**
+    * Test of the read of corrupted archives.
+    */
+   @Test
+   public void testCorruptedArchive() throws IOException {
+      System.out.println("ReaderUtilitiesTest : testCorruptedArchive");
+      File file = createArchive(MindMapGenerator.generate(100));
+      try {
+         byte[] archive = Files.readAllBytes(file.toPath());
+         // corrupt the compressed data of the diagram entry, which is just after its local header
+         int header = -1;
+         for (int i = archive.length - 4; i >= 0; i--) {
+            if (archive[i] == 'P' && archive[i + 1] == 'K' && archive[i + 2] == 3 && archive[i + 3] == 4) {
+               header = i;
+               break;
+            }
+         }
+         byte[] corrupted = archive.clone();
+         int extra = (archive[header + 28] & 0xFF) | ((archive[header + 29] & 0xFF) << 8);
+         int data = header + 30 + SmmxReader.MINDMAP_ENTRY.length() + extra + 10;
+         corrupted[data] ^= 0x55;
+         corrupted[data + 1] ^= 0x55;
+         assertInvalid(file, corrupted);
+         assertInvalid(file, Arrays.copyOf(archive, archive.length - 30));
+         assertInvalid(file, Arrays.copyOf(archive, 10));
+      } finally {
+         file.delete();
+      }
+   }
+
+   private static void assertInvalid(File file, byte[] content) throws IOException {
+      Files.write(file.toPath(), content);
+      try {
+         ReaderUtilities.getSimpleMindContent(file);
+         fail("The archive must be rejected");
+      } catch (IOException ex) {
+      }
+   }
+}
@@ -30,22 +30,47 @@ the project website at the project page on https://github.com/hervegirod/jSimple
  */
 package org.girod.jsimplemind.reader;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.model.ChangeSet;
+import org.girod.jsimplemind.model.CompactDiagram;
 import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
 import org.xml.sax.SAXException;
 
 /**
  *
- * @since 0.1
+ * @version 0.4
  */
 public class SimpleMindParserTest {
 
@@ -111,4 +136,643 @@ public class SimpleMindParserTest {
       assertNotNull("title must not be null", diagram);
       assertEquals("title", "The Diagram", title);
    }
+
+   /**
+    * Test of parse method, of class SimpleMindParser, with the {@link SimpleMindParser#ENGINE_SAX_STREAMING} engine.
+    */
+   @Test
+   public void testParseStreaming() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseStreaming");
+      assertSameDiagram("mindmap.xml", SimpleMindParser.ENGINE_SAX_STREAMING);
+      assertSameDiagram("BFO.smmx", SimpleMindParser.ENGINE_SAX_STREAMING);
+   }
+
+   /**
+    * Test of parse method, of class SimpleMindParser, with the {@link SimpleMindParser#ENGINE_STAX} engine.
+    */
+   @Test
+   public void testParseStax() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseStax");
+      assertSameDiagram("mindmap.xml", SimpleMindParser.ENGINE_STAX);
+      assertSameDiagram("BFO.smmx", SimpleMindParser.ENGINE_STAX);
+   }
+
+   /**
+    * Test of parse method, of class SimpleMindParser, with decimal positions.
+    */
+   @Test
+   public void testParseDecimalPosition() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseDecimalPosition");
+      URL url = this.getClass().getResource("mindmap.xml");
+      int[] engines = {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_SAX_STREAMING, SimpleMindParser.ENGINE_STAX,
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER};
+      for (int engine : engines) {
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(engine);
+         SimpleMindDiagram diagram = parser.parse(ReaderUtilities.getSimpleMindStream(url));
+         Topic topic = diagram.getTopic(0);
+         assertEquals("x", 324, topic.getX());
+         assertEquals("y", 785, topic.getY());
+         topic = diagram.getTopic(3);
+         assertEquals("x", 218, topic.getX());
+         assertEquals("y", 983, topic.getY());
+      }
+   }
+
+   /**
+    * Test of parse method, of class SimpleMindParser, with the byte tokenizer.
+    */
+   @Test
+   public void testParseBytes() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseBytes");
+      assertSameDiagram("mindmap.xml", SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      assertSameDiagram("BFO.smmx", SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      assertSameDiagram(MindMapGenerator.generate(2000), SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      String body = "<simplemind-mindmaps>\r\n<!-- a comment -->\r\n<mindmap>\r\n"
+         + "<meta><title text='A &amp; B&#x20;&#233;&#x1F600;'/></meta>\r\n<topics>\r\n"
+         + "<topic id=\"0\" parent=\"-1\" x=\"10\" y=\"20\" text=\"line\r\nbreak\ttab &lt;&gt; &quot;q&quot; \u00e9\">"
+         + "<note>  first &apos;part&apos;<!-- comment -->\r\nsecond<![CDATA[ <cdata> & \r\n]]>  </note>"
+         + "<style><fillcolor r=\"1\" g=\"2\" b=\"3\"/></style></topic>\r\n"
+         + "<topic id=\"1\" parent=\"0\" x=\"5\" y=\"6\" text=\"child\"><note><![CDATA[only cdata]]><b>ignored</b></note>"
+         + "<textcolor r='4' g='5' b='6' /></topic>\r\n"
+         + "<topic id=\"2\" parent=\"0\" text=\"a &gt; b\"><note/></topic>\r\n"
+         + "</topics>\r\n<relations><strokecolor r=\"7\" g=\"8\" b=\"9\"/></relations></mindmap>\r\n"
+         + "</simplemind-mindmaps>\r\n";
+      String[] prologs = {"", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n",
+         "\uFEFF<?xml version='1.0' encoding='utf-8' standalone='yes'?>\n<!DOCTYPE simplemind-mindmaps>\n"};
+      for (String prolog : prologs) {
+         assertSameDiagram((prolog + body).getBytes(StandardCharsets.UTF_8), SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      }
+      // contents which are not handled by the tokenizer must be parsed by the SAX parser
+      assertSameDiagram(("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + body).getBytes(StandardCharsets.ISO_8859_1),
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      String doctype = "<!DOCTYPE simplemind-mindmaps [<!ENTITY e \"entity\">]>";
+      byte[] content = (doctype + body.replace("child", "&e;")).getBytes(StandardCharsets.UTF_8);
+      assertSameDiagram(content, SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_BYTE_TOKENIZER);
+      assertEquals("entity", parser.parse(new ByteArrayInputStream(content)).getTopic(1).getText());
+      try {
+         parser.parse(new ByteArrayInputStream(body.replace("</topics>", "</topic>").getBytes(StandardCharsets.UTF_8)));
+         fail("Malformed content must be rejected");
+      } catch (SAXException ex) {
+         // expected
+      }
+   }
+
+   /**
+    * Test of parseCompact method, of class SimpleMindParser.
+    */
+   @Test
+   public void testParseCompact() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseCompact");
+      byte[] content = MindMapGenerator.generate(2000);
+      int[] engines = {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_SAX_STREAMING, SimpleMindParser.ENGINE_STAX,
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER};
+      for (int engine : engines) {
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setEngine(engine);
+         SimpleMindDiagram expected = parser.parse(new ByteArrayInputStream(content));
+         CompactDiagram compact = parser.parseCompact(new ByteArrayInputStream(content));
+         assertSameDiagram(expected, compact.toDiagram());
+         for (String resource : new String[] {"mindmap.xml", "BFO.smmx"}) {
+            URL url = this.getClass().getResource(resource);
+            expected = parser.parse(ReaderUtilities.getSimpleMindStream(url));
+            compact = parser.parseCompact(ReaderUtilities.getSimpleMindStream(url));
+            assertSameDiagram(expected, compact.toDiagram());
+         }
+      }
+   }
+
+   /**
+    * Test of parse method, of class SimpleMindParser, with one parser shared by several threads.
+    */
+   @Test
+   public void testConcurrentParse() throws Exception {
+      System.out.println("SimpleMindParserTest : testConcurrentParse");
+      final byte[][] contents = new byte[2][];
+      final SimpleMindDiagram[] expected = new SimpleMindDiagram[2];
+      String[] resources = {"mindmap.xml", "BFO.smmx"};
+      SimpleMindParser parser = new SimpleMindParser();
+      for (int i = 0; i < resources.length; i++) {
+         try (InputStream stream = ReaderUtilities.getSimpleMindStream(this.getClass().getResource(resources[i]))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int length;
+            while ((length = stream.read(buf)) != -1) {
+               out.write(buf, 0, length);
+            }
+            contents[i] = out.toByteArray();
+         }
+         expected[i] = parser.parse(new ByteArrayInputStream(contents[i]));
+      }
+      final int countThreads = 4;
+      final int countParses = 200;
+      int[] engines = {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_SAX_STREAMING, SimpleMindParser.ENGINE_STAX,
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER};
+      for (int engine : engines) {
+         final SimpleMindParser sharedParser = new SimpleMindParser();
+         sharedParser.setEngine(engine);
+         sharedParser.setNoteParserSupplier(CheckingNoteParser::new);
+         ExecutorService executor = Executors.newFixedThreadPool(countThreads);
+         try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < countThreads; t++) {
+               final int offset = t;
+               futures.add(executor.submit(() -> {
+                  for (int i = 0; i < countParses; i++) {
+                     int index = (i + offset) % 2;
+                     SimpleMindDiagram diagram = sharedParser.parse(new ByteArrayInputStream(contents[index]));
+                     assertSameDiagram(expected[index], diagram);
+                  }
+                  return countParses;
+               }));
+            }
+            int count = 0;
+            for (Future<Integer> future : futures) {
+               count += future.get();
+            }
+            assertEquals("parses", countThreads * countParses, count);
+         } finally {
+            executor.shutdown();
+         }
+      }
+   }
+
+   /**
+    * Test of parseParallel method, of class SimpleMindParser.
+    */
+   @Test
+   public void testParseParallel() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseParallel");
+      byte[] content = MindMapGenerator.generate(5000);
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram expected = parser.parse(new ByteArrayInputStream(content));
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+         SimpleMindDiagram diagram = parser.parseParallel(new ByteArrayInputStream(content), pool);
+         assertSameDiagram(expected, diagram);
+      } finally {
+         pool.shutdown();
+      }
+
+      // a small content is parsed sequentially
+      URL url = this.getClass().getResource("mindmap.xml");
+      expected = parser.parse(url);
+      SimpleMindDiagram diagram = parser.parseParallel(url.openStream());
+      assertSameDiagram(expected, diagram);
+   }
+
+   /**
+    * Test of parseAll method, of class SimpleMindParser.
+    */
+   @Test
+   public void testParseAll() throws Exception {
+      System.out.println("SimpleMindParserTest : testParseAll");
+      Path xmlPath = Paths.get(this.getClass().getResource("mindmap.xml").toURI());
+      Path smmxPath = Paths.get(this.getClass().getResource("BFO.smmx").toURI());
+      Path missingPath = xmlPath.resolveSibling("missing.smmx");
+      SimpleMindParser parser = new SimpleMindParser();
+      Iterator<ParseResult> it = parser.parseAll(Arrays.asList(xmlPath, smmxPath, missingPath));
+      Map<Path, ParseResult> results = new HashMap<>();
+      while (it.hasNext()) {
+         ParseResult result = it.next();
+         results.put(result.getPath(), result);
+      }
+      assertEquals("Results", 3, results.size());
+      assertTrue("mindmap.xml must be parsed", results.get(xmlPath).isSuccess());
+      assertEquals("title", "The Diagram", results.get(xmlPath).getDiagram().getTitle());
+      assertTrue("BFO.smmx must be parsed", results.get(smmxPath).isSuccess());
+      assertEquals("title", "KOVE2 - only", results.get(smmxPath).getDiagram().getTitle());
+      assertFalse("missing.smmx must fail", results.get(missingPath).isSuccess());
+      assertNotNull("missing.smmx exception", results.get(missingPath).getException());
+   }
+
+   /**
+    * Test of the lazy loading of notes.
+    */
+   @Test
+   public void testLazyNotes() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testLazyNotes");
+      String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<simplemind-mindmaps><mindmap><topics>\n"
+         + "<topic id=\"0\" text=\"root\"><note>\n  first &amp; <![CDATA[<second>]]><!-- comment -->\r\nthird\n</note>"
+         + "</topic>\n"
+         + "<topic id=\"1\" parent=\"0\" text=\"child\"><note>before<style/>after</note></topic>\n"
+         + "<topic id=\"2\" parent=\"0\" text=\"empty\"><note/></topic>\n"
+         + "</topics></mindmap></simplemind-mindmaps>";
+      byte[] content = xml.getBytes(StandardCharsets.UTF_8);
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setNoteLoading(SimpleMindParser.NOTES_LAZY);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      assertTrue("Note must be lazy", diagram.getTopic(0).hasLazyNote());
+      assertEquals("note", "first & <second>\nthird", diagram.getTopic(0).getNote());
+      assertEquals("note", "before", diagram.getTopic(1).getNote());
+      assertFalse("Note must not be lazy", diagram.getTopic(2).hasLazyNote());
+      assertEquals("note", "", diagram.getTopic(2).getNote());
+      diagram.getTopic(0).setNote("other");
+      assertFalse("Note must not be lazy", diagram.getTopic(0).hasLazyNote());
+      assertEquals("note", "other", diagram.getTopic(0).getNote());
+
+      byte[] generated = MindMapGenerator.generate(2000);
+      parser.setEngine(SimpleMindParser.ENGINE_STAX);
+      // the notes are loaded lazily by the byte tokenizer, whatever the engine
+      diagram = parser.parse(new ByteArrayInputStream(content));
+      assertTrue("Note must be lazy with the StAX engine", diagram.getTopic(0).hasLazyNote());
+      assertEquals("note", "first & <second>\nthird", diagram.getTopic(0).getNote());
+      diagram.getTopic(0).setNote("other");
+      parser.reparse(diagram, new ByteArrayInputStream(content));
+      assertTrue("Note must be lazy after a reparse with the StAX engine", diagram.getTopic(0).hasLazyNote());
+      SimpleMindParser eager = new SimpleMindParser();
+      assertSameDiagram(eager.parse(new ByteArrayInputStream(generated)), parser.parse(new ByteArrayInputStream(generated)));
+      for (String resource : new String[] {"mindmap.xml", "BFO.smmx"}) {
+         URL url = this.getClass().getResource(resource);
+         assertSameDiagram(eager.parse(ReaderUtilities.getSimpleMindStream(url)), parser.parse(ReaderUtilities.getSimpleMindStream(url)));
+      }
+   }
+
+   /**
+    * Test of the NoteParser with lazily loaded notes, called during the parsing or deferred.
+    */
+   @Test
+   public void testLazyNotesParser() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testLazyNotesParser");
+      byte[] content = MindMapGenerator.generate(1000);
+      SimpleMindParser parser = new SimpleMindParser();
+      RecordingNoteParser expected = new RecordingNoteParser();
+      parser.setNoteParser(expected);
+      parser.parse(new ByteArrayInputStream(content));
+      assertEquals("Notes", 250, expected.notes.size());
+      assertTrue("resolve must be called", expected.resolved);
+
+      RecordingNoteParser noteParser = new RecordingNoteParser();
+      parser.setNoteParser(noteParser);
+      parser.setNoteLoading(SimpleMindParser.NOTES_LAZY);
+      parser.parse(new ByteArrayInputStream(content));
+      assertEquals("Notes", expected.notes, noteParser.notes);
+      assertTrue("resolve must be called", noteParser.resolved);
+
+      noteParser = new RecordingNoteParser();
+      parser.setNoteParser(noteParser);
+      parser.setNoteLoading(SimpleMindParser.NOTES_LAZY_DEFERRED);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      assertTrue("Notes must not be parsed", noteParser.notes.isEmpty());
+      assertFalse("resolve must not be called", noteParser.resolved);
+      parser.parseNotes(diagram);
+      assertEquals("Notes", expected.notes, noteParser.notes);
+      assertTrue("resolve must be called", noteParser.resolved);
+   }
+
+   /**
+    * Test of stream method, of class SimpleMindParser.
+    */
+   @Test
+   public void testStream() throws Exception {
+      System.out.println("SimpleMindParserTest : testStream");
+      byte[] content = MindMapGenerator.generate(2000);
+      assertArrayEquals("generated stream", content, ReaderUtilities.readFully(MindMapGenerator.openStream(2000)));
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram expected = parser.parse(new ByteArrayInputStream(content));
+      for (int engine : new int[] {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_STAX}) {
+         parser.setEngine(engine);
+         RecordingVisitor visitor = new RecordingVisitor(true);
+         parser.stream(MindMapGenerator.openStream(2000), visitor);
+         assertEquals("title", expected.getTitle(), visitor.title);
+         assertEquals("Topics", 2000, visitor.topics);
+         assertEquals("Ended Topics", 2000, visitor.endedTopics);
+         assertEquals("endDiagram", 1, visitor.endDiagram);
+         Iterator<Topic> it = expected.getTopics().values().iterator();
+         while (it.hasNext()) {
+            Topic topic = it.next();
+            int id = topic.getID();
+            assertEquals("parent", topic.getParent() != null ? topic.getParent().getID() : -1, (int) visitor.parents.get(id));
+            assertEquals("text", topic.getText(), visitor.texts.get(id));
+            assertEquals("fill color", topic.getFillRGB(), (int) visitor.fillColors.get(id));
+            assertEquals("note", topic.getNote(), visitor.notes.getOrDefault(id, ""));
+         }
+      }
+
+      RecordingVisitor visitor = new RecordingVisitor(false);
+      parser.stream(MindMapGenerator.openStream(2000), visitor);
+      assertEquals("Topics", 2000, visitor.topics);
+      assertTrue("No colors", visitor.fillColors.isEmpty());
+      assertTrue("No notes", visitor.notes.isEmpty());
+
+      File smmx = new File(this.getClass().getResource("BFO.smmx").toURI());
+      expected = parser.parse(smmx);
+      visitor = new RecordingVisitor(true);
+      parser.stream(smmx, visitor);
+      assertEquals("title", expected.getTitle(), visitor.title);
+      assertEquals("Topics", expected.getTopics().size(), visitor.topics);
+   }
+
+   /**
+    * A TopicVisitor which records the events it receives.
+    */
+   private static class RecordingVisitor implements TopicVisitor {
+      private final boolean details;
+      private String title = null;
+      private int topics = 0;
+      private int endedTopics = 0;
+      private int endDiagram = 0;
+      private int current = -1;
+      private final Map<Integer, Integer> parents = new HashMap<>();
+      private final Map<Integer, String> texts = new HashMap<>();
+      private final Map<Integer, Integer> fillColors = new HashMap<>();
+      private final Map<Integer, String> notes = new HashMap<>();
+
+      private RecordingVisitor(boolean details) {
+         this.details = details;
+      }
+
+      @Override
+      public void title(String title) {
+         this.title = title;
+      }
+
+      @Override
+      public boolean topic(int id, int parentID, String text, boolean hasPosition, int x, int y) {
+         assertEquals("endTopic must be called before the next Topic", -1, current);
+         current = id;
+         topics++;
+         parents.put(id, parentID);
+         texts.put(id, text);
+         return details;
+      }
+
+      @Override
+      public void fillColor(int id, int argb) {
+         assertEquals("Topic id", current, id);
+         assertNull("Only the first fill color", fillColors.put(id, argb));
+      }
+
+      @Override
+      public void note(int id, String note) {
+         assertEquals("Topic id", current, id);
+         notes.put(id, note);
+      }
+
+      @Override
+      public void endTopic(int id) {
+         assertEquals("Topic id", current, id);
+         current = -1;
+         endedTopics++;
+      }
+
+      @Override
+      public void endDiagram() {
+         endDiagram++;
+      }
+   }
+
+   /**
+    * Test of the reading of the metadata.
+    */
+   @Test
+   public void testReadMetadata() throws Exception {
+      System.out.println("SimpleMindParserTest : testReadMetadata");
+      SimpleMindParser parser = new SimpleMindParser();
+      File xml = new File(this.getClass().getResource("mindmap.xml").toURI());
+      SimpleMindDiagram diagram = parser.parse(xml);
+      DiagramMetadata metadata = parser.readMetadata(xml, false);
+      assertEquals("title", "The Diagram", metadata.getTitle());
+      assertEquals("guid", "BBA084A03B6640129532ABD9BAB7D369", metadata.getGUID());
+      assertEquals("central theme", 0, metadata.getCentralThemeID());
+      assertFalse("Topics must not be counted", metadata.hasTopicsCount());
+      assertEquals("Topics count", -1, metadata.getTopicsCount());
+      metadata = parser.readMetadata(xml, true);
+      assertEquals("title", "The Diagram", metadata.getTitle());
+      assertEquals("Topics count", diagram.getTopics().size(), metadata.getTopicsCount());
+
+      File smmx = new File(this.getClass().getResource("BFO.smmx").toURI());
+      diagram = parser.parse(smmx);
+      metadata = parser.readMetadata(smmx, true);
+      assertEquals("title", "KOVE2 - only", metadata.getTitle());
+      assertEquals("title", diagram.getTitle(), metadata.getTitle());
+      assertEquals("Topics count", diagram.getTopics().size(), metadata.getTopicsCount());
+
+      byte[] content = MindMapGenerator.generateWithNotes(3000, 100);
+      metadata = parser.readMetadata(new ByteArrayInputStream(content), true);
+      assertEquals("Topics count", 3000, metadata.getTopicsCount());
+   }
+
+   /**
+    * Test of the TopicCounter with comments, CDATA sections and content split in several chunks.
+    */
+   @Test
+   public void testTopicCounter() throws IOException {
+      System.out.println("SimpleMindParserTest : testTopicCounter");
+      String xml = "<?xml version=\"1.0\"?><mindmap><!-- <topic id=\"9\"/> --><topics>"
+         + "<topic id=\"0\">\n<note><![CDATA[<topic> ]] ]]></note></topic><topicx/><topic\tid=\"1\"/>"
+         + "<topic/></topics><topic id=\"2\"/></mindmap>";
+      byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+      TopicCounter counter = new TopicCounter();
+      counter.scan(new ByteArrayInputStream(bytes));
+      assertEquals("Topics count", 3, counter.getCount());
+      assertTrue("Scan must be done", counter.isDone());
+      // every possible split of the content
+      for (int i = 0; i < bytes.length; i++) {
+         counter = new TopicCounter();
+         counter.scan(bytes, 0, i);
+         counter.scan(bytes, i, bytes.length - i);
+         assertEquals("Topics count for split at " + i, 3, counter.getCount());
+      }
+   }
+
+   /**
+    * Test of the reparsing of a modified diagram.
+    */
+   @Test
+   public void testReparse() throws Exception {
+      System.out.println("SimpleMindParserTest : testReparse");
+      byte[] content = ReaderUtilities.readFully(this.getClass().getResourceAsStream("mindmap.xml"));
+      String xml = new String(content, StandardCharsets.UTF_8);
+      String modifiedXml = xml.replace("text=\"information content entity\"", "text=\"ICE\"")
+         .replaceAll("(?s)<topic id=\"7\".*?</topic>\r?\n", "")
+         .replace("<topic id=\"10\" parent=\"8\"", "<topic id=\"10\" parent=\"1\"")
+         .replace("x=\"190.07\"", "x=\"200.07\"")
+         .replace("</topics>", "<topic id=\"11\" parent=\"9\" x=\"10.00\" y=\"20.00\" text=\"new topic\"/>\n</topics>");
+      byte[] modifiedContent = modifiedXml.getBytes(StandardCharsets.UTF_8);
+
+      for (int noteLoading : new int[] {SimpleMindParser.NOTES_EAGER, SimpleMindParser.NOTES_LAZY}) {
+         SimpleMindParser parser = new SimpleMindParser();
+         parser.setNoteLoading(noteLoading);
+         SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+         ChangeSet changes = parser.reparse(diagram, new ByteArrayInputStream(content));
+         assertTrue("Nothing must have changed", changes.isEmpty());
+
+         Map<Integer, Topic> topics = new HashMap<>(diagram.getTopics());
+         changes = parser.reparse(diagram, new ByteArrayInputStream(modifiedContent));
+         assertArrayEquals("added", new int[] {11}, changes.getAdded());
+         assertArrayEquals("removed", new int[] {7}, changes.getRemoved());
+         assertArrayEquals("modified", new int[] {1, 3, 5, 6, 8, 9, 10}, changes.getModified());
+         assertFalse("title", changes.isTitleChanged());
+         Iterator<Topic> it = diagram.getTopics().values().iterator();
+         while (it.hasNext()) {
+            Topic topic = it.next();
+            if (topic.getID() != 11) {
+               assertTrue("Topic " + topic.getID() + " must be reused", topic == topics.get(topic.getID()));
+            }
+         }
+         assertSameDiagram(parser.parse(new ByteArrayInputStream(modifiedContent)), diagram);
+         assertFalse("Old text", diagram.hasTopics("information content entity"));
+         assertTrue("New text", diagram.getTopics("ICE").get(3) == topics.get(3));
+         assertTrue("Removed Topic", topics.get(6).getChildrenList().isEmpty());
+         assertTrue("Moved Topic", diagram.getTopic(10).getParent() == topics.get(1));
+      }
+   }
+
+   /**
+    * Test of the ParseFilter, with all the engines.
+    */
+   @Test
+   public void testParseFilter() throws SAXException, IOException {
+      System.out.println("SimpleMindParserTest : testParseFilter");
+      byte[] content = MindMapGenerator.generate(2000);
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram expected = parser.parse(new ByteArrayInputStream(content));
+      int countPrefix = 0;
+      Iterator<Topic> it = expected.getTopics().values().iterator();
+      while (it.hasNext()) {
+         if (it.next().getText().startsWith("topic 12")) {
+            countPrefix++;
+         }
+      }
+      int[] engines = {SimpleMindParser.ENGINE_SAX_TREE, SimpleMindParser.ENGINE_SAX_STREAMING, SimpleMindParser.ENGINE_STAX,
+         SimpleMindParser.ENGINE_BYTE_TOKENIZER};
+      for (int engine : engines) {
+         for (int noteLoading : new int[] {SimpleMindParser.NOTES_EAGER, SimpleMindParser.NOTES_LAZY}) {
+            parser.setEngine(engine);
+            parser.setNoteLoading(noteLoading);
+            RecordingNoteParser noteParser = new RecordingNoteParser();
+            parser.setNoteParser(noteParser);
+            parser.setParseFilter(new ParseFilter(ParseFilter.TEXT));
+            SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+            assertEquals("Topics", 2000, diagram.getTopics().size());
+            assertTrue("Notes must not be parsed", noteParser.notes.isEmpty());
+            it = expected.getTopics().values().iterator();
+            while (it.hasNext()) {
+               Topic expectedTopic = it.next();
+               Topic topic = diagram.getTopic(expectedTopic.getID());
+               assertEquals("text", expectedTopic.getText(), topic.getText());
+               assertEquals("note", "", topic.getNote());
+               assertEquals("x", 0, topic.getX());
+               assertEquals("fill color", 0xFFFFFFFF, topic.getFillRGB());
+               assertEquals("children", expectedTopic.getChildrenList().size(), topic.getChildrenList().size());
+            }
+
+            parser.setParseFilter(new ParseFilter(ParseFilter.ALL, TopicPredicate.maxDepth(2)));
+            diagram = parser.parse(new ByteArrayInputStream(content));
+            assertEquals("Topics", 1 + 8 + 64, diagram.getTopics().size());
+            assertEquals("Notes", 19, noteParser.notes.size());
+            it = diagram.getTopics().values().iterator();
+            while (it.hasNext()) {
+               Topic topic = it.next();
+               assertEquals("Topic " + topic.getID(), expected.getTopic(topic.getID()), topic);
+               int depth = 0;
+               while (topic.getParent() != null) {
+                  topic = topic.getParent();
+                  depth++;
+               }
+               assertEquals("root", 0, topic.getID());
+               assertTrue("depth", depth <= 2);
+            }
+
+            parser.setParseFilter(new ParseFilter(ParseFilter.ALL, TopicPredicate.textStartsWith("topic 12")));
+            diagram = parser.parse(new ByteArrayInputStream(content));
+            assertEquals("Topics", countPrefix, diagram.getTopics().size());
+         }
+      }
+   }
+
+   /**
+    * A NoteParser which records the notes it receives.
+    */
+   private static class RecordingNoteParser implements NoteParser {
+      private final Map<Integer, String> notes = new HashMap<>();
+      private boolean resolved = false;
+
+      @Override
+      public void resetState(SimpleMindDiagram diagram) {
+         notes.clear();
+         resolved = false;
+      }
+
+      @Override
+      public void parseNote(Topic topic, String content) {
+         notes.put(topic.getID(), content);
+      }
+
+      @Override
+      public void resolve() {
+         resolved = true;
+      }
+   }
+
+   /**
+    * A NoteParser which checks that the Topics it receives belong to the diagram for which it has been reset.
+    */
+   private static class CheckingNoteParser implements NoteParser {
+      private SimpleMindDiagram diagram = null;
+
+      @Override
+      public void resetState(SimpleMindDiagram diagram) {
+         assertNull("NoteParser must be reset only once", this.diagram);
+         this.diagram = diagram;
+      }
+
+      @Override
+      public void parseNote(Topic topic, String content) {
+         assertTrue("Topic must belong to the diagram", diagram.getTopic(topic.getID()) == topic);
+      }
+   }
+
+   private void assertSameDiagram(byte[] content, int engine) throws SAXException, IOException {
+      SimpleMindParser parser = new SimpleMindParser();
+      parser.setEngine(SimpleMindParser.ENGINE_SAX_STREAMING);
+      SimpleMindDiagram expected = parser.parse(new ByteArrayInputStream(content));
+      parser.setEngine(engine);
+      SimpleMindDiagram diagram = parser.parse(new ByteArrayInputStream(content));
+      assertSameDiagram(expected, diagram);
+   }
+
+   private void assertSameDiagram(String resource, int engine) throws SAXException, IOException {
+      URL url = this.getClass().getResource(resource);
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram expected = parser.parse(ReaderUtilities.getSimpleMindStream(url));
+      parser.setEngine(engine);
+      SimpleMindDiagram diagram = parser.parse(ReaderUtilities.getSimpleMindStream(url));
+      assertSameDiagram(expected, diagram);
+   }
+
+   /**
+    * Check that two diagrams have the same title and Topics.
+    *
+    * @param expected the expected diagram
+    * @param diagram the diagram
+    */
+   public static void assertSameDiagram(SimpleMindDiagram expected, SimpleMindDiagram diagram) {
+      assertNotNull("Diagram must not be null", diagram);
+      assertEquals("title", expected.getTitle(), diagram.getTitle());
+      assertEquals("Topics", expected.getTopics().size(), diagram.getTopics().size());
+      Iterator<Topic> it = expected.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic expectedTopic = it.next();
+         Topic topic = diagram.getTopic(expectedTopic.getID());
+         assertNotNull("Topic " + expectedTopic.getID(), topic);
+         assertEquals("Topic " + topic.getID(), expectedTopic, topic);
+         assertEquals("Topic " + topic.getID() + " text color", expectedTopic.getTextColor(), topic.getTextColor());
+         assertEquals("Topic " + topic.getID() + " stroke color", expectedTopic.getStrokeColor(), topic.getStrokeColor());
+         if (expectedTopic.hasParent()) {
+            assertEquals("Topic " + topic.getID() + " parent", expectedTopic.getParent().getID(), topic.getParent().getID());
+         } else {
+            assertNull("Topic " + topic.getID() + " parent", topic.getParent());
+         }
+         List<Topic> expectedChildren = expectedTopic.getChildrenList();
+         List<Topic> children = topic.getChildrenList();
+         assertEquals("Topic " + topic.getID() + " children", expectedChildren.size(), children.size());
+         for (int i = 0; i < children.size(); i++) {
+            assertEquals("Topic " + topic.getID() + " child", expectedChildren.get(i).getID(), children.get(i).getID());
+         }
+      }
+   }
 }
@@ -0,0 +1,284 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.snapshot;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import org.girod.jsimplemind.benchmark.MindMapGenerator;
+import org.girod.jsimplemind.model.SimpleMindDiagram;
+import org.girod.jsimplemind.model.Topic;
+import org.girod.jsimplemind.reader.SimpleMindParser;
+import org.girod.jsimplemind.reader.SimpleMindParserTest;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @since 0.4
+ */
+public class SnapshotTest {
+   private static SimpleMindDiagram diagram = null;
+
+   public SnapshotTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() throws IOException, SAXException {
+      URL url = SnapshotTest.class.getResource("/org/girod/jsimplemind/reader/mindmap.xml");
+      SimpleMindParser parser = new SimpleMindParser();
+      diagram = parser.parse(url);
+      assertNotNull("Diagram must not be null", diagram);
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static SimpleMindDiagram roundTrip(SimpleMindDiagram diagram, SnapshotWriter writer, SnapshotReader reader) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writer.write(diagram, out);
+      return reader.read(new ByteArrayInputStream(out.toByteArray()));
+   }
+
+   private static void assertSameNotes(SimpleMindDiagram expected, SimpleMindDiagram diagram) {
+      Iterator<Topic> it = expected.getTopics().values().iterator();
+      while (it.hasNext()) {
+         Topic expectedTopic = it.next();
+         Topic topic = diagram.getTopic(expectedTopic.getID());
+         assertEquals("Topic " + topic.getID() + " text", expectedTopic.getText(), topic.getText());
+         assertEquals("Topic " + topic.getID() + " note", expectedTopic.getNote(), topic.getNote());
+         assertEquals("Topic " + topic.getID() + " position", expectedTopic.getX(), topic.getX());
+         assertEquals("Topic " + topic.getID() + " position", expectedTopic.getY(), topic.getY());
+      }
+   }
+
+   /**
+    * Test of the round trip of a parsed diagram.
+    */
+   @Test
+   public void testRoundTrip() throws IOException {
+      System.out.println("SnapshotTest : testRoundTrip");
+      SimpleMindDiagram result = roundTrip(diagram, new SnapshotWriter(), new SnapshotReader());
+      SimpleMindParserTest.assertSameDiagram(diagram, result);
+      assertSameNotes(diagram, result);
+   }
+
+   /**
+    * Test of the round trip of a generated diagram, through a memory-mapped file.
+    */
+   @Test
+   public void testRoundTripFile() throws IOException, SAXException {
+      System.out.println("SnapshotTest : testRoundTripFile");
+      SimpleMindParser parser = new SimpleMindParser();
+      SimpleMindDiagram generated = parser.parse(new ByteArrayInputStream(MindMapGenerator.generate(2000)));
+      File file = File.createTempFile("jsimplemind", ".snapshot");
+      try {
+         new SnapshotWriter().write(generated, file);
+         assertTrue("Must be a snapshot", SnapshotReader.isSnapshot(file));
+         SimpleMindDiagram result = new SnapshotReader().read(file);
+         SimpleMindParserTest.assertSameDiagram(generated, result);
+         assertSameNotes(generated, result);
+      } finally {
+         file.delete();
+      }
+   }
+
+   /**
+    * Test of the round trip of null colors, null texts and properties.
+    */
+   @Test
+   public void testProperties() throws IOException {
+      System.out.println("SnapshotTest : testProperties");
+      SimpleMindDiagram source = new SimpleMindDiagram();
+      source.setTitle("Title");
+      Topic root = new Topic(1);
+      root.setText(null);
+      root.setFillColor(null);
+      root.setStrokeColor(null);
+      root.addProperty("string", "value");
+      root.addProperty("int", 42);
+      root.addProperty("long", 1L << 40);
+      root.addProperty("double", 0.5d);
+      root.addProperty("boolean", Boolean.TRUE);
+      source.addTopic(root);
+      Topic child = new Topic(2);
+      child.setText("child");
+      child.setTextRGB(0);
+      child.addProperty("point", new StringBuilder("1,2"));
+      child.setParent(root);
+      root.addChild(child);
+      source.addTopic(child);
+
+      SnapshotWriter writer = new SnapshotWriter();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+         writer.write(source, out);
+         fail("A property without codec must not be written");
+      } catch (IOException ex) {
+      }
+      writer.addCodec(new BuilderCodec());
+      try {
+         roundTrip(source, writer, new SnapshotReader());
+         fail("A property with an unknown codec must not be read");
+      } catch (IOException ex) {
+      }
+      SnapshotReader reader = new SnapshotReader();
+      reader.addCodec(new BuilderCodec());
+      SimpleMindDiagram result = roundTrip(source, writer, reader);
+
+      assertEquals("title", "Title", result.getTitle());
+      Topic topic = result.getTopic(1);
+      assertNull("text", topic.getText());
+      assertNull("fill color", topic.getFillColor());
+      assertNull("stroke color", topic.getStrokeColor());
+      assertNotNull("text color", topic.getTextColor());
+      assertEquals("string", "value", topic.getProperty("string"));
+      assertEquals("int", 42, topic.getProperty("int"));
+      assertEquals("long", 1L << 40, topic.getProperty("long"));
+      assertEquals("double", 0.5d, topic.getProperty("double"));
+      assertEquals("boolean", Boolean.TRUE, topic.getProperty("boolean"));
+      topic = result.getTopic(2);
+      assertEquals("parent", 1, topic.getParent().getID());
+      assertEquals("text color", 0, topic.getTextRGB());
+      assertNotNull("text color", topic.getTextColor());
+      assertEquals("point", "1,2", topic.getProperty("point").toString());
+   }
+
+   /**
+    * Test of the read of invalid content.
+    */
+   @Test
+   public void testInvalidContent() throws IOException {
+      System.out.println("SnapshotTest : testInvalidContent");
+      SnapshotReader reader = new SnapshotReader();
+      try {
+         reader.read(new ByteArrayInputStream("<map/>".getBytes(StandardCharsets.UTF_8)));
+         fail("Content must be rejected");
+      } catch (IOException ex) {
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new SnapshotWriter().write(diagram, out);
+      byte[] content = out.toByteArray();
+      try {
+         reader.read(new ByteArrayInputStream(content, 0, content.length / 2));
+         fail("Truncated content must be rejected");
+      } catch (IOException ex) {
+      }
+   }
+
+   /**
+    * Test of the round trip of a diagram after the removal of a Topic which has a parent and children.
+    */
+   @Test
+   public void testRoundTripAfterRemoval() throws IOException {
+      System.out.println("SnapshotTest : testRoundTripAfterRemoval");
+      SimpleMindDiagram _diagram = new SimpleMindDiagram();
+      Topic root = new Topic(0);
+      Topic parent = new Topic(1);
+      Topic child = new Topic(2);
+      root.addChild(parent);
+      parent.setParent(root);
+      parent.addChild(child);
+      child.setParent(parent);
+      _diagram.addTopic(root);
+      _diagram.addTopic(parent);
+      _diagram.addTopic(child);
+      // a child without parent is not removed from the children of the root
+      Topic orphan = new Topic(3);
+      root.addChild(orphan);
+      _diagram.addTopic(orphan);
+      _diagram.removeTopic(1);
+      _diagram.removeTopic(3);
+      SimpleMindDiagram result = roundTrip(_diagram, new SnapshotWriter(), new SnapshotReader());
+      assertEquals("Topics", 2, result.getTopics().size());
+      assertNull("no parent", result.getTopic(2).getParent());
+      assertTrue("no children", result.getTopic(0).getChildrenList().isEmpty());
+   }
+
+   /**
+    * Test of the read of content with a corrupted Topics count.
+    */
+   @Test
+   public void testCorruptedCount() throws IOException {
+      System.out.println("SnapshotTest : testCorruptedCount");
+      ByteBuffer buffer = ByteBuffer.allocate(24);
+      buffer.putInt(SnapshotFormat.MAGIC).putInt(SnapshotFormat.VERSION).putInt(0);
+      buffer.putInt(-1).putInt(0).putInt(Integer.MAX_VALUE);
+      buffer.flip();
+      try {
+         new SnapshotReader().read(buffer);
+         fail("Corrupted count must be rejected");
+      } catch (IOException ex) {
+         assertEquals("Truncated snapshot", ex.getMessage());
+      }
+   }
+
+   private static class BuilderCodec implements PropertyCodec {
+      @Override
+      public String getName() {
+         return "builder";
+      }
+
+      @Override
+      public boolean canEncode(Object value) {
+         return value instanceof StringBuilder;
+      }
+
+      @Override
+      public byte[] encode(Object value) {
+         return value.toString().getBytes(StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public Object decode(byte[] data) {
+         return new StringBuilder(new String(data, StandardCharsets.UTF_8));
+      }
+   }
+}
@@ -0,0 +1,155 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.utils;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *
+ * @since 0.4
+ */
+public class IntObjectMapTest {
+
+   public IntObjectMapTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   /**
+    * Test of the array storage, with dense keys.
+    */
+   @Test
+   public void testDenseKeys() {
+      System.out.println("IntObjectMapTest : testDenseKeys");
+      IntObjectMap<String> map = new IntObjectMap<>();
+      for (int i = 0; i < 1000; i++) {
+         assertNull("put " + i, map.put(i, "v" + i));
+      }
+      assertEquals("size", 1000, map.size());
+      assertEquals("get", "v500", map.get(500));
+      assertEquals("put", "v500", map.put(500, "w500"));
+      assertEquals("size", 1000, map.size());
+      assertNull("get", map.get(1000));
+      assertNull("get", map.get(-1));
+      int expected = 0;
+      for (Map.Entry<Integer, String> entry : map.asMap().entrySet()) {
+         assertEquals("key order", expected, entry.getKey().intValue());
+         expected++;
+      }
+      assertEquals("remove", "v10", map.remove(10));
+      assertNull("remove", map.remove(10));
+      assertFalse("containsKey", map.containsKey(10));
+      assertEquals("size", 999, map.size());
+   }
+
+   /**
+    * Test of the map against a HashMap with random keys, which switches the map to the hash table.
+    */
+   @Test
+   public void testRandomKeys() {
+      System.out.println("IntObjectMapTest : testRandomKeys");
+      Random random = new Random(1);
+      IntObjectMap<Integer> map = new IntObjectMap<>();
+      Map<Integer, Integer> expected = new HashMap<>();
+      for (int i = 0; i < 20000; i++) {
+         int key = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(2000) - 100;
+         int op = random.nextInt(3);
+         if (op < 2) {
+            assertEquals("put " + key, expected.put(key, i), map.put(key, i));
+         } else {
+            assertEquals("remove " + key, expected.remove(key), map.remove(key));
+         }
+         assertEquals("size", expected.size(), map.size());
+      }
+      assertEquals("map view", expected, map.asMap());
+      for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+         assertEquals("get " + entry.getKey(), entry.getValue(), map.get(entry.getKey()));
+      }
+   }
+
+   /**
+    * Test of the removal of values by the iterators of the map view.
+    */
+   @Test
+   public void testIteratorRemove() {
+      System.out.println("IntObjectMapTest : testIteratorRemove");
+      Random random = new Random(2);
+      for (int round = 0; round < 50; round++) {
+         IntObjectMap<Integer> map = new IntObjectMap<>();
+         Map<Integer, Integer> expected = new HashMap<>();
+         for (int i = 0; i < 200; i++) {
+            int key = round % 2 == 0 ? random.nextInt(300) : random.nextInt();
+            map.put(key, key);
+            expected.put(key, key);
+         }
+         int count = map.size();
+         List<Integer> iterated = new ArrayList<>();
+         Iterator<Integer> it = map.values().iterator();
+         while (it.hasNext()) {
+            Integer value = it.next();
+            iterated.add(value);
+            if (value % 3 == 0) {
+               it.remove();
+               expected.remove(value);
+            }
+         }
+         assertEquals("iterated values", count, iterated.size());
+         assertEquals("iterated each value once", count, new HashSet<>(iterated).size());
+         assertEquals("map after removal", expected, map.asMap());
+      }
+   }
+}
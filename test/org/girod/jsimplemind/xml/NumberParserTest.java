@@ -0,0 +1,103 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.xml;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * @since 0.4
+ */
+public class NumberParserTest {
+
+   public NumberParserTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   /**
+    * Test of parseInt methods, of class NumberParser.
+    */
+   @Test
+   public void testParseInt() {
+      System.out.println("NumberParserTest : testParseInt");
+      assertParseInt("0", 0);
+      assertParseInt("324", 324);
+      assertParseInt("-1", -1);
+      assertParseInt("+12", 12);
+      assertParseInt("324.00", 324);
+      assertParseInt("324.49", 324);
+      assertParseInt("324.5", 325);
+      assertParseInt("-324.5", -325);
+      assertParseInt("0.75", 1);
+      assertParseInt(".5", 1);
+      assertParseInt("12.", 12);
+      assertParseInt("2147483647", Integer.MAX_VALUE);
+      assertParseInt("-2147483648", Integer.MIN_VALUE);
+      assertParseInt("2147483648", -7);
+      assertParseInt("2147483647.5", -7);
+      assertParseInt("99999999999999999999", -7);
+      assertParseInt("", -7);
+      assertParseInt("-", -7);
+      assertParseInt(".", -7);
+      assertParseInt("1.2.3", -7);
+      assertParseInt(" 12", -7);
+      assertParseInt("12a", -7);
+      assertParseInt("1e3", -7);
+      assertEquals("null", -7, NumberParser.parseInt((String) null, -7));
+   }
+
+   private void assertParseInt(String value, int expected) {
+      assertEquals(value, expected, NumberParser.parseInt(value, -7));
+      byte[] bytes = ("ab" + value + "cd").getBytes(StandardCharsets.US_ASCII);
+      assertEquals(value, expected, NumberParser.parseInt(bytes, 2, value.length(), -7));
+   }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright (C) 2021 Herve Girod
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies,
+either expressed or implied, of the FreeBSD Project.
+
+Alternatively if you have any questions about this project, you can visit
+the project website at the project page on https://github.com/hervegirod/jSimpleMind
+ */
+package org.girod.jsimplemind.xml;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ *
+ * @since 0.4
+ */
+public class XMLNodeTest {
+
+   public XMLNodeTest() {
+   }
+
+   @BeforeClass
+   public static void setUpClass() {
+   }
+
+   @AfterClass
+   public static void tearDownClass() {
+   }
+
+   @Before
+   public void setUp() {
+   }
+
+   @After
+   public void tearDown() {
+   }
+
+   private static XMLRoot createTree(int countTopics) {
+      XMLRoot root = new XMLRoot("simplemind-mindmaps");
+      root.setEncoding("UTF-8");
+      XMLNode topics = new XMLNode(root, "topics");
+      root.addChild(topics);
+      for (int i = 0; i < countTopics; i++) {
+         XMLNode topic = new XMLNode(topics, "topic");
+         topic.addAttribute("id", i);
+         topic.addAttribute("text", "topic " + i);
+         topics.addChild(topic);
+         XMLNode note = new XMLNode(topic, "note");
+         note.setCDATA("note " + i);
+         topic.addChild(note);
+      }
+      return root;
+   }
+
+   /**
+    * Test of the structural equality of trees.
+    */
+   @Test
+   public void testEquals() {
+      System.out.println("XMLNodeTest : testEquals");
+      XMLRoot root1 = createTree(100);
+      XMLRoot root2 = createTree(100);
+      assertEquals("same trees", root1, root2);
+      assertEquals("same hash codes", root1.hashCode(), root2.hashCode());
+      assertEquals("copy", root1, root1.copy());
+      assertNotEquals("different sizes", root1, createTree(99));
+
+      XMLNode topic1 = root1.getFirstChild().getChildren().get(5);
+      XMLNode topic2 = root2.getFirstChild().getChildren().get(5);
+      assertEquals("same subtrees", topic1, topic2);
+      assertNotEquals("different subtrees", topic1, root1.getFirstChild().getChildren().get(6));
+      assertNotEquals("node and root", root1, root1.getFirstChild());
+
+      root2.setEncoding("UTF-16");
+      assertNotEquals("different encodings", root1, root2);
+   }
+
+   /**
+    * Test of the invalidation of the cached hash codes.
+    */
+   @Test
+   public void testHashCodeInvalidation() {
+      System.out.println("XMLNodeTest : testHashCodeInvalidation");
+      XMLRoot root1 = createTree(100);
+      XMLRoot root2 = createTree(100);
+      Set<XMLNode> set = new HashSet<>();
+      set.add(root1);
+      assertTrue("contained", set.contains(root2));
+
+      XMLNode note = root2.getFirstChild().getChildren().get(42).getFirstChild();
+      int hash = root2.hashCode();
+      note.setCDATA("modified");
+      assertNotEquals("modified hash code", hash, root2.hashCode());
+      assertFalse("not contained", set.contains(root2));
+      assertNotEquals("modified tree", root1, root2);
+
+      note.setCDATA("note 42");
+      assertEquals("restored hash code", hash, root2.hashCode());
+      assertEquals("restored tree", root1, root2);
+
+      XMLNode topic = root2.getFirstChild().getChildren().get(7);
+      topic.addAttribute("x", 10);
+      assertNotEquals("added attribute", root1, root2);
+      root1.getFirstChild().getChildren().get(7).addAttribute("x", 10);
+      assertEquals("same attribute added", root1, root2);
+
+      topic.addChild(new XMLNode(topic, "link"));
+      assertNotEquals("added child", root1, root2);
+      assertNotEquals("added child", root1.hashCode(), root2.hashCode());
+   }
+}